@@ -0,0 +1,83 @@
+package org.epics.pvmarshaller.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialises and deserialises objects holding primitive arrays of increasing size
+ * @author Matt Taylor
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ArrayBenchmark {
+
+	@Param({"1", "100", "10000", "1000000", "10000000"})
+	int size;
+
+	PVMarshaller marshaller;
+	Arrays arrays;
+	PVStructure pvStructure;
+
+	@Setup
+	public void setup() throws Exception {
+		marshaller = new PVMarshaller();
+		arrays = new Arrays(size);
+		pvStructure = marshaller.toPVStructure(arrays);
+	}
+
+	@Benchmark
+	public PVStructure toPVStructure() throws Exception {
+		return marshaller.toPVStructure(arrays);
+	}
+
+	@Benchmark
+	public Arrays fromPVStructure() throws Exception {
+		return marshaller.fromPVStructure(pvStructure, Arrays.class);
+	}
+
+	public static class Arrays {
+		int[] intValues;
+		double[] doubleValues;
+
+		public Arrays() {
+		}
+		public Arrays(int size) {
+			intValues = new int[size];
+			doubleValues = new double[size];
+			for (int i = 0; i < size; i++) {
+				intValues[i] = i;
+				doubleValues[i] = i * 0.5;
+			}
+		}
+		public int[] getIntValues() {
+			return intValues;
+		}
+		public void setIntValues(int[] intValues) {
+			this.intValues = intValues;
+		}
+		public double[] getDoubleValues() {
+			return doubleValues;
+		}
+		public void setDoubleValues(double[] doubleValues) {
+			this.doubleValues = doubleValues;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package org.epics.pvmarshaller.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sets and gets a single field holding an object of each shape
+ * @author Matt Taylor
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldBenchmark {
+
+	@Param
+	Shape shape;
+
+	PVMarshaller marshaller;
+	Object value;
+	PVStructure pvStructure;
+
+	@Setup
+	public void setup() throws Exception {
+		marshaller = new PVMarshaller();
+		shape.configure(marshaller);
+		value = shape.create();
+		Holder holder = new Holder();
+		holder.setValue(value);
+		pvStructure = marshaller.toPVStructure(holder);
+	}
+
+	@Benchmark
+	public PVStructure setFieldWithValue() throws Exception {
+		marshaller.setFieldWithValue(pvStructure, "value", value);
+		return pvStructure;
+	}
+
+	@Benchmark
+	public Object getObjectFromField() throws Exception {
+		return marshaller.getObjectFromField(pvStructure, "value");
+	}
+
+	public static class Holder {
+		Object value;
+
+		public Object getValue() {
+			return value;
+		}
+		public void setValue(Object value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package org.epics.pvmarshaller.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.buffer.ByteBufferControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serialises and deserialises whole objects of each shape
+ * @author Matt Taylor
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarshallingBenchmark {
+
+	@Param
+	Shape shape;
+
+	PVMarshaller marshaller;
+	Object object;
+	PVStructure pvStructure;
+	ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+	ByteBufferControl control = new ByteBufferControl(buffer);
+	ByteBuffer payload = ByteBuffer.allocate(1 << 20);
+	ByteBufferControl payloadControl = new ByteBufferControl(payload);
+
+	@Setup
+	public void setup() throws Exception {
+		marshaller = new PVMarshaller();
+		shape.configure(marshaller);
+		object = shape.create();
+		pvStructure = marshaller.toPVStructure(object);
+		pvStructure.serialize(payload, payloadControl);
+		payload.flip();
+	}
+
+	@Benchmark
+	public PVStructure toPVStructure() throws Exception {
+		return marshaller.toPVStructure(object);
+	}
+
+	@Benchmark
+	public ByteBuffer toPVStructureAndSerialize() throws Exception {
+		buffer.clear();
+		marshaller.toPVStructure(object).serialize(buffer, control);
+		return buffer;
+	}
+
+	@Benchmark
+	public ByteBuffer serialise() throws Exception {
+		buffer.clear();
+		marshaller.serialise(object, buffer, control);
+		return buffer;
+	}
+
+	@Benchmark
+	public Object fromPVStructure() throws Exception {
+		return marshaller.fromPVStructure(pvStructure, object.getClass());
+	}
+
+	@Benchmark
+	public Object deserializeAndFromPVStructure() throws Exception {
+		payload.rewind();
+		PVStructure received = PVDataFactory.getPVDataCreate().createPVStructure(pvStructure.getStructure());
+		received.deserialize(payload, payloadControl);
+		return marshaller.fromPVStructure(received, object.getClass());
+	}
+
+	@Benchmark
+	public Object deserialise() throws Exception {
+		payload.rewind();
+		return marshaller.deserialise(payload, payloadControl, pvStructure.getStructure(), object.getClass());
+	}
+}
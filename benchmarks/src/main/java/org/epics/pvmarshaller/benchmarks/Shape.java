@@ -0,0 +1,389 @@
+package org.epics.pvmarshaller.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller;
+import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+
+/**
+ * The shapes of object the benchmarks are run against, each with the marshaller configuration it needs
+ * @author Matt Taylor
+ *
+ */
+public enum Shape {
+	/**
+	 * An object with a member of each primitive, wrapper and String type
+	 */
+	SCALARS {
+		@Override
+		public Object create() {
+			return new Scalars();
+		}
+	},
+	/**
+	 * An object with two levels of nested objects
+	 */
+	NESTED {
+		@Override
+		public Object create() {
+			return new Beamline();
+		}
+	},
+	/**
+	 * An object with a map of primitives and a nested map
+	 */
+	MAP {
+		@Override
+		public Object create() {
+			return new Metadata();
+		}
+	},
+	/**
+	 * An object with a list of 100 objects
+	 */
+	LIST {
+		@Override
+		public Object create() {
+			return new Scan(100);
+		}
+	},
+	/**
+	 * An object whose members are declared in three levels of class hierarchy
+	 */
+	INHERITANCE {
+		@Override
+		public Object create() {
+			return new Motor();
+		}
+	},
+	/**
+	 * An object serialised with a registered marshaller
+	 */
+	CUSTOM {
+		@Override
+		public Object create() {
+			return new Position();
+		}
+
+		@Override
+		public void configure(PVMarshaller marshaller) {
+			marshaller.registerMarshaller(new PositionMarshaller());
+		}
+	};
+
+	/**
+	 * Creates an object of this shape
+	 * @return
+	 */
+	public abstract Object create();
+
+	/**
+	 * Registers anything the marshaller needs to marshal objects of this shape
+	 * @param marshaller The marshaller
+	 */
+	public void configure(PVMarshaller marshaller) {
+	}
+
+	public static class Scalars {
+		int intValue = 1;
+		Integer wrapperIntValue = 2;
+		short shortValue = 3;
+		long longValue = 4;
+		Long wrapperLongValue = 5L;
+		byte byteValue = 6;
+		boolean booleanValue = true;
+		float floatValue = 7.5f;
+		double doubleValue = 8.5;
+		Double wrapperDoubleValue = 9.5;
+		char charValue = 'a';
+		String stringValue = "value";
+
+		public int getIntValue() {
+			return intValue;
+		}
+		public void setIntValue(int intValue) {
+			this.intValue = intValue;
+		}
+		public Integer getWrapperIntValue() {
+			return wrapperIntValue;
+		}
+		public void setWrapperIntValue(Integer wrapperIntValue) {
+			this.wrapperIntValue = wrapperIntValue;
+		}
+		public short getShortValue() {
+			return shortValue;
+		}
+		public void setShortValue(short shortValue) {
+			this.shortValue = shortValue;
+		}
+		public long getLongValue() {
+			return longValue;
+		}
+		public void setLongValue(long longValue) {
+			this.longValue = longValue;
+		}
+		public Long getWrapperLongValue() {
+			return wrapperLongValue;
+		}
+		public void setWrapperLongValue(Long wrapperLongValue) {
+			this.wrapperLongValue = wrapperLongValue;
+		}
+		public byte getByteValue() {
+			return byteValue;
+		}
+		public void setByteValue(byte byteValue) {
+			this.byteValue = byteValue;
+		}
+		public boolean isBooleanValue() {
+			return booleanValue;
+		}
+		public void setBooleanValue(boolean booleanValue) {
+			this.booleanValue = booleanValue;
+		}
+		public float getFloatValue() {
+			return floatValue;
+		}
+		public void setFloatValue(float floatValue) {
+			this.floatValue = floatValue;
+		}
+		public double getDoubleValue() {
+			return doubleValue;
+		}
+		public void setDoubleValue(double doubleValue) {
+			this.doubleValue = doubleValue;
+		}
+		public Double getWrapperDoubleValue() {
+			return wrapperDoubleValue;
+		}
+		public void setWrapperDoubleValue(Double wrapperDoubleValue) {
+			this.wrapperDoubleValue = wrapperDoubleValue;
+		}
+		public char getCharValue() {
+			return charValue;
+		}
+		public void setCharValue(char charValue) {
+			this.charValue = charValue;
+		}
+		public String getStringValue() {
+			return stringValue;
+		}
+		public void setStringValue(String stringValue) {
+			this.stringValue = stringValue;
+		}
+	}
+
+	public static class Beamline {
+		String name = "i22";
+		Detector detector = new Detector("det1", 0.5);
+		Stage stage = new Stage();
+
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public Detector getDetector() {
+			return detector;
+		}
+		public void setDetector(Detector detector) {
+			this.detector = detector;
+		}
+		public Stage getStage() {
+			return stage;
+		}
+		public void setStage(Stage stage) {
+			this.stage = stage;
+		}
+	}
+
+	public static class Stage {
+		Position x = new Position();
+		Position y = new Position();
+
+		public Position getX() {
+			return x;
+		}
+		public void setX(Position x) {
+			this.x = x;
+		}
+		public Position getY() {
+			return y;
+		}
+		public void setY(Position y) {
+			this.y = y;
+		}
+	}
+
+	public static class Detector {
+		String name;
+		double exposure;
+
+		public Detector() {
+		}
+		public Detector(String name, double exposure) {
+			this.name = name;
+			this.exposure = exposure;
+		}
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public double getExposure() {
+			return exposure;
+		}
+		public void setExposure(double exposure) {
+			this.exposure = exposure;
+		}
+	}
+
+	public static class Metadata {
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+
+		public Metadata() {
+			values.put("frames", 100);
+			values.put("exposure", 0.1);
+			values.put("user", "abc123");
+			values.put("offsets", new double[] {0.5, 1.5, 2.5});
+			Map<String, Object> detector = new LinkedHashMap<String, Object>();
+			detector.put("name", "det1");
+			detector.put("gain", 2);
+			values.put("detector", detector);
+		}
+		public Map<String, Object> getValues() {
+			return values;
+		}
+		public void setValues(Map<String, Object> values) {
+			this.values = values;
+		}
+	}
+
+	public static class Scan {
+		List<Detector> detectors = new ArrayList<Detector>();
+
+		public Scan() {
+		}
+		public Scan(int size) {
+			for (int i = 0; i < size; i++) {
+				detectors.add(new Detector("det" + i, i * 0.1));
+			}
+		}
+		public List<Detector> getDetectors() {
+			return detectors;
+		}
+		public void setDetectors(List<Detector> detectors) {
+			this.detectors = detectors;
+		}
+	}
+
+	public static class Device {
+		String name = "motor1";
+
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	public static class Axis extends Device {
+		double position = 1.5;
+
+		public double getPosition() {
+			return position;
+		}
+		public void setPosition(double position) {
+			this.position = position;
+		}
+	}
+
+	public static class Motor extends Axis {
+		double velocity = 2.5;
+		boolean moving = false;
+
+		public double getVelocity() {
+			return velocity;
+		}
+		public void setVelocity(double velocity) {
+			this.velocity = velocity;
+		}
+		public boolean isMoving() {
+			return moving;
+		}
+		public void setMoving(boolean moving) {
+			this.moving = moving;
+		}
+	}
+
+	public static class Position {
+		double value = 1.5;
+		String units = "mm";
+
+		public double getValue() {
+			return value;
+		}
+		public void setValue(double value) {
+			this.value = value;
+		}
+		public String getUnits() {
+			return units;
+		}
+		public void setUnits(String units) {
+			this.units = units;
+		}
+	}
+
+	public static class PositionMarshaller implements IPVStructureMarshaller<Position> {
+		static final Structure STRUCTURE = FieldFactory.getFieldCreate().createFieldBuilder().
+			setId("benchmark:position").
+			add("value", ScalarType.pvDouble).
+			add("units", ScalarType.pvString).
+			createStructure();
+
+		@Override
+		public Structure buildStructure(Serialiser serialiser, Position source) {
+			return STRUCTURE;
+		}
+
+		@Override
+		public void populatePVStructure(Serialiser serialiser, Position source, PVStructure pvStructure) {
+			pvStructure.getDoubleField("value").put(source.value);
+			pvStructure.getStringField("units").put(source.units);
+		}
+
+		@Override
+		public Object fromPVStructure(Deserialiser deserialiser, PVStructure pvStructure) {
+			Position position = new Position();
+			position.value = pvStructure.getDoubleField("value").get();
+			position.units = pvStructure.getStringField("units").get();
+			return position;
+		}
+
+		@Override
+		public Class<Position> getTargetClass() {
+			return Position.class;
+		}
+
+		@Override
+		public String getStructureId() {
+			return "benchmark:position";
+		}
+
+		@Override
+		public boolean isThreadSafe() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,564 @@
+package org.epics.pvmarshaller.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that generates an IPVStructureMarshaller for each class annotated with GenerateMarshaller.
+ * The generated marshaller has a constant Structure and reads and writes each member by index, calling the
+ * getters and setters directly. Each generated class is listed in META-INF/services so that the PVMarshaller
+ * registers it automatically.
+ * @author Matt Taylor
+ *
+ */
+public class MarshallerProcessor extends AbstractProcessor {
+
+	static final String ANNOTATION_NAME = "org.epics.pvmarshaller.marshaller.api.GenerateMarshaller";
+	static final String SERVICE_FILE = "META-INF/services/org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller";
+	static final String GENERATED_SUFFIX = "_PVMarshaller";
+
+	private final List<String> generatedClasses = new ArrayList<String>();
+
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(ANNOTATION_NAME);
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() != ElementKind.CLASS) {
+					error(element, "@GenerateMarshaller can only be used on classes");
+					continue;
+				}
+				TypeElement typeElement = (TypeElement)element;
+				try {
+					List<Member> members = getMembers(typeElement);
+					if (members != null) {
+						writeMarshaller(typeElement, members);
+					}
+				} catch (IOException e) {
+					error(element, "Unable to write marshaller: " + e.getMessage());
+				}
+			}
+		}
+
+		if (roundEnv.processingOver() && !generatedClasses.isEmpty()) {
+			writeServiceFile();
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the members to marshal for a class, in the same order the reflection based serialiser uses.
+	 * Reports an error and returns null if any member can't be handled by a generated marshaller
+	 * @param typeElement The class
+	 * @return The members, or null if there was an error
+	 */
+	private List<Member> getMembers(TypeElement typeElement) {
+		boolean valid = true;
+
+		if (typeElement.getModifiers().contains(Modifier.ABSTRACT)) {
+			error(typeElement, "@GenerateMarshaller classes must not be abstract");
+			valid = false;
+		}
+		if (typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+			error(typeElement, "@GenerateMarshaller classes must not be private");
+			valid = false;
+		}
+		if (typeElement.getNestingKind().isNested() && !typeElement.getModifiers().contains(Modifier.STATIC)) {
+			error(typeElement, "@GenerateMarshaller nested classes must be static");
+			valid = false;
+		}
+		if (!hasNoArgConstructor(typeElement)) {
+			error(typeElement, "@GenerateMarshaller classes must have a non-private constructor with no arguments");
+			valid = false;
+		}
+
+		List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(typeElement));
+		List<Member> members = new ArrayList<Member>();
+
+		TypeElement classToCheck = typeElement;
+		while (classToCheck != null && !classToCheck.getQualifiedName().contentEquals("java.lang.Object")) {
+			for (VariableElement field : ElementFilter.fieldsIn(classToCheck.getEnclosedElements())) {
+				if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.TRANSIENT)) {
+					continue;
+				}
+
+				String name = field.getSimpleName().toString();
+				ExecutableElement getter = findMethod(methods, "get" + name, 0);
+				ExecutableElement setter = findMethod(methods, "set" + name, 1);
+				MemberType memberType = getMemberType(field.asType());
+
+				if (getter == null || setter == null) {
+					error(field, "Unable to find getter and setter for " + name);
+					valid = false;
+				} else if (memberType == MemberType.NESTED && ((DeclaredType)field.asType()).asElement().equals(typeElement)) {
+					error(field, "Generated marshallers can't contain a member of their own class (" + name + ")");
+					valid = false;
+				} else if (memberType == null) {
+					error(field, "Type of " + name + " is not supported by generated marshallers");
+					valid = false;
+				} else {
+					members.add(new Member(name, getter.getSimpleName().toString(), setter.getSimpleName().toString(), memberType, field.asType()));
+				}
+			}
+
+			TypeMirror superclass = classToCheck.getSuperclass();
+			classToCheck = superclass.getKind() == TypeKind.DECLARED ? (TypeElement)((DeclaredType)superclass).asElement() : null;
+		}
+
+		return valid ? members : null;
+	}
+
+	/**
+	 * Gets whether the class has a constructor with no arguments that the generated class can call
+	 * @param typeElement The class
+	 * @return
+	 */
+	private boolean hasNoArgConstructor(TypeElement typeElement) {
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(typeElement.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds a non-private instance method by name, ignoring case as the reflection based marshaller does
+	 * @param methods The methods to search
+	 * @param name The name of the method
+	 * @param parameterCount The number of parameters of the method
+	 * @return The method, or null if there isn't one
+	 */
+	private ExecutableElement findMethod(List<ExecutableElement> methods, String name, int parameterCount) {
+		for (ExecutableElement method : methods) {
+			if (method.getSimpleName().toString().equalsIgnoreCase(name) &&
+					method.getParameters().size() == parameterCount &&
+					!method.getModifiers().contains(Modifier.PRIVATE) &&
+					!method.getModifiers().contains(Modifier.STATIC)) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets how a member of the specified type is marshalled
+	 * @param type The type of the member
+	 * @return The member type, or null if the type is not supported
+	 */
+	private MemberType getMemberType(TypeMirror type) {
+		switch (type.getKind()) {
+		case INT:
+			return MemberType.INT;
+		case SHORT:
+			return MemberType.SHORT;
+		case LONG:
+			return MemberType.LONG;
+		case BYTE:
+			return MemberType.BYTE;
+		case BOOLEAN:
+			return MemberType.BOOLEAN;
+		case FLOAT:
+			return MemberType.FLOAT;
+		case DOUBLE:
+			return MemberType.DOUBLE;
+		case CHAR:
+			return MemberType.CHAR;
+		case ARRAY:
+			MemberType componentType = getMemberType(((ArrayType)type).getComponentType());
+			if (componentType == null || componentType.arrayType == null) {
+				return null;
+			}
+			return componentType.arrayType;
+		case DECLARED:
+			if (isString(type)) {
+				return MemberType.STRING;
+			}
+			if (getGenerateMarshallerAnnotation(((DeclaredType)type).asElement()) != null) {
+				return MemberType.NESTED;
+			}
+			return null;
+		default:
+			return null;
+		}
+	}
+
+	private boolean isString(TypeMirror type) {
+		return type.getKind() == TypeKind.DECLARED &&
+				((TypeElement)((DeclaredType)type).asElement()).getQualifiedName().contentEquals("java.lang.String");
+	}
+
+	private AnnotationMirror getGenerateMarshallerAnnotation(Element element) {
+		for (AnnotationMirror annotationMirror : element.getAnnotationMirrors()) {
+			if (((TypeElement)annotationMirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION_NAME)) {
+				return annotationMirror;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the Structure ID set in the annotation of a class
+	 * @param typeElement The class
+	 * @return The ID, or null if not set
+	 */
+	private String getStructureId(TypeElement typeElement) {
+		AnnotationMirror annotationMirror = getGenerateMarshallerAnnotation(typeElement);
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotationMirror.getElementValues().entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals("id")) {
+				String id = (String)entry.getValue().getValue();
+				return id.isEmpty() ? null : id;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the package of the generated marshaller for a class
+	 * @param typeElement The class
+	 * @return The package name, or an empty string for the default package
+	 */
+	private String getPackageName(TypeElement typeElement) {
+		PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(typeElement);
+		return packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+	}
+
+	/**
+	 * Gets the simple name of the generated marshaller for a class. Nested class names are joined with underscores
+	 * @param typeElement The class
+	 * @return The name
+	 */
+	private String getMarshallerSimpleName(TypeElement typeElement) {
+		String binaryName = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+		String packageName = getPackageName(typeElement);
+		if (!packageName.isEmpty()) {
+			binaryName = binaryName.substring(packageName.length() + 1);
+		}
+		return binaryName.replace('$', '_') + GENERATED_SUFFIX;
+	}
+
+	/**
+	 * Gets the fully qualified name of the generated marshaller for a class
+	 * @param typeElement The class
+	 * @return The name
+	 */
+	private String getMarshallerName(TypeElement typeElement) {
+		String packageName = getPackageName(typeElement);
+		String simpleName = getMarshallerSimpleName(typeElement);
+		return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+	}
+
+	/**
+	 * Writes the source of the generated marshaller for a class
+	 * @param typeElement The class
+	 * @param members The members to marshal
+	 * @throws IOException
+	 */
+	private void writeMarshaller(TypeElement typeElement, List<Member> members) throws IOException {
+		String packageName = getPackageName(typeElement);
+		String simpleName = getMarshallerSimpleName(typeElement);
+		String marshallerName = getMarshallerName(typeElement);
+		String targetName = typeElement.getQualifiedName().toString();
+		String structureId = getStructureId(typeElement);
+
+		try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(marshallerName, typeElement).openWriter())) {
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("/**");
+			out.println(" * Marshaller for " + targetName + " generated by " + MarshallerProcessor.class.getName());
+			out.println(" */");
+			out.println("public final class " + simpleName + " implements org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller<" + targetName + "> {");
+			out.println();
+
+			// Structure constant
+			out.println("\tpublic static final org.epics.pvdata.pv.Structure STRUCTURE = org.epics.pvdata.factory.FieldFactory.getFieldCreate().createFieldBuilder()");
+			if (structureId != null) {
+				out.println("\t\t\t.setId(" + quote(structureId) + ")");
+			}
+			for (Member member : members) {
+				if (member.type == MemberType.NESTED) {
+					out.println("\t\t\t.add(" + quote(member.name) + ", " + getMarshallerName((TypeElement)((DeclaredType)member.javaType).asElement()) + ".STRUCTURE)");
+				} else if (member.type.isArray()) {
+					out.println("\t\t\t.addArray(" + quote(member.name) + ", org.epics.pvdata.pv.ScalarType." + member.type.scalarType + ")");
+				} else {
+					out.println("\t\t\t.add(" + quote(member.name) + ", org.epics.pvdata.pv.ScalarType." + member.type.scalarType + ")");
+				}
+			}
+			out.println("\t\t\t.createStructure();");
+			out.println();
+
+			out.println("\t@Override");
+			out.println("\tpublic Class<" + targetName + "> getTargetClass() {");
+			out.println("\t\treturn " + targetName + ".class;");
+			out.println("\t}");
+			out.println();
+
+			out.println("\t@Override");
+			out.println("\tpublic String getStructureId() {");
+			out.println("\t\treturn " + (structureId == null ? "null" : quote(structureId)) + ";");
+			out.println("\t}");
+			out.println();
+
+			// Generated marshallers hold no state, so can be used from several threads at once
+			out.println("\t@Override");
+			out.println("\tpublic boolean isThreadSafe() {");
+			out.println("\t\treturn true;");
+			out.println("\t}");
+			out.println();
+
+			out.println("\t@Override");
+			out.println("\tpublic org.epics.pvdata.pv.Structure buildStructure(org.epics.pvmarshaller.marshaller.serialisers.Serialiser serialiser, " + targetName + " source) {");
+			out.println("\t\treturn STRUCTURE;");
+			out.println("\t}");
+			out.println();
+
+			writePopulate(out, targetName, members);
+			writeFromPVStructure(out, targetName, members);
+
+			out.println("}");
+		}
+
+		generatedClasses.add(marshallerName);
+	}
+
+	/**
+	 * Writes the populatePVStructure method of a generated marshaller
+	 */
+	private void writePopulate(PrintWriter out, String targetName, List<Member> members) {
+		out.println("\t@Override");
+		out.println("\tpublic void populatePVStructure(org.epics.pvmarshaller.marshaller.serialisers.Serialiser serialiser, " + targetName + " source, org.epics.pvdata.pv.PVStructure pvStructure) throws Exception {");
+		out.println("\t\torg.epics.pvdata.pv.PVField[] pvFields = pvStructure.getPVFields();");
+
+		for (int i = 0; i < members.size(); i++) {
+			Member member = members.get(i);
+			String pvField = "((org.epics.pvdata.pv." + member.type.pvClass + ")pvFields[" + i + "])";
+			String value = "source." + member.getter + "()";
+
+			switch (member.type) {
+			case CHAR:
+				out.println("\t\t" + pvField + ".put(String.valueOf(" + value + "));");
+				break;
+			case STRING:
+				out.println("\t\t{");
+				out.println("\t\t\tString value = " + value + ";");
+				out.println("\t\t\t" + pvField + ".put(value == null ? \"\" : value);");
+				out.println("\t\t}");
+				break;
+			case NESTED:
+				// The PVStructure may be a reused template, so a null object resets the nested structure to default values
+				String nestedMarshallerName = getMarshallerName((TypeElement)((DeclaredType)member.javaType).asElement());
+				out.println("\t\t{");
+				out.println("\t\t\tObject value = " + value + ";");
+				out.println("\t\t\tif (value != null) {");
+				out.println("\t\t\t\tserialiser.setValues(value, " + pvField + ");");
+				out.println("\t\t\t} else {");
+				out.println("\t\t\t\torg.epics.pvdata.factory.ConvertFactory.getConvert().copyStructure(org.epics.pvdata.factory.PVDataFactory.getPVDataCreate().createPVStructure(" + nestedMarshallerName + ".STRUCTURE), " + pvField + ");");
+				out.println("\t\t\t}");
+				out.println("\t\t}");
+				break;
+			default:
+				if (member.type.isArray()) {
+					// Set the length first, as put only extends the array, and a reused template may hold a longer one
+					out.println("\t\t{");
+					out.println("\t\t\t" + member.type.javaType + " value = " + value + ";");
+					out.println("\t\t\tif (value != null) {");
+					out.println("\t\t\t\t" + pvField + ".setLength(value.length);");
+					out.println("\t\t\t\t" + pvField + ".put(0, value.length, value, 0);");
+					out.println("\t\t\t} else {");
+					out.println("\t\t\t\t" + pvField + ".setLength(0);");
+					out.println("\t\t\t}");
+					out.println("\t\t}");
+				} else {
+					out.println("\t\t" + pvField + ".put(" + value + ");");
+				}
+				break;
+			}
+		}
+
+		out.println("\t}");
+		out.println();
+	}
+
+	/**
+	 * Writes the fromPVStructure method of a generated marshaller.
+	 * PVStructures with a different Structure are deserialised with the Deserialiser's compiled plans instead
+	 */
+	private void writeFromPVStructure(PrintWriter out, String targetName, List<Member> members) {
+		out.println("\t@Override");
+		out.println("\tpublic Object fromPVStructure(org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser deserialiser, org.epics.pvdata.pv.PVStructure pvStructure) throws Exception {");
+		out.println("\t\t" + targetName + " target = new " + targetName + "();");
+		out.println("\t\tif (!STRUCTURE.equals(pvStructure.getStructure())) {");
+		out.println("\t\t\tdeserialiser.getStructureDeserialiser().getDeserialisationPlan(pvStructure.getStructure(), " + targetName + ".class).apply(target, pvStructure);");
+		out.println("\t\t\treturn target;");
+		out.println("\t\t}");
+		out.println("\t\torg.epics.pvdata.pv.PVField[] pvFields = pvStructure.getPVFields();");
+
+		for (int i = 0; i < members.size(); i++) {
+			Member member = members.get(i);
+			String pvField = "((org.epics.pvdata.pv." + member.type.pvClass + ")pvFields[" + i + "])";
+			String setter = "target." + member.setter;
+
+			switch (member.type) {
+			case CHAR:
+				out.println("\t\t{");
+				out.println("\t\t\tString value = " + pvField + ".get();");
+				out.println("\t\t\tif (value.length() > 1) {");
+				out.println("\t\t\t\tthrow new IllegalArgumentException(" + quote(member.name + " has too many characters for a single char") + ");");
+				out.println("\t\t\t}");
+				out.println("\t\t\t" + setter + "(value.charAt(0));");
+				out.println("\t\t}");
+				break;
+			case NESTED:
+				String nestedName = ((TypeElement)((DeclaredType)member.javaType).asElement()).getQualifiedName().toString();
+				out.println("\t\t" + setter + "((" + nestedName + ")deserialiser.getStructureDeserialiser().createObjectFromPVStructure(" + pvField + ", " + nestedName + ".class));");
+				break;
+			default:
+				if (member.type.isArray()) {
+					String componentType = member.type.javaType.substring(0, member.type.javaType.length() - 2);
+					out.println("\t\t{");
+					out.println("\t\t\torg.epics.pvdata.pv." + member.type.pvClass + " pvArray = " + pvField + ";");
+					out.println("\t\t\t" + member.type.javaType + " value = new " + componentType + "[pvArray.getLength()];");
+					out.println("\t\t\torg.epics.pvdata.pv." + member.type.arrayDataClass + " arrayData = new org.epics.pvdata.pv." + member.type.arrayDataClass + "();");
+					out.println("\t\t\tint totalGot = 0;");
+					out.println("\t\t\twhile (totalGot < value.length) {");
+					out.println("\t\t\t\tint numGot = pvArray.get(totalGot, value.length - totalGot, arrayData);");
+					out.println("\t\t\t\tSystem.arraycopy(arrayData.data, arrayData.offset, value, totalGot, numGot);");
+					out.println("\t\t\t\ttotalGot += numGot;");
+					out.println("\t\t\t}");
+					out.println("\t\t\t" + setter + "(value);");
+					out.println("\t\t}");
+				} else {
+					out.println("\t\t" + setter + "(" + pvField + ".get());");
+				}
+				break;
+			}
+		}
+
+		out.println("\t\treturn target;");
+		out.println("\t}");
+	}
+
+	/**
+	 * Writes the service file listing all the generated marshallers
+	 */
+	private void writeServiceFile() {
+		try {
+			FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+			try (Writer writer = serviceFile.openWriter()) {
+				for (String generatedClass : generatedClasses) {
+					writer.write(generatedClass);
+					writer.write("\n");
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to write " + SERVICE_FILE + ": " + e.getMessage());
+		}
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+
+	private static String quote(String value) {
+		return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	/**
+	 * The ways a member can be marshalled by a generated marshaller
+	 */
+	enum MemberType {
+		INT_ARRAY("pvInt", "PVIntArray", "IntArrayData", "int[]", null),
+		SHORT_ARRAY("pvShort", "PVShortArray", "ShortArrayData", "short[]", null),
+		LONG_ARRAY("pvLong", "PVLongArray", "LongArrayData", "long[]", null),
+		BYTE_ARRAY("pvByte", "PVByteArray", "ByteArrayData", "byte[]", null),
+		BOOLEAN_ARRAY("pvBoolean", "PVBooleanArray", "BooleanArrayData", "boolean[]", null),
+		FLOAT_ARRAY("pvFloat", "PVFloatArray", "FloatArrayData", "float[]", null),
+		DOUBLE_ARRAY("pvDouble", "PVDoubleArray", "DoubleArrayData", "double[]", null),
+		STRING_ARRAY("pvString", "PVStringArray", "StringArrayData", "String[]", null),
+		INT("pvInt", "PVInt", null, "int", INT_ARRAY),
+		SHORT("pvShort", "PVShort", null, "short", SHORT_ARRAY),
+		LONG("pvLong", "PVLong", null, "long", LONG_ARRAY),
+		BYTE("pvByte", "PVByte", null, "byte", BYTE_ARRAY),
+		BOOLEAN("pvBoolean", "PVBoolean", null, "boolean", BOOLEAN_ARRAY),
+		FLOAT("pvFloat", "PVFloat", null, "float", FLOAT_ARRAY),
+		DOUBLE("pvDouble", "PVDouble", null, "double", DOUBLE_ARRAY),
+		CHAR("pvString", "PVString", null, "char", null),
+		STRING("pvString", "PVString", null, "String", STRING_ARRAY),
+		NESTED(null, "PVStructure", null, null, null);
+
+		final String scalarType;
+		final String pvClass;
+		final String arrayDataClass;
+		final String javaType;
+		final MemberType arrayType;
+
+		MemberType(String scalarType, String pvClass, String arrayDataClass, String javaType, MemberType arrayType) {
+			this.scalarType = scalarType;
+			this.pvClass = pvClass;
+			this.arrayDataClass = arrayDataClass;
+			this.javaType = javaType;
+			this.arrayType = arrayType;
+		}
+
+		boolean isArray() {
+			return arrayDataClass != null;
+		}
+	}
+
+	/**
+	 * A member of an annotated class
+	 */
+	private static class Member {
+		final String name;
+		final String getter;
+		final String setter;
+		final MemberType type;
+		final TypeMirror javaType;
+
+		Member(String name, String getter, String setter, MemberType type, TypeMirror javaType) {
+			this.name = name;
+			this.getter = getter;
+			this.setter = setter;
+			this.type = type;
+			this.javaType = javaType;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package org.epics.pvmarshaller.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.PVMarshaller;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MarshallerProcessorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String CHILD_SOURCE =
+			"package test.pkg;\n" +
+			"@org.epics.pvmarshaller.marshaller.api.GenerateMarshaller\n" +
+			"public class Child {\n" +
+			"	String name;\n" +
+			"	public String getName() { return name; }\n" +
+			"	public void setName(String name) { this.name = name; }\n" +
+			"}\n";
+
+	private static final String PARENT_SOURCE =
+			"package test.pkg;\n" +
+			"@org.epics.pvmarshaller.marshaller.api.GenerateMarshaller(id = \"test:parent\")\n" +
+			"public class Parent {\n" +
+			"	int intField;\n" +
+			"	double[] doubleArray;\n" +
+			"	char charField;\n" +
+			"	String stringField;\n" +
+			"	Child child;\n" +
+			"	public int getIntField() { return intField; }\n" +
+			"	public void setIntField(int intField) { this.intField = intField; }\n" +
+			"	public double[] getDoubleArray() { return doubleArray; }\n" +
+			"	public void setDoubleArray(double[] doubleArray) { this.doubleArray = doubleArray; }\n" +
+			"	public char getCharField() { return charField; }\n" +
+			"	public void setCharField(char charField) { this.charField = charField; }\n" +
+			"	public String getStringField() { return stringField; }\n" +
+			"	public void setStringField(String stringField) { this.stringField = stringField; }\n" +
+			"	public Child getChild() { return child; }\n" +
+			"	public void setChild(Child child) { this.child = child; }\n" +
+			"}\n";
+
+	private static final String UNSUPPORTED_SOURCE =
+			"package test.pkg;\n" +
+			"@org.epics.pvmarshaller.marshaller.api.GenerateMarshaller\n" +
+			"public class Unsupported {\n" +
+			"	java.util.List<String> list;\n" +
+			"	public java.util.List<String> getList() { return list; }\n" +
+			"	public void setList(java.util.List<String> list) { this.list = list; }\n" +
+			"}\n";
+
+	@Test
+	public void testGeneratedMarshallerRoundTrip() throws Exception {
+		File outputDir = folder.newFolder("classes");
+		DiagnosticCollector<JavaFileObject> diagnostics = compile(outputDir, CHILD_SOURCE, PARENT_SOURCE);
+		assertTrue(diagnostics.getDiagnostics().toString(), errors(diagnostics).isEmpty());
+
+		File serviceFile = new File(outputDir, MarshallerProcessor.SERVICE_FILE);
+		assertTrue(serviceFile.exists());
+		List<String> services = Files.readAllLines(serviceFile.toPath(), StandardCharsets.UTF_8);
+		assertTrue(services.contains("test.pkg.Child_PVMarshaller"));
+		assertTrue(services.contains("test.pkg.Parent_PVMarshaller"));
+
+		ClassLoader originalLoader = Thread.currentThread().getContextClassLoader();
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { outputDir.toURI().toURL() }, getClass().getClassLoader())) {
+			Thread.currentThread().setContextClassLoader(loader);
+
+			Class<?> parentClass = loader.loadClass("test.pkg.Parent");
+			Class<?> childClass = loader.loadClass("test.pkg.Child");
+			Structure generatedStructure = (Structure)loader.loadClass("test.pkg.Parent_PVMarshaller").getField("STRUCTURE").get(null);
+			IPVStructureMarshaller<?> generatedMarshaller = (IPVStructureMarshaller<?>)loader.loadClass("test.pkg.Parent_PVMarshaller").newInstance();
+			assertTrue(generatedMarshaller.isThreadSafe());
+
+			Object child = childClass.newInstance();
+			childClass.getMethod("setName", String.class).invoke(child, "child name");
+			Object parent = parentClass.newInstance();
+			parentClass.getMethod("setIntField", int.class).invoke(parent, 5);
+			parentClass.getMethod("setDoubleArray", double[].class).invoke(parent, (Object)new double[] { 1.5, 2.5 });
+			parentClass.getMethod("setCharField", char.class).invoke(parent, 'x');
+			parentClass.getMethod("setChild", childClass).invoke(parent, child);
+
+			PVMarshaller marshaller = new PVMarshaller();
+			PVStructure pvStructure = marshaller.toPVStructure(parent);
+
+			// The generated Structure is used, so the null String is included as an empty string
+			assertSame(generatedStructure, pvStructure.getStructure());
+			assertEquals("test:parent", pvStructure.getStructure().getID());
+			assertEquals(5, pvStructure.getIntField("intField").get());
+			assertEquals("x", pvStructure.getStringField("charField").get());
+			assertEquals("", pvStructure.getStringField("stringField").get());
+			assertEquals("child name", pvStructure.getStructureField("child").getStringField("name").get());
+
+			Object deserialised = marshaller.fromPVStructure(pvStructure, parentClass);
+			assertEquals(5, parentClass.getMethod("getIntField").invoke(deserialised));
+			assertTrue(Arrays.equals(new double[] { 1.5, 2.5 }, (double[])parentClass.getMethod("getDoubleArray").invoke(deserialised)));
+			assertEquals('x', parentClass.getMethod("getCharField").invoke(deserialised));
+			assertEquals("", parentClass.getMethod("getStringField").invoke(deserialised));
+			Object deserialisedChild = parentClass.getMethod("getChild").invoke(deserialised);
+			assertNotNull(deserialisedChild);
+			assertEquals("child name", childClass.getMethod("getName").invoke(deserialisedChild));
+		} finally {
+			Thread.currentThread().setContextClassLoader(originalLoader);
+		}
+	}
+
+	@Test
+	public void testNullMembersResetReusedTemplate() throws Exception {
+		File outputDir = folder.newFolder("classes");
+		DiagnosticCollector<JavaFileObject> diagnostics = compile(outputDir, CHILD_SOURCE, PARENT_SOURCE);
+		assertTrue(diagnostics.getDiagnostics().toString(), errors(diagnostics).isEmpty());
+
+		ClassLoader originalLoader = Thread.currentThread().getContextClassLoader();
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { outputDir.toURI().toURL() }, getClass().getClassLoader())) {
+			Thread.currentThread().setContextClassLoader(loader);
+
+			Class<?> parentClass = loader.loadClass("test.pkg.Parent");
+			Class<?> childClass = loader.loadClass("test.pkg.Child");
+
+			Object child = childClass.newInstance();
+			childClass.getMethod("setName", String.class).invoke(child, "child name");
+			Object parent = parentClass.newInstance();
+			parentClass.getMethod("setDoubleArray", double[].class).invoke(parent, (Object)new double[] { 1.5, 2.5, 3.5 });
+			parentClass.getMethod("setChild", childClass).invoke(parent, child);
+
+			PVMarshaller marshaller = new PVMarshaller();
+			PVStructure pvStructure = marshaller.createTemplate(parentClass);
+			marshaller.populate(parent, pvStructure);
+			assertEquals(3, pvStructure.getScalarArrayField("doubleArray", ScalarType.pvDouble).getLength());
+			assertEquals("child name", pvStructure.getStructureField("child").getStringField("name").get());
+
+			// A shorter array replaces the longer one
+			parentClass.getMethod("setDoubleArray", double[].class).invoke(parent, (Object)new double[] { 4.5 });
+			marshaller.populate(parent, pvStructure);
+			PVDoubleArray pvDoubleArray = (PVDoubleArray)pvStructure.getScalarArrayField("doubleArray", ScalarType.pvDouble);
+			assertEquals(1, pvDoubleArray.getLength());
+			DoubleArrayData arrayData = new DoubleArrayData();
+			pvDoubleArray.get(0, 1, arrayData);
+			assertEquals(4.5, arrayData.data[arrayData.offset], 0);
+
+			// Null members don't keep the values of the previous update
+			Object emptyParent = parentClass.newInstance();
+			marshaller.populate(emptyParent, pvStructure);
+			assertEquals(0, pvStructure.getScalarArrayField("doubleArray", ScalarType.pvDouble).getLength());
+			assertEquals("", pvStructure.getStructureField("child").getStringField("name").get());
+		} finally {
+			Thread.currentThread().setContextClassLoader(originalLoader);
+		}
+	}
+
+	@Test
+	public void testUnsupportedMemberIsAnError() throws Exception {
+		File outputDir = folder.newFolder("classes");
+		DiagnosticCollector<JavaFileObject> diagnostics = compile(outputDir, UNSUPPORTED_SOURCE);
+		List<Diagnostic<? extends JavaFileObject>> errors = errors(diagnostics);
+
+		assertFalse(errors.isEmpty());
+		assertTrue(errors.get(0).getMessage(null).contains("not supported"));
+	}
+
+	private DiagnosticCollector<JavaFileObject> compile(File outputDir, String... sources) throws IOException {
+		File sourceDir = folder.newFolder();
+		List<File> sourceFiles = new ArrayList<File>();
+		for (String source : sources) {
+			String className = source.substring(source.indexOf("public class ") + 13, source.indexOf(" {"));
+			File sourceFile = new File(sourceDir, className + ".java");
+			Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+			sourceFiles.add(sourceFile);
+		}
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+			List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), "-d", outputDir.getPath());
+			JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, fileManager.getJavaFileObjectsFromFiles(sourceFiles));
+			task.setProcessors(Arrays.asList(new MarshallerProcessor()));
+			task.call();
+		}
+		return diagnostics;
+	}
+
+	private List<Diagnostic<? extends JavaFileObject>> errors(DiagnosticCollector<JavaFileObject> diagnostics) {
+		List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<Diagnostic<? extends JavaFileObject>>();
+		for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+			if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+				errors.add(diagnostic);
+			}
+		}
+		return errors;
+	}
+}
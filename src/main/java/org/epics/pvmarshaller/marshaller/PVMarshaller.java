@@ -1,11 +1,23 @@
 package org.epics.pvmarshaller.marshaller;
 
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutorService;
 
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.DeserializableControl;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.SerializableControl;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.accessors.AccessorBackend;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureDeserialiser;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
+import org.epics.pvmarshaller.marshaller.buffer.ByteBufferControl;
 import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.epics.pvmarshaller.marshaller.metrics.MarshallerMetrics;
+import org.epics.pvmarshaller.marshaller.parallel.ParallelElementConverter;
 import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
 
 /**
@@ -17,6 +29,17 @@ public class PVMarshaller {
 	
 	Serialiser serialiser = new Serialiser();
 	Deserialiser deserialiser = new Deserialiser();
+	MarshallerMetrics metrics = MarshallerMetrics.NONE;
+	
+	/**
+	 * Constructor. Registers any marshallers listed as {@link IPVStructureMarshaller} services,
+	 * such as those generated by the annotation processor
+	 */
+	public PVMarshaller() {
+		for (IPVStructureMarshaller<?> marshaller : ServiceLoader.load(IPVStructureMarshaller.class)) {
+			registerMarshaller(marshaller);
+		}
+	}
 	
 	/**
 	 * Creates a PVStructure representation of the supplied Object
@@ -26,9 +49,70 @@ public class PVMarshaller {
 	 */
 	public PVStructure toPVStructure(Object source) throws Exception
 	{
-		PVStructure pvStructure = serialiser.toPVStructure(source);
+		return timed(source.getClass(), false, () -> serialiser.toPVStructure(source));
+	}
+
+	/**
+	 * Creates an empty PVStructure that can be populated with any object of the specified class, using
+	 * {@link #populate(Object, PVStructure)}. The Structure is built from the declared types of the class's fields,
+	 * so the class cannot contain Maps, or fields declared as Object or as an interface
+	 * @param clazz The class of the objects to populate it with
+	 * @return The PVStructure
+	 * @throws Exception
+	 */
+	public PVStructure createTemplate(Class<?> clazz) throws Exception
+	{
+		return serialiser.createTemplate(clazz);
+	}
+	
+	/**
+	 * Creates a PVStructure that can be populated with the supplied object and any other object with the same shape,
+	 * using {@link #populate(Object, PVStructure)}. Use this instead of {@link #createTemplate(Class)} when the
+	 * Structure depends on the values in the object, such as for Maps
+	 * @param prototype The object to create the PVStructure from
+	 * @return The PVStructure, populated with the values of the prototype
+	 * @throws Exception
+	 */
+	public PVStructure createTemplate(Object prototype) throws Exception
+	{
+		return serialiser.toPVStructure(prototype);
+	}
+	
+	/**
+	 * Populates an existing PVStructure with the values in the supplied object, without rebuilding its Structure.
+	 * The PVStructure must have been created for an object of the same shape, such as by {@link #createTemplate(Class)}.
+	 * Members of the object that are null reset the corresponding value in the PVStructure to its default: zero, false or
+	 * an empty string, no elements, no selected union member, or a structure of such values
+	 * @param source The object to serialise
+	 * @param target The PVStructure to populate
+	 * @throws Exception
+	 */
+	public void populate(Object source, PVStructure target) throws Exception
+	{
+		timed(source.getClass(), false, () -> {
+			serialiser.setValues(source, target);
+			return null;
+		});
+	}
 
-		return pvStructure;
+	/**
+	 * Populates an existing PVStructure with the values in the supplied object, only writing the values that differ
+	 * from the current contents of the PVStructure. The offset of each changed field is set in the BitSet, so it can
+	 * be used as the changed BitSet of a pvAccess monitor update. Existing bits are not cleared. Members that are null
+	 * reset the corresponding value to its default, as with {@link #populate(Object, PVStructure)}, and set its bit if it changed.
+	 * Scalars and scalar arrays are compared individually; changes within maps, unions and objects with custom
+	 * serialisers set the bit of the whole field
+	 * @param source The object to serialise
+	 * @param target The PVStructure to populate
+	 * @param changedFields The BitSet to set the offsets of the changed fields in
+	 * @throws Exception
+	 */
+	public void populate(Object source, PVStructure target, BitSet changedFields) throws Exception
+	{
+		timed(source.getClass(), false, () -> {
+			serialiser.setChangedValues(source, target, changedFields);
+			return null;
+		});
 	}
 
 	/**
@@ -40,7 +124,113 @@ public class PVMarshaller {
 	 */
 	public <T> T fromPVStructure(PVStructure pvStructure, Class<T> targetClass) throws Exception
 	{
-		return deserialiser.fromPVStructure(pvStructure, targetClass);
+		return timed(targetClass, true, () -> deserialiser.fromPVStructure(pvStructure, targetClass));
+	}
+	
+	/**
+	 * Updates an existing object with only the fields of the PVStructure whose offsets are set in the BitSet,
+	 * such as the changed BitSet of a pvAccess monitor update, instead of creating a new object.
+	 * Nested objects are updated in place. Objects that can only be deserialised as a whole, such as those with
+	 * custom deserialisers and Maps, are replaced if anything within them has changed
+	 * @param source The PVStructure to deserialise
+	 * @param changedFields The offsets of the changed fields
+	 * @param existing The object to update
+	 * @return The updated object, which is the existing object unless it could only be deserialised as a whole
+	 * @throws Exception
+	 */
+	public <T> T update(PVStructure source, BitSet changedFields, T existing) throws Exception
+	{
+		return timed(existing.getClass(), true, () -> deserialiser.update(source, changedFields, existing));
+	}
+	
+	/**
+	 * Serialises an object straight into a ByteBuffer, writing the same bytes as serialising the PVStructure
+	 * from {@link #toPVStructure(Object)}, but without creating it. The buffer must have room for the whole object
+	 * @param source The object to serialise
+	 * @param buffer The buffer to write to, in its byte order
+	 * @return The Structure of the data written, to be sent with it
+	 * @throws java.nio.BufferOverflowException if the buffer is too small
+	 * @throws Exception
+	 */
+	public Structure serialise(Object source, ByteBuffer buffer) throws Exception
+	{
+		return serialise(source, buffer, new ByteBufferControl(buffer));
+	}
+
+	/**
+	 * Serialises an object straight into a ByteBuffer, writing the same bytes as serialising the PVStructure
+	 * from {@link #toPVStructure(Object)}, but without creating it
+	 * @param source The object to serialise
+	 * @param buffer The buffer to write to, in its byte order
+	 * @param control The serialisation control, which is used to flush the buffer when it is full
+	 * @return The Structure of the data written, to be sent with it
+	 * @throws Exception
+	 */
+	public Structure serialise(Object source, ByteBuffer buffer, SerializableControl control) throws Exception
+	{
+		return timed(source.getClass(), false, () -> serialiser.getBufferSerialiser().serialise(source, buffer, control));
+	}
+	
+	/**
+	 * Creates an object from data serialised from a PVStructure, reading it straight from the ByteBuffer
+	 * without creating the PVStructure. The buffer must hold all the data
+	 * @param buffer The buffer to read from, positioned at the data, in the byte order it was written in
+	 * @param structure The Structure of the serialised PVStructure
+	 * @param targetClass The class of the object to create
+	 * @return The object
+	 * @throws java.nio.BufferUnderflowException if the buffer holds too little data
+	 * @throws Exception
+	 */
+	public <T> T deserialise(ByteBuffer buffer, Structure structure, Class<T> targetClass) throws Exception
+	{
+		return deserialise(buffer, new ByteBufferControl(buffer), structure, targetClass);
+	}
+
+	/**
+	 * Creates an object from data serialised from a PVStructure, reading it straight from the ByteBuffer
+	 * without creating the PVStructure
+	 * @param buffer The buffer to read from, positioned at the data, in the byte order it was written in
+	 * @param control The deserialisation control, which is used to wait for more data when the buffer runs out
+	 * @param structure The Structure of the serialised PVStructure
+	 * @param targetClass The class of the object to create
+	 * @return The object
+	 * @throws Exception
+	 */
+	public <T> T deserialise(ByteBuffer buffer, DeserializableControl control, Structure structure, Class<T> targetClass) throws Exception
+	{
+		return timed(targetClass, true, () -> deserialiser.fromByteBuffer(buffer, control, structure, targetClass));
+	}
+	
+	/**
+	 * A serialisation or deserialisation whose time is reported to the metrics
+	 * @param <T> The type of the result
+	 */
+	private interface TimedCall<T> {
+		public T call() throws Exception;
+	}
+	
+	/**
+	 * Makes the call, reporting the time it took to the metrics if any are set
+	 * @param clazz The class of the serialised object, or the target class if deserialising
+	 * @param deserialising True if the call is a deserialisation, which is reported against the class of the object it returns
+	 * @param call The call to time
+	 * @return The result of the call
+	 * @throws Exception
+	 */
+	private <T> T timed(Class<?> clazz, boolean deserialising, TimedCall<T> call) throws Exception {
+		if (metrics == MarshallerMetrics.NONE) {
+			return call.call();
+		}
+		
+		long start = System.nanoTime();
+		T result = call.call();
+		long nanos = System.nanoTime() - start;
+		if (deserialising) {
+			metrics.deserialised(result != null ? result.getClass() : clazz, nanos);
+		} else {
+			metrics.serialised(clazz, nanos);
+		}
+		return result;
 	}
 	
 	/**
@@ -65,6 +255,18 @@ public class PVMarshaller {
 		return deserialiser.getObjectFromField(pvStructure, fieldName);
 	}
 	
+	/**
+	 * Sets the metrics that marshalling events are reported to, such as the time taken to serialise and deserialise
+	 * each class, for finding slow classes while the marshaller is in use. By default nothing is recorded
+	 * and calls are not timed
+	 * @param metrics The metrics, or null to stop recording
+	 */
+	public void setMetrics(MarshallerMetrics metrics) {
+		this.metrics = metrics == null ? MarshallerMetrics.NONE : metrics;
+		serialiser.setMetrics(this.metrics);
+		deserialiser.setMetrics(this.metrics);
+	}
+	
 	/**
 	 * Sets whether fields that exist in a PVStructure but not in the object will cause an exception
 	 * to be thrown during deserialisation. (False by default)
@@ -74,6 +276,115 @@ public class PVMarshaller {
 		deserialiser.setIgnoreUnknownFields(ignore);
 	}
 	
+	/**
+	 * Sets whether arrays of primitives passed to setters during deserialisation are the arrays held by the PVStructure,
+	 * instead of copies. This avoids copying large arrays, but the object and the PVStructure then share the data, so
+	 * neither should be changed while the other is in use. (False by default)
+	 * @param share True if the arrays should be shared
+	 */
+	public void setShareDeserialisedArrays(boolean share) {
+		deserialiser.setShareArrayData(share);
+	}
+	
+	/**
+	 * Sets whether arrays and lists whose elements are all objects of the same class are serialised into structure arrays
+	 * that share one element Structure, instead of union arrays that hold a separate Structure for each element.
+	 * Null members of the elements are serialised with default values, so deserialise as defaults rather than null.
+	 * Arrays and lists of objects whose Structure depends on their values are still serialised into union arrays. (False by default)
+	 * @param useStructureArrays True if structure arrays should be used
+	 */
+	public void setUseStructureArrays(boolean useStructureArrays) {
+		serialiser.getContainerSerialiser().setUseStructureArrays(useStructureArrays);
+	}
+	
+	/**
+	 * Sets whether the Structure of an object is derived from the declared types of its class only, instead of from the values
+	 * of its fields, so that every object of a class has the same Structure and it is only created once for the class.
+	 * Null fields are serialised with default values, and fields whose Structure depends on their value (Maps, Lists with no
+	 * element type, fields declared as Object or as an interface, and classes with a custom serialiser) are serialised as
+	 * variant unions. (False by default)
+	 * @param staticSchema True if the static schema should be used
+	 */
+	public void setStaticSchema(boolean staticSchema) {
+		serialiser.getObjectSerialiser().setStaticSchema(staticSchema);
+	}
+	
+	/**
+	 * Sets the number of Structures built for maps that are kept for reuse with maps of the same shape, which have
+	 * the same keys in the same order, with values of the same classes. Only maps whose values are primitives, arrays
+	 * of primitives or maps of the same kind are cached. (256 by default)
+	 * @param size The number of Structures to keep, or 0 to build a new Structure for every map
+	 */
+	public void setMapStructureCacheSize(int size) {
+		serialiser.getMapSerialiser().getStructureCache().setMaxSize(size);
+	}
+	
+	/**
+	 * Gets the number of times the Structure of a map was reused from the cache
+	 * @return
+	 */
+	public long getMapStructureCacheHits() {
+		return serialiser.getMapSerialiser().getStructureCache().getHits();
+	}
+	
+	/**
+	 * Gets the number of times the Structure of a map that could be cached was not in the cache
+	 * @return
+	 */
+	public long getMapStructureCacheMisses() {
+		return serialiser.getMapSerialiser().getStructureCache().getMisses();
+	}
+	
+	/**
+	 * Sets arrays and lists of objects with at least the specified number of elements to be serialised on the common ForkJoinPool
+	 * @param threshold The number of elements from which to serialise in parallel, or 0 to always serialise sequentially
+	 */
+	public void setParallelSerialisation(int threshold) {
+		setParallelSerialisation(threshold, null);
+	}
+	
+	/**
+	 * Sets arrays and lists of objects with at least the specified number of elements to be serialised on the specified thread pool.
+	 * The elements are still put into the PVStructure in order. Arrays and lists are only serialised in parallel if every
+	 * registered serialiser declares itself thread safe. The calling thread serialises elements alongside the pool,
+	 * so it may itself be a thread of the same pool. (Sequential by default)
+	 * @param threshold The number of elements from which to serialise in parallel, or 0 to always serialise sequentially
+	 * @param executor The thread pool to use, or null to use the common ForkJoinPool
+	 */
+	public void setParallelSerialisation(int threshold, ExecutorService executor) {
+		serialiser.getContainerSerialiser().setParallelConverter(new ParallelElementConverter(threshold, executor));
+	}
+	
+	/**
+	 * Sets structure and union arrays with at least the specified number of elements to be deserialised on the common ForkJoinPool
+	 * @param threshold The number of elements from which to deserialise in parallel, or 0 to always deserialise sequentially
+	 */
+	public void setParallelDeserialisation(int threshold) {
+		setParallelDeserialisation(threshold, null);
+	}
+	
+	/**
+	 * Sets structure and union arrays with at least the specified number of elements to be deserialised on the specified thread pool.
+	 * The elements are still put into the array or list in order. Arrays are only deserialised in parallel if every
+	 * registered deserialiser declares itself thread safe. The calling thread deserialises elements alongside the pool,
+	 * so it may itself be a thread of the same pool. (Sequential by default)
+	 * @param threshold The number of elements from which to deserialise in parallel, or 0 to always deserialise sequentially
+	 * @param executor The thread pool to use, or null to use the common ForkJoinPool
+	 */
+	public void setParallelDeserialisation(int threshold, ExecutorService executor) {
+		deserialiser.setParallelConverter(new ParallelElementConverter(threshold, executor));
+	}
+	
+	/**
+	 * Sets the backend used to call the getters and setters of serialised and deserialised objects.
+	 * (Reflection by default)
+	 * @param backend The backend to use
+	 */
+	public void setAccessorBackend(AccessorBackend backend) {
+		serialiser.getObjectSerialiser().setAccessorBackend(backend);
+		deserialiser.setAccessorBackend(backend);
+	}
+	
 	/**
 	 * Registers a custom serialiser for a parcticular class
 	 * @param clazz The class to use this custom serialiser for
@@ -104,6 +415,22 @@ public class PVMarshaller {
 		this.deserialiser.getStructureDeserialiser().addCustomDeserialisers(structureId, deserialiser);
 	}
 	
+	/**
+	 * Registers a marshaller to serialise and deserialise a particular class.
+	 * The marshaller is used for objects of exactly its target class, when no custom serialiser or deserialiser applies
+	 * @param marshaller The marshaller to register
+	 */
+	public <T> void registerMarshaller(IPVStructureMarshaller<T> marshaller)
+	{
+		this.serialiser.getObjectSerialiser().addGeneratedSerialiser(marshaller.getTargetClass(), marshaller);
+		this.deserialiser.getStructureDeserialiser().addGeneratedDeserialiser(marshaller.getTargetClass(), marshaller);
+		
+		String structureId = marshaller.getStructureId();
+		if (structureId != null && !structureId.isEmpty()) {
+			this.deserialiser.getStructureDeserialiser().addCustomDeserialisers(structureId, marshaller);
+		}
+	}
+	
 	/**
 	 * Registers a list of fields to serialise for a particular class
 	 * @param clazz The class to register the list for
@@ -124,6 +451,34 @@ public class PVMarshaller {
 		this.serialiser.getObjectSerialiser().addFieldsToExclude(clazz, fieldsToExclude);
 	}
 	
+	/**
+	 * Registers a list of array fields whose data is shared with the PVStructure instead of copied when serialising a particular class.
+	 * Only applies to arrays of Java primitives (apart from char) and Strings. The PVStructure uses the array directly,
+	 * so the caller must not change the array after serialising it, and should set a new array on the object for each update
+	 * @param clazz The class to register the list for
+	 * @param fieldsToShare The list of fields to share
+	 */
+	public void registerSharedArrayFieldListForClass(Class<?> clazz, List<String> fieldsToShare)
+	{
+		this.serialiser.getObjectSerialiser().addSharedArrayFields(clazz, fieldsToShare);
+	}
+	
+	/**
+	 * Registers the classes that may be used in place of a base class or interface in arrays and lists.
+	 * Arrays and lists declared with the base class whose elements are all of the subtypes are serialised into union arrays
+	 * of a regular Union, which has a member for each subtype, named after its class. Each element then only needs the
+	 * selector of its member rather than a description of its Structure, and is deserialised into the subtype at that index.
+	 * The subtypes must each have a fixed Structure, as with {@link #createTemplate(Class)}
+	 * @param baseClass The base class or interface
+	 * @param subtypes The subtypes, in the order of the union members
+	 * @throws IllegalArgumentException if two of the subtypes have the same simple name
+	 */
+	public void registerSubtypesForClass(Class<?> baseClass, List<Class<?>> subtypes)
+	{
+		this.serialiser.getContainerSerialiser().addSubtypes(baseClass, subtypes);
+		this.deserialiser.getUnionDeserialiser().addSubtypes(baseClass, subtypes);
+	}
+	
 	/**
 	 * Registers the key to use as the type id for Maps.
 	 * The key will be used to set the ID of the PVStructure, and will not be included in the PVStructure as a field
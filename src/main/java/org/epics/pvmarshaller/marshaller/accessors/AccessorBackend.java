@@ -0,0 +1,19 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+/**
+ * The mechanism used to call the getters and setters of serialised objects
+ * @author Matt Taylor
+ *
+ */
+public enum AccessorBackend {
+	/**
+	 * Getters and setters are called with Method.invoke. Primitive values are boxed
+	 */
+	REFLECTION,
+	/**
+	 * Getters and setters are called through classes generated at runtime with LambdaMetafactory,
+	 * so primitive values are passed without boxing. Falls back to reflection for any getter or setter
+	 * that can't be linked, for example if it isn't public
+	 */
+	GENERATED
+}
@@ -0,0 +1,52 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates the getters and setters used to access members of serialised objects
+ * @author Matt Taylor
+ *
+ */
+public class AccessorFactory {
+
+	private AccessorFactory() {
+	}
+
+	/**
+	 * Creates a getter for the specified method using the specified backend
+	 * @param method The getter method, or null
+	 * @param backend The backend to use
+	 * @return The getter, or null if the method is null
+	 */
+	public static Getter createGetter(Method method, AccessorBackend backend) {
+		if (method == null) {
+			return null;
+		}
+		if (backend == AccessorBackend.GENERATED) {
+			Getter getter = GeneratedAccessors.createGetter(method);
+			if (getter != null) {
+				return getter;
+			}
+		}
+		return new ReflectionGetter(method);
+	}
+
+	/**
+	 * Creates a setter for the specified method using the specified backend
+	 * @param method The setter method, or null
+	 * @param backend The backend to use
+	 * @return The setter, or null if the method is null
+	 */
+	public static Setter createSetter(Method method, AccessorBackend backend) {
+		if (method == null) {
+			return null;
+		}
+		if (backend == AccessorBackend.GENERATED) {
+			Setter setter = GeneratedAccessors.createSetter(method);
+			if (setter != null) {
+				return setter;
+			}
+		}
+		return new ReflectionSetter(method);
+	}
+}
@@ -0,0 +1,546 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Creates getters and setters which call the underlying method through a class generated with
+ * LambdaMetafactory rather than through Method.invoke. Primitive values are passed without boxing
+ * when the typed get and set methods matching the member's type are used.
+ * @author Matt Taylor
+ *
+ */
+class GeneratedAccessors {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final ClassLoader LOADER = GeneratedAccessors.class.getClassLoader();
+
+	private GeneratedAccessors() {
+	}
+
+	/**
+	 * Creates a generated getter for the specified method
+	 * @param method The getter method
+	 * @return The getter, or null if the method can't be linked from this package
+	 */
+	static Getter createGetter(Method method) {
+		if (!canLink(method)) {
+			return null;
+		}
+
+		Class<?> type = method.getReturnType();
+		Class<?> declaringClass = method.getDeclaringClass();
+
+		try {
+			if (type == int.class) {
+				return new IntGetter((IntGetterFunction)link(method, IntGetterFunction.class, "get", MethodType.methodType(int.class, Object.class), MethodType.methodType(int.class, declaringClass)));
+			} else if (type == short.class) {
+				return new ShortGetter((IntGetterFunction)link(method, IntGetterFunction.class, "get", MethodType.methodType(int.class, Object.class), MethodType.methodType(int.class, declaringClass)));
+			} else if (type == byte.class) {
+				return new ByteGetter((IntGetterFunction)link(method, IntGetterFunction.class, "get", MethodType.methodType(int.class, Object.class), MethodType.methodType(int.class, declaringClass)));
+			} else if (type == char.class) {
+				return new CharGetter((IntGetterFunction)link(method, IntGetterFunction.class, "get", MethodType.methodType(int.class, Object.class), MethodType.methodType(int.class, declaringClass)));
+			} else if (type == long.class) {
+				return new LongGetter((LongGetterFunction)link(method, LongGetterFunction.class, "get", MethodType.methodType(long.class, Object.class), MethodType.methodType(long.class, declaringClass)));
+			} else if (type == float.class) {
+				return new FloatGetter((DoubleGetterFunction)link(method, DoubleGetterFunction.class, "get", MethodType.methodType(double.class, Object.class), MethodType.methodType(double.class, declaringClass)));
+			} else if (type == double.class) {
+				return new DoubleGetter((DoubleGetterFunction)link(method, DoubleGetterFunction.class, "get", MethodType.methodType(double.class, Object.class), MethodType.methodType(double.class, declaringClass)));
+			} else if (type == boolean.class) {
+				return new BooleanGetter((BooleanGetterFunction)link(method, BooleanGetterFunction.class, "get", MethodType.methodType(boolean.class, Object.class), MethodType.methodType(boolean.class, declaringClass)));
+			} else {
+				return new ObjectGetter((ObjectGetterFunction)link(method, ObjectGetterFunction.class, "get", MethodType.methodType(Object.class, Object.class), MethodType.methodType(Object.class, declaringClass)));
+			}
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a generated setter for the specified method
+	 * @param method The setter method
+	 * @return The setter, or null if the method can't be linked from this package
+	 */
+	static Setter createSetter(Method method) {
+		if (!canLink(method) || method.getParameterCount() != 1) {
+			return null;
+		}
+
+		Class<?> type = method.getParameterTypes()[0];
+		Class<?> declaringClass = method.getDeclaringClass();
+
+		try {
+			if (type == int.class) {
+				return new IntSetter(method, (IntConsumer)link(method, IntConsumer.class, "accept", MethodType.methodType(void.class, Object.class, int.class), MethodType.methodType(void.class, declaringClass, int.class)));
+			} else if (type == long.class) {
+				return new LongSetter(method, (LongConsumer)link(method, LongConsumer.class, "accept", MethodType.methodType(void.class, Object.class, long.class), MethodType.methodType(void.class, declaringClass, long.class)));
+			} else if (type == double.class) {
+				return new DoubleSetter(method, (DoubleConsumer)link(method, DoubleConsumer.class, "accept", MethodType.methodType(void.class, Object.class, double.class), MethodType.methodType(void.class, declaringClass, double.class)));
+			} else if (type == short.class) {
+				return new ShortSetter(method, (ShortConsumer)link(method, ShortConsumer.class, "accept", MethodType.methodType(void.class, Object.class, short.class), MethodType.methodType(void.class, declaringClass, short.class)));
+			} else if (type == byte.class) {
+				return new ByteSetter(method, (ByteConsumer)link(method, ByteConsumer.class, "accept", MethodType.methodType(void.class, Object.class, byte.class), MethodType.methodType(void.class, declaringClass, byte.class)));
+			} else if (type == boolean.class) {
+				return new BooleanSetter(method, (BooleanConsumer)link(method, BooleanConsumer.class, "accept", MethodType.methodType(void.class, Object.class, boolean.class), MethodType.methodType(void.class, declaringClass, boolean.class)));
+			} else if (type == float.class) {
+				return new FloatSetter(method, (FloatConsumer)link(method, FloatConsumer.class, "accept", MethodType.methodType(void.class, Object.class, float.class), MethodType.methodType(void.class, declaringClass, float.class)));
+			} else if (type == char.class) {
+				return new CharSetter(method, (CharConsumer)link(method, CharConsumer.class, "accept", MethodType.methodType(void.class, Object.class, char.class), MethodType.methodType(void.class, declaringClass, char.class)));
+			} else {
+				return new ObjectSetter(method, (ObjectConsumer)link(method, ObjectConsumer.class, "accept", MethodType.methodType(void.class, Object.class, Object.class), MethodType.methodType(void.class, declaringClass, type)));
+			}
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Generates an instance of the functional interface which calls the method
+	 * @param method The method to call
+	 * @param functionalInterface The interface to implement
+	 * @param interfaceMethodName The name of the interface's single abstract method
+	 * @param interfaceMethodType The erased type of the interface's method
+	 * @param instantiatedMethodType The type of the interface's method specialised for the method's class
+	 * @return The generated instance
+	 * @throws Throwable
+	 */
+	private static Object link(Method method, Class<?> functionalInterface, String interfaceMethodName, MethodType interfaceMethodType, MethodType instantiatedMethodType) throws Throwable {
+		MethodHandle implementation = LOOKUP.unreflect(method);
+		CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, interfaceMethodName, MethodType.methodType(functionalInterface),
+				interfaceMethodType, implementation, instantiatedMethodType);
+		return callSite.getTarget().invoke();
+	}
+
+	/**
+	 * Gets whether a generated class in this package is able to call the method directly.
+	 * The method, its class and all the types in its signature must be public, and visible from this class's loader
+	 * @param method The method to check
+	 * @return
+	 */
+	private static boolean canLink(Method method) {
+		if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) {
+			return false;
+		}
+		if (!isLinkable(method.getDeclaringClass()) || !isLinkable(method.getReturnType())) {
+			return false;
+		}
+		for (Class<?> parameterType : method.getParameterTypes()) {
+			if (!isLinkable(parameterType)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets whether a generated class can refer to the class
+	 * @param clazz The class to check
+	 * @return
+	 */
+	private static boolean isLinkable(Class<?> clazz) {
+		return isPublic(clazz) && isVisible(clazz);
+	}
+
+	/**
+	 * Gets whether the class is the one loaded by name from this class's loader. The generated classes are defined
+	 * in this class's loader, so they can't call methods of classes from loaders it can't see, such as the
+	 * classes of other bundles under OSGi
+	 * @param clazz The class to check
+	 * @return
+	 */
+	private static boolean isVisible(Class<?> clazz) {
+		while (clazz.isArray()) {
+			clazz = clazz.getComponentType();
+		}
+		if (clazz.isPrimitive() || clazz.getClassLoader() == null || clazz.getClassLoader() == LOADER) {
+			return true;
+		}
+		try {
+			return Class.forName(clazz.getName(), false, LOADER) == clazz;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets whether the class and any classes enclosing it are public
+	 * @param clazz The class to check
+	 * @return
+	 */
+	private static boolean isPublic(Class<?> clazz) {
+		while (clazz.isArray()) {
+			clazz = clazz.getComponentType();
+		}
+		if (clazz.isPrimitive()) {
+			return true;
+		}
+		while (clazz != null) {
+			if (!Modifier.isPublic(clazz.getModifiers())) {
+				return false;
+			}
+			clazz = clazz.getEnclosingClass();
+		}
+		return true;
+	}
+
+	interface IntGetterFunction {
+		int get(Object source);
+	}
+
+	interface LongGetterFunction {
+		long get(Object source);
+	}
+
+	interface DoubleGetterFunction {
+		double get(Object source);
+	}
+
+	interface BooleanGetterFunction {
+		boolean get(Object source);
+	}
+
+	interface ObjectGetterFunction {
+		Object get(Object source);
+	}
+
+	interface IntConsumer {
+		void accept(Object target, int value);
+	}
+
+	interface LongConsumer {
+		void accept(Object target, long value);
+	}
+
+	interface DoubleConsumer {
+		void accept(Object target, double value);
+	}
+
+	interface ObjectConsumer {
+		void accept(Object target, Object value);
+	}
+
+	interface ShortConsumer {
+		void accept(Object target, short value);
+	}
+
+	interface ByteConsumer {
+		void accept(Object target, byte value);
+	}
+
+	interface BooleanConsumer {
+		void accept(Object target, boolean value);
+	}
+
+	interface FloatConsumer {
+		void accept(Object target, float value);
+	}
+
+	interface CharConsumer {
+		void accept(Object target, char value);
+	}
+
+	private static class IntGetter extends Getter {
+		private final IntGetterFunction function;
+
+		IntGetter(IntGetterFunction function) {
+			this.function = function;
+		}
+
+		@Override
+		public Object get(Object source) {
+			return function.get(source);
+		}
+
+		@Override
+		public int getInt(Object source) {
+			return function.get(source);
+		}
+	}
+
+	private static class ShortGetter extends Getter {
+		private final IntGetterFunction function;
+
+		ShortGetter(IntGetterFunction function) {
+			this.function = function;
+		}
+
+		@Override
+		public Object get(Object source) {
+			return (short)function.get(source);
+		}
+
+		@Override
+		public short getShort(Object source) {
+			return (short)function.get(source);
+		}
+	}
+
+	private static class ByteGetter extends Getter {
+		private final IntGetterFunction function;
+
+		ByteGetter(IntGetterFunction function) {
+			this.function = function;
+		}
+
+		@Override
+		public Object get(Object source) {
+			return (byte)function.get(source);
+		}
+
+		@Override
+		public byte getByte(Object source) {
+			return (byte)function.get(source);
+		}
+	}
+
+	private static class CharGetter extends Getter {
+		private final IntGetterFunction function;
+
+		CharGetter(IntGetterFunction function) {
+			this.function = function;
+		}
+
+		@Override
+		public Object get(Object source) {
+			return (char)function.get(source);
+		}
+
+		@Override
+		public char getChar(Object source) {
+			return (char)function.get(source);
+		}
+	}
+
+	private static class LongGetter extends Getter {
+		private final LongGetterFunction function;
+
+		LongGetter(LongGetterFunction function) {
+			this.function = function;
+		}
+
+		@Override
+		public Object get(Object source) {
+			return function.get(source);
+		}
+
+		@Override
+		public long getLong(Object source) {
+			return function.get(source);
+		}
+	}
+
+	private static class FloatGetter extends Getter {
+		private final DoubleGetterFunction function;
+
+		FloatGetter(DoubleGetterFunction function) {
+			this.function = function;
+		}
+
+		@Override
+		public Object get(Object source) {
+			return (float)function.get(source);
+		}
+
+		@Override
+		public float getFloat(Object source) {
+			return (float)function.get(source);
+		}
+	}
+
+	private static class DoubleGetter extends Getter {
+		private final DoubleGetterFunction function;
+
+		DoubleGetter(DoubleGetterFunction function) {
+			this.function = function;
+		}
+
+		@Override
+		public Object get(Object source) {
+			return function.get(source);
+		}
+
+		@Override
+		public double getDouble(Object source) {
+			return function.get(source);
+		}
+	}
+
+	private static class BooleanGetter extends Getter {
+		private final BooleanGetterFunction function;
+
+		BooleanGetter(BooleanGetterFunction function) {
+			this.function = function;
+		}
+
+		@Override
+		public Object get(Object source) {
+			return function.get(source);
+		}
+
+		@Override
+		public boolean getBoolean(Object source) {
+			return function.get(source);
+		}
+	}
+
+	private static class ObjectGetter extends Getter {
+		private final ObjectGetterFunction function;
+
+		ObjectGetter(ObjectGetterFunction function) {
+			this.function = function;
+		}
+
+		@Override
+		public Object get(Object source) {
+			return function.get(source);
+		}
+	}
+
+	/**
+	 * Base class for the generated setters. Values that don't match the setter's parameter type
+	 * are passed to Method.invoke so the same widening and unboxing conversions apply as with reflection
+	 */
+	private abstract static class GeneratedSetter extends Setter {
+		private final Method method;
+
+		GeneratedSetter(Method method) {
+			this.method = method;
+		}
+
+		@Override
+		public void set(Object target, Object value) throws Exception {
+			method.invoke(target, value);
+		}
+	}
+
+	private static class IntSetter extends GeneratedSetter {
+		private final IntConsumer function;
+
+		IntSetter(Method method, IntConsumer function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		public void setInt(Object target, int value) {
+			function.accept(target, value);
+		}
+	}
+
+	private static class LongSetter extends GeneratedSetter {
+		private final LongConsumer function;
+
+		LongSetter(Method method, LongConsumer function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		public void setLong(Object target, long value) {
+			function.accept(target, value);
+		}
+	}
+
+	private static class DoubleSetter extends GeneratedSetter {
+		private final DoubleConsumer function;
+
+		DoubleSetter(Method method, DoubleConsumer function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		public void setDouble(Object target, double value) {
+			function.accept(target, value);
+		}
+	}
+
+	private static class ShortSetter extends GeneratedSetter {
+		private final ShortConsumer function;
+
+		ShortSetter(Method method, ShortConsumer function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		public void setShort(Object target, short value) {
+			function.accept(target, value);
+		}
+	}
+
+	private static class ByteSetter extends GeneratedSetter {
+		private final ByteConsumer function;
+
+		ByteSetter(Method method, ByteConsumer function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		public void setByte(Object target, byte value) {
+			function.accept(target, value);
+		}
+	}
+
+	private static class BooleanSetter extends GeneratedSetter {
+		private final BooleanConsumer function;
+
+		BooleanSetter(Method method, BooleanConsumer function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		public void setBoolean(Object target, boolean value) {
+			function.accept(target, value);
+		}
+	}
+
+	private static class FloatSetter extends GeneratedSetter {
+		private final FloatConsumer function;
+
+		FloatSetter(Method method, FloatConsumer function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		public void setFloat(Object target, float value) {
+			function.accept(target, value);
+		}
+	}
+
+	private static class CharSetter extends GeneratedSetter {
+		private final CharConsumer function;
+
+		CharSetter(Method method, CharConsumer function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		public void setChar(Object target, char value) {
+			function.accept(target, value);
+		}
+	}
+
+	private static class ObjectSetter extends GeneratedSetter {
+		private final ObjectConsumer function;
+
+		ObjectSetter(Method method, ObjectConsumer function) {
+			super(method);
+			this.function = function;
+		}
+
+		@Override
+		public void set(Object target, Object value) {
+			function.accept(target, value);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+/**
+ * Calls the getter of a member of an object.
+ * The typed methods must only be used for a getter that returns that primitive type
+ * @author Matt Taylor
+ *
+ */
+public abstract class Getter {
+
+	/**
+	 * Gets the value of the member, boxing primitives
+	 * @param source The object to get the value from
+	 * @return The value
+	 * @throws Exception
+	 */
+	public abstract Object get(Object source) throws Exception;
+
+	/**
+	 * Gets the value of an int member
+	 * @param source The object to get the value from
+	 * @return The value
+	 * @throws Exception
+	 */
+	public int getInt(Object source) throws Exception {
+		return (Integer)get(source);
+	}
+
+	/**
+	 * Gets the value of a short member
+	 * @param source The object to get the value from
+	 * @return The value
+	 * @throws Exception
+	 */
+	public short getShort(Object source) throws Exception {
+		return (Short)get(source);
+	}
+
+	/**
+	 * Gets the value of a long member
+	 * @param source The object to get the value from
+	 * @return The value
+	 * @throws Exception
+	 */
+	public long getLong(Object source) throws Exception {
+		return (Long)get(source);
+	}
+
+	/**
+	 * Gets the value of a byte member
+	 * @param source The object to get the value from
+	 * @return The value
+	 * @throws Exception
+	 */
+	public byte getByte(Object source) throws Exception {
+		return (Byte)get(source);
+	}
+
+	/**
+	 * Gets the value of a boolean member
+	 * @param source The object to get the value from
+	 * @return The value
+	 * @throws Exception
+	 */
+	public boolean getBoolean(Object source) throws Exception {
+		return (Boolean)get(source);
+	}
+
+	/**
+	 * Gets the value of a float member
+	 * @param source The object to get the value from
+	 * @return The value
+	 * @throws Exception
+	 */
+	public float getFloat(Object source) throws Exception {
+		return (Float)get(source);
+	}
+
+	/**
+	 * Gets the value of a double member
+	 * @param source The object to get the value from
+	 * @return The value
+	 * @throws Exception
+	 */
+	public double getDouble(Object source) throws Exception {
+		return (Double)get(source);
+	}
+
+	/**
+	 * Gets the value of a char member
+	 * @param source The object to get the value from
+	 * @return The value
+	 * @throws Exception
+	 */
+	public char getChar(Object source) throws Exception {
+		return (Character)get(source);
+	}
+}
@@ -0,0 +1,26 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+import java.lang.reflect.Method;
+
+/**
+ * Calls a getter with Method.invoke
+ * @author Matt Taylor
+ *
+ */
+public class ReflectionGetter extends Getter {
+
+	private final Method method;
+
+	/**
+	 * Constructor
+	 * @param method The getter method
+	 */
+	public ReflectionGetter(Method method) {
+		this.method = method;
+	}
+
+	@Override
+	public Object get(Object source) throws Exception {
+		return method.invoke(source);
+	}
+}
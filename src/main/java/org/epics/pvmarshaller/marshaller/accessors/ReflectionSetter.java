@@ -0,0 +1,26 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+import java.lang.reflect.Method;
+
+/**
+ * Calls a setter with Method.invoke
+ * @author Matt Taylor
+ *
+ */
+public class ReflectionSetter extends Setter {
+
+	private final Method method;
+
+	/**
+	 * Constructor
+	 * @param method The setter method
+	 */
+	public ReflectionSetter(Method method) {
+		this.method = method;
+	}
+
+	@Override
+	public void set(Object target, Object value) throws Exception {
+		method.invoke(target, value);
+	}
+}
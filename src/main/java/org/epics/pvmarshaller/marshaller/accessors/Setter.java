@@ -0,0 +1,98 @@
+package org.epics.pvmarshaller.marshaller.accessors;
+
+/**
+ * Calls the setter of a member of an object.
+ * The typed methods can be used with any setter that Method.invoke would accept the value for
+ * @author Matt Taylor
+ *
+ */
+public abstract class Setter {
+
+	/**
+	 * Sets the value of the member
+	 * @param target The object to set the value in
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public abstract void set(Object target, Object value) throws Exception;
+
+	/**
+	 * Sets the member from an int value
+	 * @param target The object to set the value in
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public void setInt(Object target, int value) throws Exception {
+		set(target, value);
+	}
+
+	/**
+	 * Sets the member from a short value
+	 * @param target The object to set the value in
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public void setShort(Object target, short value) throws Exception {
+		set(target, value);
+	}
+
+	/**
+	 * Sets the member from a long value
+	 * @param target The object to set the value in
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public void setLong(Object target, long value) throws Exception {
+		set(target, value);
+	}
+
+	/**
+	 * Sets the member from a byte value
+	 * @param target The object to set the value in
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public void setByte(Object target, byte value) throws Exception {
+		set(target, value);
+	}
+
+	/**
+	 * Sets the member from a boolean value
+	 * @param target The object to set the value in
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public void setBoolean(Object target, boolean value) throws Exception {
+		set(target, value);
+	}
+
+	/**
+	 * Sets the member from a float value
+	 * @param target The object to set the value in
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public void setFloat(Object target, float value) throws Exception {
+		set(target, value);
+	}
+
+	/**
+	 * Sets the member from a double value
+	 * @param target The object to set the value in
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public void setDouble(Object target, double value) throws Exception {
+		set(target, value);
+	}
+
+	/**
+	 * Sets the member from a char value
+	 * @param target The object to set the value in
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public void setChar(Object target, char value) throws Exception {
+		set(target, value);
+	}
+}
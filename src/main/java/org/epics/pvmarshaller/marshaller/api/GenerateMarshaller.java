@@ -0,0 +1,32 @@
+package org.epics.pvmarshaller.marshaller.api;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class for which the pv-marshaller annotation processor should generate an {@link IPVStructureMarshaller} at compile time.
+ * The generated marshaller is found and registered automatically by the PVMarshaller.
+ * <p>
+ * Generated marshallers use a fixed Structure, so unlike the reflection based serialiser a null String is
+ * serialised as an empty string, a null array as an empty array and a null nested object as a structure of default values.
+ * Supported member types are Java primitives, String, arrays of those (other than char) and other classes annotated with this annotation.
+ * <p>
+ * The members are fixed when the marshaller is generated, so field lists registered on the PVMarshaller with
+ * registerFieldListForClass or registerExcludeFieldListForClass are not applied to annotated classes. Use transient
+ * to leave a member out.
+ * @author Matt Taylor
+ *
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateMarshaller {
+	/**
+	 * The ID to use for the Structure. If set, the generated deserialiser is also registered for this ID
+	 * @return
+	 */
+	String id() default "";
+}
@@ -19,4 +19,13 @@ public interface IPVStructureDeserialiser {
 	 * @throws Exception
 	 */
 	public Object fromPVStructure(Deserialiser deserialiser, PVStructure pvStructure) throws Exception ;
+	
+	/**
+	 * Returns whether this deserialiser can be called from several threads at once, allowing the elements of large
+	 * structure and union arrays to be deserialised in parallel. Parallel deserialisation is only used if every registered deserialiser is thread safe
+	 * @return False unless overridden
+	 */
+	public default boolean isThreadSafe() {
+		return false;
+	}
 }
@@ -0,0 +1,34 @@
+package org.epics.pvmarshaller.marshaller.api;
+
+/**
+ * Interface for a combined serialiser and deserialiser for a single class, such as those generated by the annotation processor.
+ * Implementations listed in META-INF/services/org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller are registered
+ * automatically when a PVMarshaller is created
+ * @author Matt Taylor
+ *
+ * @param <T> The class that this marshaller converts
+ */
+public interface IPVStructureMarshaller<T> extends IPVStructureSerialiser<T>, IPVStructureDeserialiser {
+
+	/**
+	 * Gets the class this marshaller converts. The marshaller is only used for this exact class, not its subclasses
+	 * @return
+	 */
+	public Class<T> getTargetClass();
+
+	/**
+	 * Gets the ID of the Structure created by this marshaller
+	 * @return The ID, or null to not register the deserialiser for an ID
+	 */
+	public String getStructureId();
+
+	/**
+	 * Returns whether this marshaller can be called from several threads at once. Marshallers generated by the
+	 * annotation processor are thread safe
+	 * @return False unless overridden
+	 */
+	@Override
+	public default boolean isThreadSafe() {
+		return false;
+	}
+}
@@ -31,4 +31,13 @@ public interface IPVStructureSerialiser<T> {
 	 * @throws Exception
 	 */
 	public void populatePVStructure(Serialiser serialiser, T source, PVStructure pvStructure) throws Exception;
+	
+	/**
+	 * Returns whether this serialiser can be called from several threads at once, allowing the elements of large
+	 * arrays and lists to be serialised in parallel. Parallel serialisation is only used if every registered serialiser is thread safe
+	 * @return False unless overridden
+	 */
+	public default boolean isThreadSafe() {
+		return false;
+	}
 }
@@ -0,0 +1,98 @@
+package org.epics.pvmarshaller.marshaller.buffer;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.DeserializableControl;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.SerializableControl;
+
+/**
+ * Serialisation control for a single ByteBuffer that holds the whole message, so it cannot be flushed or refilled.
+ * Writing past its limit throws a BufferOverflowException, and reading past it a BufferUnderflowException.
+ * Introspection data is written in full each time instead of being cached, so it can be read without
+ * any state from earlier messages
+ * @author Matt Taylor
+ *
+ */
+public class ByteBufferControl implements SerializableControl, DeserializableControl {
+
+	private static final FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+
+	private final ByteBuffer buffer;
+
+	/**
+	 * Constructor
+	 * @param buffer The buffer holding the message
+	 */
+	public ByteBufferControl(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Serialises the introspection data of a Field, such as the Structure returned when an object is
+	 * serialised to a ByteBuffer, so that it can be sent ahead of the data
+	 * @param field The Field
+	 * @param buffer The buffer to write to
+	 * @param control The serialisation control
+	 */
+	public static void serializeIntrospection(Field field, ByteBuffer buffer, SerializableControl control) {
+		control.cachedSerialize(field, buffer);
+	}
+
+	/**
+	 * Deserialises introspection data written by {@link #serializeIntrospection(Field, ByteBuffer, SerializableControl)}
+	 * @param buffer The buffer to read from
+	 * @param control The deserialisation control
+	 * @return The Field
+	 */
+	public static Field deserializeIntrospection(ByteBuffer buffer, DeserializableControl control) {
+		return control.cachedDeserialize(buffer);
+	}
+
+	/**
+	 * @throws BufferOverflowException as the buffer cannot be flushed
+	 */
+	@Override
+	public void flushSerializeBuffer() {
+		throw new BufferOverflowException();
+	}
+
+	@Override
+	public void ensureBuffer(int size) {
+		// Sizes ask for more room than they may need, so leave the buffer to throw if it runs out
+	}
+
+	@Override
+	public void alignBuffer(int alignment) {
+		// The data of a PVField is not aligned
+	}
+
+	@Override
+	public void cachedSerialize(Field field, ByteBuffer buffer) {
+		field.serialize(buffer, this);
+	}
+
+	/**
+	 * @throws BufferUnderflowException if fewer bytes than the size remain, as no more can be received
+	 */
+	@Override
+	public void ensureData(int size) {
+		if (buffer.remaining() < size) {
+			throw new BufferUnderflowException();
+		}
+	}
+
+	@Override
+	public void alignData(int alignment) {
+		// The data of a PVField is not aligned
+	}
+
+	@Override
+	public Field cachedDeserialize(ByteBuffer buffer) {
+		return fieldCreate.deserialize(buffer, this);
+	}
+}
@@ -134,22 +134,7 @@ public class ContainerFunctions {
 		while (clazz != Object.class)  {
 			try {
 				java.lang.reflect.Field listField = clazz.getDeclaredField(variableName);
-				Type listFieldtype = listField.getGenericType();
-				if (listFieldtype instanceof ParameterizedType) {
-					ParameterizedType listType = (ParameterizedType) listFieldtype;
-		            Type type = listType.getActualTypeArguments()[0];
-		            if (type instanceof Class) {
-			            Class<?> listClass = (Class<?>) type; 
-			            return listClass;
-		            } else if (type instanceof ParameterizedType) {
-		            	ParameterizedType pt = (ParameterizedType) type;
-		            	Class<?> listClass = (Class<?>)pt.getRawType();
-			            return listClass;
-		            }
-				} else {
-					// No type info, assume Object
-					return Object.class;
-				}
+				return getListFieldClass(listField.getGenericType());
 			} catch (NoSuchFieldException ex) {
 				
 			}
@@ -158,6 +143,30 @@ public class ContainerFunctions {
 		throw new NoSuchFieldException("Unable to find field for " + variableName + " in class " + object.getClass());
 	}
 	
+	/**
+	 * Gets the class contained in a list from the declared type of the list field
+	 * @param listFieldType The generic type of the list field
+	 * @return
+	 */
+	public static Class<?> getListFieldClass(Type listFieldType) {
+		if (listFieldType instanceof ParameterizedType) {
+			ParameterizedType listType = (ParameterizedType) listFieldType;
+            Type type = listType.getActualTypeArguments()[0];
+            if (type instanceof Class) {
+	            Class<?> listClass = (Class<?>) type; 
+	            return listClass;
+            } else if (type instanceof ParameterizedType) {
+            	ParameterizedType pt = (ParameterizedType) type;
+            	Class<?> listClass = (Class<?>)pt.getRawType();
+	            return listClass;
+            }
+            return null;
+		} else {
+			// No type info, assume Object
+			return Object.class;
+		}
+	}
+	
 	/**
 	 * Gets the type of map from a list parent object which has a list of maps
 	 * @param parentObject The parent object
@@ -170,25 +179,7 @@ public class ContainerFunctions {
 		while (clazz != Object.class)  {
 			try {
 				java.lang.reflect.Field listField = clazz.getDeclaredField(variableName);
-				Type listFieldType = listField.getGenericType();
-				if (listFieldType instanceof ParameterizedType) {
-		            ParameterizedType listType = (ParameterizedType) listFieldType;
-		            Type type = listType.getActualTypeArguments()[0];
-		            if (type instanceof Class) {
-			            Class<?> listClass = (Class<?>) type; 
-			            return listClass;
-		            } else if (type instanceof ParameterizedType) {
-		            	ParameterizedType pt = (ParameterizedType) type;
-		            	if (!pt.getActualTypeArguments()[0].equals(String.class)) {
-		    				throw new IllegalArgumentException("Map key type was not String");
-		    			}
-		    			
-		    			return pt.getActualTypeArguments()[1];
-		            }
-				} else {
-					// No type info on list, assume Object
-					return Object.class;
-				}
+				return getMapTypeFromListFieldType(listField.getGenericType());
 			} catch (NoSuchFieldException ex) {
 				
 			}
@@ -196,4 +187,31 @@ public class ContainerFunctions {
 		}
 		throw new NoSuchFieldException("Unable to find field for " + variableName + " in class " + parentObject.getClass());
 	}
+	
+	/**
+	 * Gets the type of map from the declared type of a list field which has a list of maps
+	 * @param listFieldType The generic type of the list field
+	 * @return The type of the map contained in the List
+	 */
+	public static Type getMapTypeFromListFieldType(Type listFieldType) {
+		if (listFieldType instanceof ParameterizedType) {
+            ParameterizedType listType = (ParameterizedType) listFieldType;
+            Type type = listType.getActualTypeArguments()[0];
+            if (type instanceof Class) {
+	            Class<?> listClass = (Class<?>) type; 
+	            return listClass;
+            } else if (type instanceof ParameterizedType) {
+            	ParameterizedType pt = (ParameterizedType) type;
+            	if (!pt.getActualTypeArguments()[0].equals(String.class)) {
+    				throw new IllegalArgumentException("Map key type was not String");
+    			}
+    			
+    			return pt.getActualTypeArguments()[1];
+            }
+            return null;
+		} else {
+			// No type info on list, assume Object
+			return Object.class;
+		}
+	}
 }
@@ -0,0 +1,739 @@
+package org.epics.pvmarshaller.marshaller.deserialisers;
+
+import java.lang.reflect.Array;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.misc.SerializeHelper;
+import org.epics.pvdata.pv.Array.ArraySizeType;
+import org.epics.pvdata.pv.DeserializableControl;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.PVBoolean;
+import org.epics.pvdata.pv.PVByte;
+import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVFloat;
+import org.epics.pvdata.pv.PVInt;
+import org.epics.pvdata.pv.PVLong;
+import org.epics.pvdata.pv.PVShort;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Scalar;
+import org.epics.pvdata.pv.ScalarArray;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.Type;
+import org.epics.pvmarshaller.marshaller.accessors.AccessorFactory;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
+import org.epics.pvmarshaller.marshaller.jfr.MarshallerEvents;
+import org.epics.pvmarshaller.marshaller.metrics.MarshallerMetrics;
+import org.epics.pvmarshaller.marshaller.serialisers.ScalarKind;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+
+/**
+ * A pre-compiled list of operations for deserialising PVStructures with a given Structure into a given class.
+ * Each operation sets one member of the target object from the PVField at the same index in the PVStructure,
+ * so applying the plan needs no field name lookups and no type tests on the PVFields.
+ * @author Matt Taylor
+ *
+ */
+public class DeserialisationPlan {
+
+	private final Structure structure;
+	private final Class<?> targetClass;
+	private final Field[] fields;
+	private final FieldOperation[] operations;
+	private final int[] fieldOffsets;
+	private final int[] nextFieldOffsets;
+
+	/**
+	 * Constructor. Compiles the operations for each field of the Structure
+	 * @param deserialiser The deserialiser used for fields which aren't deserialised directly by the plan
+	 * @param structure The Structure of the PVStructures to deserialise
+	 * @param targetClass The class of the target object
+	 */
+	public DeserialisationPlan(Deserialiser deserialiser, Structure structure, Class<?> targetClass) {
+		this.structure = structure;
+		this.targetClass = targetClass;
+
+		fields = structure.getFields();
+		String fieldNames[] = structure.getFieldNames();
+		operations = new FieldOperation[fields.length];
+		fieldOffsets = new int[fields.length];
+		nextFieldOffsets = new int[fields.length];
+
+		// Offsets relative to the structure, matching the field offsets pvData gives each PVField
+		int offset = 1;
+		for (int i = 0; i < fields.length; i++) {
+			operations[i] = createOperation(deserialiser, fields[i], fieldNames[i]);
+			fieldOffsets[i] = offset;
+			offset += getNumberFields(fields[i]);
+			nextFieldOffsets[i] = offset;
+		}
+	}
+
+	/**
+	 * Populates the target object with the data in the PVStructure
+	 * @param target The object to populate
+	 * @param pvStructure The PVStructure to get data from. Its Structure must be equal to the one the plan was compiled for
+	 * @throws Exception
+	 */
+	public void apply(Object target, PVStructure pvStructure) throws Exception {
+		PVField pvFields[] = pvStructure.getPVFields();
+		for (int i = 0; i < operations.length; i++) {
+			operations[i].apply(target, pvFields[i]);
+		}
+	}
+
+	/**
+	 * Populates the target object with data serialised from a PVStructure, reading it straight from the buffer
+	 * without creating the PVStructure
+	 * @param target The object to populate
+	 * @param buffer The buffer to read from, positioned at the data of the first field
+	 * @param control The deserialisation control, used for the introspection data of variant unions
+	 * @throws Exception
+	 */
+	public void read(Object target, ByteBuffer buffer, DeserializableControl control) throws Exception {
+		for (int i = 0; i < operations.length; i++) {
+			operations[i].read(target, fields[i], buffer, control);
+		}
+	}
+
+	/**
+	 * Updates the target object with the fields of the PVStructure whose offsets are set in the BitSet.
+	 * If the bit of a structure field is set the whole field is deserialised, otherwise only the changed
+	 * fields within it are applied to the existing member of the target object
+	 * @param target The object to update
+	 * @param pvStructure The PVStructure to get data from. Its Structure must be equal to the one the plan was compiled for
+	 * @param changedFields The offsets of the changed fields, as used for pvAccess monitor updates
+	 * @throws Exception
+	 */
+	public void applyChanged(Object target, PVStructure pvStructure, BitSet changedFields) throws Exception {
+		int structureOffset = pvStructure.getFieldOffset();
+		if (changedFields.get(structureOffset)) {
+			apply(target, pvStructure);
+			return;
+		}
+
+		PVField pvFields[] = pvStructure.getPVFields();
+		int nextStructureOffset = pvStructure.getNextFieldOffset();
+		int bit = changedFields.nextSetBit(structureOffset + 1);
+
+		while (bit >= 0 && bit < nextStructureOffset) {
+			int i = getFieldIndex(bit - structureOffset);
+			if (bit - structureOffset != fieldOffsets[i] && operations[i] instanceof StructureOperation) {
+				// Only structure fields contain other fields, so this is a change within a structure
+				((StructureOperation)operations[i]).applyChanged(target, (PVStructure)pvFields[i], changedFields);
+			} else {
+				operations[i].apply(target, pvFields[i]);
+			}
+			bit = changedFields.nextSetBit(structureOffset + nextFieldOffsets[i]);
+		}
+	}
+
+	/**
+	 * Gets the index of the field containing the specified offset
+	 * @param relativeOffset The offset relative to the structure
+	 * @return The index of the field
+	 */
+	private int getFieldIndex(int relativeOffset) {
+		int index = Arrays.binarySearch(fieldOffsets, relativeOffset);
+		// If the offset is within a field, binarySearch returns (-(insertion point) - 1), and the field is the one before the insertion point
+		return index >= 0 ? index : -index - 2;
+	}
+
+	/**
+	 * Gets the number of fields, including itself, that a field takes up in the field offsets of a PVStructure
+	 * @param field The field
+	 * @return The number of fields
+	 */
+	private static int getNumberFields(Field field) {
+		if (field.getType() != Type.structure) {
+			return 1;
+		}
+		int number = 1;
+		for (Field subField : ((Structure)field).getFields()) {
+			number += getNumberFields(subField);
+		}
+		return number;
+	}
+
+	/**
+	 * Gets the Structure the plan was compiled for
+	 * @return
+	 */
+	public Structure getStructure() {
+		return structure;
+	}
+
+	/**
+	 * Gets the class the plan was compiled for
+	 * @return
+	 */
+	public Class<?> getTargetClass() {
+		return targetClass;
+	}
+
+	/**
+	 * Creates the operation used to deserialise a single field
+	 * @param deserialiser The deserialiser
+	 * @param field The introspection interface of the field
+	 * @param fieldName The name of the field
+	 * @return The operation
+	 */
+	private FieldOperation createOperation(Deserialiser deserialiser, Field field, String fieldName) {
+		SetterDescriptor setterDescriptor = deserialiser.getSetterDescriptor(targetClass, fieldName);
+
+		switch (field.getType()) {
+		case scalar:
+			return createScalarOperation(deserialiser, (Scalar)field, setterDescriptor);
+		case structure:
+			return createStructureOperation(deserialiser, setterDescriptor);
+		case scalarArray:
+			return new ScalarArrayOperation(deserialiser, (ScalarArray)field, setterDescriptor, fieldName);
+		default:
+			return new DelegatingOperation(deserialiser, field.getType(), fieldName);
+		}
+	}
+
+	/**
+	 * Creates the operation used to deserialise a scalar field
+	 * @param deserialiser The deserialiser
+	 * @param scalar The introspection interface of the field
+	 * @param setterDescriptor The setter for the field
+	 * @return The operation
+	 */
+	private FieldOperation createScalarOperation(Deserialiser deserialiser, Scalar scalar, SetterDescriptor setterDescriptor) {
+		String fieldName = setterDescriptor.getName();
+
+		switch (scalar.getScalarType()) {
+		case pvUInt:
+			return new UnsupportedOperation("Field type of Unsigned Int is not supported (" + fieldName + ")");
+		case pvUShort:
+			return new UnsupportedOperation("Field type of Unsigned Short is not supported (" + fieldName + ")");
+		case pvULong:
+			return new UnsupportedOperation("Field type of Unsigned Long is not supported (" + fieldName + ")");
+		case pvUByte:
+			return new UnsupportedOperation("Field type of Unsigned Byte is not supported (" + fieldName + ")");
+		default:
+			break;
+		}
+
+		Setter setter = setterDescriptor.getAccessor();
+		if (setter == null) {
+			return new UnknownMemberOperation(deserialiser, "Unable to find setter for " + fieldName + " in class " + targetClass);
+		}
+
+		switch (scalar.getScalarType()) {
+		case pvInt:
+			return new IntOperation(setter);
+		case pvShort:
+			return new ShortOperation(setter);
+		case pvLong:
+			return new LongOperation(setter);
+		case pvByte:
+			return new ByteOperation(setter);
+		case pvBoolean:
+			return new BooleanOperation(setter);
+		case pvFloat:
+			return new FloatOperation(setter);
+		case pvDouble:
+			return new DoubleOperation(setter);
+		case pvString:
+			Class<?> parameterType = setterDescriptor.getParameterType();
+			if (ScalarKind.of(parameterType) == ScalarKind.CHAR) {
+				return new CharOperation(setter, fieldName, parameterType.isPrimitive());
+			}
+			return new StringOperation(setter);
+		default:
+			return new UnsupportedOperation("Unsupported field type for " + fieldName);
+		}
+	}
+
+	/**
+	 * Creates the operation used to deserialise a structure field
+	 * @param deserialiser The deserialiser
+	 * @param setterDescriptor The setter and field type for the field
+	 * @return The operation
+	 */
+	private FieldOperation createStructureOperation(Deserialiser deserialiser, SetterDescriptor setterDescriptor) {
+		Class<?> fieldClass = setterDescriptor.getFieldType();
+		if (fieldClass == null) {
+			return new UnknownMemberOperation(deserialiser, "Unknown member: " + setterDescriptor.getName());
+		}
+		Getter getter = AccessorFactory.createGetter(Serialiser.findGetterForClass(targetClass, setterDescriptor.getName()), deserialiser.accessorBackend);
+		return new StructureOperation(deserialiser, setterDescriptor, getter, targetClass);
+	}
+
+	/**
+	 * A single step of a plan, which sets one member of the target object
+	 */
+	interface FieldOperation {
+		void apply(Object target, PVField pvField) throws Exception;
+
+		/**
+		 * Sets the member from the serialised data of the field. Unless overridden, the data is read into
+		 * a PVField for this field alone, which is then applied
+		 */
+		default void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			PVField pvField = PVDataFactory.getPVDataCreate().createPVField(field);
+			pvField.deserialize(buffer, control);
+			apply(target, pvField);
+		}
+	}
+
+	private static class IntOperation implements FieldOperation {
+		private final Setter setter;
+
+		IntOperation(Setter setter) {
+			this.setter = setter;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			setter.setInt(target, ((PVInt)pvField).get());
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			control.ensureData(Integer.BYTES);
+			setter.setInt(target, buffer.getInt());
+		}
+	}
+
+	private static class ShortOperation implements FieldOperation {
+		private final Setter setter;
+
+		ShortOperation(Setter setter) {
+			this.setter = setter;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			setter.setShort(target, ((PVShort)pvField).get());
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			control.ensureData(Short.BYTES);
+			setter.setShort(target, buffer.getShort());
+		}
+	}
+
+	private static class LongOperation implements FieldOperation {
+		private final Setter setter;
+
+		LongOperation(Setter setter) {
+			this.setter = setter;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			setter.setLong(target, ((PVLong)pvField).get());
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			control.ensureData(Long.BYTES);
+			setter.setLong(target, buffer.getLong());
+		}
+	}
+
+	private static class ByteOperation implements FieldOperation {
+		private final Setter setter;
+
+		ByteOperation(Setter setter) {
+			this.setter = setter;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			setter.setByte(target, ((PVByte)pvField).get());
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			control.ensureData(Byte.BYTES);
+			setter.setByte(target, buffer.get());
+		}
+	}
+
+	private static class BooleanOperation implements FieldOperation {
+		private final Setter setter;
+
+		BooleanOperation(Setter setter) {
+			this.setter = setter;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			setter.setBoolean(target, ((PVBoolean)pvField).get());
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			control.ensureData(1);
+			setter.setBoolean(target, buffer.get() != 0);
+		}
+	}
+
+	private static class FloatOperation implements FieldOperation {
+		private final Setter setter;
+
+		FloatOperation(Setter setter) {
+			this.setter = setter;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			setter.setFloat(target, ((PVFloat)pvField).get());
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			control.ensureData(Float.BYTES);
+			setter.setFloat(target, buffer.getFloat());
+		}
+	}
+
+	private static class DoubleOperation implements FieldOperation {
+		private final Setter setter;
+
+		DoubleOperation(Setter setter) {
+			this.setter = setter;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			setter.setDouble(target, ((PVDouble)pvField).get());
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			control.ensureData(Double.BYTES);
+			setter.setDouble(target, buffer.getDouble());
+		}
+	}
+
+	private static class StringOperation implements FieldOperation {
+		private final Setter setter;
+
+		StringOperation(Setter setter) {
+			this.setter = setter;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			setter.set(target, ((PVString)pvField).get());
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			setter.set(target, SerializeHelper.deserializeString(buffer, control));
+		}
+	}
+
+	private static class CharOperation implements FieldOperation {
+		private final Setter setter;
+		private final String fieldName;
+		private final boolean primitive;
+
+		CharOperation(Setter setter, String fieldName, boolean primitive) {
+			this.setter = setter;
+			this.fieldName = fieldName;
+			this.primitive = primitive;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			setChar(target, ((PVString)pvField).get());
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			setChar(target, SerializeHelper.deserializeString(buffer, control));
+		}
+
+		private void setChar(Object target, String value) throws Exception {
+			if (value.length() > 1) {
+				throw new IllegalArgumentException(fieldName + " has too many characters for a single char");
+			} else if (value.isEmpty()) {
+				// The default value written for a null Character in a Structure built from declared types
+				if (primitive) {
+					setter.setChar(target, '\0');
+				} else {
+					setter.set(target, null);
+				}
+				return;
+			}
+			setter.setChar(target, value.charAt(0));
+		}
+	}
+
+	private static class StructureOperation implements FieldOperation {
+		private final Deserialiser deserialiser;
+		private final SetterDescriptor setterDescriptor;
+		private final Getter getter;
+		private final Class<?> fieldClass;
+		private final boolean isMap;
+		private final String missingSetterMessage;
+
+		StructureOperation(Deserialiser deserialiser, SetterDescriptor setterDescriptor, Getter getter, Class<?> targetClass) {
+			this.deserialiser = deserialiser;
+			this.setterDescriptor = setterDescriptor;
+			this.getter = getter;
+			this.fieldClass = setterDescriptor.getFieldType();
+			this.isMap = Map.class.isAssignableFrom(fieldClass);
+			this.missingSetterMessage = "Unable to find setter for " + setterDescriptor.getName() + " in class " + targetClass;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			PVStructure structureField = (PVStructure)pvField;
+			Object newObject;
+			if (isMap) {
+				newObject = deserialiser.getMapDeserialiser().createMapFromPVStructure(structureField, setterDescriptor);
+			} else {
+				newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(structureField, fieldClass);
+			}
+			setMember(target, newObject);
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			if (isMap) {
+				FieldOperation.super.read(target, field, buffer, control);
+				return;
+			}
+			setMember(target, deserialiser.getStructureDeserialiser().createObjectFromBuffer((Structure)field, fieldClass, buffer, control));
+		}
+
+		/**
+		 * Applies the changed fields within the structure to the existing member of the target object.
+		 * If the member is null, or can't be read, the whole structure is deserialised instead
+		 */
+		void applyChanged(Object target, PVStructure structureField, BitSet changedFields) throws Exception {
+			Object existingObject = (getter == null || isMap) ? null : getter.get(target);
+			if (existingObject == null) {
+				apply(target, structureField);
+				return;
+			}
+			Object updatedObject = deserialiser.getStructureDeserialiser().updateObjectFromPVStructure(structureField, changedFields, existingObject);
+			if (updatedObject != existingObject) {
+				setMember(target, updatedObject);
+			}
+		}
+
+		private void setMember(Object target, Object value) throws Exception {
+			Setter setter = setterDescriptor.getAccessor();
+			if (setter == null) {
+				if (deserialiser.getIgnoreUnknownFields() == false) {
+					throw new IllegalArgumentException(missingSetterMessage);
+				}
+				return;
+			}
+			setter.set(target, value);
+		}
+	}
+
+	private static class DelegatingOperation implements FieldOperation {
+		private final Deserialiser deserialiser;
+		private final Type type;
+		private final String fieldName;
+
+		DelegatingOperation(Deserialiser deserialiser, Type type, String fieldName) {
+			this.deserialiser = deserialiser;
+			this.type = type;
+			this.fieldName = fieldName;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			Object event = MarshallerEvents.beginArray();
+			switch (type) {
+			case scalarArray:
+				deserialiser.getScalarArrayDeserialiser().deserialise(target, fieldName, pvField);
+				break;
+			case structureArray:
+				deserialiser.getStructureArrayDeserialiser().deserialise(target, fieldName, pvField);
+				break;
+			case union:
+				deserialiser.getUnionDeserialiser().deserialise(target, fieldName, pvField);
+				break;
+			case unionArray:
+				deserialiser.getUnionArrayDeserialiser().deserialise(target, fieldName, pvField);
+				break;
+			default:
+				break;
+			}
+			MarshallerEvents.endArray(event, MarshallerEvents.DESERIALISE, pvField);
+		}
+	}
+
+	/**
+	 * Sets a scalar array member. Arrays of a Java primitive type, or of Strings, passed straight to the setter
+	 * are read from a buffer in bulk, and anything else is converted by the ScalarArrayDeserialiser
+	 */
+	private static class ScalarArrayOperation extends DelegatingOperation {
+		private final Deserialiser deserialiser;
+		private final ScalarType elementType;
+		private final Setter setter;
+		private final ScalarKind kind;
+
+		ScalarArrayOperation(Deserialiser deserialiser, ScalarArray scalarArray, SetterDescriptor setterDescriptor, String fieldName) {
+			super(deserialiser, Type.scalarArray, fieldName);
+			this.deserialiser = deserialiser;
+			this.elementType = scalarArray.getElementType();
+			this.setter = setterDescriptor.getAccessor();
+
+			ScalarKind directKind = null;
+			Class<?> parameterType = setterDescriptor.getParameterType();
+			if (setter != null && parameterType != null && parameterType.isArray() && scalarArray.getArraySizeType() == ArraySizeType.variable) {
+				Class<?> componentType = parameterType.getComponentType();
+				ScalarKind componentKind = ScalarKind.of(componentType);
+				if (componentKind != null && componentKind != ScalarKind.CHAR && componentKind.getScalarType() == elementType &&
+						(componentType.isPrimitive() || componentKind == ScalarKind.STRING)) {
+					directKind = componentKind;
+				}
+			}
+			this.kind = directKind;
+		}
+
+		@Override
+		public void read(Object target, Field field, ByteBuffer buffer, DeserializableControl control) throws Exception {
+			if (kind == null) {
+				super.read(target, field, buffer, control);
+				return;
+			}
+
+			// Arrays of unknown length (-1) are left empty, as they are by pvData
+			int length = Math.max(0, SerializeHelper.readSize(buffer, control));
+			MarshallerMetrics metrics = deserialiser.getMetrics();
+			if (metrics != MarshallerMetrics.NONE) {
+				metrics.primitiveArrayDeserialised(elementType, length, MarshallerMetrics.getPayloadBytes(elementType, length));
+			}
+			setter.set(target, readArray(length, buffer, control));
+		}
+
+		/**
+		 * Reads the elements of the array, waiting for more data each time the buffer runs out, as pvData does
+		 */
+		private Object readArray(int length, ByteBuffer buffer, DeserializableControl control) {
+			if (kind == ScalarKind.STRING) {
+				String[] strings = new String[length];
+				for (int i = 0; i < length; i++) {
+					strings[i] = SerializeHelper.deserializeString(buffer, control);
+				}
+				return strings;
+			}
+
+			Object array = Array.newInstance(getElementClass(kind), length);
+			int elementSize = kind.getElementSize();
+			int i = 0;
+			while (true) {
+				int count = Math.min(length - i, buffer.remaining() / elementSize);
+				getElements(array, i, count, buffer);
+				i += count;
+				if (i < length) {
+					control.ensureData(elementSize);
+				} else {
+					break;
+				}
+			}
+			return array;
+		}
+
+		/**
+		 * Gets part of the array from the buffer, which must hold it
+		 */
+		private void getElements(Object array, int offset, int count, ByteBuffer buffer) {
+			int position = buffer.position();
+			switch (kind) {
+			case INT:
+				buffer.asIntBuffer().get((int[])array, offset, count);
+				break;
+			case SHORT:
+				buffer.asShortBuffer().get((short[])array, offset, count);
+				break;
+			case LONG:
+				buffer.asLongBuffer().get((long[])array, offset, count);
+				break;
+			case BYTE:
+				buffer.get((byte[])array, offset, count);
+				return;
+			case BOOLEAN: {
+				boolean[] booleans = (boolean[])array;
+				for (int i = offset; i < offset + count; i++) {
+					booleans[i] = buffer.get() != 0;
+				}
+				return;
+			}
+			case FLOAT:
+				buffer.asFloatBuffer().get((float[])array, offset, count);
+				break;
+			case DOUBLE:
+				buffer.asDoubleBuffer().get((double[])array, offset, count);
+				break;
+			default:
+				throw new IllegalArgumentException("Cannot get an array of " + kind + " from a buffer");
+			}
+			// Through Buffer, as ByteBuffer only overrides position(int) from Java 9
+			((Buffer)buffer).position(position + count * kind.getElementSize());
+		}
+
+		private static Class<?> getElementClass(ScalarKind kind) {
+			switch (kind) {
+			case INT:
+				return int.class;
+			case SHORT:
+				return short.class;
+			case LONG:
+				return long.class;
+			case BYTE:
+				return byte.class;
+			case BOOLEAN:
+				return boolean.class;
+			case FLOAT:
+				return float.class;
+			default:
+				return double.class;
+			}
+		}
+	}
+
+	private static class UnknownMemberOperation implements FieldOperation {
+		private final Deserialiser deserialiser;
+		private final String message;
+
+		UnknownMemberOperation(Deserialiser deserialiser, String message) {
+			this.deserialiser = deserialiser;
+			this.message = message;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			// Checked on each use, as ignoring unknown fields can be changed after the plan is compiled
+			if (deserialiser.getIgnoreUnknownFields() == false) {
+				throw new IllegalArgumentException(message);
+			}
+		}
+	}
+
+	private static class UnsupportedOperation implements FieldOperation {
+		private final String message;
+
+		UnsupportedOperation(String message) {
+			this.message = message;
+		}
+
+		@Override
+		public void apply(Object target, PVField pvField) throws Exception {
+			throw new IllegalArgumentException(message);
+		}
+	}
+}
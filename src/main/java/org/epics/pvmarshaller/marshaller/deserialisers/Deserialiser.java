@@ -1,11 +1,20 @@
 package org.epics.pvmarshaller.marshaller.deserialisers;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.DeserializableControl;
 import org.epics.pvdata.pv.PVStructure;
-import org.epics.pvmarshaller.marshaller.api.IPVStructureDeserialiser;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.accessors.AccessorBackend;
+import org.epics.pvmarshaller.marshaller.jfr.MarshallerEvents;
+import org.epics.pvmarshaller.marshaller.metrics.MarshallerMetrics;
+import org.epics.pvmarshaller.marshaller.parallel.ParallelElementConverter;
+import org.epics.pvmarshaller.marshaller.parallel.ParallelElementConverter.ElementConversion;
 
 /**
  * Top level class for the deserialisation of PVStrucures into an Object
@@ -24,6 +33,12 @@ public class Deserialiser {
 	UnionArrayDeserialiser unionArrayDeserialiser = new UnionArrayDeserialiser(this);
 	
 	boolean ignoreUnknownFields = false;
+	boolean shareArrayData = false;
+	AccessorBackend accessorBackend = AccessorBackend.REFLECTION;
+	ParallelElementConverter parallelConverter = ParallelElementConverter.SEQUENTIAL;
+	MarshallerMetrics metrics = MarshallerMetrics.NONE;
+	
+	Map<Class<?>, Map<String, SetterDescriptor>> setterDescriptors = new ConcurrentHashMap<Class<?>, Map<String, SetterDescriptor>>();
 	
 	/**
 	 * Converts the specified PVStructure into an object of the type specified
@@ -33,11 +48,39 @@ public class Deserialiser {
 	 * @throws Exception
 	 */
 	public <T> T fromPVStructure(PVStructure pvStructure, Class<T> targetClass) throws Exception {
+		Object event = MarshallerEvents.beginDeserialisation();
 		T deserialisedObject = (T)structureDeserialiser.createObjectFromPVStructure(pvStructure, targetClass);
+		MarshallerEvents.endDeserialisation(event, pvStructure, deserialisedObject);
  	    
 		return deserialisedObject;
 	}
 	
+	/**
+	 * Converts data serialised from a PVStructure into an object of the type specified, reading it straight
+	 * from the buffer without creating the PVStructure
+	 * @param buffer The buffer to read from, positioned at the data
+	 * @param control The deserialisation control
+	 * @param structure The Structure of the serialised PVStructure
+	 * @param targetClass The class of the expected output object
+	 * @return An object of type T
+	 * @throws Exception
+	 */
+	public <T> T fromByteBuffer(ByteBuffer buffer, DeserializableControl control, Structure structure, Class<T> targetClass) throws Exception {
+		return (T)structureDeserialiser.createObjectFromBuffer(structure, targetClass, buffer, control);
+	}
+	
+	/**
+	 * Updates an existing object with the fields of the PVStructure whose offsets are set in the BitSet
+	 * @param pvStructure The PVStructure to get data from
+	 * @param changedFields The offsets of the changed fields
+	 * @param existingObject The object to update
+	 * @return The updated object, which is the existing object unless it could only be deserialised as a whole
+	 * @throws Exception
+	 */
+	public <T> T update(PVStructure pvStructure, BitSet changedFields, T existingObject) throws Exception {
+		return (T)structureDeserialiser.updateObjectFromPVStructure(pvStructure, changedFields, existingObject);
+	}
+	
 	/**
 	 * Deserialises a single field within a PVStructure
 	 * @param pvStructure The object to deserialise the field from
@@ -50,6 +93,44 @@ public class Deserialiser {
 		return newMap.get(fieldName);
 	}
 
+	/**
+	 * Sets the metrics that custom deserialiser usage and scalar arrays are reported to
+	 * @param metrics The metrics
+	 */
+	public void setMetrics(MarshallerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Gets the metrics that deserialisation events are reported to
+	 * @return
+	 */
+	public MarshallerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the converter used to deserialise the elements of structure and union arrays
+	 * @param parallelConverter The converter
+	 */
+	public void setParallelConverter(ParallelElementConverter parallelConverter) {
+		this.parallelConverter = parallelConverter;
+	}
+	
+	/**
+	 * Converts each element of a structure or union array, in parallel if there are enough elements and all the custom deserialisers are thread safe
+	 * @param results The array to hold the converted elements
+	 * @param conversion The conversion of a single element
+	 * @throws Exception
+	 */
+	<T> void convertElements(T[] results, ElementConversion<? extends T> conversion) throws Exception {
+		ParallelElementConverter converter = parallelConverter;
+		if (converter.isParallel(results.length) && !structureDeserialiser.areCustomDeserialisersThreadSafe()) {
+			converter = ParallelElementConverter.SEQUENTIAL;
+		}
+		converter.convert(results, conversion);
+	}
+
 	/**
 	 * Gets the MapDeserialiser used for converting maps
 	 * @return
@@ -130,6 +211,32 @@ public class Deserialiser {
 		this.ignoreUnknownFields = ignoreUnknownMembers;
 	}
 	
+	/**
+	 * Gets whether arrays of primitives passed to setters share the data of the PVStructure instead of being copies
+	 * @return
+	 */
+	public boolean getShareArrayData() {
+		return shareArrayData;
+	}
+	
+	/**
+	 * Sets whether arrays of primitives passed to setters share the data of the PVStructure instead of being copies
+	 * @param shareArrayData
+	 */
+	public void setShareArrayData(boolean shareArrayData) {
+		this.shareArrayData = shareArrayData;
+	}
+	
+	/**
+	 * Sets the backend used to call the setters of deserialised objects
+	 * @param accessorBackend The backend
+	 */
+	public void setAccessorBackend(AccessorBackend accessorBackend) {
+		this.accessorBackend = accessorBackend;
+		setterDescriptors.clear();
+		structureDeserialiser.clearDeserialisationPlans();
+	}
+	
 	/**
 	 * Finds the setter method for a given member in the specified Object
 	 * @param object The object to find the setter in
@@ -138,20 +245,92 @@ public class Deserialiser {
 	 * @throws IllegalArgumentException
 	 */
 	public Method findSetter(Object object, String variableName) throws IllegalArgumentException {
-		Class<?> clazz = object.getClass();
+		Method setter = getSetterDescriptor(object.getClass(), variableName).getSetter();
+		if (setter == null && ignoreUnknownFields == false) {
+			throw new IllegalArgumentException("Unable to find setter for " + variableName + " in class " + object.getClass());
+		}
+		return setter;
+	}
+	
+	/**
+	 * Finds the resolved setter for a given member in the specified Object
+	 * @param object The object to find the setter in
+	 * @param variableName The name of the member to find the setter for
+	 * @return the descriptor of the setter, or null if no setter is found and IgnoreUnknownFields has been set to true
+	 * @throws IllegalArgumentException
+	 */
+	public SetterDescriptor findSetterDescriptor(Object object, String variableName) throws IllegalArgumentException {
+		SetterDescriptor descriptor = getSetterDescriptor(object.getClass(), variableName);
+		if (descriptor.getSetter() == null) {
+			if (ignoreUnknownFields == false) {
+				throw new IllegalArgumentException("Unable to find setter for " + variableName + " in class " + object.getClass());
+			}
+			return null;
+		}
+		return descriptor;
+	}
+	
+	/**
+	 * Gets the resolved setter and field for a given member of the specified class,
+	 * resolving it the first time the class and member name are seen
+	 * @param clazz The class to find the member in
+	 * @param variableName The name of the member
+	 * @return The descriptor of the member. Its setter and field are null if the class has no such member
+	 */
+	public SetterDescriptor getSetterDescriptor(Class<?> clazz, String variableName) {
+		Map<String, SetterDescriptor> classSetters = setterDescriptors.get(clazz);
+		if (classSetters == null) {
+			classSetters = new ConcurrentHashMap<String, SetterDescriptor>();
+			Map<String, SetterDescriptor> existing = setterDescriptors.putIfAbsent(clazz, classSetters);
+			if (existing != null) {
+				classSetters = existing;
+			}
+		}
+		
+		SetterDescriptor descriptor = classSetters.get(variableName);
+		if (descriptor == null) {
+			descriptor = new SetterDescriptor(clazz, variableName, findSetterForClass(clazz, variableName), findFieldForClass(clazz, variableName), accessorBackend);
+			classSetters.put(variableName, descriptor);
+		}
+		return descriptor;
+	}
+	
+	/**
+	 * Finds the setter method for a given member in the specified class or its superclasses
+	 * @param clazz The class to search
+	 * @param variableName The name of the member
+	 * @return The setter method, or null if there isn't one
+	 */
+	private static Method findSetterForClass(Class<?> clazz, String variableName) {
+		String setterName = "set" + variableName;
 		while (clazz != Object.class)  {
 			Method[] allMethods = clazz.getDeclaredMethods();
 			 
 		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("set" + variableName.toLowerCase()) && m.getParameters().length == 1) {
+		    	if (m.getName().equalsIgnoreCase(setterName) && m.getParameterCount() == 1) {
 		    		m.setAccessible(true);
 		    		return m;
 		    	}
 		    }
 		    clazz = clazz.getSuperclass();
 		}
-		if (ignoreUnknownFields == false) {
-			throw new IllegalArgumentException("Unable to find setter for " + variableName + " in class " + object.getClass());
+		return null;
+	}
+	
+	/**
+	 * Finds the field with the given name in the specified class or its superclasses
+	 * @param clazz The class to search
+	 * @param variableName The name of the field
+	 * @return The field, or null if there isn't one
+	 */
+	private static Field findFieldForClass(Class<?> clazz, String variableName) {
+		while (clazz != Object.class)  {
+			for (Field field : clazz.getDeclaredFields()) {
+				if (field.getName().equals(variableName)) {
+					return field;
+				}
+			}
+		    clazz = clazz.getSuperclass();
 		}
 		return null;
 	}
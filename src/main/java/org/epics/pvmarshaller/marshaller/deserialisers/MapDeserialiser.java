@@ -56,14 +56,24 @@ public class MapDeserialiser {
 	 * @throws Exception
 	 */
 	public Map createMapFromPVStructure(PVStructure pvStructure, Object parentObject, String fieldName) throws Exception {
+		return createMapFromPVStructure(pvStructure, deserialiser.getSetterDescriptor(parentObject.getClass(), fieldName));
+	}
+	
+	/**
+	 * Creates a map from the given PVStructure
+	 * @param pvStructure PVStructure representing a map to deserialise
+	 * @param setterDescriptor The descriptor of the map member in the parent object
+	 * @return
+	 * @throws Exception
+	 */
+	public Map createMapFromPVStructure(PVStructure pvStructure, SetterDescriptor setterDescriptor) throws Exception {
 		
 		Class<?> mapClass = null;
 		Type keyClass;
 		Type valueClass = null;
-		java.lang.reflect.Field objectField = parentObject.getClass().getDeclaredField(fieldName);
-		mapClass = objectField.getType();
+		Type objectFieldType = setterDescriptor.getFieldGenericType();
+		mapClass = setterDescriptor.getFieldType();
 		
-		Type objectFieldType = objectField.getGenericType();
 		if (objectFieldType instanceof ParameterizedType) {
 			ParameterizedType pt = (ParameterizedType)objectFieldType;
 	        
@@ -301,9 +311,6 @@ public class MapDeserialiser {
 	private void setUnionValue(Map newMap, String key, PVField pvField, Type valueClass) throws Exception {
 		if (pvField instanceof PVUnion) {
 			PVUnion pvUnion = (PVUnion)pvField;
-			if (!pvUnion.getUnion().isVariant()) {
-				throw new IllegalArgumentException("Regular unions are not supported");
-			}
 			
 			PVField unionpvField = pvUnion.get();
 			if ((unionpvField instanceof PVInt) || 
@@ -15,15 +15,7 @@ import org.epics.pvdata.pv.PVIntArray;
 import org.epics.pvdata.pv.PVLongArray;
 import org.epics.pvdata.pv.PVShortArray;
 import org.epics.pvdata.pv.PVStringArray;
-import org.epics.pvdata.pv.BooleanArrayData;
-import org.epics.pvdata.pv.ByteArrayData;
-import org.epics.pvdata.pv.DoubleArrayData;
-import org.epics.pvdata.pv.FloatArrayData;
-import org.epics.pvdata.pv.IntArrayData;
-import org.epics.pvdata.pv.LongArrayData;
 import org.epics.pvdata.pv.PVField;
-import org.epics.pvdata.pv.ShortArrayData;
-import org.epics.pvdata.pv.StringArrayData;
 
 /**
  * Deserialises into a map scalar array object
@@ -86,22 +78,9 @@ public class MapScalarArrayDeserialiser {
 	 */
 	private static Object setIntArrayValue(Type type, PVIntArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		int dataArray[] = new int[bpvField.getLength()];
-		IntArrayData intArrayData = new IntArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		int gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, intArrayData);
-			totalGot += numGot;
-			gotArray = intArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[intArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The data only needs to be copied if the array itself is returned
+		boolean share = !(isArray(type) && getComponentType(type).equals(int.class));
+		int dataArray[] = ScalarArrayDeserialiser.getIntArray(bpvField, share);
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -148,22 +127,9 @@ public class MapScalarArrayDeserialiser {
 	 */
 	private static Object setShortArrayValue(Type type, PVShortArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		short dataArray[] = new short[bpvField.getLength()];
-		ShortArrayData shortArrayData = new ShortArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		short gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, shortArrayData);
-			totalGot += numGot;
-			gotArray = shortArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[shortArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The data only needs to be copied if the array itself is returned
+		boolean share = !(isArray(type) && getComponentType(type).equals(short.class));
+		short dataArray[] = ScalarArrayDeserialiser.getShortArray(bpvField, share);
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -209,22 +175,9 @@ public class MapScalarArrayDeserialiser {
 	 */
 	private static Object setLongArrayValue(Type type, PVLongArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		long dataArray[] = new long[bpvField.getLength()];
-		LongArrayData longArrayData = new LongArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		long gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, longArrayData);
-			totalGot += numGot;
-			gotArray = longArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[longArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The data only needs to be copied if the array itself is returned
+		boolean share = !(isArray(type) && getComponentType(type).equals(long.class));
+		long dataArray[] = ScalarArrayDeserialiser.getLongArray(bpvField, share);
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -270,22 +223,9 @@ public class MapScalarArrayDeserialiser {
 	 */
 	private static Object setByteArrayValue(Type type, PVByteArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		byte dataArray[] = new byte[bpvField.getLength()];
-		ByteArrayData byteArrayData = new ByteArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		byte gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, byteArrayData);
-			totalGot += numGot;
-			gotArray = byteArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[byteArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The data only needs to be copied if the array itself is returned
+		boolean share = !(isArray(type) && getComponentType(type).equals(byte.class));
+		byte dataArray[] = ScalarArrayDeserialiser.getByteArray(bpvField, share);
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -331,22 +271,9 @@ public class MapScalarArrayDeserialiser {
 	 */
 	private static Object setBooleanArrayValue(Type type, PVBooleanArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		boolean dataArray[] = new boolean[bpvField.getLength()];
-		BooleanArrayData booleanArrayData = new BooleanArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		boolean gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, booleanArrayData);
-			totalGot += numGot;
-			gotArray = booleanArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[booleanArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The data only needs to be copied if the array itself is returned
+		boolean share = !(isArray(type) && getComponentType(type).equals(boolean.class));
+		boolean dataArray[] = ScalarArrayDeserialiser.getBooleanArray(bpvField, share);
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -392,22 +319,9 @@ public class MapScalarArrayDeserialiser {
 	 */
 	private static Object setFloatArrayValue(Type type, PVFloatArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		float dataArray[] = new float[bpvField.getLength()];
-		FloatArrayData floatArrayData = new FloatArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		float gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, floatArrayData);
-			totalGot += numGot;
-			gotArray = floatArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[floatArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The data only needs to be copied if the array itself is returned
+		boolean share = !(isArray(type) && getComponentType(type).equals(float.class));
+		float dataArray[] = ScalarArrayDeserialiser.getFloatArray(bpvField, share);
 
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -453,22 +367,9 @@ public class MapScalarArrayDeserialiser {
 	 */
 	private static Object setDoubleArrayValue(Type type, PVDoubleArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		double dataArray[] = new double[bpvField.getLength()];
-		DoubleArrayData doubleArrayData = new DoubleArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		double gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, doubleArrayData);
-			totalGot += numGot;
-			gotArray = doubleArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[doubleArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The data only needs to be copied if the array itself is returned
+		boolean share = !(isArray(type) && getComponentType(type).equals(double.class));
+		double dataArray[] = ScalarArrayDeserialiser.getDoubleArray(bpvField, share);
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
@@ -514,22 +415,9 @@ public class MapScalarArrayDeserialiser {
 	 */
 	private static Object setStringArrayValue(Type type, PVStringArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
 		
-		String dataArray[] = new String[bpvField.getLength()];
-		StringArrayData StringArrayData = new StringArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		String gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(numGot, bpvField.getLength() - numGot, StringArrayData);
-			totalGot += numGot;
-			gotArray = StringArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[StringArrayData.offset + i] = gotArray[i];
-			}
-		}
+		// The data only needs to be copied if the array itself is returned
+		boolean share = !(isArray(type) && getComponentType(type).equals(String.class));
+		String dataArray[] = ScalarArrayDeserialiser.getStringArray(bpvField, share);
 		
 		if (isArray(type)) {
 			Class<?> componentType = getComponentType(type);
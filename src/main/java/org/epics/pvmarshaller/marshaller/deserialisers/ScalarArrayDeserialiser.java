@@ -2,9 +2,6 @@ package org.epics.pvmarshaller.marshaller.deserialisers;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.ArrayList;
 import java.util.List;
@@ -22,14 +19,17 @@ import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVFloatArray;
 import org.epics.pvdata.pv.PVIntArray;
 import org.epics.pvdata.pv.PVLongArray;
+import org.epics.pvdata.pv.PVScalarArray;
 import org.epics.pvdata.pv.PVShortArray;
 import org.epics.pvdata.pv.PVStringArray;
 import org.epics.pvdata.pv.PVUByteArray;
 import org.epics.pvdata.pv.PVUIntArray;
 import org.epics.pvdata.pv.PVULongArray;
 import org.epics.pvdata.pv.PVUShortArray;
+import org.epics.pvdata.pv.ScalarType;
 import org.epics.pvdata.pv.ShortArrayData;
 import org.epics.pvdata.pv.StringArrayData;
+import org.epics.pvmarshaller.marshaller.metrics.MarshallerMetrics;
 
 /**
  * Deserialises a Scalar Array
@@ -62,6 +62,13 @@ public class ScalarArrayDeserialiser {
 	 */
 	public void deserialise(Object target, String fieldName, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
 		
+		MarshallerMetrics metrics = deserialiser.getMetrics();
+		if (metrics != MarshallerMetrics.NONE && pvField instanceof PVScalarArray) {
+			PVScalarArray pvArray = (PVScalarArray)pvField;
+			ScalarType type = pvArray.getScalarArray().getElementType();
+			metrics.primitiveArrayDeserialised(type, pvArray.getLength(), MarshallerMetrics.getPayloadBytes(type, pvArray.getLength()));
+		}
+		
 		if (pvField instanceof PVIntArray) {
 			PVIntArray bpvField = (PVIntArray)pvField;
 			setIntArrayValue(target, fieldName, bpvField);
@@ -111,33 +118,21 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setIntArrayValue(Object target, String variableName, PVIntArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		int dataArray[] = new int[bpvField.getLength()];
-		IntArrayData intArrayData = new IntArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		int gotArray[];
+		SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, variableName);
 		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, intArrayData);
-			totalGot += numGot;
-			gotArray = intArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[intArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterDescriptor == null) {
 			return;
 		}
 		
-		Parameter parameters[] = method.getParameters();
+		Method method = setterDescriptor.getSetter();
+		Class<?> parameterType = setterDescriptor.getParameterType();
+		
+		// The data only needs to be copied if the array itself is passed to the setter and sharing is off
+		boolean share = deserialiser.getShareArrayData() || !parameterType.equals(int[].class);
+		int dataArray[] = getIntArray(bpvField, share);
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (parameterType.isArray()) {
+			Class<?> componentType = parameterType.getComponentType();
 			
 			if (componentType.equals(int.class)) {
 				method.invoke(target, dataArray);
@@ -151,12 +146,12 @@ public class ScalarArrayDeserialiser {
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
+		} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
 			List<Integer> list;
-			if (parameters[0].getType().isInterface()) {
+			if (parameterType.isInterface()) {
 				list = new ArrayList<Integer>();
 			} else {
-				list = (List) parameters[0].getType().newInstance();
+				list = (List) parameterType.newInstance();
 			}
 			
 			for (int integer : dataArray) {
@@ -180,33 +175,21 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setShortArrayValue(Object target, String variableName, PVShortArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		short dataArray[] = new short[bpvField.getLength()];
-		ShortArrayData shortArrayData = new ShortArrayData();
+		SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, variableName);
 		
-		int numGot = 0;
-		int totalGot = 0;
-		short gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, shortArrayData);
-			totalGot += numGot;
-			gotArray = shortArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[shortArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterDescriptor == null) {
 			return;
 		}
 		
-		Parameter parameters[] = method.getParameters();
+		Method method = setterDescriptor.getSetter();
+		Class<?> parameterType = setterDescriptor.getParameterType();
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		// The data only needs to be copied if the array itself is passed to the setter and sharing is off
+		boolean share = deserialiser.getShareArrayData() || !parameterType.equals(short[].class);
+		short dataArray[] = getShortArray(bpvField, share);
+		
+		if (parameterType.isArray()) {
+			Class<?> componentType = parameterType.getComponentType();
 			
 			if (componentType.equals(short.class)) {
 				method.invoke(target, dataArray);
@@ -220,12 +203,12 @@ public class ScalarArrayDeserialiser {
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
+		} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
 			List<Short> list;
-			if (parameters[0].getType().isInterface()) {
+			if (parameterType.isInterface()) {
 				list = new ArrayList<Short>();
 			} else {
-				list = (List) parameters[0].getType().newInstance();
+				list = (List) parameterType.newInstance();
 			}
 			for (short shortValue : dataArray) {
 				list.add(shortValue);
@@ -248,33 +231,21 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setLongArrayValue(Object target, String variableName, PVLongArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		long dataArray[] = new long[bpvField.getLength()];
-		LongArrayData longArrayData = new LongArrayData();
+		SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, variableName);
 		
-		int numGot = 0;
-		int totalGot = 0;
-		long gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, longArrayData);
-			totalGot += numGot;
-			gotArray = longArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[longArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterDescriptor == null) {
 			return;
 		}
 		
-		Parameter parameters[] = method.getParameters();
+		Method method = setterDescriptor.getSetter();
+		Class<?> parameterType = setterDescriptor.getParameterType();
+		
+		// The data only needs to be copied if the array itself is passed to the setter and sharing is off
+		boolean share = deserialiser.getShareArrayData() || !parameterType.equals(long[].class);
+		long dataArray[] = getLongArray(bpvField, share);
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (parameterType.isArray()) {
+			Class<?> componentType = parameterType.getComponentType();
 			
 			if (componentType.equals(long.class)) {
 				method.invoke(target, dataArray);
@@ -288,12 +259,12 @@ public class ScalarArrayDeserialiser {
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
+		} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
 			List<Long> list;
-			if (parameters[0].getType().isInterface()) {
+			if (parameterType.isInterface()) {
 				list = new ArrayList<Long>();
 			} else {
-				list = (List) parameters[0].getType().newInstance();
+				list = (List) parameterType.newInstance();
 			}
 			for (long longValue : dataArray) {
 				list.add(longValue);
@@ -316,33 +287,21 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setByteArrayValue(Object target, String variableName, PVByteArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		byte dataArray[] = new byte[bpvField.getLength()];
-		ByteArrayData byteArrayData = new ByteArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		byte gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, byteArrayData);
-			totalGot += numGot;
-			gotArray = byteArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[byteArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
+		SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, variableName);
 		
-		if (method == null) {
+		if (setterDescriptor == null) {
 			return;
 		}
 		
-		Parameter parameters[] = method.getParameters();
+		Method method = setterDescriptor.getSetter();
+		Class<?> parameterType = setterDescriptor.getParameterType();
+		
+		// The data only needs to be copied if the array itself is passed to the setter and sharing is off
+		boolean share = deserialiser.getShareArrayData() || !parameterType.equals(byte[].class);
+		byte dataArray[] = getByteArray(bpvField, share);
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (parameterType.isArray()) {
+			Class<?> componentType = parameterType.getComponentType();
 			
 			if (componentType.equals(byte.class)) {
 				method.invoke(target, dataArray);
@@ -356,12 +315,12 @@ public class ScalarArrayDeserialiser {
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
+		} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
 			List<Byte> list;
-			if (parameters[0].getType().isInterface()) {
+			if (parameterType.isInterface()) {
 				list = new ArrayList<Byte>();
 			} else {
-				list = (List) parameters[0].getType().newInstance();
+				list = (List) parameterType.newInstance();
 			}
 			for (byte byteValue : dataArray) {
 				list.add(byteValue);
@@ -384,33 +343,21 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setBooleanArrayValue(Object target, String variableName, PVBooleanArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		boolean dataArray[] = new boolean[bpvField.getLength()];
-		BooleanArrayData booleanArrayData = new BooleanArrayData();
+		SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, variableName);
 		
-		int numGot = 0;
-		int totalGot = 0;
-		boolean gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, booleanArrayData);
-			totalGot += numGot;
-			gotArray = booleanArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[booleanArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
-		
-		if (method == null) {
+		if (setterDescriptor == null) {
 			return;
 		}
 		
-		Parameter parameters[] = method.getParameters();
+		Method method = setterDescriptor.getSetter();
+		Class<?> parameterType = setterDescriptor.getParameterType();
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		// The data only needs to be copied if the array itself is passed to the setter and sharing is off
+		boolean share = deserialiser.getShareArrayData() || !parameterType.equals(boolean[].class);
+		boolean dataArray[] = getBooleanArray(bpvField, share);
+		
+		if (parameterType.isArray()) {
+			Class<?> componentType = parameterType.getComponentType();
 			
 			if (componentType.equals(boolean.class)) {
 				method.invoke(target, dataArray);
@@ -424,12 +371,12 @@ public class ScalarArrayDeserialiser {
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
+		} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
 			List<Boolean> list;
-			if (parameters[0].getType().isInterface()) {
+			if (parameterType.isInterface()) {
 				list = new ArrayList<Boolean>();
 			} else {
-				list = (List) parameters[0].getType().newInstance();
+				list = (List) parameterType.newInstance();
 			}
 			for (boolean booleanValue : dataArray) {
 				list.add(booleanValue);
@@ -452,33 +399,21 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setFloatArrayValue(Object target, String variableName, PVFloatArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		float dataArray[] = new float[bpvField.getLength()];
-		FloatArrayData floatArrayData = new FloatArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		float gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, floatArrayData);
-			totalGot += numGot;
-			gotArray = floatArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[floatArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
+		SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, variableName);
 		
-		if (method == null) {
+		if (setterDescriptor == null) {
 			return;
 		}
 		
-		Parameter parameters[] = method.getParameters();
+		Method method = setterDescriptor.getSetter();
+		Class<?> parameterType = setterDescriptor.getParameterType();
+		
+		// The data only needs to be copied if the array itself is passed to the setter and sharing is off
+		boolean share = deserialiser.getShareArrayData() || !parameterType.equals(float[].class);
+		float dataArray[] = getFloatArray(bpvField, share);
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (parameterType.isArray()) {
+			Class<?> componentType = parameterType.getComponentType();
 			
 			if (componentType.equals(float.class)) {
 				method.invoke(target, dataArray);
@@ -492,12 +427,12 @@ public class ScalarArrayDeserialiser {
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
+		} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
 			List<Float> list;
-			if (parameters[0].getType().isInterface()) {
+			if (parameterType.isInterface()) {
 				list = new ArrayList<Float>();
 			} else {
-				list = (List) parameters[0].getType().newInstance();
+				list = (List) parameterType.newInstance();
 			}
 			for (float floatValue : dataArray) {
 				list.add(floatValue);
@@ -520,33 +455,21 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setDoubleArrayValue(Object target, String variableName, PVDoubleArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, InstantiationException {
 		
-		double dataArray[] = new double[bpvField.getLength()];
-		DoubleArrayData doubleArrayData = new DoubleArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		double gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, doubleArrayData);
-			totalGot += numGot;
-			gotArray = doubleArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[doubleArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
+		SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, variableName);
 		
-		if (method == null) {
+		if (setterDescriptor == null) {
 			return;
 		}
 		
-		Parameter parameters[] = method.getParameters();
+		Method method = setterDescriptor.getSetter();
+		Class<?> parameterType = setterDescriptor.getParameterType();
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		// The data only needs to be copied if the array itself is passed to the setter and sharing is off
+		boolean share = deserialiser.getShareArrayData() || !parameterType.equals(double[].class);
+		double dataArray[] = getDoubleArray(bpvField, share);
+		
+		if (parameterType.isArray()) {
+			Class<?> componentType = parameterType.getComponentType();
 			
 			if (componentType.equals(double.class)) {
 				method.invoke(target, dataArray);
@@ -560,12 +483,12 @@ public class ScalarArrayDeserialiser {
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
+		} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
 			List<Double> list;
-			if (parameters[0].getType().isInterface()) {
+			if (parameterType.isInterface()) {
 				list = new ArrayList<Double>();
 			} else {
-				list = (List) parameters[0].getType().newInstance();
+				list = (List) parameterType.newInstance();
 			}
 			for (double doubleValue : dataArray) {
 				list.add(doubleValue);
@@ -588,33 +511,21 @@ public class ScalarArrayDeserialiser {
 	 */
 	private void setStringArrayValue(Object target, String variableName, PVStringArray bpvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException, NoSuchFieldException, SecurityException, InstantiationException {
 		
-		String dataArray[] = new String[bpvField.getLength()];
-		StringArrayData StringArrayData = new StringArrayData();
-		
-		int numGot = 0;
-		int totalGot = 0;
-		String gotArray[];
-		
-		while (totalGot < bpvField.getLength()) {
-			numGot = bpvField.get(totalGot, bpvField.getLength() - totalGot, StringArrayData);
-			totalGot += numGot;
-			gotArray = StringArrayData.data;
-			
-			for (int i = 0; i < numGot; i++) {
-				dataArray[StringArrayData.offset + i] = gotArray[i];
-			}
-		}
-		
-		Method method = deserialiser.findSetter(target, variableName);
+		SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, variableName);
 		
-		if (method == null) {
+		if (setterDescriptor == null) {
 			return;
 		}
 		
-		Parameter parameters[] = method.getParameters();
+		Method method = setterDescriptor.getSetter();
+		Class<?> parameterType = setterDescriptor.getParameterType();
+		
+		// The data only needs to be copied if the array itself is passed to the setter and sharing is off
+		boolean share = deserialiser.getShareArrayData() || !parameterType.equals(String[].class);
+		String dataArray[] = getStringArray(bpvField, share);
 		
-		if (parameters[0].getType().isArray()) {
-			Class<?> componentType = parameters[0].getType().getComponentType();
+		if (parameterType.isArray()) {
+			Class<?> componentType = parameterType.getComponentType();
 			
 			if (componentType.equals(String.class)) {
 				method.invoke(target, (Object)dataArray);
@@ -636,15 +547,15 @@ public class ScalarArrayDeserialiser {
 			} else {
 				throw new IllegalArgumentException("Unknown setter type");
 			}
-		} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-            Class<?> listClass = getListFieldClass(target, variableName);
+		} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
+            Class<?> listClass = ContainerFunctions.getListFieldClass(setterDescriptor.getFieldGenericType());
             
             if (listClass.equals(String.class)) {
     			List<String> list;
-    			if (parameters[0].getType().isInterface()) {
+    			if (parameterType.isInterface()) {
     				list = new ArrayList<String>();
     			} else {
-    				list = (List) parameters[0].getType().newInstance();
+    				list = (List) parameterType.newInstance();
     			}
 				for (String StringValue : dataArray) {
 					list.add(StringValue);
@@ -652,10 +563,10 @@ public class ScalarArrayDeserialiser {
 				method.invoke(target, list);
 			} else if (listClass.equals(Character.class)) {
 				List<Character> list;
-				if (parameters[0].getType().isInterface()) {
+				if (parameterType.isInterface()) {
 					list = new ArrayList<Character>();
 				} else {
-					list = (List) parameters[0].getType().newInstance();
+					list = (List) parameterType.newInstance();
 				}
 				for (String stringValue : dataArray) {
 					if (stringValue.length() > 1) {
@@ -673,31 +584,210 @@ public class ScalarArrayDeserialiser {
 	}
 	
 	/**
-	 * Gets the type of field of a list in a parent object
-	 * @param object The object to check
-	 * @param variableName The name of the field
-	 * @return
-	 * @throws NoSuchFieldException
+	 * Gets the contents of an int array field. If the field's backing array holds exactly its contents, it is either
+	 * returned directly or copied with a single clone, otherwise the contents are copied in chunks
+	 * @param bpvField The array to get data from
+	 * @param share True to return the backing array itself when possible, instead of a copy
+	 * @return The contents of the field
 	 */
-	private static Class<?> getListFieldClass(Object object, String variableName) throws NoSuchFieldException {
-		Class<?> clazz = object.getClass();
-		while (clazz != Object.class)  {
-			try {
-				java.lang.reflect.Field listField = clazz.getDeclaredField(variableName);
-				Type listFieldType = listField.getGenericType();
-				if (listFieldType instanceof ParameterizedType) {
-		            ParameterizedType listType = (ParameterizedType) listFieldType;
-		            Class<?> listClass = (Class<?>) listType.getActualTypeArguments()[0];
-		            return listClass;
-				} else {
-					// No type info on list so assume Object
-					return Object.class;
-				}
-			} catch (NoSuchFieldException ex) {
-				
-			}
-		    clazz = clazz.getSuperclass();
+	public static int[] getIntArray(PVIntArray bpvField, boolean share) {
+		int length = bpvField.getLength();
+		IntArrayData arrayData = new IntArrayData();
+		int numGot = bpvField.get(0, length, arrayData);
+		
+		if (numGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return share ? arrayData.data : arrayData.data.clone();
+		}
+		
+		int dataArray[] = new int[length];
+		int totalGot = 0;
+		while (numGot > 0) {
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+			numGot = (totalGot < length) ? bpvField.get(totalGot, length - totalGot, arrayData) : 0;
+		}
+		return dataArray;
+	}
+
+	/**
+	 * Gets the contents of a short array field. If the field's backing array holds exactly its contents, it is either
+	 * returned directly or copied with a single clone, otherwise the contents are copied in chunks
+	 * @param bpvField The array to get data from
+	 * @param share True to return the backing array itself when possible, instead of a copy
+	 * @return The contents of the field
+	 */
+	public static short[] getShortArray(PVShortArray bpvField, boolean share) {
+		int length = bpvField.getLength();
+		ShortArrayData arrayData = new ShortArrayData();
+		int numGot = bpvField.get(0, length, arrayData);
+		
+		if (numGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return share ? arrayData.data : arrayData.data.clone();
+		}
+		
+		short dataArray[] = new short[length];
+		int totalGot = 0;
+		while (numGot > 0) {
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+			numGot = (totalGot < length) ? bpvField.get(totalGot, length - totalGot, arrayData) : 0;
+		}
+		return dataArray;
+	}
+
+	/**
+	 * Gets the contents of a long array field. If the field's backing array holds exactly its contents, it is either
+	 * returned directly or copied with a single clone, otherwise the contents are copied in chunks
+	 * @param bpvField The array to get data from
+	 * @param share True to return the backing array itself when possible, instead of a copy
+	 * @return The contents of the field
+	 */
+	public static long[] getLongArray(PVLongArray bpvField, boolean share) {
+		int length = bpvField.getLength();
+		LongArrayData arrayData = new LongArrayData();
+		int numGot = bpvField.get(0, length, arrayData);
+		
+		if (numGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return share ? arrayData.data : arrayData.data.clone();
+		}
+		
+		long dataArray[] = new long[length];
+		int totalGot = 0;
+		while (numGot > 0) {
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+			numGot = (totalGot < length) ? bpvField.get(totalGot, length - totalGot, arrayData) : 0;
+		}
+		return dataArray;
+	}
+
+	/**
+	 * Gets the contents of a byte array field. If the field's backing array holds exactly its contents, it is either
+	 * returned directly or copied with a single clone, otherwise the contents are copied in chunks
+	 * @param bpvField The array to get data from
+	 * @param share True to return the backing array itself when possible, instead of a copy
+	 * @return The contents of the field
+	 */
+	public static byte[] getByteArray(PVByteArray bpvField, boolean share) {
+		int length = bpvField.getLength();
+		ByteArrayData arrayData = new ByteArrayData();
+		int numGot = bpvField.get(0, length, arrayData);
+		
+		if (numGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return share ? arrayData.data : arrayData.data.clone();
+		}
+		
+		byte dataArray[] = new byte[length];
+		int totalGot = 0;
+		while (numGot > 0) {
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+			numGot = (totalGot < length) ? bpvField.get(totalGot, length - totalGot, arrayData) : 0;
+		}
+		return dataArray;
+	}
+
+	/**
+	 * Gets the contents of a boolean array field. If the field's backing array holds exactly its contents, it is either
+	 * returned directly or copied with a single clone, otherwise the contents are copied in chunks
+	 * @param bpvField The array to get data from
+	 * @param share True to return the backing array itself when possible, instead of a copy
+	 * @return The contents of the field
+	 */
+	public static boolean[] getBooleanArray(PVBooleanArray bpvField, boolean share) {
+		int length = bpvField.getLength();
+		BooleanArrayData arrayData = new BooleanArrayData();
+		int numGot = bpvField.get(0, length, arrayData);
+		
+		if (numGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return share ? arrayData.data : arrayData.data.clone();
+		}
+		
+		boolean dataArray[] = new boolean[length];
+		int totalGot = 0;
+		while (numGot > 0) {
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+			numGot = (totalGot < length) ? bpvField.get(totalGot, length - totalGot, arrayData) : 0;
+		}
+		return dataArray;
+	}
+
+	/**
+	 * Gets the contents of a float array field. If the field's backing array holds exactly its contents, it is either
+	 * returned directly or copied with a single clone, otherwise the contents are copied in chunks
+	 * @param bpvField The array to get data from
+	 * @param share True to return the backing array itself when possible, instead of a copy
+	 * @return The contents of the field
+	 */
+	public static float[] getFloatArray(PVFloatArray bpvField, boolean share) {
+		int length = bpvField.getLength();
+		FloatArrayData arrayData = new FloatArrayData();
+		int numGot = bpvField.get(0, length, arrayData);
+		
+		if (numGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return share ? arrayData.data : arrayData.data.clone();
+		}
+		
+		float dataArray[] = new float[length];
+		int totalGot = 0;
+		while (numGot > 0) {
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+			numGot = (totalGot < length) ? bpvField.get(totalGot, length - totalGot, arrayData) : 0;
+		}
+		return dataArray;
+	}
+
+	/**
+	 * Gets the contents of a double array field. If the field's backing array holds exactly its contents, it is either
+	 * returned directly or copied with a single clone, otherwise the contents are copied in chunks
+	 * @param bpvField The array to get data from
+	 * @param share True to return the backing array itself when possible, instead of a copy
+	 * @return The contents of the field
+	 */
+	public static double[] getDoubleArray(PVDoubleArray bpvField, boolean share) {
+		int length = bpvField.getLength();
+		DoubleArrayData arrayData = new DoubleArrayData();
+		int numGot = bpvField.get(0, length, arrayData);
+		
+		if (numGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return share ? arrayData.data : arrayData.data.clone();
+		}
+		
+		double dataArray[] = new double[length];
+		int totalGot = 0;
+		while (numGot > 0) {
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+			numGot = (totalGot < length) ? bpvField.get(totalGot, length - totalGot, arrayData) : 0;
+		}
+		return dataArray;
+	}
+
+	/**
+	 * Gets the contents of a String array field. If the field's backing array holds exactly its contents, it is either
+	 * returned directly or copied with a single clone, otherwise the contents are copied in chunks
+	 * @param bpvField The array to get data from
+	 * @param share True to return the backing array itself when possible, instead of a copy
+	 * @return The contents of the field
+	 */
+	public static String[] getStringArray(PVStringArray bpvField, boolean share) {
+		int length = bpvField.getLength();
+		StringArrayData arrayData = new StringArrayData();
+		int numGot = bpvField.get(0, length, arrayData);
+		
+		if (numGot == length && arrayData.offset == 0 && arrayData.data.length == length) {
+			return share ? arrayData.data : arrayData.data.clone();
+		}
+		
+		String dataArray[] = new String[length];
+		int totalGot = 0;
+		while (numGot > 0) {
+			System.arraycopy(arrayData.data, arrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+			numGot = (totalGot < length) ? bpvField.get(totalGot, length - totalGot, arrayData) : 0;
 		}
-		throw new NoSuchFieldException("Unable to find field for " + variableName + " in class " + object.getClass());
+		return dataArray;
 	}
 }
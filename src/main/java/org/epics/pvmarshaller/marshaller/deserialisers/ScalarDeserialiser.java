@@ -2,7 +2,6 @@ package org.epics.pvmarshaller.marshaller.deserialisers;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 
 import org.epics.pvdata.pv.PVBoolean;
 import org.epics.pvdata.pv.PVByte;
@@ -11,12 +10,10 @@ import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVFloat;
 import org.epics.pvdata.pv.PVInt;
 import org.epics.pvdata.pv.PVLong;
+import org.epics.pvdata.pv.PVScalar;
 import org.epics.pvdata.pv.PVShort;
 import org.epics.pvdata.pv.PVString;
-import org.epics.pvdata.pv.PVUByte;
-import org.epics.pvdata.pv.PVUInt;
-import org.epics.pvdata.pv.PVULong;
-import org.epics.pvdata.pv.PVUShort;
+import org.epics.pvmarshaller.marshaller.serialisers.ScalarKind;
 
 /**
  * Deserialise a Scalar value
@@ -46,39 +43,44 @@ public class ScalarDeserialiser {
 	 */
 	public void deserialise(Object target, String fieldName, PVField pvField) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
 		
-		if (pvField instanceof PVInt) {
-			PVInt bpvField = (PVInt)pvField;
-			setValue(target, fieldName, bpvField.get());
-		} else if (pvField instanceof PVShort) {
-			PVShort bpvField = (PVShort)pvField;
-			setValue(target, fieldName, bpvField.get());
-		} else if (pvField instanceof PVLong) {
-			PVLong bpvField = (PVLong)pvField;
-			setValue(target, fieldName, bpvField.get());
-		} else if (pvField instanceof PVByte) {
-			PVByte bpvField = (PVByte)pvField;
-			setValue(target, fieldName, bpvField.get());
-		} else if (pvField instanceof PVBoolean) {
-			PVBoolean bpvField = (PVBoolean)pvField;
-			setValue(target, fieldName, bpvField.get());
-		} else if (pvField instanceof PVFloat) {
-			PVFloat bpvField = (PVFloat)pvField;
-			setValue(target, fieldName, bpvField.get());
-		} else if (pvField instanceof PVDouble) {
-			PVDouble bpvField = (PVDouble)pvField;
-			setValue(target, fieldName, bpvField.get());
-		} else if (pvField instanceof PVString) {
-			PVString bpvField = (PVString)pvField;
-			setStringValue(target, fieldName, bpvField.get());
-		} else if (pvField instanceof PVUInt) {
+		if (!(pvField instanceof PVScalar)) {
+			throw new IllegalArgumentException("Unsupported field type for " + fieldName);
+		}
+
+		switch (((PVScalar)pvField).getScalar().getScalarType()) {
+		case pvInt:
+			setValue(target, fieldName, ((PVInt)pvField).get());
+			break;
+		case pvShort:
+			setValue(target, fieldName, ((PVShort)pvField).get());
+			break;
+		case pvLong:
+			setValue(target, fieldName, ((PVLong)pvField).get());
+			break;
+		case pvByte:
+			setValue(target, fieldName, ((PVByte)pvField).get());
+			break;
+		case pvBoolean:
+			setValue(target, fieldName, ((PVBoolean)pvField).get());
+			break;
+		case pvFloat:
+			setValue(target, fieldName, ((PVFloat)pvField).get());
+			break;
+		case pvDouble:
+			setValue(target, fieldName, ((PVDouble)pvField).get());
+			break;
+		case pvString:
+			setStringValue(target, fieldName, ((PVString)pvField).get());
+			break;
+		case pvUInt:
 			throw new IllegalArgumentException("Field type of Unsigned Int is not supported (" + fieldName + ")");
-		} else if (pvField instanceof PVUShort) {
+		case pvUShort:
 			throw new IllegalArgumentException("Field type of Unsigned Short is not supported (" + fieldName + ")");
-		} else if (pvField instanceof PVULong) {
+		case pvULong:
 			throw new IllegalArgumentException("Field type of Unsigned Long is not supported (" + fieldName + ")");
-		} else if (pvField instanceof PVUByte) {
+		case pvUByte:
 			throw new IllegalArgumentException("Field type of Unsigned Byte is not supported (" + fieldName + ")");
-		} else {
+		default:
 			throw new IllegalArgumentException("Unsupported field type for " + fieldName);
 		}
 	}
@@ -94,39 +96,36 @@ public class ScalarDeserialiser {
 	 */
 	public Object deserialise(PVField pvField, Class<?> componentType) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
 
-		if (pvField instanceof PVInt) {
-			PVInt bpvField = (PVInt)pvField;
-			return bpvField.get();
-		} else if (pvField instanceof PVShort) {
-			PVShort bpvField = (PVShort)pvField;
-			return bpvField.get();
-		} else if (pvField instanceof PVLong) {
-			PVLong bpvField = (PVLong)pvField;
-			return bpvField.get();
-		} else if (pvField instanceof PVByte) {
-			PVByte bpvField = (PVByte)pvField;
-			return bpvField.get();
-		} else if (pvField instanceof PVBoolean) {
-			PVBoolean bpvField = (PVBoolean)pvField;
-			return bpvField.get();
-		} else if (pvField instanceof PVFloat) {
-			PVFloat bpvField = (PVFloat)pvField;
-			return bpvField.get();
-		} else if (pvField instanceof PVDouble) {
-			PVDouble bpvField = (PVDouble)pvField;
-			return bpvField.get();
-		} else if (pvField instanceof PVString) {
-			PVString bpvField = (PVString)pvField;
-			return getStringValue(bpvField.get(), componentType, pvField.getFieldName());
-		} else if (pvField instanceof PVUInt) {
+		if (!(pvField instanceof PVScalar)) {
+			throw new IllegalArgumentException("Unsupported field type for " + pvField.getFieldName());
+		}
+
+		switch (((PVScalar)pvField).getScalar().getScalarType()) {
+		case pvInt:
+			return ((PVInt)pvField).get();
+		case pvShort:
+			return ((PVShort)pvField).get();
+		case pvLong:
+			return ((PVLong)pvField).get();
+		case pvByte:
+			return ((PVByte)pvField).get();
+		case pvBoolean:
+			return ((PVBoolean)pvField).get();
+		case pvFloat:
+			return ((PVFloat)pvField).get();
+		case pvDouble:
+			return ((PVDouble)pvField).get();
+		case pvString:
+			return getStringValue(((PVString)pvField).get(), componentType, pvField.getFieldName());
+		case pvUInt:
 			throw new IllegalArgumentException("Field type of Unsigned Int is not supported (" + pvField.getFieldName() + ")");
-		} else if (pvField instanceof PVUShort) {
+		case pvUShort:
 			throw new IllegalArgumentException("Field type of Unsigned Short is not supported (" + pvField.getFieldName() + ")");
-		} else if (pvField instanceof PVULong) {
+		case pvULong:
 			throw new IllegalArgumentException("Field type of Unsigned Long is not supported (" + pvField.getFieldName() + ")");
-		} else if (pvField instanceof PVUByte) {
+		case pvUByte:
 			throw new IllegalArgumentException("Field type of Unsigned Byte is not supported (" + pvField.getFieldName() + ")");
-		} else {
+		default:
 			throw new IllegalArgumentException("Unsupported field type for " + pvField.getFieldName());
 		}
 	}
@@ -158,16 +157,15 @@ public class ScalarDeserialiser {
 	 */
 	private void setStringValue(Object target, String variableName, String value) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
 		// Determine if the object member is a string or a char
-		Method method = deserialiser.findSetter(target, variableName);
-		if (method != null) {
-			Parameter parameters[] = method.getParameters();
-			if (parameters[0].getType().equals(Character.class) || 
-				parameters[0].getType().equals(char.class)) {
+		SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, variableName);
+		if (setterDescriptor != null) {
+			Method method = setterDescriptor.getSetter();
+			Class<?> parameterType = setterDescriptor.getParameterType();
+			if (ScalarKind.of(parameterType) == ScalarKind.CHAR) {
 				if (value.length() > 1) {
 					throw new IllegalArgumentException(variableName + " has too many characters for a single char");
 				}
-				char charValue = value.charAt(0);
-				method.invoke(target, charValue);
+				method.invoke(target, getCharValue(value, parameterType));
 			} else {
 				method.invoke(target, value);
 			}
@@ -186,15 +184,27 @@ public class ScalarDeserialiser {
 	 */
 	private Object getStringValue(String value, Class<?> componentType, String variableName) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
 
-		if (componentType.equals(Character.class) || 
-				componentType.equals(char.class)) {
+		if (ScalarKind.of(componentType) == ScalarKind.CHAR) {
 			if (value.length() > 1) {
 				throw new IllegalArgumentException(variableName + " has too many characters for a single char");
 			}
-			char charValue = value.charAt(0);
-			return charValue;
+			return getCharValue(value, componentType);
 		} else {
 			return value;
 		}
 	}
+	
+	/**
+	 * Gets the char value of a string with at most one character. An empty string is the default value written for a
+	 * null Character in a Structure built from declared types, so it is null for Character and '\0' for char
+	 * @param value The source String value
+	 * @param type The char or Character class being deserialised into
+	 * @return
+	 */
+	private static Character getCharValue(String value, Class<?> type) {
+		if (value.isEmpty()) {
+			return type.isPrimitive() ? '\0' : null;
+		}
+		return value.charAt(0);
+	}
 }
@@ -0,0 +1,119 @@
+package org.epics.pvmarshaller.marshaller.deserialisers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+
+import org.epics.pvmarshaller.marshaller.accessors.AccessorBackend;
+import org.epics.pvmarshaller.marshaller.accessors.AccessorFactory;
+import org.epics.pvmarshaller.marshaller.accessors.Setter;
+
+/**
+ * Holds the resolved setter and field information for a named member of a class,
+ * so the reflection lookups only have to be done once per class and member name.
+ * If the class has neither a setter nor a field for the name, the setter and field are null.
+ * @author Matt Taylor
+ *
+ */
+public class SetterDescriptor {
+
+	private final Class<?> describedClass;
+	private final String name;
+	private final Method setter;
+	private final Setter accessor;
+	private final Class<?> parameterType;
+	private final Type genericParameterType;
+	private final Field field;
+
+	/**
+	 * Constructor
+	 * @param describedClass The class containing the member
+	 * @param name The name of the member
+	 * @param setter The setter method, or null if there isn't one
+	 * @param field The field with this name, or null if there isn't one
+	 * @param backend The backend used to call the setter
+	 */
+	public SetterDescriptor(Class<?> describedClass, String name, Method setter, Field field, AccessorBackend backend) {
+		this.describedClass = describedClass;
+		this.name = name;
+		this.setter = setter;
+		this.accessor = AccessorFactory.createSetter(setter, backend);
+		this.field = field;
+
+		if (setter != null) {
+			parameterType = setter.getParameterTypes()[0];
+			genericParameterType = setter.getGenericParameterTypes()[0];
+		} else {
+			parameterType = null;
+			genericParameterType = null;
+		}
+	}
+
+	/**
+	 * Gets the name of the member
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the setter method
+	 * @return the setter, or null if there isn't one
+	 */
+	public Method getSetter() {
+		return setter;
+	}
+
+	/**
+	 * Gets the accessor used to call the setter
+	 * @return the accessor, or null if there is no setter
+	 */
+	public Setter getAccessor() {
+		return accessor;
+	}
+
+	/**
+	 * Gets the type of the setter's parameter
+	 * @return the type, or null if there is no setter
+	 */
+	public Class<?> getParameterType() {
+		return parameterType;
+	}
+
+	/**
+	 * Gets the generic type of the setter's parameter
+	 * @return the type, or null if there is no setter
+	 */
+	public Type getGenericParameterType() {
+		return genericParameterType;
+	}
+
+	/**
+	 * Gets the field with the member name
+	 * @return the field, or null if there isn't one
+	 */
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * Gets the declared type of the field
+	 * @return the type, or null if there is no field
+	 */
+	public Class<?> getFieldType() {
+		return field == null ? null : field.getType();
+	}
+
+	/**
+	 * Gets the declared generic type of the field
+	 * @return the type
+	 * @throws NoSuchFieldException if there is no field with the member name
+	 */
+	public Type getFieldGenericType() throws NoSuchFieldException {
+		if (field == null) {
+			throw new NoSuchFieldException("Unable to find field for " + name + " in class " + describedClass);
+		}
+		return field.getGenericType();
+	}
+}
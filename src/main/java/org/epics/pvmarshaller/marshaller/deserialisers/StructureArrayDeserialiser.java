@@ -3,11 +3,11 @@ package org.epics.pvmarshaller.marshaller.deserialisers;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -43,63 +43,46 @@ public class StructureArrayDeserialiser {
 	public void deserialise(Object target, String fieldName, PVField pvField) throws Exception {
 		
 		if (pvField instanceof PVStructureArray) {
-			PVStructureArray structureArrayField = (PVStructureArray)pvField;
+			PVStructure dataArray[] = getStructures((PVStructureArray)pvField);
 			
-			PVStructure dataArray[] = new PVStructure[structureArrayField.getLength()];
-			StructureArrayData structureArrayData = new StructureArrayData();
+			SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, fieldName);
 			
-			int numGot = 0;
-			int totalGot = 0;
-			PVStructure gotArray[];
-			
-			while (totalGot < structureArrayField.getLength()) {
-				numGot = structureArrayField.get(numGot, structureArrayField.getLength() - numGot, structureArrayData);
-				totalGot += numGot;
-				gotArray = structureArrayData.data;
-				
-				for (int i = 0; i < numGot; i++) {
-					dataArray[structureArrayData.offset + i] = gotArray[i];
-				}
+			if (setterDescriptor == null) {
+				return;
 			}
 			
-			Method method = deserialiser.findSetter(target, fieldName);
-			
-			Parameter parameters[] = method.getParameters();
+			Method method = setterDescriptor.getSetter();
+			Class<?> parameterType = setterDescriptor.getParameterType();
 			
-			if (parameters[0].getType().isArray()) {
-				Class<?> componentType = parameters[0].getType().getComponentType();
+			if (parameterType.isArray()) {
+				Class<?> componentType = parameterType.getComponentType();
 				
 				Object newArray[] = (Object[])Array.newInstance(componentType, dataArray.length);
 				
-				for (int i = 0; i < dataArray.length; i++) {
-					PVStructure arrayPVStructure = dataArray[i];
-					Object newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
-					newArray[i] = newObject;
-				}
+				deserialiser.convertElements(newArray, i -> createElement(dataArray[i], componentType));
 				
 				method.invoke(target, (Object)newArray);
 				
-			} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-	            Class<?> listClass = ContainerFunctions.getListFieldClass(target, fieldName);
+			} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
+	            Class<?> listClass = ContainerFunctions.getListFieldClass(setterDescriptor.getFieldGenericType());
 
 				List list;
-				if (parameters[0].getType().isInterface()) {
-					list = new ArrayList<>();
+				if (parameterType.isInterface()) {
+					list = new ArrayList<>(dataArray.length);
 				} else {
-					list = (List) parameters[0].getType().newInstance();
+					list = (List) parameterType.newInstance();
 				}
 				
-				for (int i = 0; i < dataArray.length; i++) {
+				Object elements[] = new Object[dataArray.length];
+				deserialiser.convertElements(elements, i -> {
 					PVStructure arrayPVStructure = dataArray[i];
-					Object newObject;
-					if (Map.class.isAssignableFrom(listClass)) {
-						Type componentType = ContainerFunctions.getMapTypeFromListComponentParent(target, fieldName);
-						newObject = deserialiser.getMapDeserialiser().createMapFromPVStructure(arrayPVStructure, listClass, componentType);
-					} else {
-						newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, listClass);
+					if (arrayPVStructure != null && Map.class.isAssignableFrom(listClass)) {
+						Type componentType = ContainerFunctions.getMapTypeFromListFieldType(setterDescriptor.getFieldGenericType());
+						return deserialiser.getMapDeserialiser().createMapFromPVStructure(arrayPVStructure, listClass, componentType);
 					}
-					list.add(newObject);
-				}
+					return createElement(arrayPVStructure, listClass);
+				});
+				list.addAll(Arrays.asList(elements));
 				method.invoke(target, list);
 			} else {
 				throw new IllegalArgumentException("Unsupported container type");
@@ -117,35 +100,14 @@ public class StructureArrayDeserialiser {
 	public Object deserialise(PVField pvField, Type valueClass) throws Exception {
 		
 		if (pvField instanceof PVStructureArray) {
-			PVStructureArray structureArrayField = (PVStructureArray)pvField;
-			
-			PVStructure dataArray[] = new PVStructure[structureArrayField.getLength()];
-			StructureArrayData structureArrayData = new StructureArrayData();
-			
-			int numGot = 0;
-			int totalGot = 0;
-			PVStructure gotArray[];
-			
-			while (totalGot < structureArrayField.getLength()) {
-				numGot = structureArrayField.get(numGot, structureArrayField.getLength() - numGot, structureArrayData);
-				totalGot += numGot;
-				gotArray = structureArrayData.data;
-				
-				for (int i = 0; i < numGot; i++) {
-					dataArray[structureArrayData.offset + i] = gotArray[i];
-				}
-			}
+			PVStructure dataArray[] = getStructures((PVStructureArray)pvField);
 			
 			if (ContainerFunctions.isArray(valueClass)) {
 				Class<?> componentType = ContainerFunctions.getComponentType(valueClass);
 				
 				Object newArray[] = (Object[])Array.newInstance(componentType, dataArray.length);
 				
-				for (int i = 0; i < dataArray.length; i++) {
-					PVStructure arrayPVStructure = dataArray[i];
-					Object newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
-					newArray[i] = newObject;
-				}
+				deserialiser.convertElements(newArray, i -> createElement(dataArray[i], componentType));
 				
 				return (Object)newArray;
 				
@@ -155,16 +117,14 @@ public class StructureArrayDeserialiser {
 
 				List list;
 				if (ContainerFunctions.isInterface(listClass)) {
-					list = new ArrayList<>();
+					list = new ArrayList<>(dataArray.length);
 				} else {
 					list = (List) ((Class<?>)listClass).newInstance();
 				}
 				
-				for (int i = 0; i < dataArray.length; i++) {
-					PVStructure arrayPVStructure = dataArray[i];
-					Object newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
-					list.add(newObject);
-				}
+				Object elements[] = new Object[dataArray.length];
+				deserialiser.convertElements(elements, i -> createElement(dataArray[i], componentType));
+				list.addAll(Arrays.asList(elements));
 				return list;
 			} else {
 				throw new IllegalArgumentException("Unsupported container type");
@@ -172,4 +132,37 @@ public class StructureArrayDeserialiser {
 		}
 		return null;
 	}
+	
+	/**
+	 * Creates an element of an array or list from a PVStructure
+	 * @param arrayPVStructure The PVStructure
+	 * @param componentType The element type of the array or list
+	 * @return The element, or null if the PVStructure is null
+	 * @throws Exception
+	 */
+	private Object createElement(PVStructure arrayPVStructure, Class<?> componentType) throws Exception {
+		if (arrayPVStructure == null) {
+			return null;
+		}
+		return deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
+	}
+	
+	/**
+	 * Gets the elements of a structure array
+	 * @param structureArrayField The structure array
+	 * @return The elements, which may include nulls
+	 */
+	private static PVStructure[] getStructures(PVStructureArray structureArrayField) {
+		int length = structureArrayField.getLength();
+		PVStructure dataArray[] = new PVStructure[length];
+		StructureArrayData structureArrayData = new StructureArrayData();
+		
+		int totalGot = 0;
+		while (totalGot < length) {
+			int numGot = structureArrayField.get(totalGot, length - totalGot, structureArrayData);
+			System.arraycopy(structureArrayData.data, structureArrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
 }
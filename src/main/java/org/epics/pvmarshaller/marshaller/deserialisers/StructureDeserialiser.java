@@ -2,11 +2,16 @@ package org.epics.pvmarshaller.marshaller.deserialisers;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.epics.pvdata.factory.BasePVStructure;
-import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.DeserializableControl;
+import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Structure;
@@ -20,7 +25,10 @@ import org.epics.pvmarshaller.marshaller.api.IPVStructureDeserialiser;
 public class StructureDeserialiser {
 	
 	Map<String, IPVStructureDeserialiser> registeredDeserialisers = new LinkedHashMap<String, IPVStructureDeserialiser>();
+	Map<Class<?>, IPVStructureDeserialiser> generatedDeserialisers = new ConcurrentHashMap<Class<?>, IPVStructureDeserialiser>();
+	Map<Class<?>, ClassPlans> deserialisationPlans = new ConcurrentHashMap<Class<?>, ClassPlans>();
 	Deserialiser deserialiser;
+	PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
 	
 	/**
 	 * Constructor
@@ -65,12 +73,18 @@ public class StructureDeserialiser {
 		if (registeredDeserialisers.containsKey(id)) {
 			IPVStructureDeserialiser structureSeserialiser = registeredDeserialisers.get(id);
 			newObject = structureSeserialiser.fromPVStructure(deserialiser, pvStructure);
+			reportCustomDeserialiserUsed(newObject);
 		} else {
 			if ((objectClass == null) || (objectClass == Object.class)) {
 				objectClass = Map.class;
 			}
+			
+			IPVStructureDeserialiser generatedDeserialiser = generatedDeserialisers.get(objectClass);
 		
-			if (Map.class.isAssignableFrom(objectClass)) {
+			if (generatedDeserialiser != null) {
+				newObject = generatedDeserialiser.fromPVStructure(deserialiser, pvStructure);
+				reportCustomDeserialiserUsed(newObject);
+			} else if (Map.class.isAssignableFrom(objectClass)) {
 				return deserialiser.getMapDeserialiser().createMapFromPVStructure(pvStructure, objectClass, Object.class);
 			} else {
 			
@@ -79,41 +93,117 @@ public class StructureDeserialiser {
 				}
 				newObject = objectClass.newInstance();
 				
-				Structure structure = pvStructure.getStructure();
-				
-				Field pvFields[] = structure.getFields();
-				
-				for (int i = 0; i < pvFields.length; i++) {					
-					PVField pvField = pvStructure.getSubField(structure.getFieldName(i));
-					
-					switch (pvFields[i].getType()) {
-					case scalar:
-						deserialiser.getScalarDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case scalarArray:
-						deserialiser.getScalarArrayDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case structure:
-						deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case structureArray:
-						deserialiser.getStructureArrayDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case union:
-						deserialiser.getUnionDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					case unionArray:
-						deserialiser.getUnionArrayDeserialiser().deserialise(newObject, structure.getFieldName(i), pvField);
-						break;
-					default:
-						break;
-					}
-				}
+				getDeserialisationPlan(pvStructure.getStructure(), objectClass).apply(newObject, pvStructure);
 			}
 		}
 		return newObject;
 	}
 	
+	/**
+	 * Returns an object deserialised from data serialised from a PVStructure, reading it straight from the buffer
+	 * with the deserialisation plan for the Structure and class. Objects that have a custom deserialiser, and Maps,
+	 * are read into a PVStructure first
+	 * @param structure The Structure of the serialised PVStructure
+	 * @param objectClass The class of the target object
+	 * @param buffer The buffer to read from, positioned at the data of the first field
+	 * @param control The deserialisation control
+	 * @return The constructed object
+	 * @throws Exception
+	 */
+	public Object createObjectFromBuffer(Structure structure, Class<?> objectClass, ByteBuffer buffer, DeserializableControl control) throws Exception {
+		if (registeredDeserialisers.containsKey(structure.getID()) ||
+				objectClass == null || objectClass == Object.class ||
+				Map.class.isAssignableFrom(objectClass) ||
+				generatedDeserialisers.containsKey(objectClass)) {
+			PVStructure pvStructure = pvDataCreate.createPVStructure(structure);
+			pvStructure.deserialize(buffer, control);
+			return createObjectFromPVStructure(pvStructure, objectClass);
+		}
+		
+		if (objectClass.isInterface()) {
+			throw new IllegalArgumentException("Cannot create an instance of an interface (" + objectClass + ")");
+		}
+		Object newObject = objectClass.newInstance();
+		
+		getDeserialisationPlan(structure, objectClass).read(newObject, buffer, control);
+		return newObject;
+	}
+	
+	private void reportCustomDeserialiserUsed(Object newObject) {
+		if (newObject != null) {
+			deserialiser.getMetrics().customDeserialiserUsed(newObject.getClass());
+		}
+	}
+	
+	/**
+	 * Updates an existing object with the fields of the PVStructure whose offsets are set in the BitSet,
+	 * using the deserialisation plan for the object's class. Objects that can only be deserialised as a whole,
+	 * such as those with a custom deserialiser and Maps, are replaced with a new object if any of their fields have changed
+	 * @param pvStructure The PVStructure to get data from
+	 * @param changedFields The offsets of the changed fields
+	 * @param existingObject The object to update
+	 * @return The updated object, which is the existing object unless it had to be replaced
+	 * @throws Exception
+	 */
+	public Object updateObjectFromPVStructure(PVStructure pvStructure, BitSet changedFields, Object existingObject) throws Exception {
+		Class<?> objectClass = existingObject.getClass();
+		
+		if (registeredDeserialisers.containsKey(pvStructure.getStructure().getID()) ||
+				generatedDeserialisers.containsKey(objectClass) ||
+				Map.class.isAssignableFrom(objectClass)) {
+			int nextChange = changedFields.nextSetBit(pvStructure.getFieldOffset());
+			if (nextChange >= 0 && nextChange < pvStructure.getNextFieldOffset()) {
+				return createObjectFromPVStructure(pvStructure, objectClass);
+			}
+			return existingObject;
+		}
+		
+		getDeserialisationPlan(pvStructure.getStructure(), objectClass).applyChanged(existingObject, pvStructure, changedFields);
+		return existingObject;
+	}
+	
+	/**
+	 * Gets the deserialisation plan for the specified Structure and target class, compiling it the first
+	 * time the pair is seen. Repeated calls with the same Structure instance return the last plan used
+	 * for the class without comparing the Structure's fields
+	 * @param structure The Structure of the PVStructure to deserialise
+	 * @param objectClass The class of the target object
+	 * @return The plan
+	 */
+	public DeserialisationPlan getDeserialisationPlan(Structure structure, Class<?> objectClass) {
+		ClassPlans classPlans = deserialisationPlans.get(objectClass);
+		if (classPlans == null) {
+			classPlans = new ClassPlans();
+			ClassPlans existing = deserialisationPlans.putIfAbsent(objectClass, classPlans);
+			if (existing != null) {
+				classPlans = existing;
+			}
+		}
+		
+		DeserialisationPlan plan = classPlans.lastPlan;
+		if (plan != null && plan.getStructure() == structure) {
+			return plan;
+		}
+		
+		plan = classPlans.plans.get(structure);
+		if (plan == null) {
+			plan = new DeserialisationPlan(deserialiser, structure, objectClass);
+			DeserialisationPlan existing = classPlans.plans.putIfAbsent(structure, plan);
+			if (existing != null) {
+				plan = existing;
+			}
+		}
+		classPlans.lastPlan = plan;
+		return plan;
+	}
+	
+	/**
+	 * Removes all the compiled deserialisation plans, so they are recompiled when next used
+	 */
+	public void clearDeserialisationPlans() {
+		deserialisationPlans.clear();
+	}
+	
 	/**
 	 * Populates the target object with data from a PVField
 	 * @param target The target object
@@ -127,11 +217,16 @@ public class StructureDeserialiser {
 			BasePVStructure structureField = (BasePVStructure)pvField;
 			
 			// Find the type of the structure to be able to deserialise it. Check name and match?
-			Class<?> fieldClass = getClassFromFieldName(target, fieldName);
-			if (fieldClass != null) {
+			SetterDescriptor setterDescriptor = deserialiser.getSetterDescriptor(target.getClass(), fieldName);
+			Class<?> fieldClass = setterDescriptor.getFieldType();
+			if (fieldClass == null) {
+				if (deserialiser.getIgnoreUnknownFields() == false) {
+					throw new IllegalArgumentException("Unknown member: " + fieldName);
+				}
+			} else {
 				Object newObject;
 				if (Map.class.isAssignableFrom(fieldClass)) {
-					newObject = deserialiser.getMapDeserialiser().createMapFromPVStructure(structureField, target, fieldName);
+					newObject = deserialiser.getMapDeserialiser().createMapFromPVStructure(structureField, setterDescriptor);
 				} else {
 					newObject = createObjectFromPVStructure(structureField, fieldClass);
 				}
@@ -150,31 +245,38 @@ public class StructureDeserialiser {
 	}
 	
 	/**
-	 * Gets the class from a specified field in an object
-	 * @param target The object to get the field from
-	 * @param fieldName The name of the field
-	 * @return The class of the field
+	 * Returns whether every custom and generated deserialiser can be called from several threads at once
+	 * @return
 	 */
-	private Class<?> getClassFromFieldName(Object target, String fieldName) {
-		Class<?> foundClass = null;
-		
-		Class<?> currentClass = target.getClass();
-		
-		while (currentClass != Object.class) {
-			try {
-				java.lang.reflect.Field objectField = currentClass.getDeclaredField(fieldName);
-				foundClass = objectField.getType();
-			} catch (NoSuchFieldException e) {
-			} catch (SecurityException e) {
-				throw e;
+	public boolean areCustomDeserialisersThreadSafe() {
+		for (IPVStructureDeserialiser customDeserialiser : registeredDeserialisers.values()) {
+			if (!customDeserialiser.isThreadSafe()) {
+				return false;
 			}
-			currentClass = currentClass.getSuperclass();
 		}
-
-		if (foundClass == null && deserialiser.getIgnoreUnknownFields() == false) {
-			throw new IllegalArgumentException("Unknown member: " + fieldName);
+		for (IPVStructureDeserialiser customDeserialiser : generatedDeserialisers.values()) {
+			if (!customDeserialiser.isThreadSafe()) {
+				return false;
+			}
 		}
-		
-		return foundClass;
+		return true;
+	}
+	
+	/**
+	 * Adds a generated deserialiser to the register, used when deserialising into exactly the specified class
+	 * and the Structure ID has no custom deserialiser registered
+	 * @param clazz The target class to use the deserialiser for
+	 * @param deserialiser The deserialiser
+	 */
+	public void addGeneratedDeserialiser(Class<?> clazz, IPVStructureDeserialiser deserialiser) {
+		generatedDeserialisers.put(clazz, deserialiser);
+	}
+	
+	/**
+	 * The compiled plans for a single target class
+	 */
+	private static class ClassPlans {
+		final Map<Structure, DeserialisationPlan> plans = new ConcurrentHashMap<Structure, DeserialisationPlan>();
+		volatile DeserialisationPlan lastPlan;
 	}
 }
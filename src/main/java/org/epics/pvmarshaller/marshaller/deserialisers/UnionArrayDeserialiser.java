@@ -2,10 +2,10 @@ package org.epics.pvmarshaller.marshaller.deserialisers;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -43,96 +43,51 @@ public class UnionArrayDeserialiser {
 	 */
 	public void deserialise(Object target, String fieldName, PVField pvField) throws Exception {
 		if (pvField instanceof PVUnionArray) {
-			PVUnionArray unionArrayField = (PVUnionArray)pvField;
+			PVUnion dataArray[] = getUnions((PVUnionArray)pvField);
 			
-			PVUnion dataArray[] = new PVUnion[unionArrayField.getLength()];
-			UnionArrayData unionArrayData = new UnionArrayData();
+			SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, fieldName);
 			
-			int numGot = 0;
-			int totalGot = 0;
-			PVUnion gotArray[];
-			
-			while (totalGot < unionArrayField.getLength()) {
-				numGot = unionArrayField.get(numGot, unionArrayField.getLength() - numGot, unionArrayData);
-				totalGot += numGot;
-				gotArray = unionArrayData.data;
-				
-				for (int i = 0; i < numGot; i++) {
-					dataArray[unionArrayData.offset + i] = gotArray[i];
-				}
+			if (setterDescriptor == null) {
+				return;
 			}
 			
-			Method method = deserialiser.findSetter(target, fieldName);
+			Method method = setterDescriptor.getSetter();
+			Class<?> parameterType = setterDescriptor.getParameterType();
 			
-			Parameter parameters[] = method.getParameters();
-			
-			if (parameters[0].getType().isArray()) {
-				Class<?> componentType = parameters[0].getType().getComponentType();
+			if (parameterType.isArray()) {
+				Class<?> componentType = parameterType.getComponentType();
 				
 				Object newArray = Array.newInstance(componentType, dataArray.length);
 				
-				for (int i = 0; i < dataArray.length; i++) {
-					PVUnion arrayPVUnion = dataArray[i];
-					if (!arrayPVUnion.getUnion().isVariant()) {
-						throw new IllegalArgumentException("Regular unions are not supported");
-					}
-					PVField unionValue = arrayPVUnion.get();
-					if (unionValue instanceof PVScalar) {
-						Object newObject = deserialiser.getScalarDeserialiser().deserialise(unionValue, componentType);
-						Array.set(newArray, i, newObject);
-					} else if (unionValue instanceof PVScalarArray) {
-						throw new IllegalArgumentException("Union arrays of Scalar Arrays are not supported");
-					} else if (unionValue instanceof PVStructure) {
-						PVStructure arrayPVStructure = (PVStructure)unionValue;
-						Object newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
-						((Object[])newArray)[i] = newObject;
-					} else if (unionValue instanceof PVStructureArray) {
-						throw new IllegalArgumentException("Union arrays of Structure Arrays are not supported");
-					} else {
-						throw new IllegalArgumentException("Unsupported union type");
-					}
+				Object elements[] = new Object[dataArray.length];
+				deserialiser.convertElements(elements, i -> createElement(dataArray[i], componentType));
+				for (int i = 0; i < elements.length; i++) {
+					Array.set(newArray, i, elements[i]);
 				}
 				
 				method.invoke(target, (Object)newArray);
 				
-			} else if (List.class.isAssignableFrom(parameters[0].getType()) || parameters[0].getType().equals(Collection.class)) {
-	            Class<?> listClass = ContainerFunctions.getListFieldClass(target, fieldName);
+			} else if (List.class.isAssignableFrom(parameterType) || parameterType.equals(Collection.class)) {
+	            Class<?> listClass = ContainerFunctions.getListFieldClass(setterDescriptor.getFieldGenericType());
 
 				List list;
-				if (parameters[0].getType().isInterface()) {
-					list = new ArrayList<>();
+				if (parameterType.isInterface()) {
+					list = new ArrayList<>(dataArray.length);
 				} else {
-					list = (List) parameters[0].getType().newInstance();
+					list = (List) parameterType.newInstance();
 				}
 				
-				for (int i = 0; i < dataArray.length; i++) {
+				Object elements[] = new Object[dataArray.length];
+				deserialiser.convertElements(elements, i -> {
 					PVUnion arrayPVUnion = dataArray[i];
-					if (!arrayPVUnion.getUnion().isVariant()) {
-						throw new IllegalArgumentException("Regular unions are not supported");
-					}
-					Object newObject = null;
-					
 					PVField unionValue = arrayPVUnion.get();
-					if (unionValue instanceof PVScalar) {
-						newObject = deserialiser.getScalarDeserialiser().deserialise(unionValue, listClass);
-					} else if (unionValue instanceof PVScalarArray) {
-						throw new IllegalArgumentException("Union arrays of Scalar Arrays are not supported");
-					} else if (unionValue instanceof PVStructure) {
-						PVStructure arrayPVStructure = (PVStructure)unionValue;
-						if (Map.class.isAssignableFrom(listClass)) {
-							Type componentType = ContainerFunctions.getMapTypeFromListComponentParent(target, fieldName);
-							newObject = deserialiser.getMapDeserialiser().createMapFromPVStructure(arrayPVStructure, listClass, componentType);
-						} else {
-							newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, listClass);
-						}
-					} else if (unionValue instanceof PVStructureArray) {
-						throw new IllegalArgumentException("Union arrays of Structure Arrays are not supported");
-					} else {
-						throw new IllegalArgumentException("Unsupported union type");
+					if ((unionValue instanceof PVStructure) && Map.class.isAssignableFrom(listClass)) {
+						Type componentType = ContainerFunctions.getMapTypeFromListFieldType(setterDescriptor.getFieldGenericType());
+						return deserialiser.getMapDeserialiser().createMapFromPVStructure((PVStructure)unionValue, listClass, componentType);
 					}
-										
-					list.add(newObject);
-				}
+					return createElement(arrayPVUnion, listClass);
+				});
+				list.addAll(Arrays.asList(elements));
 				method.invoke(target, list);
 			} else {
 				throw new IllegalArgumentException("Unsupported container type");
@@ -149,94 +104,38 @@ public class UnionArrayDeserialiser {
 	 */
 	public Object deserialise(PVField pvField, Type valueClass) throws Exception {
 		if (pvField instanceof PVUnionArray) {
-			PVUnionArray unionArrayField = (PVUnionArray)pvField;
-			
-			PVUnion dataArray[] = new PVUnion[unionArrayField.getLength()];
-			UnionArrayData unionArrayData = new UnionArrayData();
-			
-			int numGot = 0;
-			int totalGot = 0;
-			PVUnion gotArray[];
-			
-			while (totalGot < unionArrayField.getLength()) {
-				numGot = unionArrayField.get(numGot, unionArrayField.getLength() - numGot, unionArrayData);
-				totalGot += numGot;
-				gotArray = unionArrayData.data;
-				
-				for (int i = 0; i < numGot; i++) {
-					dataArray[unionArrayData.offset + i] = gotArray[i];
-				}
-			}
+			PVUnion dataArray[] = getUnions((PVUnionArray)pvField);
 			
 			if (ContainerFunctions.isArray(valueClass)) {
 				Class<?> componentType = ContainerFunctions.getComponentType(valueClass);
 				
 				Object newArray = Array.newInstance(componentType, dataArray.length);
 				
-				for (int i = 0; i < dataArray.length; i++) {
-					PVUnion arrayPVUnion = dataArray[i];
-					if (!arrayPVUnion.getUnion().isVariant()) {
-						throw new IllegalArgumentException("Regular unions are not supported");
-					}
-					PVField unionValue = arrayPVUnion.get();
-					if (unionValue instanceof PVScalar) {
-						Object newObject = deserialiser.getScalarDeserialiser().deserialise(unionValue, componentType);
-						Array.set(newArray, i, newObject);
-						//throw new IllegalArgumentException("Union arrays of Scalars are not supported");
-					} else if (unionValue instanceof PVScalarArray) {
-						throw new IllegalArgumentException("Union arrays of Scalar Arrays are not supported");
-					} else if (unionValue instanceof PVStructure) {
-						PVStructure arrayPVStructure = (PVStructure)unionValue;
-						Object newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
-						((Object[])newArray)[i] = newObject;
-					} else if (unionValue instanceof PVStructureArray) {
-						throw new IllegalArgumentException("Union arrays of Structure Arrays are not supported");
-					} else {
-						throw new IllegalArgumentException("Unsupported union type");
-					}
+				Object elements[] = new Object[dataArray.length];
+				deserialiser.convertElements(elements, i -> createElement(dataArray[i], componentType));
+				for (int i = 0; i < elements.length; i++) {
+					Array.set(newArray, i, elements[i]);
 				}
 				
 				return (Object)newArray;
 				
 			} else if (ContainerFunctions.isList(valueClass) || valueClass.equals(Collection.class)) {
 	            Class<?> listClass = ContainerFunctions.getListClass(valueClass);
-	            Class<?> componentType = ContainerFunctions.getListComponentClass(valueClass);
+	            Class<?> listComponentClass = ContainerFunctions.getListComponentClass(valueClass);
 	            
-	            // If componentType is null, it's a list of generic Objects, so use Map
-	            if (componentType == null) {
-	            	componentType = Map.class;
-	            }
+	            // If the component class is null, it's a list of generic Objects, so use Map
+	            Class<?> componentType = listComponentClass == null ? Map.class : listComponentClass;
 
 				List list;
 				if (ContainerFunctions.isInterface(listClass)) {
-					list = new ArrayList<>();
+					list = new ArrayList<>(dataArray.length);
 				} else {
 					list = (List) ((Class<?>)listClass).newInstance();
 				}
 				
-				for (int i = 0; i < dataArray.length; i++) {
-					PVUnion arrayPVUnion = dataArray[i];
-					if (!arrayPVUnion.getUnion().isVariant()) {
-						throw new IllegalArgumentException("Regular unions are not supported");
-					}
-					Object newObject = null;
-					
-					PVField unionValue = arrayPVUnion.get();
-					if (unionValue instanceof PVScalar) {
-						newObject = deserialiser.getScalarDeserialiser().deserialise(unionValue, componentType);
-					} else if (unionValue instanceof PVScalarArray) {
-						throw new IllegalArgumentException("Union arrays of Scalar Arrays are not supported");
-					} else if (unionValue instanceof PVStructure) {
-						PVStructure arrayPVStructure = (PVStructure)unionValue;
-						newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure(arrayPVStructure, componentType);
-					} else if (unionValue instanceof PVStructureArray) {
-						throw new IllegalArgumentException("Union arrays of Structure Arrays are not supported");
-					} else {
-						throw new IllegalArgumentException("Unsupported union type: " + unionValue.getFieldName());
-					}
-										
-					list.add(newObject);
-				}
+				Object elements[] = new Object[dataArray.length];
+				deserialiser.convertElements(elements, i -> createElement(dataArray[i], componentType));
+				list.addAll(Arrays.asList(elements));
 				return list;
 			} else {
 				throw new IllegalArgumentException("Unsupported container type: " + valueClass);
@@ -244,4 +143,49 @@ public class UnionArrayDeserialiser {
 		}
 		return null;
 	}
+	
+	/**
+	 * Creates an element of an array or list from a union. The member of a regular union is deserialised
+	 * into the registered subtype for its selector, if there is one
+	 * @param arrayPVUnion The union
+	 * @param componentType The element type of the array or list
+	 * @return The element, or null if the union has no value
+	 * @throws Exception
+	 */
+	private Object createElement(PVUnion arrayPVUnion, Class<?> componentType) throws Exception {
+		PVField unionValue = arrayPVUnion.get();
+		if (unionValue == null) {
+			return null;
+		} else if (unionValue instanceof PVScalar) {
+			return deserialiser.getScalarDeserialiser().deserialise(unionValue, componentType);
+		} else if (unionValue instanceof PVScalarArray) {
+			throw new IllegalArgumentException("Union arrays of Scalar Arrays are not supported");
+		} else if (unionValue instanceof PVStructure) {
+			Class<?> elementClass = deserialiser.getUnionDeserialiser().getSelectedClass(arrayPVUnion, componentType);
+			return deserialiser.getStructureDeserialiser().createObjectFromPVStructure((PVStructure)unionValue, elementClass);
+		} else if (unionValue instanceof PVStructureArray) {
+			throw new IllegalArgumentException("Union arrays of Structure Arrays are not supported");
+		} else {
+			throw new IllegalArgumentException("Unsupported union type: " + unionValue.getFieldName());
+		}
+	}
+	
+	/**
+	 * Gets the elements of a union array
+	 * @param unionArrayField The union array
+	 * @return The elements
+	 */
+	private static PVUnion[] getUnions(PVUnionArray unionArrayField) {
+		int length = unionArrayField.getLength();
+		PVUnion dataArray[] = new PVUnion[length];
+		UnionArrayData unionArrayData = new UnionArrayData();
+		
+		int totalGot = 0;
+		while (totalGot < length) {
+			int numGot = unionArrayField.get(totalGot, length - totalGot, unionArrayData);
+			System.arraycopy(unionArrayData.data, unionArrayData.offset, dataArray, totalGot, numGot);
+			totalGot += numGot;
+		}
+		return dataArray;
+	}
 }
@@ -1,5 +1,9 @@
 package org.epics.pvmarshaller.marshaller.deserialisers;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.epics.pvdata.pv.PVBoolean;
 import org.epics.pvdata.pv.PVByte;
 import org.epics.pvdata.pv.PVDouble;
@@ -23,6 +27,7 @@ import org.epics.pvdata.pv.PVUnion;
  */
 public class UnionDeserialiser {
 	Deserialiser deserialiser;
+	Map<Class<?>, List<Class<?>>> registeredSubtypes = new ConcurrentHashMap<Class<?>, List<Class<?>>>();
 	
 	/**
 	 * Constructor
@@ -44,10 +49,6 @@ public class UnionDeserialiser {
 		if (pvField instanceof PVUnion) {
 			PVUnion pvUnion = (PVUnion)pvField;
 			
-			if (!pvUnion.getUnion().isVariant()) {
-				throw new IllegalArgumentException("Regular unions are not supported");
-			}
-			
 			PVField unionpvField = pvUnion.get();
 			if ((unionpvField instanceof PVInt) || 
 					(unionpvField instanceof PVShort) ||
@@ -63,8 +64,44 @@ public class UnionDeserialiser {
 					(unionpvField instanceof PVUByte)) {
 				deserialiser.getScalarDeserialiser().deserialise(target, fieldName, unionpvField);
 			} else if (unionpvField instanceof PVStructure) {
-				deserialiser.getStructureDeserialiser().deserialise(target, fieldName, unionpvField);
+				if (pvUnion.getUnion().isVariant()) {
+					deserialiser.getStructureDeserialiser().deserialise(target, fieldName, unionpvField);
+				} else {
+					SetterDescriptor setterDescriptor = deserialiser.findSetterDescriptor(target, fieldName);
+					if (setterDescriptor != null) {
+						Class<?> objectClass = getSelectedClass(pvUnion, setterDescriptor.getParameterType());
+						Object newObject = deserialiser.getStructureDeserialiser().createObjectFromPVStructure((PVStructure)unionpvField, objectClass);
+						setterDescriptor.getSetter().invoke(target, newObject);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds a list of the classes that the members of regular unions deserialised into the specified class are deserialised into.
+	 * The selector of the union is the index of the class in the list
+	 * @param baseClass The class being deserialised into
+	 * @param subtypes The classes of the union members
+	 */
+	public void addSubtypes(Class<?> baseClass, List<Class<?>> subtypes) {
+		registeredSubtypes.put(baseClass, subtypes);
+	}
+	
+	/**
+	 * Gets the class to deserialise the selected member of a union into
+	 * @param pvUnion The union
+	 * @param declaredClass The class the union is being deserialised into
+	 * @return The registered subtype for the selector of a regular union, otherwise the declared class
+	 */
+	public Class<?> getSelectedClass(PVUnion pvUnion, Class<?> declaredClass) {
+		if (declaredClass != null && !pvUnion.getUnion().isVariant()) {
+			List<Class<?>> subtypes = registeredSubtypes.get(declaredClass);
+			int selector = pvUnion.getSelectedIndex();
+			if (subtypes != null && selector >= 0 && selector < subtypes.size()) {
+				return subtypes.get(selector);
 			}
 		}
+		return declaredClass;
 	}
 }
@@ -0,0 +1,41 @@
+package org.epics.pvmarshaller.marshaller.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for an array, list or union field written to or read from a PVStructure
+ * @author Matt Taylor
+ *
+ */
+@Name("org.epics.pvmarshaller.Array")
+@Label("Array")
+@Category("PV Marshaller")
+@Description("An array, list or union field written to or read from a PVStructure")
+@Threshold("1 ms")
+@StackTrace(false)
+class ArrayEvent extends Event {
+
+	@Label("Operation")
+	@Description("Serialise or deserialise")
+	String operation;
+
+	@Label("Field")
+	String fieldName;
+
+	@Label("Type")
+	@Description("The PVData type of the field")
+	String type;
+
+	@Label("Element ID")
+	@Description("The ID of the Structure or Union of the elements")
+	String elementId;
+
+	@Label("Length")
+	int length;
+}
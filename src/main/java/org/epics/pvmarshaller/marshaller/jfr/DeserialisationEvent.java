@@ -0,0 +1,32 @@
+package org.epics.pvmarshaller.marshaller.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight Recorder event for an object created from a PVStructure
+ * @author Matt Taylor
+ *
+ */
+@Name("org.epics.pvmarshaller.Deserialisation")
+@Label("Deserialisation")
+@Category("PV Marshaller")
+@Description("An object created from a PVStructure")
+@Threshold("1 ms")
+@StackTrace(false)
+class DeserialisationEvent extends Event {
+
+	@Label("Class")
+	String className;
+
+	@Label("Structure ID")
+	String structureId;
+
+	@Label("Field Count")
+	int fieldCount;
+}
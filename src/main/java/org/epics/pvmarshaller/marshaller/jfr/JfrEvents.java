@@ -0,0 +1,93 @@
+package org.epics.pvmarshaller.marshaller.jfr;
+
+import org.epics.pvdata.pv.PVArray;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
+import org.epics.pvdata.pv.PVUnion;
+import org.epics.pvdata.pv.PVUnionArray;
+
+import jdk.jfr.EventType;
+
+/**
+ * Creates and commits the Flight Recorder events. Only loaded once {@link MarshallerEvents} has found that
+ * the JVM supports Flight Recorder
+ * @author Matt Taylor
+ *
+ */
+class JfrEvents {
+
+	private static final EventType SERIALISATION = EventType.getEventType(SerialisationEvent.class);
+	private static final EventType DESERIALISATION = EventType.getEventType(DeserialisationEvent.class);
+	private static final EventType ARRAY = EventType.getEventType(ArrayEvent.class);
+
+	static Object beginSerialisation() {
+		if (!SERIALISATION.isEnabled()) {
+			return null;
+		}
+		SerialisationEvent event = new SerialisationEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endSerialisation(Object started, Object source, PVStructure pvStructure) {
+		SerialisationEvent event = (SerialisationEvent)started;
+		event.end();
+		if (event.shouldCommit()) {
+			event.className = source.getClass().getName();
+			event.structureId = pvStructure.getStructure().getID();
+			event.fieldCount = pvStructure.getStructure().getFieldNames().length;
+			event.commit();
+		}
+	}
+
+	static Object beginDeserialisation() {
+		if (!DESERIALISATION.isEnabled()) {
+			return null;
+		}
+		DeserialisationEvent event = new DeserialisationEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endDeserialisation(Object started, PVStructure pvStructure, Object result) {
+		DeserialisationEvent event = (DeserialisationEvent)started;
+		event.end();
+		if (event.shouldCommit()) {
+			event.className = result == null ? null : result.getClass().getName();
+			event.structureId = pvStructure.getStructure().getID();
+			event.fieldCount = pvStructure.getStructure().getFieldNames().length;
+			event.commit();
+		}
+	}
+
+	static Object beginArray() {
+		if (!ARRAY.isEnabled()) {
+			return null;
+		}
+		ArrayEvent event = new ArrayEvent();
+		event.begin();
+		return event;
+	}
+
+	static void endArray(Object started, String operation, PVField pvField) {
+		ArrayEvent event = (ArrayEvent)started;
+		event.end();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.fieldName = pvField.getFieldName();
+			event.type = pvField.getField().getType().name();
+			if (pvField instanceof PVArray) {
+				event.length = ((PVArray)pvField).getLength();
+			}
+			if (pvField instanceof PVStructureArray) {
+				event.elementId = ((PVStructureArray)pvField).getStructureArray().getStructure().getID();
+			} else if (pvField instanceof PVUnionArray) {
+				event.elementId = ((PVUnionArray)pvField).getUnionArray().getUnion().getID();
+			} else if (pvField instanceof PVUnion) {
+				event.elementId = ((PVUnion)pvField).getUnion().getID();
+			}
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package org.epics.pvmarshaller.marshaller.jfr;
+
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVStructure;
+
+/**
+ * Emits Flight Recorder events for marshalling operations, so that they can be seen on the same timeline as
+ * GC pauses and network events. Each event has a threshold of 1 ms by default, which can be changed in the
+ * recording settings. When the events are not enabled, or the JVM does not support Flight Recorder, nothing
+ * is created and the begin methods return null
+ * @author Matt Taylor
+ *
+ */
+public final class MarshallerEvents {
+
+	/**
+	 * The operation of array events written to a PVStructure
+	 */
+	public static final String SERIALISE = "serialise";
+
+	/**
+	 * The operation of array events read from a PVStructure
+	 */
+	public static final String DESERIALISE = "deserialise";
+
+	private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+	private MarshallerEvents() {
+	}
+
+	/**
+	 * Starts timing the conversion of an object to a PVStructure
+	 * @return The event, or null if it is not being recorded
+	 */
+	public static Object beginSerialisation() {
+		return AVAILABLE ? JfrEvents.beginSerialisation() : null;
+	}
+
+	/**
+	 * Commits the event for the conversion of an object to a PVStructure, if it took longer than its threshold
+	 * @param event The event returned by {@link #beginSerialisation()}
+	 * @param source The object
+	 * @param pvStructure The PVStructure it was converted to
+	 */
+	public static void endSerialisation(Object event, Object source, PVStructure pvStructure) {
+		if (event != null) {
+			JfrEvents.endSerialisation(event, source, pvStructure);
+		}
+	}
+
+	/**
+	 * Starts timing the creation of an object from a PVStructure
+	 * @return The event, or null if it is not being recorded
+	 */
+	public static Object beginDeserialisation() {
+		return AVAILABLE ? JfrEvents.beginDeserialisation() : null;
+	}
+
+	/**
+	 * Commits the event for the creation of an object from a PVStructure, if it took longer than its threshold
+	 * @param event The event returned by {@link #beginDeserialisation()}
+	 * @param pvStructure The PVStructure
+	 * @param result The object created from it
+	 */
+	public static void endDeserialisation(Object event, PVStructure pvStructure, Object result) {
+		if (event != null) {
+			JfrEvents.endDeserialisation(event, pvStructure, result);
+		}
+	}
+
+	/**
+	 * Starts timing an array, list or union field being written to or read from a PVStructure
+	 * @return The event, or null if it is not being recorded
+	 */
+	public static Object beginArray() {
+		return AVAILABLE ? JfrEvents.beginArray() : null;
+	}
+
+	/**
+	 * Commits the event for an array, list or union field, if it took longer than its threshold
+	 * @param event The event returned by {@link #beginArray()}
+	 * @param operation {@link #SERIALISE} or {@link #DESERIALISE}
+	 * @param pvField The field in the PVStructure
+	 */
+	public static void endArray(Object event, String operation, PVField pvField) {
+		if (event != null) {
+			JfrEvents.endArray(event, operation, pvField);
+		}
+	}
+
+	private static boolean isFlightRecorderAvailable() {
+		try {
+			Class.forName("jdk.jfr.EventType");
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package org.epics.pvmarshaller.marshaller.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.epics.pvdata.pv.ScalarType;
+
+/**
+ * Metrics that keep a histogram of the serialisation and deserialisation times of each class, along with counters
+ * for the custom serialisers and Structure caches used for it, and counters of the primitive array payload of each
+ * scalar type. Recording does not lock, and the values can be read at any time while marshalling continues
+ * @author Matt Taylor
+ *
+ */
+public class HistogramMetrics implements MarshallerMetrics {
+
+	private final Map<Class<?>, ClassMetrics> classMetrics = new ConcurrentHashMap<Class<?>, ClassMetrics>();
+	private final ArrayMetrics[] arrayMetrics = new ArrayMetrics[ScalarType.values().length];
+
+	/**
+	 * Constructor
+	 */
+	public HistogramMetrics() {
+		for (int i = 0; i < arrayMetrics.length; i++) {
+			arrayMetrics[i] = new ArrayMetrics();
+		}
+	}
+
+	@Override
+	public void serialised(Class<?> type, long nanos) {
+		getOrCreateClassMetrics(type).serialisation.record(nanos);
+	}
+
+	@Override
+	public void deserialised(Class<?> type, long nanos) {
+		getOrCreateClassMetrics(type).deserialisation.record(nanos);
+	}
+
+	@Override
+	public void customSerialiserUsed(Class<?> type) {
+		getOrCreateClassMetrics(type).customSerialiserUses.increment();
+	}
+
+	@Override
+	public void customDeserialiserUsed(Class<?> type) {
+		getOrCreateClassMetrics(type).customDeserialiserUses.increment();
+	}
+
+	@Override
+	public void structureCacheLookup(Class<?> type, boolean hit) {
+		ClassMetrics metrics = getOrCreateClassMetrics(type);
+		if (hit) {
+			metrics.structureCacheHits.increment();
+		} else {
+			metrics.structureCacheMisses.increment();
+		}
+	}
+
+	@Override
+	public void primitiveArraySerialised(ScalarType type, int elements, long payloadBytes) {
+		ArrayMetrics metrics = arrayMetrics[type.ordinal()];
+		metrics.serialisedArrays.increment();
+		metrics.serialisedElements.add(elements);
+		metrics.serialisedBytes.add(payloadBytes);
+	}
+
+	@Override
+	public void primitiveArrayDeserialised(ScalarType type, int elements, long payloadBytes) {
+		ArrayMetrics metrics = arrayMetrics[type.ordinal()];
+		metrics.deserialisedArrays.increment();
+		metrics.deserialisedElements.add(elements);
+		metrics.deserialisedBytes.add(payloadBytes);
+	}
+
+	/**
+	 * Gets the metrics of every class that has been recorded
+	 * @return
+	 */
+	public Map<Class<?>, ClassMetrics> getClassMetrics() {
+		return Collections.unmodifiableMap(classMetrics);
+	}
+
+	/**
+	 * Gets the metrics of a class
+	 * @param type The class
+	 * @return The metrics, or null if nothing has been recorded for the class
+	 */
+	public ClassMetrics getClassMetrics(Class<?> type) {
+		return classMetrics.get(type);
+	}
+
+	/**
+	 * Gets the metrics of the primitive arrays of a scalar type
+	 * @param type The scalar type of the elements
+	 * @return
+	 */
+	public ArrayMetrics getArrayMetrics(ScalarType type) {
+		return arrayMetrics[type.ordinal()];
+	}
+
+	private ClassMetrics getOrCreateClassMetrics(Class<?> type) {
+		ClassMetrics metrics = classMetrics.get(type);
+		if (metrics == null) {
+			metrics = new ClassMetrics();
+			ClassMetrics existing = classMetrics.putIfAbsent(type, metrics);
+			if (existing != null) {
+				metrics = existing;
+			}
+		}
+		return metrics;
+	}
+
+	/**
+	 * The metrics recorded for a class
+	 */
+	public static class ClassMetrics {
+		private final LatencyHistogram serialisation = new LatencyHistogram();
+		private final LatencyHistogram deserialisation = new LatencyHistogram();
+		private final LongAdder customSerialiserUses = new LongAdder();
+		private final LongAdder customDeserialiserUses = new LongAdder();
+		private final LongAdder structureCacheHits = new LongAdder();
+		private final LongAdder structureCacheMisses = new LongAdder();
+
+		/**
+		 * Gets the times taken to serialise objects of the class
+		 * @return
+		 */
+		public LatencyHistogram getSerialisation() {
+			return serialisation;
+		}
+
+		/**
+		 * Gets the times taken to deserialise objects of the class
+		 * @return
+		 */
+		public LatencyHistogram getDeserialisation() {
+			return deserialisation;
+		}
+
+		/**
+		 * Gets the number of times a custom serialiser populated a PVStructure from an object of the class
+		 * @return
+		 */
+		public long getCustomSerialiserUses() {
+			return customSerialiserUses.sum();
+		}
+
+		/**
+		 * Gets the number of times a custom deserialiser created an object of the class
+		 * @return
+		 */
+		public long getCustomDeserialiserUses() {
+			return customDeserialiserUses.sum();
+		}
+
+		/**
+		 * Gets the number of times a cached Structure was found for the class
+		 * @return
+		 */
+		public long getStructureCacheHits() {
+			return structureCacheHits.sum();
+		}
+
+		/**
+		 * Gets the number of times a Structure had to be built for the class because it was not cached
+		 * @return
+		 */
+		public long getStructureCacheMisses() {
+			return structureCacheMisses.sum();
+		}
+	}
+
+	/**
+	 * The metrics recorded for the primitive arrays of a scalar type
+	 */
+	public static class ArrayMetrics {
+		private final LongAdder serialisedArrays = new LongAdder();
+		private final LongAdder serialisedElements = new LongAdder();
+		private final LongAdder serialisedBytes = new LongAdder();
+		private final LongAdder deserialisedArrays = new LongAdder();
+		private final LongAdder deserialisedElements = new LongAdder();
+		private final LongAdder deserialisedBytes = new LongAdder();
+
+		/**
+		 * Gets the number of arrays and lists written to PVStructures
+		 * @return
+		 */
+		public long getSerialisedArrays() {
+			return serialisedArrays.sum();
+		}
+
+		/**
+		 * Gets the total number of elements written to PVStructures
+		 * @return
+		 */
+		public long getSerialisedElements() {
+			return serialisedElements.sum();
+		}
+
+		/**
+		 * Gets the total size of the elements written to PVStructures
+		 * @return
+		 */
+		public long getSerialisedBytes() {
+			return serialisedBytes.sum();
+		}
+
+		/**
+		 * Gets the number of arrays read from PVStructures
+		 * @return
+		 */
+		public long getDeserialisedArrays() {
+			return deserialisedArrays.sum();
+		}
+
+		/**
+		 * Gets the total number of elements read from PVStructures
+		 * @return
+		 */
+		public long getDeserialisedElements() {
+			return deserialisedElements.sum();
+		}
+
+		/**
+		 * Gets the total size of the elements read from PVStructures
+		 * @return
+		 */
+		public long getDeserialisedBytes() {
+			return deserialisedBytes.sum();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package org.epics.pvmarshaller.marshaller.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations that can be recorded from several threads at once without locking.
+ * Durations are counted in buckets that double in size, so percentiles are accurate to within a factor of two
+ * @author Matt Taylor
+ *
+ */
+public class LatencyHistogram {
+
+	/**
+	 * The number of buckets. Bucket 0 holds durations of 0, and bucket i holds durations from 2^(i-1) to 2^i - 1 nanoseconds
+	 */
+	public static final int BUCKETS = 64;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Records a duration
+	 * @param nanos The duration in nanoseconds. Negative durations are counted as 0
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(getBucket(nanos));
+		count.increment();
+		totalNanos.add(nanos);
+
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * Gets the number of durations recorded
+	 * @return
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Gets the sum of the durations recorded
+	 * @return
+	 */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/**
+	 * Gets the longest duration recorded
+	 * @return
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Gets the mean of the durations recorded
+	 * @return The mean, or 0 if nothing has been recorded
+	 */
+	public double getMeanNanos() {
+		long n = getCount();
+		return n == 0 ? 0 : (double)getTotalNanos() / n;
+	}
+
+	/**
+	 * Gets an upper bound on a percentile of the durations recorded, which is the largest duration in its bucket
+	 * @param percentile The percentile, from 0 to 100
+	 * @return The duration in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getPercentileNanos(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+		}
+		long[] bucketCounts = getBucketCounts();
+		long total = 0;
+		for (long bucketCount : bucketCounts) {
+			total += bucketCount;
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long)Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += bucketCounts[i];
+			if (seen >= rank) {
+				return Math.min(getBucketLimit(i), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	/**
+	 * Gets the number of durations in each bucket
+	 * @return
+	 */
+	public long[] getBucketCounts() {
+		long[] bucketCounts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			bucketCounts[i] = counts.get(i);
+		}
+		return bucketCounts;
+	}
+
+	/**
+	 * Gets the largest duration counted in a bucket
+	 * @param bucket The bucket
+	 * @return The duration in nanoseconds
+	 */
+	public static long getBucketLimit(int bucket) {
+		return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+	}
+
+	private static int getBucket(long nanos) {
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+}
@@ -0,0 +1,103 @@
+package org.epics.pvmarshaller.marshaller.metrics;
+
+import org.epics.pvdata.pv.ScalarType;
+
+/**
+ * Receives events from a PVMarshaller, to find the classes that are slow to marshal without attaching a profiler.
+ * Every method does nothing by default, so implementations only override the events they record.
+ * Methods may be called from several threads at once
+ * @author Matt Taylor
+ *
+ */
+public interface MarshallerMetrics {
+
+	/**
+	 * Metrics that record nothing. The marshaller does not time calls when these are used
+	 */
+	public static final MarshallerMetrics NONE = new MarshallerMetrics() {
+	};
+
+	/**
+	 * Called when an object has been converted to a PVStructure, or used to populate one
+	 * @param type The class of the object
+	 * @param nanos The duration of the call in nanoseconds
+	 */
+	public default void serialised(Class<?> type, long nanos) {
+	}
+
+	/**
+	 * Called when an object has been created or updated from a PVStructure
+	 * @param type The class of the object
+	 * @param nanos The duration of the call in nanoseconds
+	 */
+	public default void deserialised(Class<?> type, long nanos) {
+	}
+
+	/**
+	 * Called when a custom serialiser or marshaller is used to populate a PVStructure
+	 * @param type The class of the object
+	 */
+	public default void customSerialiserUsed(Class<?> type) {
+	}
+
+	/**
+	 * Called when a custom deserialiser or marshaller is used to create an object
+	 * @param type The class of the object created
+	 */
+	public default void customDeserialiserUsed(Class<?> type) {
+	}
+
+	/**
+	 * Called when a cached Structure is looked up, for maps and for classes with the static schema
+	 * @param type The class of the map or object
+	 * @param hit True if the Structure was found in the cache
+	 */
+	public default void structureCacheLookup(Class<?> type, boolean hit) {
+	}
+
+	/**
+	 * Called when an array or list of primitives has been written to a PVStructure
+	 * @param type The scalar type of the elements
+	 * @param elements The number of elements
+	 * @param payloadBytes The size of the elements, from {@link #getPayloadBytes(ScalarType, int)}
+	 */
+	public default void primitiveArraySerialised(ScalarType type, int elements, long payloadBytes) {
+	}
+
+	/**
+	 * Called when a scalar array has been read from a PVStructure into an object
+	 * @param type The scalar type of the elements
+	 * @param elements The number of elements
+	 * @param payloadBytes The size of the elements, from {@link #getPayloadBytes(ScalarType, int)}
+	 */
+	public default void primitiveArrayDeserialised(ScalarType type, int elements, long payloadBytes) {
+	}
+
+	/**
+	 * Gets the size of the elements of a scalar array. Strings have no fixed size, so are not counted
+	 * @param type The scalar type of the elements
+	 * @param elements The number of elements
+	 * @return The size in bytes
+	 */
+	public static long getPayloadBytes(ScalarType type, int elements) {
+		switch (type) {
+		case pvBoolean:
+		case pvByte:
+		case pvUByte:
+			return elements;
+		case pvShort:
+		case pvUShort:
+			return 2L * elements;
+		case pvInt:
+		case pvUInt:
+		case pvFloat:
+			return 4L * elements;
+		case pvLong:
+		case pvULong:
+		case pvDouble:
+			return 8L * elements;
+		default:
+			return 0;
+		}
+	}
+}
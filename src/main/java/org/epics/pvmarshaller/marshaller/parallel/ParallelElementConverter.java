@@ -0,0 +1,193 @@
+package org.epics.pvmarshaller.marshaller.parallel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Converts the elements of large arrays and lists on a thread pool, keeping them in order.
+ * The elements are split into chunks that are claimed by the calling thread and the pool threads as they become free,
+ * so the calling thread never waits for a chunk that hasn't started and may itself be a thread of the pool. Arrays and
+ * lists nested inside the elements are converted sequentially by the thread converting their parent element
+ * @author Matt Taylor
+ *
+ */
+public class ParallelElementConverter {
+
+	/**
+	 * Converter that never uses the thread pool
+	 */
+	public static final ParallelElementConverter SEQUENTIAL = new ParallelElementConverter(0, null);
+
+	private static final int CHUNKS_PER_PROCESSOR = 4;
+	private static final ThreadLocal<Boolean> converting = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+	private final int threshold;
+	private final ExecutorService executor;
+
+	/**
+	 * Conversion of a single element
+	 * @param <T> The type of the converted element
+	 */
+	public interface ElementConversion<T> {
+		/**
+		 * Converts the element at the specified index
+		 * @param index The index of the element
+		 * @return The converted element
+		 * @throws Exception
+		 */
+		public T convert(int index) throws Exception;
+	}
+
+	/**
+	 * Constructor
+	 * @param threshold The number of elements from which the thread pool is used, or 0 to never use it
+	 * @param executor The thread pool, or null to use the common ForkJoinPool
+	 */
+	public ParallelElementConverter(int threshold, ExecutorService executor) {
+		this.threshold = threshold;
+		this.executor = executor == null ? ForkJoinPool.commonPool() : executor;
+	}
+
+	/**
+	 * Gets the number of elements from which the thread pool is used
+	 * @return The threshold, or 0 if the thread pool is never used
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Returns whether the specified number of elements would be converted on the thread pool
+	 * @param numElements The number of elements
+	 * @return
+	 */
+	public boolean isParallel(int numElements) {
+		return threshold > 0 && numElements >= threshold && !converting.get();
+	}
+
+	/**
+	 * Converts each element, putting the result at the same index of the results array
+	 * @param results The array to hold the converted elements
+	 * @param conversion The conversion of a single element
+	 * @throws Exception The first exception thrown by the conversion
+	 */
+	public <T> void convert(T[] results, ElementConversion<? extends T> conversion) throws Exception {
+		if (!isParallel(results.length)) {
+			for (int i = 0; i < results.length; i++) {
+				results[i] = conversion.convert(i);
+			}
+			return;
+		}
+
+		int maxChunks = Math.min(results.length, Runtime.getRuntime().availableProcessors() * CHUNKS_PER_PROCESSOR);
+		int chunkSize = (results.length + maxChunks - 1) / maxChunks;
+		Chunks<T> chunks = new Chunks<T>(results, conversion, chunkSize);
+
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		try {
+			for (int i = 1; i < chunks.numChunks; i++) {
+				futures.add(executor.submit(chunks));
+			}
+
+			// The calling thread claims chunks like the pool threads, so it never waits for a chunk that hasn't started
+			chunks.call();
+			chunks.await();
+		} catch (Exception e) {
+			chunks.skipRemaining();
+			throw e;
+		} finally {
+			cancel(futures);
+		}
+	}
+
+	/**
+	 * The chunks of the elements, claimed in turn by the threads converting them
+	 * @param <T> The type of the converted elements
+	 */
+	private static class Chunks<T> implements Callable<Void> {
+		private final T[] results;
+		private final ElementConversion<? extends T> conversion;
+		private final int chunkSize;
+		private final int numChunks;
+		private final AtomicInteger nextChunk = new AtomicInteger();
+		private final CountDownLatch done;
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		Chunks(T[] results, ElementConversion<? extends T> conversion, int chunkSize) {
+			this.results = results;
+			this.conversion = conversion;
+			this.chunkSize = chunkSize;
+			this.numChunks = (results.length + chunkSize - 1) / chunkSize;
+			this.done = new CountDownLatch(numChunks);
+		}
+
+		/**
+		 * Converts chunks until none are left to claim, marking the thread as converting so that nested arrays and
+		 * lists are converted sequentially
+		 * @return null
+		 */
+		@Override
+		public Void call() {
+			Boolean wasConverting = converting.get();
+			converting.set(Boolean.TRUE);
+			try {
+				for (int chunk = nextChunk.getAndIncrement(); chunk < numChunks; chunk = nextChunk.getAndIncrement()) {
+					try {
+						int end = Math.min((chunk + 1) * chunkSize, results.length);
+						for (int i = chunk * chunkSize; i < end; i++) {
+							results[i] = conversion.convert(i);
+						}
+					} catch (Throwable e) {
+						failure.compareAndSet(null, e);
+						skipRemaining();
+					} finally {
+						done.countDown();
+					}
+				}
+			} finally {
+				converting.set(wasConverting);
+			}
+			return null;
+		}
+
+		/**
+		 * Stops any more chunks from being claimed, counting them as done
+		 */
+		void skipRemaining() {
+			for (int chunk = nextChunk.getAndSet(numChunks); chunk < numChunks; chunk++) {
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Waits for the claimed chunks to finish
+		 * @throws Exception The first exception thrown by the conversion
+		 */
+		void await() throws Exception {
+			done.await();
+			Throwable e = failure.get();
+			if (e instanceof Exception) {
+				throw (Exception)e;
+			} else if (e instanceof Error) {
+				throw (Error)e;
+			}
+		}
+	}
+
+	/**
+	 * Cancels the tasks that haven't started, as every chunk has been claimed
+	 * @param futures The tasks
+	 */
+	private static void cancel(List<Future<Void>> futures) {
+		for (Future<Void> future : futures) {
+			future.cancel(false);
+		}
+	}
+}
@@ -3,18 +3,21 @@ package org.epics.pvmarshaller.marshaller.serialisers;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 
 import org.epics.pvdata.factory.PVDataFactory;
 import org.epics.pvdata.pv.PVBooleanArray;
 import org.epics.pvdata.pv.PVByteArray;
 import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVFloatArray;
 import org.epics.pvdata.pv.PVIntArray;
 import org.epics.pvdata.pv.PVLongArray;
 import org.epics.pvdata.pv.PVShortArray;
 import org.epics.pvdata.pv.PVStringArray;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
 import org.epics.pvdata.pv.PVUnion;
 import org.epics.pvdata.pv.PVUnionArray;
 
@@ -56,6 +59,47 @@ public class ArraySerialiser {
 		}
 	}
 	
+	/**
+	 * Gets whether an array of the specified type can be shared with a PVScalarArray instead of copied into it
+	 * @param arrayType The type of the array
+	 * @return True for arrays of Java primitives, apart from char, and arrays of Strings
+	 */
+	public static boolean canShareArray(Class<?> arrayType) {
+		return arrayType == int[].class || arrayType == double[].class || arrayType == byte[].class ||
+			arrayType == long[].class || arrayType == short[].class || arrayType == float[].class ||
+			arrayType == boolean[].class || arrayType == String[].class;
+	}
+	
+	/**
+	 * Sets the value of a scalar array field to an array of primitives without copying it. The PVStructure uses the array
+	 * directly, so it must not be changed afterwards
+	 * @param name The name of the field
+	 * @param structure The structure to populate the data with
+	 * @param arrayObject The array containing the data, which must be a type accepted by {@link #canShareArray(Class)}
+	 */
+	public static void sharePrimitiveArrayValue(String name, PVStructure structure, Object arrayObject)
+	{
+		if (arrayObject instanceof int[]) {
+			structure.getSubField(PVIntArray.class, name).shareData((int[])arrayObject);
+		} else if (arrayObject instanceof double[]) {
+			structure.getSubField(PVDoubleArray.class, name).shareData((double[])arrayObject);
+		} else if (arrayObject instanceof byte[]) {
+			structure.getSubField(PVByteArray.class, name).shareData((byte[])arrayObject);
+		} else if (arrayObject instanceof long[]) {
+			structure.getSubField(PVLongArray.class, name).shareData((long[])arrayObject);
+		} else if (arrayObject instanceof short[]) {
+			structure.getSubField(PVShortArray.class, name).shareData((short[])arrayObject);
+		} else if (arrayObject instanceof float[]) {
+			structure.getSubField(PVFloatArray.class, name).shareData((float[])arrayObject);
+		} else if (arrayObject instanceof boolean[]) {
+			structure.getSubField(PVBooleanArray.class, name).shareData((boolean[])arrayObject);
+		} else if (arrayObject instanceof String[]) {
+			structure.getSubField(PVStringArray.class, name).shareData((String[])arrayObject);
+		} else {
+			throw new IllegalArgumentException("Unable to share the data of " + name + " as it is not an array of primitives");
+		}
+	}
+	
 	/**
 	 * Sets the values of an array containing primitives
 	 * @param name The name of the field
@@ -69,9 +113,15 @@ public class ArraySerialiser {
 	{
 		int numPut = 0;
 		
-		if (componentType.equals(Integer.class) || componentType.equals(int.class)) {
+		ScalarKind kind = ScalarKind.of(componentType);
+		if (kind == null) {
+			return;
+		}
+
+		switch (kind) {
+		case INT: {
 			int[] value;
-			if (componentType.equals(int.class)) {
+			if (componentType.isPrimitive()) {
 				value = (int[])arrayObject;
 			} else {
 				Integer[] wrapperArray = (Integer[])arrayObject;
@@ -81,13 +131,16 @@ public class ArraySerialiser {
 				}
 			}
 			PVIntArray array = structure.getSubField(PVIntArray.class, name);
+			array.setLength(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
 			}
-		} else if (componentType.equals(Short.class) || componentType.equals(short.class)) {
+			break;
+		}
+		case SHORT: {
 			short[] value;
-			if (componentType.equals(short.class)) {
+			if (componentType.isPrimitive()) {
 				value = (short[])arrayObject;
 			} else {
 				Short[] wrapperArray = (Short[])arrayObject;
@@ -97,13 +150,16 @@ public class ArraySerialiser {
 				}
 			}
 			PVShortArray array = structure.getSubField(PVShortArray.class, name);
+			array.setLength(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
 			}
-		} else if (componentType.equals(Long.class) || componentType.equals(long.class)) {
+			break;
+		}
+		case LONG: {
 			long[] value;
-			if (componentType.equals(long.class)) {
+			if (componentType.isPrimitive()) {
 				value = (long[])arrayObject;
 			} else {
 				Long[] wrapperArray = (Long[])arrayObject;
@@ -113,13 +169,16 @@ public class ArraySerialiser {
 				}
 			}
 			PVLongArray array = structure.getSubField(PVLongArray.class, name);
+			array.setLength(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
 			}
-		} else if (componentType.equals(Byte.class) || componentType.equals(byte.class)) {
+			break;
+		}
+		case BYTE: {
 			byte[] value;
-			if (componentType.equals(byte.class)) {
+			if (componentType.isPrimitive()) {
 				value  = (byte[])arrayObject;
 			} else {
 				Byte[] wrapperArray = (Byte[])arrayObject;
@@ -129,13 +188,16 @@ public class ArraySerialiser {
 				}
 			}
 			PVByteArray array = structure.getSubField(PVByteArray.class, name);
+			array.setLength(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
 			}
-		} else if (componentType.equals(Boolean.class) || componentType.equals(boolean.class)) {
+			break;
+		}
+		case BOOLEAN: {
 			boolean[] value;
-			if (componentType.equals(boolean.class)) {
+			if (componentType.isPrimitive()) {
 				value = (boolean[])arrayObject;
 			} else {
 				Boolean[] wrapperArray = (Boolean[])arrayObject;
@@ -145,13 +207,16 @@ public class ArraySerialiser {
 				}
 			}
 			PVBooleanArray array = structure.getSubField(PVBooleanArray.class, name);
+			array.setLength(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
 			}
-		} else if (componentType.equals(Float.class) || componentType.equals(float.class)) {
+			break;
+		}
+		case FLOAT: {
 			float[] value;
-			if (componentType.equals(float.class)) {
+			if (componentType.isPrimitive()) {
 				value = (float[])arrayObject;
 			} else {
 				Float[] wrapperArray = (Float[])arrayObject;
@@ -161,13 +226,16 @@ public class ArraySerialiser {
 				}
 			}
 			PVFloatArray array = structure.getSubField(PVFloatArray.class, name);
+			array.setLength(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
 			}
-		} else if (componentType.equals(Double.class) || componentType.equals(double.class)) {
+			break;
+		}
+		case DOUBLE: {
 			double[] value;
-			if (componentType.equals(double.class)) {
+			if (componentType.isPrimitive()) {
 				value = (double[])arrayObject;
 			} else {
 				Double[] wrapperArray = (Double[])arrayObject;
@@ -177,13 +245,16 @@ public class ArraySerialiser {
 				}
 			}
 			PVDoubleArray array = structure.getSubField(PVDoubleArray.class, name);
+			array.setLength(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
 			}
-		} else if (componentType.equals(Character.class) || componentType.equals(char.class)) {
+			break;
+		}
+		case CHAR: {
 			char[] value;
-			if (componentType.equals(char.class)) {
+			if (componentType.isPrimitive()) {
 				value = (char[])arrayObject;
 			} else {
 				Character[] wrapperArray = (Character[])arrayObject;
@@ -197,19 +268,23 @@ public class ArraySerialiser {
 				stringArray[i] = String.valueOf(value[i]);
 			}
 			PVStringArray array = structure.getSubField(PVStringArray.class, name);
+			array.setLength(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, stringArray.length - numPut, stringArray, numPut);
 			}
-		} else if (componentType.equals(String.class)) {
+			break;
+		}
+		case STRING: {
 			String[] value = (String[])arrayObject;
 			PVStringArray array = structure.getSubField(PVStringArray.class, name);
+			array.setLength(value.length);
 			while (numPut < value.length)
 			{
 				numPut += array.put(numPut, value.length - numPut, value, numPut);
 			}
-		} else {
-			//throw new Exception();   ??????
+			break;
+		}
 		}
 	}
 	
@@ -241,25 +316,29 @@ public class ArraySerialiser {
 	{
 		Object[] value = (Object[])arrayObject;
 		
-		PVUnionArray pvUnionValue = structure.getSubField(PVUnionArray.class, name);
-		PVUnion[] unionArray = new PVUnion[value.length];
+		PVField pvField = structure.getSubField(name);
+		if (pvField instanceof PVStructureArray) {
+			serialiser.getContainerSerialiser().setStructureArrayValue((PVStructureArray)pvField, Arrays.asList(value));
+			return;
+		}
 		
-		//PVStructureArray array = structure.getSubField(PVStructureArray.class, name);
-		//PVStructure[] pvStructures = new PVStructure[value.length];
+		PVUnionArray pvUnionValue = (PVUnionArray)pvField;
+		if (!pvUnionValue.getUnionArray().getUnion().isVariant()) {
+			serialiser.getContainerSerialiser().setRegularUnionArrayValue(pvUnionValue, Arrays.asList(value));
+			return;
+		}
+		PVUnion[] unionArray = new PVUnion[value.length];
 		
-		for (int i = 0; i < value.length; i++) {
-			//pvStructures[i] = pvDataCreate.createPVStructure(array.getStructureArray().getStructure());
-			//PVStructure pvs = pvStructures[i];
-			
+		serialiser.getContainerSerialiser().convertElements(unionArray, i -> {
 			PVStructure pvs = serialiser.toPVStructure(value[i]);
 
 			PVUnion pvUnion = pvDataCreate.createPVVariantUnion();
 			
 			pvUnion.set(pvs);
-			//serialiser.getObjectSerialiser().setValues(value[i], pvs);
-			unionArray[i] = pvUnion;
-		}
+			return pvUnion;
+		});
 		int numPut = 0;
+		pvUnionValue.setLength(unionArray.length);
 		while (numPut < unionArray.length)
 		{
 			numPut += pvUnionValue.put(numPut, unionArray.length - numPut, unionArray, numPut);
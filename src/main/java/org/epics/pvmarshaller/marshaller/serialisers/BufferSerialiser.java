@@ -0,0 +1,348 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.lang.reflect.Array;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.SerializeHelper;
+import org.epics.pvdata.pv.Array.ArraySizeType;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVUnion;
+import org.epics.pvdata.pv.Scalar;
+import org.epics.pvdata.pv.ScalarArray;
+import org.epics.pvdata.pv.SerializableControl;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.Union;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
+
+/**
+ * Serialises an object straight into a ByteBuffer, in the same form as PVStructure.serialize would write the
+ * PVStructure created for it, without creating the PVStructure. Scalars, arrays of primitives and Strings, and nested
+ * objects are written directly from the object. Other fields, and objects with a custom serialiser, are written
+ * through a PVField created for the field alone
+ * @author Matt Taylor
+ *
+ */
+public class BufferSerialiser {
+
+	Serialiser serialiser;
+	FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+	PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+
+	/**
+	 * Constructor
+	 * @param serialiser
+	 */
+	public BufferSerialiser(Serialiser serialiser) {
+		this.serialiser = serialiser;
+	}
+
+	/**
+	 * Serialises an object into a ByteBuffer. Each getter is called once, while building the Structure
+	 * @param source The object to serialise
+	 * @param buffer The buffer to write to, in its byte order
+	 * @param control The serialisation control, used for the introspection data of variant unions
+	 * @return The Structure of the data written, which is the Structure of the PVStructure toPVStructure would create
+	 * @throws Exception
+	 */
+	public Structure serialise(Object source, ByteBuffer buffer, SerializableControl control) throws Exception
+	{
+		ObjectSerialiser objectSerialiser = serialiser.getObjectSerialiser();
+		FieldValueSnapshot previousSnapshot = objectSerialiser.getSnapshot();
+		FieldValueSnapshot snapshot = new FieldValueSnapshot();
+		objectSerialiser.setSnapshot(snapshot);
+		try {
+			Structure structure = serialiser.buildStructure(source);
+			snapshot.freeze();
+
+			serialiseObject(source, structure, buffer, control);
+			return structure;
+		} finally {
+			objectSerialiser.setSnapshot(previousSnapshot);
+		}
+	}
+
+	/**
+	 * Writes the fields of an object in the order of its Structure
+	 * @param obj The object
+	 * @param structure The Structure built for the object
+	 * @param buffer The buffer to write to
+	 * @param control The serialisation control
+	 * @throws Exception
+	 */
+	private void serialiseObject(Object obj, Structure structure, ByteBuffer buffer, SerializableControl control) throws Exception
+	{
+		ObjectSerialiser objectSerialiser = serialiser.getObjectSerialiser();
+		Class<?> clazz = obj.getClass();
+
+		IPVStructureSerialiser<?> customSerialiser = objectSerialiser.getCustomSerialiserForClass(clazz);
+		if (customSerialiser != null) {
+			PVStructure pvStructure = pvDataCreate.createPVStructure(structure);
+			objectSerialiser.setValues(obj, pvStructure);
+			pvStructure.serialize(buffer, control);
+			return;
+		}
+
+		ClassDescriptor classDescriptor = objectSerialiser.getClassDescriptor(clazz);
+		FieldDescriptor[] fieldDescriptors = classDescriptor.getFields();
+		Object[] values = objectSerialiser.getFieldValues(obj, classDescriptor);
+
+		// The Structure has the fields of the descriptor in the same order, less any that were null
+		String[] names = structure.getFieldNames();
+		Field[] fields = structure.getFields();
+		int d = 0;
+		for (int i = 0; i < fields.length; i++) {
+			while (d < fieldDescriptors.length && !fieldDescriptors[d].getName().equals(names[i])) {
+				d++;
+			}
+			if (d == fieldDescriptors.length) {
+				throw new IllegalArgumentException("Field " + names[i] + " is not a field of " + clazz.getName());
+			}
+
+			FieldDescriptor fieldDescriptor = fieldDescriptors[d];
+			if (fieldDescriptor.isNonNullable()) {
+				serialiseScalar(fieldDescriptor.getAccessor(obj), fieldDescriptor.getScalarKind(), obj, buffer, control);
+			} else {
+				serialiseField(names[i], fields[i], values[d], buffer, control);
+			}
+			d++;
+		}
+	}
+
+	/**
+	 * Writes the value of a field that is not a Java primitive
+	 * @param name The name of the field
+	 * @param field The introspection interface of the field
+	 * @param value The value of the field
+	 * @param buffer The buffer to write to
+	 * @param control The serialisation control
+	 * @throws Exception
+	 */
+	private void serialiseField(String name, Field field, Object value, ByteBuffer buffer, SerializableControl control) throws Exception
+	{
+		if (value == null) {
+			// Only in the static schema, where the PVStructure is left with its initial values
+			pvDataCreate.createPVField(field).serialize(buffer, control);
+			return;
+		}
+
+		Class<?> clazz = value.getClass();
+		switch (field.getType()) {
+		case scalar: {
+			ScalarKind kind = ScalarKind.of(clazz);
+			if (kind != null && kind.getScalarType() == ((Scalar)field).getScalarType()) {
+				serialiseScalar(value, kind, buffer, control);
+				return;
+			}
+			break;
+		}
+		case scalarArray: {
+			ScalarArray scalarArray = (ScalarArray)field;
+			ScalarKind kind = clazz.isArray() ? ScalarKind.of(clazz.getComponentType()) : null;
+			if (kind != null && kind != ScalarKind.CHAR && (clazz.getComponentType().isPrimitive() || kind == ScalarKind.STRING) &&
+					kind.getScalarType() == scalarArray.getElementType() && scalarArray.getArraySizeType() == ArraySizeType.variable) {
+				serialiseArray(value, kind, buffer, control);
+				serialiser.getContainerSerialiser().reportPrimitiveArray(clazz.getComponentType(), Array.getLength(value));
+				return;
+			}
+			break;
+		}
+		case structure:
+			if (!ContainerSerialiser.isContainer(clazz)) {
+				serialiseObject(value, (Structure)field, buffer, control);
+				return;
+			}
+			break;
+		case union: {
+			PVUnion pvUnion = pvDataCreate.createPVUnion((Union)field);
+			serialiser.getObjectSerialiser().setVariantUnionValue(pvUnion, value);
+			pvUnion.serialize(buffer, control);
+			return;
+		}
+		default:
+			break;
+		}
+
+		// Populate a PVField for this field alone, as the object serialiser would
+		PVStructure holder = pvDataCreate.createPVStructure(fieldCreate.createStructure(new String[] {name}, new Field[] {field}));
+		serialiser.getObjectSerialiser().setObjectValue(name, holder, value);
+		holder.getSubField(name).serialize(buffer, control);
+	}
+
+	/**
+	 * Writes a scalar value
+	 * @param value The value
+	 * @param kind The kind of the value
+	 * @param buffer The buffer to write to
+	 * @param control The serialisation control
+	 */
+	private static void serialiseScalar(Object value, ScalarKind kind, ByteBuffer buffer, SerializableControl control)
+	{
+		switch (kind) {
+		case INT:
+			control.ensureBuffer(Integer.BYTES);
+			buffer.putInt((Integer)value);
+			break;
+		case SHORT:
+			control.ensureBuffer(Short.BYTES);
+			buffer.putShort((Short)value);
+			break;
+		case LONG:
+			control.ensureBuffer(Long.BYTES);
+			buffer.putLong((Long)value);
+			break;
+		case BYTE:
+			control.ensureBuffer(Byte.BYTES);
+			buffer.put((Byte)value);
+			break;
+		case BOOLEAN:
+			control.ensureBuffer(1);
+			buffer.put((Boolean)value ? (byte)1 : (byte)0);
+			break;
+		case FLOAT:
+			control.ensureBuffer(Float.BYTES);
+			buffer.putFloat((Float)value);
+			break;
+		case DOUBLE:
+			control.ensureBuffer(Double.BYTES);
+			buffer.putDouble((Double)value);
+			break;
+		case CHAR:
+		case STRING:
+			SerializeHelper.serializeString(String.valueOf(value), buffer, control);
+			break;
+		}
+	}
+
+	/**
+	 * Writes the value of a field declared with a Java primitive type, without boxing it
+	 * @param getter The getter for the field
+	 * @param kind The kind of the field
+	 * @param source The object to get the value from
+	 * @param buffer The buffer to write to
+	 * @param control The serialisation control
+	 * @throws Exception
+	 */
+	private static void serialiseScalar(Getter getter, ScalarKind kind, Object source, ByteBuffer buffer, SerializableControl control) throws Exception
+	{
+		switch (kind) {
+		case INT:
+			control.ensureBuffer(Integer.BYTES);
+			buffer.putInt(getter.getInt(source));
+			break;
+		case SHORT:
+			control.ensureBuffer(Short.BYTES);
+			buffer.putShort(getter.getShort(source));
+			break;
+		case LONG:
+			control.ensureBuffer(Long.BYTES);
+			buffer.putLong(getter.getLong(source));
+			break;
+		case BYTE:
+			control.ensureBuffer(Byte.BYTES);
+			buffer.put(getter.getByte(source));
+			break;
+		case BOOLEAN:
+			control.ensureBuffer(1);
+			buffer.put(getter.getBoolean(source) ? (byte)1 : (byte)0);
+			break;
+		case FLOAT:
+			control.ensureBuffer(Float.BYTES);
+			buffer.putFloat(getter.getFloat(source));
+			break;
+		case DOUBLE:
+			control.ensureBuffer(Double.BYTES);
+			buffer.putDouble(getter.getDouble(source));
+			break;
+		case CHAR:
+			SerializeHelper.serializeString(String.valueOf(getter.getChar(source)), buffer, control);
+			break;
+		case STRING:
+			break;
+		}
+	}
+
+	/**
+	 * Writes an array of a Java primitive type, or of Strings, in as many chunks as the buffer needs to be flushed
+	 * @param array The array
+	 * @param kind The kind of the elements
+	 * @param buffer The buffer to write to
+	 * @param control The serialisation control
+	 */
+	private static void serialiseArray(Object array, ScalarKind kind, ByteBuffer buffer, SerializableControl control)
+	{
+		int length = Array.getLength(array);
+		SerializeHelper.writeSize(length, buffer, control);
+
+		if (kind == ScalarKind.STRING) {
+			String[] strings = (String[])array;
+			for (int i = 0; i < length; i++) {
+				SerializeHelper.serializeString(strings[i], buffer, control);
+			}
+			return;
+		}
+
+		int elementSize = kind.getElementSize();
+		int i = 0;
+		while (true) {
+			int count = Math.min(length - i, buffer.remaining() / elementSize);
+			putElements(array, kind, i, count, buffer);
+			i += count;
+			if (i < length) {
+				control.flushSerializeBuffer();
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Puts part of an array of a Java primitive type into the buffer, which must have room for it
+	 * @param array The array
+	 * @param kind The kind of the elements
+	 * @param offset The index of the first element to put
+	 * @param count The number of elements to put
+	 * @param buffer The buffer to write to
+	 */
+	private static void putElements(Object array, ScalarKind kind, int offset, int count, ByteBuffer buffer)
+	{
+		int position = buffer.position();
+		switch (kind) {
+		case INT:
+			buffer.asIntBuffer().put((int[])array, offset, count);
+			break;
+		case SHORT:
+			buffer.asShortBuffer().put((short[])array, offset, count);
+			break;
+		case LONG:
+			buffer.asLongBuffer().put((long[])array, offset, count);
+			break;
+		case BYTE:
+			buffer.put((byte[])array, offset, count);
+			return;
+		case BOOLEAN: {
+			boolean[] booleans = (boolean[])array;
+			for (int i = offset; i < offset + count; i++) {
+				buffer.put(booleans[i] ? (byte)1 : (byte)0);
+			}
+			return;
+		}
+		case FLOAT:
+			buffer.asFloatBuffer().put((float[])array, offset, count);
+			break;
+		case DOUBLE:
+			buffer.asDoubleBuffer().put((double[])array, offset, count);
+			break;
+		default:
+			throw new IllegalArgumentException("Cannot put an array of " + kind + " into a buffer");
+		}
+		// Cast so that the Java 8 Buffer.position(int) is called rather than the covariant override added in Java 9
+		((Buffer)buffer).position(position + count * kind.getElementSize());
+	}
+}
@@ -0,0 +1,39 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+/**
+ * Holds the ordered list of fields to serialise for a class, so that the reflection
+ * on the class only has to be done the first time an object of that class is serialised
+ * @author Matt Taylor
+ *
+ */
+public class ClassDescriptor {
+
+	private final Class<?> describedClass;
+	private final FieldDescriptor[] fields;
+
+	/**
+	 * Constructor
+	 * @param describedClass The class described
+	 * @param fields The fields to serialise, in the order they appear in the Structure
+	 */
+	public ClassDescriptor(Class<?> describedClass, FieldDescriptor[] fields) {
+		this.describedClass = describedClass;
+		this.fields = fields;
+	}
+
+	/**
+	 * Gets the class described
+	 * @return
+	 */
+	public Class<?> getDescribedClass() {
+		return describedClass;
+	}
+
+	/**
+	 * Gets the fields to serialise
+	 * @return
+	 */
+	public FieldDescriptor[] getFields() {
+		return fields;
+	}
+}
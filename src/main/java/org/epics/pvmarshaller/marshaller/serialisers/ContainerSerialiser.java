@@ -6,15 +6,32 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
 import org.epics.pvdata.pv.FieldBuilder;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVArray;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
+import org.epics.pvdata.pv.PVUnion;
+import org.epics.pvdata.pv.PVUnionArray;
+import org.epics.pvdata.pv.ScalarType;
 import org.epics.pvdata.pv.Structure;
 import org.epics.pvdata.pv.Union;
+import org.epics.pvmarshaller.marshaller.jfr.MarshallerEvents;
+import org.epics.pvmarshaller.marshaller.metrics.MarshallerMetrics;
+import org.epics.pvmarshaller.marshaller.parallel.ParallelElementConverter;
+import org.epics.pvmarshaller.marshaller.parallel.ParallelElementConverter.ElementConversion;
 
 /**
  * Serialises containers
@@ -24,6 +41,12 @@ import org.epics.pvdata.pv.Union;
 public class ContainerSerialiser {
 	
 	Serialiser serialiser;
+	PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+	FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+	boolean useStructureArrays = false;
+	ParallelElementConverter parallelConverter = ParallelElementConverter.SEQUENTIAL;
+	Map<Class<?>, List<Class<?>>> registeredSubtypes = new ConcurrentHashMap<Class<?>, List<Class<?>>>();
+	Map<Class<?>, Union> subtypeUnions = new ConcurrentHashMap<Class<?>, Union>();
 	
 	/**
 	 * Constructor
@@ -33,6 +56,320 @@ public class ContainerSerialiser {
 		this.serialiser = serialiser;
 	}
 	
+	/**
+	 * Sets the converter used for the elements of arrays and lists of objects, which decides whether they are serialised in parallel
+	 * @param parallelConverter
+	 */
+	public void setParallelConverter(ParallelElementConverter parallelConverter) {
+		this.parallelConverter = parallelConverter;
+	}
+	
+	/**
+	 * Converts each element of an array or list of objects, in parallel if there are enough elements and all the custom serialisers are thread safe.
+	 * The frozen snapshot of the current serialisation is used by the threads of the pool as well
+	 * @param results The array to hold the converted elements
+	 * @param conversion The conversion of a single element
+	 * @throws Exception
+	 */
+	<T> void convertElements(T[] results, ElementConversion<? extends T> conversion) throws Exception {
+		ObjectSerialiser objectSerialiser = serialiser.getObjectSerialiser();
+		ParallelElementConverter converter = parallelConverter;
+		if (!converter.isParallel(results.length)) {
+			converter.convert(results, conversion);
+			return;
+		} else if (!objectSerialiser.areCustomSerialisersThreadSafe()) {
+			ParallelElementConverter.SEQUENTIAL.convert(results, conversion);
+			return;
+		}
+		
+		FieldValueSnapshot snapshot = objectSerialiser.getSnapshot();
+		if (snapshot == null || !snapshot.isFrozen()) {
+			// Only a frozen snapshot can be read from several threads
+			converter.convert(results, conversion);
+			return;
+		}
+		
+		converter.convert(results, i -> {
+			FieldValueSnapshot previousSnapshot = objectSerialiser.getSnapshot();
+			objectSerialiser.setSnapshot(snapshot);
+			try {
+				return conversion.convert(i);
+			} finally {
+				objectSerialiser.setSnapshot(previousSnapshot);
+			}
+		});
+	}
+	
+	/**
+	 * Gets whether arrays and lists of objects of a single class are serialised into structure arrays
+	 * @return
+	 */
+	public boolean getUseStructureArrays() {
+		return useStructureArrays;
+	}
+	
+	/**
+	 * Sets whether arrays and lists of objects of a single class are serialised into structure arrays, which share
+	 * one element Structure, instead of union arrays with a Structure for each element
+	 * @param useStructureArrays
+	 */
+	public void setUseStructureArrays(boolean useStructureArrays) {
+		this.useStructureArrays = useStructureArrays;
+		serialiser.getObjectSerialiser().clearStructures();
+	}
+	
+	/**
+	 * Gets the Structure shared by the elements of an array or list of objects, if it is to be serialised into a structure array
+	 * @param elements The elements of the array or list
+	 * @return The element Structure, or null if the elements should be serialised into a union array
+	 * @throws Exception
+	 */
+	public Structure getElementStructure(List<?> elements) throws Exception {
+		if (!useStructureArrays || elements.isEmpty()) {
+			return null;
+		}
+		
+		Class<?> elementClass = null;
+		for (Object element : elements) {
+			if (element == null) {
+				return null;
+			} else if (elementClass == null) {
+				elementClass = element.getClass();
+			} else if (!element.getClass().equals(elementClass)) {
+				return null;
+			}
+		}
+		
+		Structure elementStructure = getElementStructureForClass(elementClass);
+		if (elementStructure != null) {
+			// The Structure comes from the declared types, so nested objects of subclasses need their own
+			for (Object element : elements) {
+				if (!serialiser.getObjectSerialiser().matchesDeclaredTypes(element)) {
+					return null;
+				}
+			}
+		}
+		return elementStructure;
+	}
+	
+	/**
+	 * Gets the Structure of the elements of a structure array holding objects of the specified class
+	 * @param elementClass The class of the elements
+	 * @return The element Structure, or null if objects of the class can't share a Structure
+	 * @throws Exception
+	 */
+	Structure getElementStructureForClass(Class<?> elementClass) throws Exception {
+		if (!useStructureArrays || PrimitiveSerialiser.isPrimitive(elementClass) || isContainer(elementClass) || elementClass.equals(Object.class)) {
+			return null;
+		}
+		
+		try {
+			return serialiser.getObjectSerialiser().buildStructureFromClass(elementClass);
+		} catch (IllegalArgumentException e) {
+			// The Structure depends on the values, so each element needs its own
+			return null;
+		}
+	}
+	
+	/**
+	 * Populates a structure array with the values of the elements of an array or list of objects.
+	 * Null members of the elements are left with their default values
+	 * @param structureArray The structure array to populate
+	 * @param elements The elements of the array or list
+	 * @throws Exception
+	 */
+	public void setStructureArrayValue(PVStructureArray structureArray, List<?> elements) throws Exception {
+		Structure elementStructure = structureArray.getStructureArray().getStructure();
+		PVStructure[] pvStructures = new PVStructure[elements.size()];
+		
+		convertElements(pvStructures, i -> {
+			Object element = elements.get(i);
+			if (element == null) {
+				return null;
+			}
+			PVStructure pvStructure = pvDataCreate.createPVStructure(elementStructure);
+			serialiser.setValues(element, pvStructure);
+			return pvStructure;
+		});
+		
+		int numPut = 0;
+		structureArray.setLength(pvStructures.length);
+		while (numPut < pvStructures.length)
+		{
+			numPut += structureArray.put(numPut, pvStructures.length - numPut, pvStructures, numPut);
+		}
+	}
+	
+	/**
+	 * Adds a list of the classes that may be used in place of the specified class in arrays and lists.
+	 * Arrays and lists declared with the base class are serialised into union arrays of a regular Union
+	 * with a member for each of the subtypes, named after the class
+	 * @param baseClass The declared element class
+	 * @param subtypes The permitted classes of the elements
+	 * @throws IllegalArgumentException if two of the subtypes have the same simple name
+	 */
+	public void addSubtypes(Class<?> baseClass, List<Class<?>> subtypes) {
+		Set<String> names = new HashSet<String>();
+		for (Class<?> subtype : subtypes) {
+			if (!names.add(subtype.getSimpleName())) {
+				throw new IllegalArgumentException("Unable to register the subtypes of " + baseClass + " as more than one is named " + subtype.getSimpleName());
+			}
+		}
+		registeredSubtypes.put(baseClass, subtypes);
+		serialiser.getObjectSerialiser().clearStructures();
+	}
+	
+	/**
+	 * Gets the regular Union with a member for each of the registered subtypes of the specified class, creating it
+	 * the first time it is needed
+	 * @param baseClass The declared element class
+	 * @return The Union, or null if no subtypes are registered for the class
+	 * @throws Exception
+	 */
+	public Union getSubtypeUnion(Class<?> baseClass) throws Exception {
+		List<Class<?>> subtypes = baseClass == null ? null : registeredSubtypes.get(baseClass);
+		if (subtypes == null) {
+			return null;
+		}
+		
+		Union union = subtypeUnions.get(baseClass);
+		if (union == null) {
+			union = createSubtypeUnion(subtypes);
+			Union existing = subtypeUnions.putIfAbsent(baseClass, union);
+			if (existing != null) {
+				union = existing;
+			}
+		}
+		return union;
+	}
+	
+	/**
+	 * Creates a regular Union with a member for each of the specified subtypes, named after its class
+	 * @param subtypes The subtypes
+	 * @return The Union
+	 * @throws Exception
+	 */
+	private Union createSubtypeUnion(List<Class<?>> subtypes) throws Exception {
+		String[] names = new String[subtypes.size()];
+		org.epics.pvdata.pv.Field[] fields = new org.epics.pvdata.pv.Field[subtypes.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = subtypes.get(i).getSimpleName();
+			fields[i] = serialiser.getObjectSerialiser().buildStructureFromClass(subtypes.get(i));
+		}
+		return fieldCreate.createUnion(names, fields);
+	}
+	
+	/**
+	 * Removes the Unions created for the registered subtypes, after a change to the registered configuration
+	 */
+	void clearSubtypeUnions() {
+		subtypeUnions.clear();
+	}
+	
+	/**
+	 * Gets the registered subtypes of the specified class
+	 * @param baseClass The declared element class
+	 * @return The subtypes, or null if none are registered for the class
+	 */
+	List<Class<?>> getSubtypes(Class<?> baseClass) {
+		return baseClass == null ? null : registeredSubtypes.get(baseClass);
+	}
+	
+	/**
+	 * Gets the regular Union for the elements of an array or list, if they are all registered subtypes of its declared element class
+	 * whose objects match the Structures of the Union members
+	 * @param baseClass The declared element class
+	 * @param elements The elements of the array or list
+	 * @return The Union, or null if the elements should be serialised otherwise
+	 * @throws Exception
+	 */
+	private Union getSubtypeUnion(Class<?> baseClass, List<?> elements) throws Exception {
+		List<Class<?>> subtypes = getSubtypes(baseClass);
+		if (subtypes == null) {
+			return null;
+		}
+		
+		for (Object element : elements) {
+			// The members are built from declared types, so nested objects of subclasses need a variant union
+			if (element != null && (!subtypes.contains(element.getClass()) || !serialiser.getObjectSerialiser().matchesDeclaredTypes(element))) {
+				return null;
+			}
+		}
+		return getSubtypeUnion(baseClass);
+	}
+	
+	/**
+	 * Populates a union array of a regular Union with the values of the elements of an array or list of objects.
+	 * Each element is put in the member of the Union named after its class
+	 * @param unionArray The union array to populate
+	 * @param elements The elements of the array or list
+	 * @throws Exception
+	 */
+	public void setRegularUnionArrayValue(PVUnionArray unionArray, List<?> elements) throws Exception {
+		Union union = unionArray.getUnionArray().getUnion();
+		PVUnion[] pvUnions = new PVUnion[elements.size()];
+		
+		convertElements(pvUnions, i -> {
+			Object element = elements.get(i);
+			PVUnion pvUnion = pvDataCreate.createPVUnion(union);
+			if (element != null) {
+				int selector = union.getFieldIndex(element.getClass().getSimpleName());
+				if (selector < 0) {
+					throw new IllegalArgumentException(element.getClass() + " is not one of the registered subtypes of " + unionArray.getFieldName());
+				}
+				serialiser.setValues(element, pvUnion.select(PVStructure.class, selector));
+			}
+			return pvUnion;
+		});
+		
+		int numPut = 0;
+		unionArray.setLength(pvUnions.length);
+		while (numPut < pvUnions.length)
+		{
+			numPut += unionArray.put(numPut, pvUnions.length - numPut, pvUnions, numPut);
+		}
+	}
+	
+	/**
+	 * Gets the declared element class of an array or list field
+	 * @param field The field
+	 * @return The element class, or null if it isn't known
+	 */
+	private static Class<?> getDeclaredElementClass(Field field) {
+		Class<?> fieldType = field.getType();
+		if (fieldType.isArray()) {
+			return fieldType.getComponentType();
+		} else if (List.class.isAssignableFrom(fieldType)) {
+			return ObjectSerialiser.getListElementClass(field);
+		}
+		return null;
+	}
+	
+	/**
+	 * Adds an array of objects to the field builder. The elements are put in a regular union array if they are registered subtypes
+	 * of the declared element class, a structure array if they share a Structure, or otherwise a variant union array
+	 * @param fieldBuilder The field builder
+	 * @param name The name of the field
+	 * @param declaredElementClass The declared element class, or null if it isn't known
+	 * @param elements The elements of the array or list
+	 * @throws Exception
+	 */
+	private void addObjectArray(FieldBuilder fieldBuilder, String name, Class<?> declaredElementClass, List<?> elements) throws Exception {
+		Union subtypeUnion = getSubtypeUnion(declaredElementClass, elements);
+		if (subtypeUnion != null) {
+			fieldBuilder.addArray(name, subtypeUnion);
+			return;
+		}
+		
+		Structure elementStructure = getElementStructure(elements);
+		if (elementStructure != null) {
+			fieldBuilder.addArray(name, elementStructure);
+		} else {
+			Union union = FieldFactory.getFieldCreate().createVariantUnion();
+			fieldBuilder.addArray(name, union);
+		}
+	}
+	
 	/**
 	 * Returns whether the specified class is a container
 	 * @param fieldType
@@ -89,11 +426,22 @@ public class ContainerSerialiser {
 	 * @throws Exception
 	 */
 	public void addToPVStructure(Field field, FieldBuilder fieldBuilder, Object parentObject) throws Exception {
-		String name = field.getName();
-		
 		Method m = Serialiser.findGetter(parentObject, field.getName());
 		Object containerObject = m.invoke(parentObject);
 		
+		addFieldToPVStructure(field, fieldBuilder, containerObject);
+	}
+	
+	/**
+	 * Adds a structure representing a container field to the field builder, using a value already got from the field
+	 * @param field The container field of the object
+	 * @param fieldBuilder The fieldBuilder object with the current structure
+	 * @param containerObject The value of the container field
+	 * @throws Exception
+	 */
+	public void addFieldToPVStructure(Field field, FieldBuilder fieldBuilder, Object containerObject) throws Exception {
+		String name = field.getName();
+		
 		Class<?> fieldType = containerObject.getClass();
 		
 		if (fieldType.isArray()) {
@@ -106,14 +454,10 @@ public class ContainerSerialiser {
 				// Java doesn't support Arrays of generics so should never get here
 				throw new IllegalArgumentException("Unable to create an Arrays of Maps");
 			} else {
-				Union union = FieldFactory.getFieldCreate().createVariantUnion();
-				fieldBuilder.addArray(name, union);
+				addObjectArray(fieldBuilder, name, getDeclaredElementClass(field), Arrays.asList((Object[])containerObject));
 			}
 		} else if (List.class.isAssignableFrom(fieldType)) {
-			field.setAccessible(true);
-			Method method = Serialiser.findGetter(parentObject, field.getName());
-			Object listObject = method.invoke(parentObject);
-			List<?> list = (List<?>)listObject;
+			List<?> list = (List<?>)containerObject;
 			Class<?> componentType = ListSerialiser.getClassFromList(list);
 
 			if (PrimitiveSerialiser.isPrimitive(componentType)) {
@@ -121,9 +465,7 @@ public class ContainerSerialiser {
 			} else if (isArrayTypeContainer(componentType)) {
 				throw new IllegalArgumentException("PVData does not support Arrays of Arrays");
 			} else {
-				// All lists are union arrays
-				Union union = FieldFactory.getFieldCreate().createVariantUnion();
-				fieldBuilder.addArray(name, union);
+				addObjectArray(fieldBuilder, name, getDeclaredElementClass(field), list);
 			}
 		} else if (Map.class.isAssignableFrom(fieldType)) {
 			Type type = field.getGenericType();
@@ -136,10 +478,7 @@ public class ContainerSerialiser {
 	            	throw new IllegalArgumentException("Map keys must be strings: " + name);
 	            } 
 			}
-        	field.setAccessible(true);
-			Method method = Serialiser.findGetter(parentObject, field.getName());
-			Object mapObject = method.invoke(parentObject);
-			Map<String, ?> map = (Map<String, ?>)mapObject;
+			Map<String, ?> map = (Map<String, ?>)containerObject;
 			Structure componentStructure = serialiser.getMapSerialiser().buildStructureFromMap(map);
 			fieldBuilder.add(name, componentStructure);
             
@@ -165,8 +504,7 @@ public class ContainerSerialiser {
 			} else if (isArrayTypeContainer(componentType)) {
 				throw new IllegalArgumentException("PVData does not support Arrays of Arrays");
 			} else {
-				Union union = FieldFactory.getFieldCreate().createVariantUnion();
-				fieldBuilder.addArray(name, union);
+				addObjectArray(fieldBuilder, name, null, Arrays.asList((Object[])containerObject));
 			}
 		} else if (List.class.isAssignableFrom(fieldType)) {
 			List<?> list = (List<?>)containerObject;
@@ -177,8 +515,7 @@ public class ContainerSerialiser {
 			} else if (isArrayTypeContainer(componentType)) {
 				throw new IllegalArgumentException("PVData does not support Arrays of Arrays");
 			} else {
-				Union union = FieldFactory.getFieldCreate().createVariantUnion();
-				fieldBuilder.addArray(name, union);
+				addObjectArray(fieldBuilder, name, null, list);
 			}
 		} else if (Map.class.isAssignableFrom(fieldType)) {			
             	Map<String, ?> map = (Map<String, ?>)containerObject;
@@ -205,9 +542,13 @@ public class ContainerSerialiser {
 	
 			field.setAccessible(true);
 			if (fieldType.isArray()) {
+				Object event = MarshallerEvents.beginArray();
 				setArrayFieldValue(field, structure, object);
+				endArrayEvent(event, field.getName(), structure);
 			} else if (List.class.isAssignableFrom(fieldType)) {
+				Object event = MarshallerEvents.beginArray();
 				setListFieldValue(field, structure, object);
+				endArrayEvent(event, field.getName(), structure);
 			} else if (Map.class.isAssignableFrom(fieldType)) {
 				setMapFieldValue(field, structure, object);
 			}
@@ -226,15 +567,34 @@ public class ContainerSerialiser {
 
 		if (containerObject != null) {
 			if (containerType.isArray()) {
+				Object event = MarshallerEvents.beginArray();
 				setArrayFieldValueWithContainerObject(fieldName, structure, containerObject);
+				endArrayEvent(event, fieldName, structure);
 			} else if (List.class.isAssignableFrom(containerType)) {
+				Object event = MarshallerEvents.beginArray();
 				setListFieldValueWithContainerObject(fieldName, structure, containerObject);
+				endArrayEvent(event, fieldName, structure);
 			} else if (Map.class.isAssignableFrom(containerType)) {
 				setMapFieldValueWithContainerObject(fieldName, structure, containerObject);
 			}
 		}
 	}
 
+	/**
+	 * Commits the Flight Recorder event for an array or list written to a PVStructure
+	 * @param event The event, or null if it is not being recorded
+	 * @param fieldName The field name
+	 * @param structure The PVStructure that was populated
+	 */
+	private static void endArrayEvent(Object event, String fieldName, PVStructure structure) {
+		if (event != null) {
+			PVField pvField = structure.getSubField(fieldName);
+			if (pvField != null) {
+				MarshallerEvents.endArray(event, MarshallerEvents.SERIALISE, pvField);
+			}
+		}
+	}
+
 	/**
 	 * Populates the value of an array field with a field in the given object 
 	 * @param source The field
@@ -271,6 +631,7 @@ public class ContainerSerialiser {
 		
 		if (PrimitiveSerialiser.isPrimitive(componentType)) {
 			ArraySerialiser.setPrimitiveArrayValue(fieldName, componentType, structure, arrayObject);
+			reportPrimitiveArray(componentType, Array.getLength(arrayObject));
 		} else if (isArrayTypeContainer(componentType)) {
 			throw new IllegalArgumentException(fieldName + " is an array of arrays.");
 		} else if (isStructureTypeContainer(componentType)) {
@@ -308,6 +669,19 @@ public class ContainerSerialiser {
 		}
 	}
 	
+	/**
+	 * Reports an array or list of primitives written to a PVStructure to the metrics
+	 * @param componentType The type of the elements
+	 * @param length The number of elements
+	 */
+	void reportPrimitiveArray(Class<?> componentType, int length) {
+		MarshallerMetrics metrics = serialiser.getMetrics();
+		if (metrics != MarshallerMetrics.NONE) {
+			ScalarType type = PrimitiveSerialiser.getScalarType(componentType);
+			metrics.primitiveArraySerialised(type, length, MarshallerMetrics.getPayloadBytes(type, length));
+		}
+	}
+	
 	/**
 	 * Populates the value of a list field in the PVStructure from the container object itself
 	 * @param fieldName The field name
@@ -319,11 +693,15 @@ public class ContainerSerialiser {
 			throws Exception {
 		
 		List<?> list = (List<?>)containerObject;
-		if (list != null) {
+		if (list != null && list.isEmpty()) {
+			// The element type of an empty list isn't known, so just empty whichever array is already in the structure
+			structure.getSubField(PVArray.class, fieldName).setLength(0);
+		} else if (list != null) {
 			Class<?> componentType = ListSerialiser.getClassFromList(list);
 			
 			if (PrimitiveSerialiser.isPrimitive(componentType)) {
 				ListSerialiser.setPrimitiveListValue(fieldName, structure, list, componentType);
+				reportPrimitiveArray(componentType, list.size());
 			} else if (isArrayTypeContainer(componentType)) {
 				throw new IllegalArgumentException(fieldName + " is a list of lists.");
 			} else if (isStructureTypeContainer(componentType)) {
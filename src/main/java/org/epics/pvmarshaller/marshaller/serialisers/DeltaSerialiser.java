@@ -0,0 +1,358 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.lang.reflect.Array;
+import java.util.List;
+
+import org.epics.pvdata.factory.ConvertFactory;
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.BooleanArrayData;
+import org.epics.pvdata.pv.ByteArrayData;
+import org.epics.pvdata.pv.Convert;
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.Field;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.FloatArrayData;
+import org.epics.pvdata.pv.IntArrayData;
+import org.epics.pvdata.pv.LongArrayData;
+import org.epics.pvdata.pv.PVBooleanArray;
+import org.epics.pvdata.pv.PVByteArray;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVFloatArray;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVLongArray;
+import org.epics.pvdata.pv.PVScalarArray;
+import org.epics.pvdata.pv.PVShortArray;
+import org.epics.pvdata.pv.PVStringArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVUnion;
+import org.epics.pvdata.pv.ShortArrayData;
+import org.epics.pvdata.pv.StringArrayData;
+import org.epics.pvmarshaller.marshaller.serialisers.FieldDescriptor.Kind;
+
+/**
+ * Populates an existing PVStructure with only the values that differ from its current contents,
+ * and records the offsets of the changed fields in a BitSet, as used for pvAccess monitor updates
+ * @author Matt Taylor
+ *
+ */
+public class DeltaSerialiser {
+
+	Serialiser serialiser;
+
+	PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+	FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+	Convert convert = ConvertFactory.getConvert();
+
+	/**
+	 * Constructor
+	 * @param serialiser The parent serialiser
+	 */
+	public DeltaSerialiser(Serialiser serialiser) {
+		this.serialiser = serialiser;
+	}
+
+	/**
+	 * Populates the values in a PVStructure with the specified object, only writing the fields whose value has changed.
+	 * The offset of each changed field is set in the BitSet. Scalars and scalar arrays are compared directly; other
+	 * fields are compared as a whole, so a change anywhere inside them sets the bit of the whole field.
+	 * Members that are null reset the corresponding value in the PVStructure to its default, setting its bit if it wasn't already the default
+	 * @param obj The object to populate from
+	 * @param pvStructure The PVStructure to populate, which must have been created for an object of the same shape
+	 * @param changedFields The BitSet to set the offsets of the changed fields in. Existing bits are not cleared
+	 * @throws Exception
+	 */
+	public void setChangedValues(Object obj, PVStructure pvStructure, BitSet changedFields) throws Exception
+	{
+		Class<?> clazz = obj.getClass();
+		ObjectSerialiser objectSerialiser = serialiser.getObjectSerialiser();
+
+		if (objectSerialiser.getCustomSerialiserForClass(clazz) != null) {
+			// The fields written by a custom serialiser aren't known, so populate a copy and compare the whole structure
+			PVStructure copy = pvDataCreate.createPVStructure(pvStructure.getStructure());
+			convert.copyStructure(pvStructure, copy);
+			objectSerialiser.setValues(obj, copy);
+			copyIfChanged(copy, pvStructure, changedFields);
+			return;
+		}
+
+		for (FieldDescriptor fieldDescriptor : objectSerialiser.getClassDescriptor(clazz).getFields())
+		{
+			String name = fieldDescriptor.getName();
+
+			if (fieldDescriptor.isNonNullable()) {
+				PVField pvField = pvStructure.getSubField(name);
+				if (PrimitiveSerialiser.setChangedValue(pvField, fieldDescriptor.getAccessor(obj), fieldDescriptor.getScalarKind(), obj)) {
+					changedFields.set(pvField.getFieldOffset());
+				}
+				continue;
+			}
+
+			Object value = fieldDescriptor.getValue(obj);
+			if (value != null) {
+				if (objectSerialiser.isStaticSchema() && fieldDescriptor.getKind() != Kind.PRIMITIVE) {
+					PVField pvField = pvStructure.getSubField(name);
+					if (pvField instanceof PVUnion) {
+						setChangedUnionValue((PVUnion)pvField, value, changedFields);
+						continue;
+					}
+				}
+				
+				switch (fieldDescriptor.getKind()) {
+				case PRIMITIVE:
+					setChangedPrimitiveValue(pvStructure.getSubField(name), value, changedFields);
+					break;
+				case CONTAINER:
+					if (fieldDescriptor.isSharedArray()) {
+						setChangedSharedArrayValue(pvStructure.getSubField(PVScalarArray.class, name), value, changedFields);
+					} else {
+						setChangedContainerValue(name, pvStructure, value, changedFields);
+					}
+					break;
+				default:
+					setChangedObjectValue(name, pvStructure, value, changedFields);
+					break;
+				}
+			} else {
+				PVField pvField = pvStructure.getSubField(name);
+				if (pvField != null && ObjectSerialiser.resetValue(pvField)) {
+					changedFields.set(pvField.getFieldOffset());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Populates the value of a non-primitive, non-container field if it has changed
+	 * @param fieldName The name of the field in the parent structure
+	 * @param parentStructure The PVStructure to populate
+	 * @param childObject The value of the field
+	 * @param changedFields The BitSet of changed fields
+	 * @throws Exception
+	 */
+	private void setChangedObjectValue(String fieldName, PVStructure parentStructure, Object childObject, BitSet changedFields) throws Exception
+	{
+		Class<?> clazz = childObject.getClass();
+
+		// Check again for primitives and containers here in case of generic class not showing up before.
+		if (PrimitiveSerialiser.isPrimitive(clazz)) {
+			setChangedPrimitiveValue(parentStructure.getSubField(fieldName), childObject, changedFields);
+		} else if (ContainerSerialiser.isContainer(clazz)) {
+			setChangedContainerValue(fieldName, parentStructure, childObject, changedFields);
+		} else {
+			setChangedValues(childObject, parentStructure.getStructureField(fieldName), changedFields);
+		}
+	}
+
+	/**
+	 * Populates the value of a variant union field of a static schema if it has changed
+	 * @param pvUnion The field to populate
+	 * @param value The value of the field
+	 * @param changedFields The BitSet of changed fields
+	 * @throws Exception
+	 */
+	private void setChangedUnionValue(PVUnion pvUnion, Object value, BitSet changedFields) throws Exception
+	{
+		PVUnion copy = pvDataCreate.createPVVariantUnion();
+		serialiser.getObjectSerialiser().setVariantUnionValue(copy, value);
+		copyIfChanged(copy, pvUnion, changedFields);
+	}
+
+	/**
+	 * Populates the value of a primitive field if it has changed
+	 * @param pvField The field to populate
+	 * @param value The value of the field
+	 * @param changedFields The BitSet of changed fields
+	 */
+	private static void setChangedPrimitiveValue(PVField pvField, Object value, BitSet changedFields)
+	{
+		if (PrimitiveSerialiser.setChangedValue(pvField, value)) {
+			changedFields.set(pvField.getFieldOffset());
+		}
+	}
+
+	/**
+	 * Shares an array with a scalar array field if its contents have changed
+	 * @param pvArray The field to populate
+	 * @param array The array of primitives
+	 * @param changedFields The BitSet of changed fields
+	 */
+	private static void setChangedSharedArrayValue(PVScalarArray pvArray, Object array, BitSet changedFields)
+	{
+		if (!scalarArrayEquals(pvArray, array)) {
+			ArraySerialiser.sharePrimitiveArrayValue(pvArray.getFieldName(), pvArray.getParent(), array);
+			changedFields.set(pvArray.getFieldOffset());
+		}
+	}
+
+	/**
+	 * Populates the value of a container field if it has changed
+	 * @param fieldName The name of the field in the parent structure
+	 * @param parentStructure The PVStructure to populate
+	 * @param containerObject The value of the field
+	 * @param changedFields The BitSet of changed fields
+	 * @throws Exception
+	 */
+	private void setChangedContainerValue(String fieldName, PVStructure parentStructure, Object containerObject, BitSet changedFields) throws Exception
+	{
+		PVField pvField = parentStructure.getSubField(fieldName);
+		ContainerSerialiser containerSerialiser = serialiser.getContainerSerialiser();
+
+		if (pvField instanceof PVScalarArray) {
+			if (!scalarArrayEquals((PVScalarArray)pvField, containerObject)) {
+				containerSerialiser.setFieldValueWithContainerObject(fieldName, parentStructure, containerObject, containerObject.getClass());
+				changedFields.set(pvField.getFieldOffset());
+			}
+		} else {
+			// Unions, union arrays and maps are compared as a whole, by populating a copy of the field
+			Field[] fields = { pvField.getField() };
+			String[] fieldNames = { fieldName };
+			PVStructure copyParent = pvDataCreate.createPVStructure(fieldCreate.createStructure(fieldNames, fields));
+			PVField copy = copyParent.getPVFields()[0];
+
+			// Start from the current value, so anything the container serialiser doesn't write is left unchanged
+			convert.copy(pvField, copy);
+			containerSerialiser.setFieldValueWithContainerObject(fieldName, copyParent, containerObject, containerObject.getClass());
+			copyIfChanged(copy, pvField, changedFields);
+		}
+	}
+
+	/**
+	 * Copies a populated copy of a field back to the field, and sets its bit, if it differs from the field
+	 * @param copy The populated copy
+	 * @param pvField The field
+	 * @param changedFields The BitSet of changed fields
+	 */
+	private void copyIfChanged(PVField copy, PVField pvField, BitSet changedFields)
+	{
+		if (!copy.equals(pvField)) {
+			convert.copy(copy, pvField);
+			changedFields.set(pvField.getFieldOffset());
+		}
+	}
+
+	/**
+	 * Compares the contents of a scalar array field with an array or list of primitives
+	 * @param pvArray The field
+	 * @param containerObject The array or list
+	 * @return True if the contents are the same
+	 */
+	static boolean scalarArrayEquals(PVScalarArray pvArray, Object containerObject)
+	{
+		List<?> list = (containerObject instanceof List) ? (List<?>)containerObject : null;
+		int length = (list != null) ? list.size() : Array.getLength(containerObject);
+
+		if (pvArray.getLength() != length) {
+			return false;
+		}
+
+		switch (pvArray.getScalarArray().getElementType()) {
+		case pvInt: {
+			IntArrayData data = new IntArrayData();
+			((PVIntArray)pvArray).get(0, length, data);
+			for (int i = 0; i < length; i++) {
+				int value = (containerObject instanceof int[]) ? ((int[])containerObject)[i] : ((Number)getElement(list, containerObject, i)).intValue();
+				if (data.data[data.offset + i] != value) {
+					return false;
+				}
+			}
+			return true;
+		}
+		case pvShort: {
+			ShortArrayData data = new ShortArrayData();
+			((PVShortArray)pvArray).get(0, length, data);
+			for (int i = 0; i < length; i++) {
+				short value = (containerObject instanceof short[]) ? ((short[])containerObject)[i] : ((Number)getElement(list, containerObject, i)).shortValue();
+				if (data.data[data.offset + i] != value) {
+					return false;
+				}
+			}
+			return true;
+		}
+		case pvLong: {
+			LongArrayData data = new LongArrayData();
+			((PVLongArray)pvArray).get(0, length, data);
+			for (int i = 0; i < length; i++) {
+				long value = (containerObject instanceof long[]) ? ((long[])containerObject)[i] : ((Number)getElement(list, containerObject, i)).longValue();
+				if (data.data[data.offset + i] != value) {
+					return false;
+				}
+			}
+			return true;
+		}
+		case pvByte: {
+			ByteArrayData data = new ByteArrayData();
+			((PVByteArray)pvArray).get(0, length, data);
+			for (int i = 0; i < length; i++) {
+				byte value = (containerObject instanceof byte[]) ? ((byte[])containerObject)[i] : ((Number)getElement(list, containerObject, i)).byteValue();
+				if (data.data[data.offset + i] != value) {
+					return false;
+				}
+			}
+			return true;
+		}
+		case pvBoolean: {
+			BooleanArrayData data = new BooleanArrayData();
+			((PVBooleanArray)pvArray).get(0, length, data);
+			for (int i = 0; i < length; i++) {
+				boolean value = (containerObject instanceof boolean[]) ? ((boolean[])containerObject)[i] : (Boolean)getElement(list, containerObject, i);
+				if (data.data[data.offset + i] != value) {
+					return false;
+				}
+			}
+			return true;
+		}
+		case pvFloat: {
+			FloatArrayData data = new FloatArrayData();
+			((PVFloatArray)pvArray).get(0, length, data);
+			for (int i = 0; i < length; i++) {
+				float value = (containerObject instanceof float[]) ? ((float[])containerObject)[i] : ((Number)getElement(list, containerObject, i)).floatValue();
+				if (Float.floatToIntBits(data.data[data.offset + i]) != Float.floatToIntBits(value)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		case pvDouble: {
+			DoubleArrayData data = new DoubleArrayData();
+			((PVDoubleArray)pvArray).get(0, length, data);
+			for (int i = 0; i < length; i++) {
+				double value = (containerObject instanceof double[]) ? ((double[])containerObject)[i] : ((Number)getElement(list, containerObject, i)).doubleValue();
+				if (Double.doubleToLongBits(data.data[data.offset + i]) != Double.doubleToLongBits(value)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		case pvString: {
+			StringArrayData data = new StringArrayData();
+			((PVStringArray)pvArray).get(0, length, data);
+			for (int i = 0; i < length; i++) {
+				Object element = getElement(list, containerObject, i);
+				String current = data.data[data.offset + i];
+				if (element == null ? current != null : !String.valueOf(element).equals(current)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Gets an element from a list, or from an array if the list is null
+	 * @param list The list, or null
+	 * @param array The array
+	 * @param index The index of the element
+	 * @return The element
+	 */
+	private static Object getElement(List<?> list, Object array, int index)
+	{
+		return (list != null) ? list.get(index) : Array.get(array, index);
+	}
+}
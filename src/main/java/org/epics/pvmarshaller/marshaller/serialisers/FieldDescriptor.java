@@ -0,0 +1,176 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvmarshaller.marshaller.accessors.AccessorBackend;
+import org.epics.pvmarshaller.marshaller.accessors.AccessorFactory;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
+
+/**
+ * Holds the reflection information needed to serialise a single field of a class
+ * @author Matt Taylor
+ *
+ */
+public class FieldDescriptor {
+
+	/**
+	 * The kind of serialisation used for a field, based on its declared type
+	 */
+	public enum Kind {
+		PRIMITIVE,
+		CONTAINER,
+		OBJECT
+	}
+
+	private final Field field;
+	private final String name;
+	private final Class<?> type;
+	private final Method getter;
+	private final Getter accessor;
+	private final Kind kind;
+	private final ScalarKind scalarKind;
+	private final boolean sharedArray;
+
+	/**
+	 * Constructor
+	 * @param field The field to describe
+	 * @param getter The getter for the field, or null if the class has no getter for it
+	 */
+	public FieldDescriptor(Field field, Method getter) {
+		this(field, getter, AccessorBackend.REFLECTION);
+	}
+
+	/**
+	 * Constructor
+	 * @param field The field to describe
+	 * @param getter The getter for the field, or null if the class has no getter for it
+	 * @param backend The backend used to call the getter
+	 */
+	public FieldDescriptor(Field field, Method getter, AccessorBackend backend) {
+		this(field, getter, backend, false);
+	}
+
+	/**
+	 * Constructor
+	 * @param field The field to describe
+	 * @param getter The getter for the field, or null if the class has no getter for it
+	 * @param backend The backend used to call the getter
+	 * @param shareArrayData True if the array held by the field can be shared with the PVStructure instead of copied.
+	 * Ignored unless the field is an array of Java primitives or Strings
+	 */
+	public FieldDescriptor(Field field, Method getter, AccessorBackend backend, boolean shareArrayData) {
+		this.field = field;
+		this.name = field.getName();
+		this.type = field.getType();
+		this.getter = getter;
+		this.accessor = AccessorFactory.createGetter(getter, backend);
+
+		scalarKind = ScalarKind.of(type);
+		if (scalarKind != null) {
+			kind = Kind.PRIMITIVE;
+		} else if (ContainerSerialiser.isContainer(type)) {
+			kind = Kind.CONTAINER;
+		} else {
+			kind = Kind.OBJECT;
+		}
+
+		this.sharedArray = shareArrayData && ArraySerialiser.canShareArray(type);
+	}
+
+	/**
+	 * Gets the value of this field from the source object using its getter
+	 * @param source The object to get the value from
+	 * @return The value of the field
+	 * @throws Exception
+	 */
+	public Object getValue(Object source) throws Exception {
+		return getAccessor(source).get(source);
+	}
+
+	/**
+	 * Gets the accessor used to call the getter of this field
+	 * @param source The object the getter will be called on, used for the error message if there is no getter
+	 * @return The accessor
+	 * @throws IllegalArgumentException if the class has no getter for the field
+	 */
+	public Getter getAccessor(Object source) throws IllegalArgumentException {
+		if (accessor == null) {
+			throw new IllegalArgumentException("Unable to find getter for " + name + " in class " + source.getClass());
+		}
+		return accessor;
+	}
+
+	/**
+	 * Returns whether the field is declared with a Java primitive type, and so can never be null
+	 * @return
+	 */
+	public boolean isNonNullable() {
+		return type.isPrimitive();
+	}
+
+	/**
+	 * Returns whether the array held by the field is shared with the PVStructure instead of copied
+	 * @return
+	 */
+	public boolean isSharedArray() {
+		return sharedArray;
+	}
+
+	/**
+	 * Gets the field
+	 * @return
+	 */
+	public Field getField() {
+		return field;
+	}
+
+	/**
+	 * Gets the name of the field
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the declared type of the field
+	 * @return
+	 */
+	public Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the getter method for the field
+	 * @return the getter, or null if there isn't one
+	 */
+	public Method getGetter() {
+		return getter;
+	}
+
+	/**
+	 * Gets the kind of serialisation used for the field
+	 * @return
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Gets the PVData scalar type of the field
+	 * @return the scalar type, or null if the field is not a primitive
+	 */
+	public ScalarType getScalarType() {
+		return scalarKind == null ? null : scalarKind.getScalarType();
+	}
+
+	/**
+	 * Gets the kind of scalar the field is serialised as
+	 * @return the scalar kind, or null if the field is not a primitive
+	 */
+	public ScalarKind getScalarKind() {
+		return scalarKind;
+	}
+}
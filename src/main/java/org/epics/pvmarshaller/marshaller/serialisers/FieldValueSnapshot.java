@@ -0,0 +1,70 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Holds the field values of each object read while building the Structure for an object, so that populating
+ * the PVStructure uses the same values without calling the getters again. Once the Structure has been built the
+ * snapshot is frozen, after which values are only read from it, so it can be shared by the threads populating
+ * the elements of large arrays and lists
+ * @author Matt Taylor
+ *
+ */
+public class FieldValueSnapshot {
+
+	private final Map<Object, Object[]> values = new IdentityHashMap<Object, Object[]>();
+	private boolean frozen = false;
+
+	/**
+	 * Gets the values of the fields of an object, reading them with the getters the first time the object is seen.
+	 * The values of fields declared with a Java primitive type are not read, so that they can be got without boxing
+	 * @param obj The object to get the values of
+	 * @param descriptor The descriptor of the class of the object
+	 * @return The values, in the order of the fields of the descriptor
+	 * @throws Exception
+	 */
+	public Object[] getValues(Object obj, ClassDescriptor descriptor) throws Exception {
+		Object[] objectValues = values.get(obj);
+		if (objectValues == null) {
+			objectValues = readValues(obj, descriptor);
+			if (!frozen) {
+				values.put(obj, objectValues);
+			}
+		}
+		return objectValues;
+	}
+
+	/**
+	 * Stops new values being added, so that the snapshot can be read from several threads at once
+	 */
+	public void freeze() {
+		frozen = true;
+	}
+
+	/**
+	 * Returns whether new values can no longer be added
+	 * @return
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Reads the values of the fields of an object with their getters
+	 * @param obj The object to get the values of
+	 * @param descriptor The descriptor of the class of the object
+	 * @return The values, in the order of the fields of the descriptor
+	 * @throws Exception
+	 */
+	static Object[] readValues(Object obj, ClassDescriptor descriptor) throws Exception {
+		FieldDescriptor[] fields = descriptor.getFields();
+		Object[] objectValues = new Object[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			if (!fields[i].isNonNullable()) {
+				objectValues[i] = fields[i].getValue(obj);
+			}
+		}
+		return objectValues;
+	}
+}
@@ -2,6 +2,7 @@ package org.epics.pvmarshaller.marshaller.serialisers;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -10,12 +11,14 @@ import org.epics.pvdata.pv.PVBooleanArray;
 import org.epics.pvdata.pv.PVByteArray;
 import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVFloatArray;
 import org.epics.pvdata.pv.PVIntArray;
 import org.epics.pvdata.pv.PVLongArray;
 import org.epics.pvdata.pv.PVShortArray;
 import org.epics.pvdata.pv.PVStringArray;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
 import org.epics.pvdata.pv.PVUnion;
 import org.epics.pvdata.pv.PVUnionArray;
 import org.epics.pvdata.pv.Structure;
@@ -51,7 +54,13 @@ public class ListSerialiser {
 	{
 		int numPut = 0;
 		
-		if (componentType.equals(Integer.class) || componentType.equals(int.class)) {
+		ScalarKind kind = ScalarKind.of(componentType);
+		if (kind == null) {
+			return;
+		}
+
+		switch (kind) {
+		case INT: {
 			List<Integer> value = (List<Integer>)list;
 			PVIntArray array = structure.getSubField(PVIntArray.class, name);
 			int[] valueAsArray = new int[value.size()];
@@ -59,11 +68,14 @@ public class ListSerialiser {
 			{
 				valueAsArray[i] = value.get(i);
 			}
+			array.setLength(valueAsArray.length);
 			while (numPut < valueAsArray.length)
 			{
 				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
 			}
-		} else if (componentType.equals(Short.class) || componentType.equals(short.class)) {
+			break;
+		}
+		case SHORT: {
 			List<Short> value = (List<Short>)list;
 			PVShortArray array = structure.getSubField(PVShortArray.class, name);
 			short[] valueAsArray = new short[value.size()];
@@ -71,11 +83,14 @@ public class ListSerialiser {
 			{
 				valueAsArray[i] = value.get(i);
 			}
+			array.setLength(valueAsArray.length);
 			while (numPut < valueAsArray.length)
 			{
 				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
 			}
-		} else if (componentType.equals(Long.class) || componentType.equals(long.class)) {
+			break;
+		}
+		case LONG: {
 			List<Long> value = (List<Long>)list;
 			PVLongArray array = structure.getSubField(PVLongArray.class, name);
 			long[] valueAsArray = new long[value.size()];
@@ -83,11 +98,14 @@ public class ListSerialiser {
 			{
 				valueAsArray[i] = value.get(i);
 			}
+			array.setLength(valueAsArray.length);
 			while (numPut < valueAsArray.length)
 			{
 				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
 			}
-		} else if (componentType.equals(Byte.class) || componentType.equals(byte.class)) {
+			break;
+		}
+		case BYTE: {
 			List<Byte> value = (List<Byte>)list;
 			PVByteArray array = structure.getSubField(PVByteArray.class, name);
 			byte[] valueAsArray = new byte[value.size()];
@@ -95,11 +113,14 @@ public class ListSerialiser {
 			{
 				valueAsArray[i] = value.get(i);
 			}
+			array.setLength(valueAsArray.length);
 			while (numPut < valueAsArray.length)
 			{
 				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
 			}
-		} else if (componentType.equals(Boolean.class) || componentType.equals(boolean.class)) {
+			break;
+		}
+		case BOOLEAN: {
 			List<Boolean> value = (List<Boolean>)list;
 			PVBooleanArray array = structure.getSubField(PVBooleanArray.class, name);
 			boolean[] valueAsArray = new boolean[value.size()];
@@ -107,11 +128,14 @@ public class ListSerialiser {
 			{
 				valueAsArray[i] = value.get(i);
 			}
+			array.setLength(valueAsArray.length);
 			while (numPut < valueAsArray.length)
 			{
 				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
 			}
-		} else if (componentType.equals(Float.class) || componentType.equals(float.class)) {
+			break;
+		}
+		case FLOAT: {
 			List<Float> value = (List<Float>)list;
 			PVFloatArray array = structure.getSubField(PVFloatArray.class, name);
 			float[] valueAsArray = new float[value.size()];
@@ -119,11 +143,14 @@ public class ListSerialiser {
 			{
 				valueAsArray[i] = value.get(i);
 			}
+			array.setLength(valueAsArray.length);
 			while (numPut < valueAsArray.length)
 			{
 				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
 			}
-		} else if (componentType.equals(Double.class) || componentType.equals(double.class)) {
+			break;
+		}
+		case DOUBLE: {
 			List<Double> value = (List<Double>)list;
 			PVDoubleArray array = structure.getSubField(PVDoubleArray.class, name);
 			double[] valueAsArray = new double[value.size()];
@@ -131,22 +158,28 @@ public class ListSerialiser {
 			{
 				valueAsArray[i] = value.get(i);
 			}
+			array.setLength(valueAsArray.length);
 			while (numPut < valueAsArray.length)
 			{
 				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
 			}
-		} else if (componentType.equals(Character.class) || componentType.equals(char.class)) {
+			break;
+		}
+		case CHAR: {
 			List<Character> value = (List<Character>)list;
 			PVStringArray array = structure.getSubField(PVStringArray.class, name);
 			String[] stringArray = new String[value.size()];
 			for (int i = 0; i < value.size(); i++) {
 				stringArray[i] = String.valueOf(value.get(i));
 			}
+			array.setLength(stringArray.length);
 			while (numPut < stringArray.length)
 			{
 				numPut += array.put(numPut, stringArray.length - numPut, stringArray, numPut);
 			}
-		} else if (componentType.equals(String.class)) {
+			break;
+		}
+		case STRING: {
 			List<String> value = (List<String>)list;
 			PVStringArray array = structure.getSubField(PVStringArray.class, name);
 			String[] valueAsArray = new String[value.size()];
@@ -154,12 +187,13 @@ public class ListSerialiser {
 			{
 				valueAsArray[i] = value.get(i);
 			}
+			array.setLength(valueAsArray.length);
 			while (numPut < valueAsArray.length)
 			{
 				numPut += array.put(numPut, valueAsArray.length - numPut, valueAsArray, numPut);
 			}
-		} else {
-			//throw new Exception();   ??????
+			break;
+		}
 		}
 	}
 	
@@ -189,18 +223,30 @@ public class ListSerialiser {
 	 */
 	public void setObjectListValue(String name, PVStructure structure, Object listObject) throws Exception
 	{
-		List<Object> value = (List<Object>)listObject;
+		// Copy the elements so that they can be got by index from any thread, whatever the type of list
+		List<Object> value = Arrays.asList(((List<?>)listObject).toArray());
 		
-		PVUnionArray pvUnionValue = structure.getSubField(PVUnionArray.class, name);
+		PVField pvField = structure.getSubField(name);
+		if (pvField instanceof PVStructureArray) {
+			serialiser.getContainerSerialiser().setStructureArrayValue((PVStructureArray)pvField, value);
+			return;
+		}
+		
+		PVUnionArray pvUnionValue = (PVUnionArray)pvField;
+		if (!pvUnionValue.getUnionArray().getUnion().isVariant()) {
+			serialiser.getContainerSerialiser().setRegularUnionArrayValue(pvUnionValue, value);
+			return;
+		}
 		PVUnion[] unionArray = new PVUnion[value.size()];
 		
-		for (int i = 0; i < value.size(); i++) {
+		serialiser.getContainerSerialiser().convertElements(unionArray, i -> {
 			PVStructure pvs = serialiser.toPVStructure(value.get(i));
 			PVUnion pvUnion = pvDataCreate.createPVVariantUnion();
 			pvUnion.set(pvs);
-			unionArray[i] = pvUnion;
-		}
+			return pvUnion;
+		});
 		int numPut = 0;
+		pvUnionValue.setLength(unionArray.length);
 		while (numPut < unionArray.length)
 		{
 			numPut += pvUnionValue.put(numPut, unionArray.length - numPut, unionArray, numPut);
@@ -247,6 +293,7 @@ public class ListSerialiser {
 			serialiser.getMapSerialiser().setMapValues(pvs, map);
 		}
 		int numPut = 0;
+		pvUnionValue.setLength(unionArray.length);
 		while (numPut < unionArray.length)
 		{
 			numPut += pvUnionValue.put(numPut, unionArray.length - numPut, unionArray, numPut);
@@ -262,18 +309,20 @@ public class ListSerialiser {
 	 */
 	public static Class<?> getClassFromList(List<?> list) {
 		Class<?> componentType = null;
-		if ((list != null) && (!list.isEmpty())) {
-			Object firstElement = list.get(0);
-			componentType = firstElement.getClass();
-			
-			// check all elements are the same. If not, it's an Object List
-			for (int i = 1; i < list.size(); i++) {
-				if (list.get(i).getClass().equals(componentType) == false) {
+		if (list != null) {
+			// check all elements are the same. If not, it's an Object List. Null elements don't have a class
+			for (Object element : list) {
+				if (element == null) {
+					continue;
+				} else if (componentType == null) {
+					componentType = element.getClass();
+				} else if (element.getClass().equals(componentType) == false) {
 					return Object.class;
 				}
 			}
 		}
-		else {
+		
+		if (componentType == null) {
 			componentType = Object.class;
 		}
 		return componentType;
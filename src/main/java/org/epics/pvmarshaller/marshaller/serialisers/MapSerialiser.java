@@ -1,18 +1,12 @@
 package org.epics.pvmarshaller.marshaller.serialisers;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.epics.pvdata.factory.FieldFactory;
 import org.epics.pvdata.pv.FieldBuilder;
 import org.epics.pvdata.pv.FieldCreate;
-import org.epics.pvdata.pv.PVBoolean;
-import org.epics.pvdata.pv.PVByte;
-import org.epics.pvdata.pv.PVDouble;
-import org.epics.pvdata.pv.PVFloat;
-import org.epics.pvdata.pv.PVInt;
-import org.epics.pvdata.pv.PVLong;
-import org.epics.pvdata.pv.PVShort;
-import org.epics.pvdata.pv.PVString;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Structure;
 
@@ -27,6 +21,8 @@ public class MapSerialiser {
 	
 	private String mapTypeIdKey = null;
 	
+	private StructureCache structureCache = new StructureCache();
+	
 	/**
 	 * Constructor
 	 * @param serialiser
@@ -43,6 +39,15 @@ public class MapSerialiser {
 	
 	public void setMapTypeIdKey(String mapTypeIdKey) {
 		this.mapTypeIdKey = mapTypeIdKey;
+		structureCache.clear();
+	}
+	
+	/**
+	 * Gets the cache of Structures built for maps, keyed by the keys and value classes of the map
+	 * @return
+	 */
+	public StructureCache getStructureCache() {
+		return structureCache;
 	}
 	
 	/**
@@ -52,6 +57,70 @@ public class MapSerialiser {
 	 * @throws Exception
 	 */
 	public Structure buildStructureFromMap(Map<String, ?> map) throws Exception {
+		if (map == null || structureCache.getMaxSize() == 0) {
+			return createStructureFromMap(map);
+		}
+		
+		List<Object> shape = getShape(map);
+		if (shape == null) {
+			return createStructureFromMap(map);
+		}
+		
+		Structure structure = structureCache.get(shape);
+		serialiser.getMetrics().structureCacheLookup(map.getClass(), structure != null);
+		if (structure == null) {
+			structure = createStructureFromMap(map);
+			structureCache.put(shape, structure);
+		}
+		return structure;
+	}
+	
+	/**
+	 * Gets the shape of a map, which is the same for any two maps whose Structures are the same: its keys in order,
+	 * each followed by the class of its value, or the shape of its value if that is a map
+	 * @param map The map
+	 * @return The shape, or null if the Structure of the map also depends on the contents of its values
+	 */
+	private List<Object> getShape(Map<String, ?> map) {
+		List<Object> shape = new ArrayList<Object>(map.size() * 2);
+		
+		for (Map.Entry<String, ?> entry : map.entrySet())
+		{
+			Object mapValue = entry.getValue();
+			if (mapValue == null) {
+				continue;
+			}
+			
+			shape.add(entry.getKey());
+			Class<?> mapValueType = mapValue.getClass();
+			
+			if (mapTypeIdKey != null && entry.getKey().equals(mapTypeIdKey) && mapValueType.equals(String.class)) {
+				// The value is the ID of the Structure
+				shape.add(mapValue);
+			} else if (PrimitiveSerialiser.isPrimitive(mapValueType)) {
+				shape.add(mapValueType);
+			} else if (mapValueType.isArray() && PrimitiveSerialiser.isPrimitive(mapValueType.getComponentType())) {
+				shape.add(mapValueType);
+			} else if (mapValue instanceof Map) {
+				List<Object> valueShape = getShape((Map<String, ?>)mapValue);
+				if (valueShape == null) {
+					return null;
+				}
+				shape.add(valueShape);
+			} else {
+				return null;
+			}
+		}
+		return shape;
+	}
+	
+	/**
+	 * Creates a new Structure from a the given map
+	 * @param map The map to create the structure from
+	 * @return
+	 * @throws Exception
+	 */
+	private Structure createStructureFromMap(Map<String, ?> map) throws Exception {
 		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
 		FieldBuilder fieldBuilder = fieldCreate.createFieldBuilder();
 		
@@ -162,37 +231,7 @@ public class MapSerialiser {
 	 */
 	public static void setPrimitiveMapValue(PVStructure mapPVStructure, String key, Object object, Class<?> componentType) throws IllegalArgumentException, IllegalAccessException
 	{    	
-		if (object != null)
-		{
-			if (componentType.equals(Integer.class) || componentType.equals(int.class)) {
-				PVInt pvValue = mapPVStructure.getSubField(PVInt.class, key);
-				pvValue.put((int)object);
-			} else if (componentType.equals(Short.class) || componentType.equals(short.class)) {
-				PVShort pvValue = mapPVStructure.getSubField(PVShort.class, key);
-				pvValue.put((short)object);
-			} else if (componentType.equals(Long.class) || componentType.equals(long.class)) {
-				PVLong pvValue = mapPVStructure.getSubField(PVLong.class, key);
-				pvValue.put((long)object);
-			} else if (componentType.equals(Byte.class) || componentType.equals(byte.class)) {
-				PVByte pvValue = mapPVStructure.getSubField(PVByte.class, key);
-				pvValue.put((byte)object);
-			} else if (componentType.equals(Boolean.class) || componentType.equals(boolean.class)) {
-				PVBoolean pvValue = mapPVStructure.getSubField(PVBoolean.class, key);
-				pvValue.put((boolean)object);
-			} else if (componentType.equals(Float.class) || componentType.equals(float.class)) {
-				PVFloat pvValue = mapPVStructure.getSubField(PVFloat.class, key);
-				pvValue.put((float)object);
-			} else if (componentType.equals(Double.class) || componentType.equals(double.class)) {
-				PVDouble pvValue = mapPVStructure.getSubField(PVDouble.class, key);
-				pvValue.put((double)object);
-			} else if (componentType.equals(Character.class) || componentType.equals(char.class)) {
-				PVString pvValue = mapPVStructure.getSubField(PVString.class, key);
-				pvValue.put(String.valueOf(object));
-			} else if (componentType.equals(String.class)) {
-				PVString pvValue = mapPVStructure.getSubField(PVString.class, key);
-				pvValue.put((String)object);
-			}
-		}
+		PrimitiveSerialiser.setValue(mapPVStructure, key, object, componentType);
 	}
 	
 	/**
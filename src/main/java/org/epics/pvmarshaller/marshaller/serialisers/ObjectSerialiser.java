@@ -1,20 +1,43 @@
 package org.epics.pvmarshaller.marshaller.serialisers;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.epics.pvdata.factory.ConvertFactory;
 import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.Convert;
 import org.epics.pvdata.pv.FieldBuilder;
 import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVArray;
+import org.epics.pvdata.pv.PVBoolean;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVField;
+import org.epics.pvdata.pv.PVScalar;
+import org.epics.pvdata.pv.PVString;
 import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
+import org.epics.pvdata.pv.PVUnion;
 import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.Union;
+import org.epics.pvmarshaller.marshaller.accessors.AccessorBackend;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
+import org.epics.pvmarshaller.marshaller.jfr.MarshallerEvents;
+import org.epics.pvmarshaller.marshaller.serialisers.FieldDescriptor.Kind;
 
 /**
  * Serialises an object
@@ -25,9 +48,21 @@ public class ObjectSerialiser {
 	
 	Serialiser serialiser;
 	Map<Class<?>, IPVStructureSerialiser<?>> registeredSerialisers = new LinkedHashMap<Class<?>, IPVStructureSerialiser<?>>();
+	Map<Class<?>, IPVStructureSerialiser<?>> generatedSerialisers = new ConcurrentHashMap<Class<?>, IPVStructureSerialiser<?>>();
 	Map<Class<?>, String> registeredIds = new LinkedHashMap<Class<?>, String>();
 	Map<Class<?>, List<String>> registeredFields = new LinkedHashMap<Class<?>, List<String>>();
 	Map<Class<?>, List<String>> excludeFields = new LinkedHashMap<Class<?>, List<String>>();
+	Map<Class<?>, List<String>> sharedArrayFields = new LinkedHashMap<Class<?>, List<String>>();
+	Map<Class<?>, ClassDescriptor> classDescriptors = new ConcurrentHashMap<Class<?>, ClassDescriptor>();
+	Map<Class<?>, Optional<IPVStructureSerialiser<?>>> resolvedSerialisers = new ConcurrentHashMap<Class<?>, Optional<IPVStructureSerialiser<?>>>();
+	Map<Class<?>, Optional<String>> resolvedIds = new ConcurrentHashMap<Class<?>, Optional<String>>();
+	AccessorBackend accessorBackend = AccessorBackend.REFLECTION;
+	ThreadLocal<Set<Class<?>>> templateClassesInProgress = ThreadLocal.withInitial(HashSet::new);
+	ThreadLocal<FieldValueSnapshot> snapshot = new ThreadLocal<FieldValueSnapshot>();
+	boolean staticSchema = false;
+	Map<Class<?>, Structure> staticStructures = new ConcurrentHashMap<Class<?>, Structure>();
+	PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+	static Convert convert = ConvertFactory.getConvert();
 	
 	/**
 	 * Constructor
@@ -46,9 +81,42 @@ public class ObjectSerialiser {
 	public Structure buildObject(Object obj) throws Exception
 	{
 		Class<?> clazz = obj.getClass();
+		if (staticSchema) {
+			Structure staticStructure = getStaticStructure(clazz);
+			if (staticStructure != null) {
+				return staticStructure;
+			}
+		}
 		return buildObjectFromClass(clazz, obj);
 	}
 	
+	/**
+	 * Gets the Structure used for every object of the specified class when the static schema is used, creating it
+	 * the first time the class is seen
+	 * @param clazz The class of the object to serialise
+	 * @return The Structure, or null if the class has a custom serialiser whose Structure depends on the object
+	 * @throws Exception
+	 */
+	public Structure getStaticStructure(Class<?> clazz) throws Exception
+	{
+		Structure structure = staticStructures.get(clazz);
+		if (structure == null) {
+			IPVStructureSerialiser<?> customSerialiser = getCustomSerialiserForClass(clazz);
+			if (customSerialiser != null && !(customSerialiser instanceof IPVStructureMarshaller)) {
+				return null;
+			}
+			serialiser.getMetrics().structureCacheLookup(clazz, false);
+			structure = buildStructureFromClass(clazz, true);
+			Structure existing = staticStructures.putIfAbsent(clazz, structure);
+			if (existing != null) {
+				structure = existing;
+			}
+		} else {
+			serialiser.getMetrics().structureCacheLookup(clazz, true);
+		}
+		return structure;
+	}
+	
 	/**
 	 * Creates a Structure that represents the given object with the specified class
 	 * @param clazz The class of the object to serialise
@@ -68,50 +136,41 @@ public class ObjectSerialiser {
 	
 			FieldBuilder fieldBuilder = fieldCreate.createFieldBuilder();
 			
-			Class<?> classToCheck = clazz;
-	
-			while (classToCheck != Object.class)
+			ClassDescriptor classDescriptor = getClassDescriptor(clazz);
+			FieldDescriptor[] fields = classDescriptor.getFields();
+			Object[] values = getFieldValues(obj, classDescriptor);
+			
+			for (int i = 0; i < fields.length; i++)
 			{
-				Field[] declaredFields = classToCheck.getDeclaredFields();
-				for (Field field : declaredFields)
-				{
-					if (!field.getName().equals("this$0"))
-					{
-						if (!Modifier.isTransient(field.getModifiers())) {
-							field.setAccessible(true);
-							
-							if (canAddFieldForObject(field, obj))
-							{
-								if (PrimitiveSerialiser.isPrimitive(field.getType()))
-								{
-									PrimitiveSerialiser.addToPVStructure(field, fieldBuilder);
-								}
-								else if (ContainerSerialiser.isContainer(field.getType()))
-								{
-									serialiser.getContainerSerialiser().addToPVStructure(field, fieldBuilder, obj);
-								}
-								else
-								{
-									field.setAccessible(true);
-									Method method = findGetter(obj, field.getName());
-									Object nestedObject = method.invoke(obj);
-									Class<?> nestedObjectClass = nestedObject.getClass();
-									
-									// Check again for primitives and containers here in case of generic class not showing up before.
-									if (PrimitiveSerialiser.isPrimitive(nestedObjectClass)) {
-										PrimitiveSerialiser.addGenericToPVStructure(field, fieldBuilder, nestedObject);
-									} else if (ContainerSerialiser.isContainer(nestedObjectClass)) {
-										serialiser.getContainerSerialiser().addToPVStructure(field, fieldBuilder, obj);
-									} else {
-										fieldBuilder.add(field.getName(), buildObjectFromClass(nestedObjectClass, nestedObject));
-									}
-								}
-							}
+				FieldDescriptor fieldDescriptor = fields[i];
+				switch (fieldDescriptor.getKind()) {
+				case PRIMITIVE:
+					if (fieldDescriptor.isNonNullable() || values[i] != null) {
+						fieldBuilder.add(fieldDescriptor.getName(), fieldDescriptor.getScalarType());
+					}
+					break;
+				case CONTAINER:
+					Object containerObject = values[i];
+					if (containerObject != null) {
+						serialiser.getContainerSerialiser().addFieldToPVStructure(fieldDescriptor.getField(), fieldBuilder, containerObject);
+					}
+					break;
+				default:
+					Object nestedObject = values[i];
+					if (nestedObject != null) {
+						Class<?> nestedObjectClass = nestedObject.getClass();
+						
+						// Check again for primitives and containers here in case of generic class not showing up before.
+						if (PrimitiveSerialiser.isPrimitive(nestedObjectClass)) {
+							fieldBuilder.add(fieldDescriptor.getName(), PrimitiveSerialiser.getScalarType(nestedObjectClass));
+						} else if (ContainerSerialiser.isContainer(nestedObjectClass)) {
+							serialiser.getContainerSerialiser().addFieldToPVStructure(fieldDescriptor.getField(), fieldBuilder, nestedObject);
+						} else {
+							fieldBuilder.add(fieldDescriptor.getName(), buildObjectFromClass(nestedObjectClass, nestedObject));
 						}
 					}
+					break;
 				}
-				
-				classToCheck = classToCheck.getSuperclass();
 			}
 			
 			String idMapping = getIdMappingForClass(clazz);
@@ -126,6 +185,264 @@ public class ObjectSerialiser {
 		}
 	}
 	
+	/**
+	 * Creates a Structure that represents any object of the specified class, using only the declared types
+	 * of its fields, so that a single PVStructure can be created once and populated with many objects.
+	 * Fields whose Structure depends on their value (Maps, Lists with no element type, fields declared as
+	 * Object or as an interface, and classes with a custom serialiser) cannot be used in a template
+	 * @param clazz The class to create the Structure for
+	 * @return
+	 * @throws IllegalArgumentException if the class has a field that cannot be used in a template
+	 * @throws Exception
+	 */
+	public Structure buildStructureFromClass(Class<?> clazz) throws Exception
+	{
+		return buildStructureFromClass(clazz, false);
+	}
+	
+	/**
+	 * Creates a Structure that represents any object of the specified class, using only the declared types of its fields
+	 * @param clazz The class to create the Structure for
+	 * @param useVariantUnions True if fields whose Structure depends on their value are added as variant unions,
+	 * false if they cause an exception
+	 * @return
+	 * @throws Exception
+	 */
+	private Structure buildStructureFromClass(Class<?> clazz, boolean useVariantUnions) throws Exception
+	{
+		Set<Class<?>> classesInProgress = templateClassesInProgress.get();
+		if (!classesInProgress.add(clazz)) {
+			throw new IllegalArgumentException("Unable to create a template for " + clazz + " as it contains itself");
+		}
+		
+		try {
+			return buildStructureFromClassUnchecked(clazz, useVariantUnions);
+		} finally {
+			classesInProgress.remove(clazz);
+		}
+	}
+	
+	/**
+	 * Creates a Structure that represents any object of the specified class, once it is known not to contain itself
+	 * @param clazz The class to create the Structure for
+	 * @param useVariantUnions True if fields whose Structure depends on their value are added as variant unions
+	 * @return
+	 * @throws Exception
+	 */
+	private Structure buildStructureFromClassUnchecked(Class<?> clazz, boolean useVariantUnions) throws Exception
+	{
+		IPVStructureSerialiser customSerialiser = getCustomSerialiserForClass(clazz);
+
+		if (customSerialiser instanceof IPVStructureMarshaller) {
+			// Marshallers create the same Structure for every object of their class
+			return customSerialiser.buildStructure(serialiser, null);
+		} else if (customSerialiser != null) {
+			throw new IllegalArgumentException("Unable to create a template for " + clazz + " as it has a custom serialiser");
+		}
+
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		FieldBuilder fieldBuilder = fieldCreate.createFieldBuilder();
+
+		for (FieldDescriptor fieldDescriptor : getClassDescriptor(clazz).getFields())
+		{
+			String name = fieldDescriptor.getName();
+			Class<?> type = fieldDescriptor.getType();
+
+			switch (fieldDescriptor.getKind()) {
+			case PRIMITIVE:
+				fieldBuilder.add(name, fieldDescriptor.getScalarType());
+				break;
+			case CONTAINER:
+				if (type.isArray()) {
+					addArrayToTemplate(fieldBuilder, name, type.getComponentType(), useVariantUnions);
+				} else if (List.class.isAssignableFrom(type)) {
+					addArrayToTemplate(fieldBuilder, name, getListElementClass(fieldDescriptor.getField()), useVariantUnions);
+				} else if (useVariantUnions) {
+					fieldBuilder.add(name, fieldCreate.createVariantUnion());
+				} else {
+					throw new IllegalArgumentException("Unable to create a template for field " + name + " of " + clazz + " as the Structure of a " + type.getSimpleName() + " depends on its contents");
+				}
+				break;
+			default:
+				boolean concrete = !type.equals(Object.class) && !type.isInterface() && !Modifier.isAbstract(type.getModifiers());
+				if (useVariantUnions && (!concrete || !hasStaticStructure(type))) {
+					fieldBuilder.add(name, fieldCreate.createVariantUnion());
+					break;
+				} else if (!concrete) {
+					throw new IllegalArgumentException("Unable to create a template for field " + name + " of " + clazz + " as its declared type " + type.getName() + " is not concrete");
+				}
+				fieldBuilder.add(name, buildStructureFromClass(type, useVariantUnions));
+				break;
+			}
+		}
+
+		String idMapping = getIdMappingForClass(clazz);
+		if (idMapping != null) {
+			fieldBuilder.setId(idMapping);
+		}
+
+		return fieldBuilder.createStructure();
+	}
+
+	/**
+	 * Returns whether a concrete class can be nested in a Structure derived from declared types, which is not the case
+	 * if it has a custom serialiser that isn't a marshaller, or it is already being nested
+	 * @param clazz The class to check
+	 * @return
+	 */
+	private boolean hasStaticStructure(Class<?> clazz)
+	{
+		IPVStructureSerialiser<?> customSerialiser = getCustomSerialiserForClass(clazz);
+		if (customSerialiser != null && !(customSerialiser instanceof IPVStructureMarshaller)) {
+			return false;
+		}
+		return !templateClassesInProgress.get().contains(clazz);
+	}
+
+	/**
+	 * Returns whether an object can be written to the Structure built from the declared types of its class, which is
+	 * not the case if one of its nested objects, or an element of one of its arrays or lists of objects, is of a
+	 * subclass of its declared type that isn't one of its registered subtypes
+	 * @param obj The object to check
+	 * @return
+	 * @throws Exception
+	 */
+	boolean matchesDeclaredTypes(Object obj) throws Exception
+	{
+		Class<?> clazz = obj.getClass();
+		if (getCustomSerialiserForClass(clazz) != null) {
+			// Marshallers create the same Structure for every object of their class
+			return true;
+		}
+
+		ClassDescriptor classDescriptor = getClassDescriptor(clazz);
+		FieldDescriptor[] fields = classDescriptor.getFields();
+		Object[] values = getFieldValues(obj, classDescriptor);
+
+		for (int i = 0; i < fields.length; i++)
+		{
+			FieldDescriptor fieldDescriptor = fields[i];
+			Object value = values[i];
+			Class<?> type = fieldDescriptor.getType();
+			if (value == null || fieldDescriptor.getKind() == Kind.PRIMITIVE) {
+				continue;
+			}
+
+			if (fieldDescriptor.getKind() == Kind.CONTAINER) {
+				Class<?> elementClass = null;
+				if (type.isArray()) {
+					elementClass = type.getComponentType();
+				} else if (List.class.isAssignableFrom(type)) {
+					elementClass = getListElementClass(fieldDescriptor.getField());
+				}
+				if (elementClass == null || PrimitiveSerialiser.isPrimitive(elementClass) || ContainerSerialiser.isContainer(elementClass) || elementClass.equals(Object.class)) {
+					// Not a structure array or a union array of subtypes
+					continue;
+				}
+				List<Class<?>> subtypes = serialiser.getContainerSerialiser().getSubtypes(elementClass);
+				List<?> elements = type.isArray() ? Arrays.asList((Object[])value) : (List<?>)value;
+				for (Object element : elements) {
+					if (element == null) {
+						continue;
+					}
+					boolean declared = subtypes == null ? element.getClass().equals(elementClass) : subtypes.contains(element.getClass());
+					if (!declared || !matchesDeclaredTypes(element)) {
+						return false;
+					}
+				}
+			} else if (!hasSameStructureAs(value.getClass(), type) || !matchesDeclaredTypes(value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether objects of a class have the Structure built for their declared type, which is the case if they
+	 * are of that type, or of a subclass of it that uses the same marshaller
+	 * @param clazz The class of the object
+	 * @param declaredType The declared type
+	 * @return
+	 */
+	boolean hasSameStructureAs(Class<?> clazz, Class<?> declaredType)
+	{
+		if (clazz.equals(declaredType)) {
+			return true;
+		}
+		IPVStructureSerialiser<?> customSerialiser = getCustomSerialiserForClass(declaredType);
+		return customSerialiser instanceof IPVStructureMarshaller && customSerialiser == getCustomSerialiserForClass(clazz);
+	}
+
+	/**
+	 * Adds the template field for an array or list with the specified element class
+	 * @param fieldBuilder The builder to add the field to
+	 * @param name The name of the field
+	 * @param elementClass The class of the elements, or null if it isn't known
+	 * @param useVariantUnions True if an array whose element class isn't known is added as a variant union array
+	 * @throws IllegalArgumentException if the element class cannot be used in a template
+	 * @throws Exception
+	 */
+	private void addArrayToTemplate(FieldBuilder fieldBuilder, String name, Class<?> elementClass, boolean useVariantUnions) throws Exception
+	{
+		if (elementClass == null && useVariantUnions) {
+			fieldBuilder.addArray(name, FieldFactory.getFieldCreate().createVariantUnion());
+		} else if (elementClass == null) {
+			throw new IllegalArgumentException("Unable to create a template for field " + name + " as its element type is not known");
+		} else if (PrimitiveSerialiser.isPrimitive(elementClass)) {
+			fieldBuilder.addArray(name, PrimitiveSerialiser.getScalarType(elementClass));
+		} else if (ContainerSerialiser.isArrayTypeContainer(elementClass)) {
+			throw new IllegalArgumentException("PVData does not support Arrays of Arrays");
+		} else {
+			Union subtypeUnion = serialiser.getContainerSerialiser().getSubtypeUnion(elementClass);
+			Structure elementStructure = serialiser.getContainerSerialiser().getElementStructureForClass(elementClass);
+			if (subtypeUnion != null) {
+				fieldBuilder.addArray(name, subtypeUnion);
+			} else if (elementStructure != null) {
+				fieldBuilder.addArray(name, elementStructure);
+			} else {
+				fieldBuilder.addArray(name, FieldFactory.getFieldCreate().createVariantUnion());
+			}
+		}
+	}
+
+	/**
+	 * Gets the declared element class of a List field
+	 * @param field The field
+	 * @return The element class, or null if the field doesn't declare one
+	 */
+	static Class<?> getListElementClass(Field field)
+	{
+		Type genericType = field.getGenericType();
+		if (genericType instanceof ParameterizedType) {
+			Type elementType = ((ParameterizedType)genericType).getActualTypeArguments()[0];
+			if (elementType instanceof Class) {
+				return (Class<?>)elementType;
+			} else if (elementType instanceof ParameterizedType) {
+				return (Class<?>)((ParameterizedType)elementType).getRawType();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether all the custom serialisers can be called from several threads at once
+	 * @return
+	 */
+	public boolean areCustomSerialisersThreadSafe()
+	{
+		for (IPVStructureSerialiser<?> customSerialiser : registeredSerialisers.values()) {
+			if (!customSerialiser.isThreadSafe()) {
+				return false;
+			}
+		}
+		for (IPVStructureSerialiser<?> customSerialiser : generatedSerialisers.values()) {
+			if (!customSerialiser.isThreadSafe()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Populates the values in a PVStructure with the specified object
 	 * @param obj The object to populate from
@@ -139,99 +456,321 @@ public class ObjectSerialiser {
 		IPVStructureSerialiser customSerialiser = getCustomSerialiserForClass(clazz);
 		
 		if (customSerialiser != null) {
+			serialiser.getMetrics().customSerialiserUsed(clazz);
 			customSerialiser.populatePVStructure(serialiser, obj, pvStructure);
 		} else {	
+			ClassDescriptor classDescriptor = getClassDescriptor(clazz);
+			FieldDescriptor[] fields = classDescriptor.getFields();
+			Object[] values = getFieldValues(obj, classDescriptor);
+			
 			// Set values in structure
-			while (clazz != Object.class)
+			for (int i = 0; i < fields.length; i++)
 			{
-				Field[] declaredFields = clazz.getDeclaredFields();
-				for (Field field : declaredFields)
-				{
-					if (!field.getName().equals("this$0"))
-					{
-						if (!Modifier.isTransient(field.getModifiers())) {
-							field.setAccessible(true);
-							if (canAddFieldForObject(field, obj))
-							{
-								if (PrimitiveSerialiser.isPrimitive(field.getType()))
-								{
-									PrimitiveSerialiser.setFieldValue(field, pvStructure, obj);
-								}
-								else if (ContainerSerialiser.isContainer(field.getType()))
-								{
-									serialiser.getContainerSerialiser().setFieldValue(field, pvStructure, obj);
-								}
-								else
-								{
-									setObjectValue(field, pvStructure, obj);
-								}
-							}
+				FieldDescriptor fieldDescriptor = fields[i];
+				if (fieldDescriptor.isNonNullable()) {
+					PrimitiveSerialiser.setValue(pvStructure, fieldDescriptor.getName(), fieldDescriptor.getAccessor(obj), fieldDescriptor.getScalarKind(), obj);
+					continue;
+				}
+				
+				Object value = values[i];
+				if (value != null) {
+					if (staticSchema && fieldDescriptor.getKind() != Kind.PRIMITIVE) {
+						PVField pvField = pvStructure.getSubField(fieldDescriptor.getName());
+						if (pvField instanceof PVUnion) {
+							Object event = MarshallerEvents.beginArray();
+							setVariantUnionValue((PVUnion)pvField, value);
+							MarshallerEvents.endArray(event, MarshallerEvents.SERIALISE, pvField);
+							continue;
 						}
+						checkStaticSchemaValue(fieldDescriptor, value, pvField);
+					}
+					
+					switch (fieldDescriptor.getKind()) {
+					case PRIMITIVE:
+						PrimitiveSerialiser.setValue(pvStructure, fieldDescriptor.getName(), value, fieldDescriptor.getScalarKind());
+						break;
+					case CONTAINER:
+						if (fieldDescriptor.isSharedArray()) {
+							ArraySerialiser.sharePrimitiveArrayValue(fieldDescriptor.getName(), pvStructure, value);
+							serialiser.getContainerSerialiser().reportPrimitiveArray(value.getClass().getComponentType(), Array.getLength(value));
+						} else {
+							serialiser.getContainerSerialiser().setFieldValueWithContainerObject(fieldDescriptor.getName(), pvStructure, value, value.getClass());
+						}
+						break;
+					default:
+						setObjectValue(fieldDescriptor.getName(), pvStructure, value);
+						break;
+					}
+				} else {
+					// The PVStructure may be a reused template, so a null member resets its field to the default value
+					PVField pvField = pvStructure.getSubField(fieldDescriptor.getName());
+					if (pvField != null) {
+						resetValue(pvField);
 					}
 				}
-				clazz = clazz.getSuperclass();
 			}
 		}
 	}
 	
 	/**
-	 * Populates the values in a PVStructure with the specified field in the parent object
-	 * @param childField The child field to get the data from
+	 * Resets a field to the value of a newly created field: zero, false or an empty string for scalars, no elements for
+	 * arrays, no selected member for unions, and the same for each field of a structure
+	 * @param pvField The field to reset
+	 * @return True if the value of the field changed
+	 */
+	static boolean resetValue(PVField pvField)
+	{
+		switch (pvField.getField().getType()) {
+		case scalar:
+			PVScalar pvScalar = (PVScalar)pvField;
+			switch (pvScalar.getScalar().getScalarType()) {
+			case pvBoolean:
+				if (((PVBoolean)pvScalar).get()) {
+					((PVBoolean)pvScalar).put(false);
+					return true;
+				}
+				return false;
+			case pvString:
+				if (!"".equals(((PVString)pvScalar).get())) {
+					((PVString)pvScalar).put("");
+					return true;
+				}
+				return false;
+			default:
+				if (convert.toDouble(pvScalar) != 0) {
+					convert.fromByte(pvScalar, (byte)0);
+					return true;
+				}
+				return false;
+			}
+		case structure:
+			boolean changed = false;
+			for (PVField subField : ((PVStructure)pvField).getPVFields()) {
+				changed |= resetValue(subField);
+			}
+			return changed;
+		case union:
+			PVUnion pvUnion = (PVUnion)pvField;
+			if (pvUnion.get() == null) {
+				return false;
+			} else if (pvUnion.getUnion().isVariant()) {
+				pvUnion.set(null);
+			} else {
+				pvUnion.select(PVUnion.UNDEFINED_INDEX);
+			}
+			return true;
+		default:
+			PVArray pvArray = (PVArray)pvField;
+			if (pvArray.getLength() != 0) {
+				pvArray.setLength(0);
+				return true;
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Checks that the value of a field can be written to the static Structure of its class, which is built from the
+	 * declared type of the field
+	 * @param fieldDescriptor The field
+	 * @param value The value of the field
+	 * @param pvField The PVField to write the value to
+	 * @throws IllegalArgumentException if the value, or an element of a structure array, is of a subclass of its declared type
+	 */
+	private void checkStaticSchemaValue(FieldDescriptor fieldDescriptor, Object value, PVField pvField)
+	{
+		Class<?> type = fieldDescriptor.getType();
+		if (fieldDescriptor.getKind() == Kind.OBJECT) {
+			if (!hasSameStructureAs(value.getClass(), type)) {
+				throw new IllegalArgumentException("Unable to serialise field " + fieldDescriptor.getName() + " with the static schema as its value is a "
+						+ value.getClass().getName() + " rather than its declared type " + type.getName());
+			}
+		} else if (pvField instanceof PVStructureArray) {
+			Class<?> elementClass = type.isArray() ? type.getComponentType() : getListElementClass(fieldDescriptor.getField());
+			List<?> elements = type.isArray() ? Arrays.asList((Object[])value) : (List<?>)value;
+			for (Object element : elements) {
+				if (element != null && !hasSameStructureAs(element.getClass(), elementClass)) {
+					throw new IllegalArgumentException("Unable to serialise field " + fieldDescriptor.getName() + " with the static schema as it holds a "
+							+ element.getClass().getName() + " rather than its declared element type " + elementClass.getName());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Populates the values in a PVStructure with the value of a non-primitive, non-container field
+	 * @param fieldName The name of the field in the parent structure
 	 * @param parentStructure The PVStructure to populate
-	 * @param parentObject The parent object to get the child field from
+	 * @param childObject The value of the field
 	 * @throws Exception
 	 */
-	private void setObjectValue(Field childField, PVStructure parentStructure, Object parentObject) throws Exception
+	void setObjectValue(String fieldName, PVStructure parentStructure, Object childObject) throws Exception
 	{		
-		childField.setAccessible(true);
-		Method method = findGetter(parentObject, childField.getName());
-		Object childObject = method.invoke(parentObject);
+		Class<?> clazz = childObject.getClass();
 		
-		if (childObject != null) {
-			
-			Class<?> clazz = childObject.getClass();
-			
-			// Check again for primitives and containers here in case of generic class not showing up before.
-			if (PrimitiveSerialiser.isPrimitive(clazz)) {
-				PrimitiveSerialiser.setGenericFieldValue(childField, parentStructure, parentObject);
-			} 
-			else if (ContainerSerialiser.isContainer(clazz))
-			{
-				serialiser.getContainerSerialiser().setFieldValue(childField, parentStructure, parentObject);
-			}
-			else {
-				
-				PVStructure childPVStructure = parentStructure.getStructureField(childField.getName());
+		// Check again for primitives and containers here in case of generic class not showing up before.
+		if (PrimitiveSerialiser.isPrimitive(clazz)) {
+			PrimitiveSerialiser.setValue(parentStructure, fieldName, childObject, clazz);
+		} 
+		else if (ContainerSerialiser.isContainer(clazz))
+		{
+			serialiser.getContainerSerialiser().setFieldValueWithContainerObject(fieldName, parentStructure, childObject, clazz);
+		}
+		else {
+			PVStructure childPVStructure = parentStructure.getStructureField(fieldName);
+			setValues(childObject, childPVStructure);
+		}
+	}
 	
-				IPVStructureSerialiser customSerialiser = getCustomSerialiserForClass(clazz);
-				
-				if (customSerialiser != null) {
-					customSerialiser.populatePVStructure(serialiser, childObject, childPVStructure);
-				} else {
-					Field[] declaredFields = clazz.getDeclaredFields();
-					for (Field field : declaredFields)
-					{
-						if (!field.getName().equals("this$0"))
-						{
-							if (!Modifier.isTransient(field.getModifiers())) {
-								if (PrimitiveSerialiser.isPrimitive(field.getType()))
-								{
-									PrimitiveSerialiser.setFieldValue(field, childPVStructure, childObject);
-								}
-								else if (ContainerSerialiser.isContainer(field.getType()))
-								{
-									serialiser.getContainerSerialiser().setFieldValue(field, childPVStructure, childObject);
-								}
-								else
-								{
-									setObjectValue(field, childPVStructure, childObject);
-								}
-							}
-						}
+	/**
+	 * Populates a variant union field with a value whose Structure depends on the value, as used by the static schema
+	 * @param pvUnion The union to populate
+	 * @param value The value
+	 * @throws Exception
+	 */
+	public void setVariantUnionValue(PVUnion pvUnion, Object value) throws Exception
+	{
+		Class<?> clazz = value.getClass();
+		String name = "value";
+		
+		// Create the value as the field of a holder structure, in the same way as other fields
+		FieldBuilder fieldBuilder = FieldFactory.getFieldCreate().createFieldBuilder();
+		if (PrimitiveSerialiser.isPrimitive(clazz)) {
+			fieldBuilder.add(name, PrimitiveSerialiser.getScalarType(clazz));
+		} else if (ContainerSerialiser.isContainer(clazz)) {
+			serialiser.getContainerSerialiser().addToStructureWithContainerObject(clazz, name, fieldBuilder, value);
+		} else {
+			fieldBuilder.add(name, buildObject(value));
+		}
+		
+		PVStructure holder = pvDataCreate.createPVStructure(fieldBuilder.createStructure());
+		setObjectValue(name, holder, value);
+		pvUnion.set(holder.getSubField(name));
+	}
+	
+	/**
+	 * Sets whether Structures are derived from the declared types of fields only, so that every object of a class
+	 * has the same Structure. Fields whose Structure depends on their value become variant unions
+	 * @param staticSchema True if the static schema should be used
+	 */
+	public void setStaticSchema(boolean staticSchema) {
+		this.staticSchema = staticSchema;
+		clearStructures();
+	}
+	
+	/**
+	 * Returns whether Structures are derived from the declared types of fields only
+	 * @return
+	 */
+	public boolean isStaticSchema() {
+		return staticSchema;
+	}
+	
+	/**
+	 * Removes the Structures created from declared types for the static schema and for subtype unions, after a
+	 * change to the registered configuration
+	 */
+	void clearStructures() {
+		staticStructures.clear();
+		serialiser.getContainerSerialiser().clearSubtypeUnions();
+	}
+	
+	/**
+	 * Gets the values of the fields of an object, from the snapshot of the current serialisation if there is one
+	 * @param obj The object to get the values of
+	 * @param classDescriptor The descriptor of the class of the object
+	 * @return The values, in the order of the fields of the descriptor. Fields declared with a Java primitive type are not read
+	 * @throws Exception
+	 */
+	Object[] getFieldValues(Object obj, ClassDescriptor classDescriptor) throws Exception {
+		FieldValueSnapshot currentSnapshot = snapshot.get();
+		if (currentSnapshot != null && classDescriptor.getDescribedClass() == obj.getClass()) {
+			return currentSnapshot.getValues(obj, classDescriptor);
+		}
+		return FieldValueSnapshot.readValues(obj, classDescriptor);
+	}
+	
+	/**
+	 * Gets the snapshot of field values used by the current thread
+	 * @return The snapshot, or null if the getters are called directly
+	 */
+	public FieldValueSnapshot getSnapshot() {
+		return snapshot.get();
+	}
+	
+	/**
+	 * Sets the snapshot of field values used by the current thread
+	 * @param fieldValueSnapshot The snapshot, or null to call the getters directly
+	 */
+	public void setSnapshot(FieldValueSnapshot fieldValueSnapshot) {
+		if (fieldValueSnapshot == null) {
+			snapshot.remove();
+		} else {
+			snapshot.set(fieldValueSnapshot);
+		}
+	}
+	
+	/**
+	 * Gets the descriptor of the fields to serialise for a class, creating it the first time the class is seen.
+	 * The descriptor is created inside the map so that clearing the map when the registrations change waits for it,
+	 * and a descriptor created from the old registrations cannot be cached afterwards
+	 * @param clazz The class to get the descriptor for
+	 * @return The class descriptor
+	 */
+	public ClassDescriptor getClassDescriptor(Class<?> clazz) {
+		ClassDescriptor descriptor = classDescriptors.get(clazz);
+		if (descriptor == null) {
+			descriptor = classDescriptors.computeIfAbsent(clazz, this::createClassDescriptor);
+		}
+		return descriptor;
+	}
+	
+	/**
+	 * Creates the descriptor of the fields to serialise for a class
+	 * @param clazz The class to create the descriptor for
+	 * @return The class descriptor
+	 */
+	private ClassDescriptor createClassDescriptor(Class<?> clazz) {
+		List<Field> candidateFields = new ArrayList<Field>();
+		
+		Class<?> classToCheck = clazz;
+		
+		while (classToCheck != Object.class)
+		{
+			Field[] declaredFields = classToCheck.getDeclaredFields();
+			for (Field field : declaredFields)
+			{
+				if (!field.getName().equals("this$0"))
+				{
+					if (!Modifier.isTransient(field.getModifiers())) {
+						candidateFields.add(field);
 					}
 				}
 			}
+			
+			classToCheck = classToCheck.getSuperclass();
+		}
+		
+		BitSet fieldMask = getFieldMask(clazz, candidateFields);
+		List<FieldDescriptor> fields = new ArrayList<FieldDescriptor>(fieldMask.cardinality());
+		
+		for (int i = fieldMask.nextSetBit(0); i >= 0; i = fieldMask.nextSetBit(i + 1)) {
+			Field field = candidateFields.get(i);
+			field.setAccessible(true);
+			fields.add(new FieldDescriptor(field, Serialiser.findGetterForClass(clazz, field.getName()), accessorBackend, isSharedArrayFieldForClass(clazz, field.getName())));
 		}
+		
+		return new ClassDescriptor(clazz, fields.toArray(new FieldDescriptor[fields.size()]));
+	}
+	
+	/**
+	 * Sets the backend used to call the getters of serialised objects
+	 * @param accessorBackend The backend
+	 */
+	public void setAccessorBackend(AccessorBackend accessorBackend) {
+		this.accessorBackend = accessorBackend;
+		classDescriptors.clear();
+		clearStructures();
 	}
 	
 	/**
@@ -240,6 +779,20 @@ public class ObjectSerialiser {
 	 */
 	public void addCustomSerialiser(Class<?> clazz, IPVStructureSerialiser<?> serialiser) {
 		registeredSerialisers.put(clazz, serialiser);
+		resolvedSerialisers.clear();
+		clearStructures();
+	}
+	
+	/**
+	 * Adds a generated serialiser to the register. Unlike custom serialisers, it is only used for
+	 * objects of exactly the specified class, and only if no custom serialiser applies to the class
+	 * @param clazz The class to use the serialiser for
+	 * @param serialiser The serialiser
+	 */
+	public void addGeneratedSerialiser(Class<?> clazz, IPVStructureSerialiser<?> serialiser) {
+		generatedSerialisers.put(clazz, serialiser);
+		resolvedSerialisers.clear();
+		clearStructures();
 	}
 	
 	/**
@@ -248,6 +801,8 @@ public class ObjectSerialiser {
 	 */
 	public void addIdMapping(Class<?> clazz, String id) {
 		registeredIds.put(clazz, id);
+		resolvedIds.clear();
+		clearStructures();
 	}
 	
 	/**
@@ -257,6 +812,8 @@ public class ObjectSerialiser {
 	 */
 	public void addFieldsToSerialise(Class<?> clazz, List<String> fieldsToSerialise) {
 		registeredFields.put(clazz, fieldsToSerialise);
+		classDescriptors.clear();
+		clearStructures();
 	}
 	
 	/**
@@ -266,16 +823,44 @@ public class ObjectSerialiser {
 	 */
 	public void addFieldsToExclude(Class<?> clazz, List<String> fieldsToExclude) {
 		excludeFields.put(clazz, fieldsToExclude);
+		classDescriptors.clear();
+		clearStructures();
+	}
+	
+	/**
+	 * Adds a list of array fields whose data is shared with the PVStructure instead of copied
+	 * @param clazz
+	 * @param fieldsToShare
+	 */
+	public void addSharedArrayFields(Class<?> clazz, List<String> fieldsToShare) {
+		sharedArrayFields.put(clazz, fieldsToShare);
+		classDescriptors.clear();
+		clearStructures();
 	}
 	
 	/**
-	 * Gets the registered custom serialiser for a given class
+	 * Gets the registered custom serialiser for a given class. The result is remembered for the class until
+	 * the registered serialisers change. It is found inside the map, so a lookup that overlaps a registration
+	 * can't store its result after the registration has cleared the map
 	 * @param clazz The class to get the custom serialiser for
 	 * @return the serialiser or null if there isn't one registered
 	 */
-	private IPVStructureSerialiser getCustomSerialiserForClass(Class<?> clazz) {
+	IPVStructureSerialiser getCustomSerialiserForClass(Class<?> clazz) {
+		Optional<IPVStructureSerialiser<?>> resolved = resolvedSerialisers.get(clazz);
+		if (resolved == null) {
+			resolved = resolvedSerialisers.computeIfAbsent(clazz, c -> Optional.ofNullable(findCustomSerialiserForClass(c)));
+		}
+		return resolved.orElse(null);
+	}
+	
+	/**
+	 * Finds the registered custom serialiser for a given class by searching its superclasses and their interfaces
+	 * @param clazz The class to find the custom serialiser for
+	 * @return the serialiser or null if there isn't one registered
+	 */
+	private IPVStructureSerialiser<?> findCustomSerialiserForClass(Class<?> clazz) {
 		
-		IPVStructureSerialiser foundSerialiser = null;
+		IPVStructureSerialiser<?> foundSerialiser = null;
 
 		Class<?> classToCheck = clazz;
 		
@@ -309,15 +894,29 @@ public class ObjectSerialiser {
 				classToCheck = classToCheck.getSuperclass();
 			}
 		}
-		return null;
+		return generatedSerialisers.get(clazz);
 	}
 	
 	/**
-	 * Gets the registered custom ID mapping for the specified class
+	 * Gets the registered custom ID mapping for the specified class. The result is remembered for the class until
+	 * the registered IDs change, and is found inside the map for the same reason as the custom serialiser
 	 * @param clazz The class to get the custom id mapping for
 	 * @return The id or null if there isn't one registered
 	 */
 	private String getIdMappingForClass(Class<?> clazz) {
+		Optional<String> resolved = resolvedIds.get(clazz);
+		if (resolved == null) {
+			resolved = resolvedIds.computeIfAbsent(clazz, c -> Optional.ofNullable(findIdMappingForClass(c)));
+		}
+		return resolved.orElse(null);
+	}
+	
+	/**
+	 * Finds the registered custom ID mapping for the specified class by searching its superclasses and their interfaces
+	 * @param clazz The class to find the custom id mapping for
+	 * @return The id or null if there isn't one registered
+	 */
+	private String findIdMappingForClass(Class<?> clazz) {
 		String foundString = null;
 
 		Class<?> classToCheck = clazz;
@@ -356,156 +955,101 @@ public class ObjectSerialiser {
 	}
 	
 	/**
-	 * Gets the registered custom ID mapping for the specified class
-	 * @param clazz The class to get the custom id mapping for
-	 * @return The id or null if there isn't one registered
+	 * Gets which of the candidate fields of a class are serialised, from the field lists registered for the class,
+	 * its superclasses and their interfaces. Fields in any exclude list are never serialised, and if there are any
+	 * include lists, only the fields in them are serialised
+	 * @param clazz The class
+	 * @param candidateFields The fields that could be serialised
+	 * @return The mask with the indices of the fields to serialise set
 	 */
-	private boolean canAddFieldForClass(Class<?> clazz, String fieldName) {
-		boolean foundList = false;
-
-		Class<?> classToCheck = clazz;
+	private BitSet getFieldMask(Class<?> clazz, List<Field> candidateFields) {
+		Set<String> excludedNames = getRegisteredFieldNames(clazz, excludeFields);
+		Set<String> includedNames = getRegisteredFieldNames(clazz, registeredFields);
 		
-		// Check for exclude fields
-		while (classToCheck != Object.class) {
-			
-			if (excludeFields.containsKey(classToCheck)) {
-				List<String> fields = excludeFields.get(classToCheck);
-				
-				if (fields.contains(fieldName)) {
-					return false;
-				}
-			} else {
-				List<Class<?>> classInterfacesList = Arrays.asList(classToCheck.getInterfaces());
-				// Check for id for interface
-				for (Class<?> keyClass : excludeFields.keySet()) {
-					if (keyClass.isInterface()) {
-						if (classInterfacesList.contains(keyClass)) {
-
-							List<String> fields = excludeFields.get(keyClass);
-							
-							if (fields.contains(fieldName)) {
-								return false;
-							}
-						}
-					}
-				}
+		BitSet fieldMask = new BitSet(candidateFields.size());
+		for (int i = 0; i < candidateFields.size(); i++) {
+			String fieldName = candidateFields.get(i).getName();
+			if (excludedNames != null && excludedNames.contains(fieldName)) {
+				continue;
+			}
+			if (includedNames == null || includedNames.contains(fieldName)) {
+				fieldMask.set(i);
 			}
-			// Check for id of any base class
-			classToCheck = classToCheck.getSuperclass();
 		}
-				
-		classToCheck = clazz;
+		return fieldMask;
+	}
+	
+	/**
+	 * Gets the names in all the field lists registered for a class or its superclasses, or, for a class without
+	 * a list of its own, for the interfaces it implements
+	 * @param clazz The class
+	 * @param register The registered field lists
+	 * @return The names, or null if no list applies to the class
+	 */
+	private static Set<String> getRegisteredFieldNames(Class<?> clazz, Map<Class<?>, List<String>> register) {
+		if (register.isEmpty()) {
+			return null;
+		}
+		
+		Set<String> names = null;
+		Class<?> classToCheck = clazz;
 		
-		// Check for include fields
 		while (classToCheck != Object.class) {
-			
-			if (registeredFields.containsKey(classToCheck)) {
-				foundList = true;
-				List<String> fields = registeredFields.get(classToCheck);
-				
-				if (fields.contains(fieldName)) {
-					return true;
-				}
+			List<String> fields = register.get(classToCheck);
+			if (fields != null) {
+				names = addNames(names, fields);
 			} else {
-				List<Class<?>> classInterfacesList = Arrays.asList(classToCheck.getInterfaces());
-				// Check for id for interface
-				for (Class<?> keyClass : registeredFields.keySet()) {
-					if (keyClass.isInterface()) {
-						if (classInterfacesList.contains(keyClass)) {
-							foundList = true;
-
-							List<String> fields = registeredFields.get(keyClass);
-							
-							if (fields.contains(fieldName)) {
-								return true;
-							}
-						}
+				for (Class<?> interfaceClass : classToCheck.getInterfaces()) {
+					fields = register.get(interfaceClass);
+					if (fields != null) {
+						names = addNames(names, fields);
 					}
 				}
 			}
-			// Check for id of any base class
+			// Check the lists of any base class
 			classToCheck = classToCheck.getSuperclass();
 		}
-		
-		// If we got here, then check the class or its parents or interfaces waeren't found in any list.
-		// If they were then don't add field. If not in any list then can add field
-		if (foundList == true) {
-			return false;
+		return names;
+	}
+	
+	/**
+	 * Adds a list of field names to a set, creating it if needed
+	 * @param names The set, or null
+	 * @param fields The names to add
+	 * @return The set
+	 */
+	private static Set<String> addNames(Set<String> names, List<String> fields) {
+		if (names == null) {
+			names = new HashSet<String>();
 		}
-		
-		return true;
+		names.addAll(fields);
+		return names;
 	}
 
 	/**
-	 * Determines whether a field can be added for an object.
-	 * @param field The field to check
-	 * @param object The object to check the field for
-	 * @return true if the field should be added for this object
-	 * @throws IllegalArgumentException
-	 * @throws IllegalAccessException
-	 * @throws InvocationTargetException
+	 * Gets whether the data of an array field is registered to be shared for the specified class, its superclasses or their interfaces
+	 * @param clazz The class to check
+	 * @param fieldName The name of the field
+	 * @return
 	 */
-	private boolean canAddFieldForObject(Field field, Object object) throws IllegalArgumentException, IllegalAccessException, InvocationTargetException {
-		
-		Class<?> objectClass = object.getClass();
-		
-		if (canAddFieldForClass(objectClass, field.getName()) == false) {
-			return false;
-		}
+	private boolean isSharedArrayFieldForClass(Class<?> clazz, String fieldName) {
+		Class<?> classToCheck = clazz;
 		
-		Class<?> fieldType = field.getType();
-
-		if (fieldType.equals(int.class) ||
-			fieldType.equals(short.class) ||
-			fieldType.equals(long.class) ||
-			fieldType.equals(byte.class) ||
-			fieldType.equals(boolean.class) ||
-			fieldType.equals(float.class) ||
-			fieldType.equals(double.class) ||
-			fieldType.equals(char.class))
-		{
-			return true;
-		} else {
-			field.setAccessible(true);
-			Method method = findGetter(object, field.getName());
-			Object fieldObject = method.invoke(object);
-			if (fieldObject != null) {
+		while (classToCheck != Object.class) {
+			List<String> fields = sharedArrayFields.get(classToCheck);
+			if (fields != null && fields.contains(fieldName)) {
 				return true;
 			}
+			
+			for (Class<?> interfaceClass : classToCheck.getInterfaces()) {
+				fields = sharedArrayFields.get(interfaceClass);
+				if (fields != null && fields.contains(fieldName)) {
+					return true;
+				}
+			}
+			
+			classToCheck = classToCheck.getSuperclass();
 		}
 		return false;
 	}
-	
-	/**
-	 * Finds the Getter method for the specified variable in an object
-	 * @param object The object to get the getter in
-	 * @param variableName The variable to get the getter for
-	 * @return The getter method
-	 * @throws IllegalArgumentException
-	 */
-	private static Method findGetter(Object object, String variableName) throws IllegalArgumentException {
-		Class<?> clazz = object.getClass();
-		while (clazz != Object.class)  {
-			Method[] allMethods = clazz.getDeclaredMethods();
-			 
-		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("get" + variableName.toLowerCase()) && m.getParameters().length == 0) {
-		    		m.setAccessible(true);
-		    		return m;
-		    	}
-		    }
-		    
-		    // Didn't find a 'get' method, try 'is'
-		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("is" + variableName.toLowerCase()) && m.getParameters().length == 0) {
-		    		m.setAccessible(true);
-		    		return m;
-		    	}
-		    }
-		    
-		    // Didn't find any method in this class, try the superclass
-		    clazz = clazz.getSuperclass();
-		}
-		throw new IllegalArgumentException("Unable to find getter for " + variableName + " in class " + object.getClass());
-	}
 }
@@ -8,6 +8,7 @@ import org.epics.pvdata.pv.FieldBuilder;
 import org.epics.pvdata.pv.PVBoolean;
 import org.epics.pvdata.pv.PVByte;
 import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVField;
 import org.epics.pvdata.pv.PVFloat;
 import org.epics.pvdata.pv.PVInt;
 import org.epics.pvdata.pv.PVLong;
@@ -15,6 +16,7 @@ import org.epics.pvdata.pv.PVShort;
 import org.epics.pvdata.pv.PVString;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvmarshaller.marshaller.accessors.Getter;
 
 /**
  * Serialises primitive values
@@ -30,19 +32,7 @@ public class PrimitiveSerialiser {
 	 * @return
 	 */
 	public static boolean isPrimitive(Class<?> fieldType) {
-		if (fieldType.equals(Integer.class) || fieldType.equals(int.class) || 
-			fieldType.equals(Short.class) || fieldType.equals(short.class) || 
-			fieldType.equals(Long.class) || fieldType.equals(long.class) || 
-			fieldType.equals(Byte.class) || fieldType.equals(byte.class) || 
-			fieldType.equals(Boolean.class) || fieldType.equals(boolean.class) || 
-			fieldType.equals(Float.class) || fieldType.equals(float.class) || 
-			fieldType.equals(Double.class) || fieldType.equals(double.class) || 
-			fieldType.equals(Character.class) || fieldType.equals(char.class) || 
-			fieldType.equals(String.class)) {
-			return true;
-		}
-
-		return false;
+		return ScalarKind.of(fieldType) != null;
 	}
 
 	/**
@@ -51,30 +41,8 @@ public class PrimitiveSerialiser {
 	 * @return
 	 */
 	public static ScalarType getScalarType(Class<?> fieldType) {
-
-		ScalarType type = null;
-
-		if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
-			type = ScalarType.pvInt;
-		} else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
-			type = ScalarType.pvShort;
-		} else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
-			type = ScalarType.pvLong;
-		} else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
-			type = ScalarType.pvByte;
-		} else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
-			type = ScalarType.pvBoolean;
-		} else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
-			type = ScalarType.pvFloat;
-		} else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
-			type = ScalarType.pvDouble;
-		} else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
-			type = ScalarType.pvString;
-		} else if (fieldType.equals(String.class)) {
-			type = ScalarType.pvString;
-		}
-
-		return type;
+		ScalarKind kind = ScalarKind.of(fieldType);
+		return kind == null ? null : kind.getScalarType();
 	}
 
 	/**
@@ -128,27 +96,305 @@ public class PrimitiveSerialiser {
 
 		field.setAccessible(true);
 
-		if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
+		ScalarKind kind = ScalarKind.of(fieldType);
+		if (kind == null) {
+			return;
+		}
+
+		switch (kind) {
+		case INT:
 			setIntFieldValue(field, structure, object);
-		} else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
+			break;
+		case SHORT:
 			setShortFieldValue(field, structure, object);
-		} else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
+			break;
+		case LONG:
 			setLongFieldValue(field, structure, object);
-		} else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
+			break;
+		case BYTE:
 			setByteFieldValue(field, structure, object);
-		} else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
+			break;
+		case BOOLEAN:
 			setBooleanFieldValue(field, structure, object);
-		} else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
+			break;
+		case FLOAT:
 			setFloatFieldValue(field, structure, object);
-		} else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
+			break;
+		case DOUBLE:
 			setDoubleFieldValue(field, structure, object);
-		} else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
+			break;
+		case CHAR:
 			setCharFieldValue(field, structure, object);
-		} else if (fieldType.equals(String.class)) {
+			break;
+		case STRING:
 			setStringFieldValue(field, structure, object);
+			break;
+		}
+	}
+
+	/**
+	 * Populates a field in a PVStructure with a primitive value
+	 * @param structure The PVStructure to populate
+	 * @param name The name of the field in the structure to populate
+	 * @param value The primitive value
+	 * @param valueType The type of primitive
+	 */
+	public static void setValue(PVStructure structure, String name, Object value, Class<?> valueType) {
+		setValue(structure, name, value, ScalarKind.of(valueType));
+	}
+
+	/**
+	 * Populates a field in a PVStructure with a primitive value
+	 * @param structure The PVStructure to populate
+	 * @param name The name of the field in the structure to populate
+	 * @param value The primitive value
+	 * @param kind The kind of primitive
+	 */
+	public static void setValue(PVStructure structure, String name, Object value, ScalarKind kind) {
+		if (value == null || kind == null) {
+			return;
+		}
+
+		switch (kind) {
+		case INT:
+			structure.getSubField(PVInt.class, name).put((int)value);
+			break;
+		case SHORT:
+			structure.getSubField(PVShort.class, name).put((short)value);
+			break;
+		case LONG:
+			structure.getSubField(PVLong.class, name).put((long)value);
+			break;
+		case BYTE:
+			structure.getSubField(PVByte.class, name).put((byte)value);
+			break;
+		case BOOLEAN:
+			structure.getSubField(PVBoolean.class, name).put((boolean)value);
+			break;
+		case FLOAT:
+			structure.getSubField(PVFloat.class, name).put((float)value);
+			break;
+		case DOUBLE:
+			structure.getSubField(PVDouble.class, name).put((double)value);
+			break;
+		case CHAR:
+			structure.getSubField(PVString.class, name).put(String.valueOf(value));
+			break;
+		case STRING:
+			structure.getSubField(PVString.class, name).put((String)value);
+			break;
+		}
+	}
+
+	/**
+	 * Populates a field in a PVStructure with the value of a Java primitive member, using the typed
+	 * method of the getter so the value is not boxed if the getter supports it
+	 * @param structure The PVStructure to populate
+	 * @param name The name of the field in the structure to populate
+	 * @param getter The getter of the member
+	 * @param valueType The Java primitive type of the member
+	 * @param source The object to get the value from
+	 * @throws Exception
+	 */
+	public static void setValue(PVStructure structure, String name, Getter getter, Class<?> valueType, Object source) throws Exception {
+		setValue(structure, name, getter, ScalarKind.of(valueType), source);
+	}
+
+	/**
+	 * Populates a field in a PVStructure with the value of a Java primitive member, using the typed
+	 * method of the getter so the value is not boxed if the getter supports it
+	 * @param structure The PVStructure to populate
+	 * @param name The name of the field in the structure to populate
+	 * @param getter The getter of the member
+	 * @param kind The kind of the Java primitive type of the member
+	 * @param source The object to get the value from
+	 * @throws Exception
+	 */
+	public static void setValue(PVStructure structure, String name, Getter getter, ScalarKind kind, Object source) throws Exception {
+		if (kind == null) {
+			return;
+		}
+
+		switch (kind) {
+		case INT:
+			structure.getSubField(PVInt.class, name).put(getter.getInt(source));
+			break;
+		case DOUBLE:
+			structure.getSubField(PVDouble.class, name).put(getter.getDouble(source));
+			break;
+		case LONG:
+			structure.getSubField(PVLong.class, name).put(getter.getLong(source));
+			break;
+		case BOOLEAN:
+			structure.getSubField(PVBoolean.class, name).put(getter.getBoolean(source));
+			break;
+		case FLOAT:
+			structure.getSubField(PVFloat.class, name).put(getter.getFloat(source));
+			break;
+		case SHORT:
+			structure.getSubField(PVShort.class, name).put(getter.getShort(source));
+			break;
+		case BYTE:
+			structure.getSubField(PVByte.class, name).put(getter.getByte(source));
+			break;
+		case CHAR:
+			structure.getSubField(PVString.class, name).put(String.valueOf(getter.getChar(source)));
+			break;
+		case STRING:
+			break;
 		}
 	}
 
+	/**
+	 * Sets a primitive PVField to the value of a Java primitive member, if the value is different to the current one.
+	 * Floating point values are compared by their bits, so NaN is unchanged if it was already NaN
+	 * @param pvField The field to populate
+	 * @param getter The getter of the member
+	 * @param valueType The Java primitive type of the member
+	 * @param source The object to get the value from
+	 * @return True if the value of the field was changed
+	 * @throws Exception
+	 */
+	public static boolean setChangedValue(PVField pvField, Getter getter, Class<?> valueType, Object source) throws Exception {
+		return setChangedValue(pvField, getter, ScalarKind.of(valueType), source);
+	}
+
+	/**
+	 * Sets a primitive PVField to the value of a Java primitive member, if the value is different to the current one.
+	 * Floating point values are compared by their bits, so NaN is unchanged if it was already NaN
+	 * @param pvField The field to populate
+	 * @param getter The getter of the member
+	 * @param kind The kind of the Java primitive type of the member
+	 * @param source The object to get the value from
+	 * @return True if the value of the field was changed
+	 * @throws Exception
+	 */
+	public static boolean setChangedValue(PVField pvField, Getter getter, ScalarKind kind, Object source) throws Exception {
+		if (kind == null) {
+			return false;
+		}
+
+		switch (kind) {
+		case INT:
+			return setChangedInt((PVInt)pvField, getter.getInt(source));
+		case DOUBLE:
+			return setChangedDouble((PVDouble)pvField, getter.getDouble(source));
+		case LONG:
+			return setChangedLong((PVLong)pvField, getter.getLong(source));
+		case BOOLEAN:
+			return setChangedBoolean((PVBoolean)pvField, getter.getBoolean(source));
+		case FLOAT:
+			return setChangedFloat((PVFloat)pvField, getter.getFloat(source));
+		case SHORT:
+			return setChangedShort((PVShort)pvField, getter.getShort(source));
+		case BYTE:
+			return setChangedByte((PVByte)pvField, getter.getByte(source));
+		case CHAR:
+			return setChangedString((PVString)pvField, String.valueOf(getter.getChar(source)));
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Sets a primitive PVField to a value, if the value is different to the current one
+	 * @param pvField The field to populate
+	 * @param value The primitive value
+	 * @return True if the value of the field was changed
+	 */
+	public static boolean setChangedValue(PVField pvField, Object value) {
+		ScalarKind kind = ScalarKind.of(value.getClass());
+		if (kind == null) {
+			return false;
+		}
+
+		switch (kind) {
+		case INT:
+			return setChangedInt((PVInt)pvField, (int)value);
+		case DOUBLE:
+			return setChangedDouble((PVDouble)pvField, (double)value);
+		case LONG:
+			return setChangedLong((PVLong)pvField, (long)value);
+		case BOOLEAN:
+			return setChangedBoolean((PVBoolean)pvField, (boolean)value);
+		case FLOAT:
+			return setChangedFloat((PVFloat)pvField, (float)value);
+		case SHORT:
+			return setChangedShort((PVShort)pvField, (short)value);
+		case BYTE:
+			return setChangedByte((PVByte)pvField, (byte)value);
+		case CHAR:
+		case STRING:
+			return setChangedString((PVString)pvField, String.valueOf(value));
+		default:
+			return false;
+		}
+	}
+
+	private static boolean setChangedInt(PVInt pvValue, int value) {
+		if (pvValue.get() == value) {
+			return false;
+		}
+		pvValue.put(value);
+		return true;
+	}
+
+	private static boolean setChangedShort(PVShort pvValue, short value) {
+		if (pvValue.get() == value) {
+			return false;
+		}
+		pvValue.put(value);
+		return true;
+	}
+
+	private static boolean setChangedLong(PVLong pvValue, long value) {
+		if (pvValue.get() == value) {
+			return false;
+		}
+		pvValue.put(value);
+		return true;
+	}
+
+	private static boolean setChangedByte(PVByte pvValue, byte value) {
+		if (pvValue.get() == value) {
+			return false;
+		}
+		pvValue.put(value);
+		return true;
+	}
+
+	private static boolean setChangedBoolean(PVBoolean pvValue, boolean value) {
+		if (pvValue.get() == value) {
+			return false;
+		}
+		pvValue.put(value);
+		return true;
+	}
+
+	private static boolean setChangedFloat(PVFloat pvValue, float value) {
+		if (Float.floatToIntBits(pvValue.get()) == Float.floatToIntBits(value)) {
+			return false;
+		}
+		pvValue.put(value);
+		return true;
+	}
+
+	private static boolean setChangedDouble(PVDouble pvValue, double value) {
+		if (Double.doubleToLongBits(pvValue.get()) == Double.doubleToLongBits(value)) {
+			return false;
+		}
+		pvValue.put(value);
+		return true;
+	}
+
+	private static boolean setChangedString(PVString pvValue, String value) {
+		if (value.equals(pvValue.get())) {
+			return false;
+		}
+		pvValue.put(value);
+		return true;
+	}
+
 	/**
 	 * Populates a PVStructure with data from a generic field
 	 * @param field The field
@@ -167,24 +413,39 @@ public class PrimitiveSerialiser {
 
 		field.setAccessible(true);
 
-		if (fieldType.equals(Integer.class) || fieldType.equals(int.class)) {
+		ScalarKind kind = ScalarKind.of(fieldType);
+		if (kind == null) {
+			return;
+		}
+
+		switch (kind) {
+		case INT:
 			setIntFieldValue(field, structure, object);
-		} else if (fieldType.equals(Short.class) || fieldType.equals(short.class)) {
+			break;
+		case SHORT:
 			setShortFieldValue(field, structure, object);
-		} else if (fieldType.equals(Long.class) || fieldType.equals(long.class)) {
+			break;
+		case LONG:
 			setLongFieldValue(field, structure, object);
-		} else if (fieldType.equals(Byte.class) || fieldType.equals(byte.class)) {
+			break;
+		case BYTE:
 			setByteFieldValue(field, structure, object);
-		} else if (fieldType.equals(Boolean.class) || fieldType.equals(boolean.class)) {
+			break;
+		case BOOLEAN:
 			setBooleanFieldValue(field, structure, object);
-		} else if (fieldType.equals(Float.class) || fieldType.equals(float.class)) {
+			break;
+		case FLOAT:
 			setFloatFieldValue(field, structure, object);
-		} else if (fieldType.equals(Double.class) || fieldType.equals(double.class)) {
+			break;
+		case DOUBLE:
 			setDoubleFieldValue(field, structure, object);
-		} else if (fieldType.equals(Character.class) || fieldType.equals(char.class)) {
+			break;
+		case CHAR:
 			setCharFieldValue(field, structure, object);
-		} else if (fieldType.equals(String.class)) {
+			break;
+		case STRING:
 			setStringFieldValue(field, structure, object);
+			break;
 		}
 	}
 
@@ -0,0 +1,80 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.epics.pvdata.pv.ScalarType;
+
+/**
+ * The kinds of Java value that are serialised as PVData scalars, with the scalar type used for each.
+ * A class is mapped to its kind with a single lookup, so the serialisers can switch on the kind instead of
+ * comparing the class against each primitive and wrapper type in turn
+ * @author Matt Taylor
+ *
+ */
+public enum ScalarKind {
+	INT(ScalarType.pvInt, Integer.BYTES),
+	SHORT(ScalarType.pvShort, Short.BYTES),
+	LONG(ScalarType.pvLong, Long.BYTES),
+	BYTE(ScalarType.pvByte, Byte.BYTES),
+	BOOLEAN(ScalarType.pvBoolean, Byte.BYTES),
+	FLOAT(ScalarType.pvFloat, Float.BYTES),
+	DOUBLE(ScalarType.pvDouble, Double.BYTES),
+	CHAR(ScalarType.pvString, 0),
+	STRING(ScalarType.pvString, 0);
+
+	private static final Map<Class<?>, ScalarKind> kinds = new IdentityHashMap<Class<?>, ScalarKind>();
+
+	static {
+		kinds.put(int.class, INT);
+		kinds.put(Integer.class, INT);
+		kinds.put(short.class, SHORT);
+		kinds.put(Short.class, SHORT);
+		kinds.put(long.class, LONG);
+		kinds.put(Long.class, LONG);
+		kinds.put(byte.class, BYTE);
+		kinds.put(Byte.class, BYTE);
+		kinds.put(boolean.class, BOOLEAN);
+		kinds.put(Boolean.class, BOOLEAN);
+		kinds.put(float.class, FLOAT);
+		kinds.put(Float.class, FLOAT);
+		kinds.put(double.class, DOUBLE);
+		kinds.put(Double.class, DOUBLE);
+		kinds.put(char.class, CHAR);
+		kinds.put(Character.class, CHAR);
+		kinds.put(String.class, STRING);
+	}
+
+	private final ScalarType scalarType;
+	private final int elementSize;
+
+	private ScalarKind(ScalarType scalarType, int elementSize) {
+		this.scalarType = scalarType;
+		this.elementSize = elementSize;
+	}
+
+	/**
+	 * Gets the PVData scalar type values of this kind are serialised as
+	 * @return
+	 */
+	public ScalarType getScalarType() {
+		return scalarType;
+	}
+
+	/**
+	 * Gets the number of bytes each element of an array of this kind takes in a serialised buffer
+	 * @return The size, or 0 for kinds that are serialised as strings
+	 */
+	public int getElementSize() {
+		return elementSize;
+	}
+
+	/**
+	 * Gets the kind of a class. All the classes mapped are final, so they can be compared by identity
+	 * @param type The class, which may be a Java primitive, its wrapper, or String
+	 * @return The kind, or null if values of the class are not serialised as scalars
+	 */
+	public static ScalarKind of(Class<?> type) {
+		return kinds.get(type);
+	}
+}
@@ -4,10 +4,13 @@ import java.util.List;
 import java.util.Map;
 
 import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
 import org.epics.pvdata.pv.PVDataCreate;
 import org.epics.pvdata.pv.PVStructure;
 import org.epics.pvdata.pv.Structure;
 import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
+import org.epics.pvmarshaller.marshaller.jfr.MarshallerEvents;
+import org.epics.pvmarshaller.marshaller.metrics.MarshallerMetrics;
 
 /**
  * Top level class for the serialisation of an Object into a PVStrucures
@@ -24,14 +27,61 @@ public class Serialiser {
 	ListSerialiser listSerialiser = new ListSerialiser(this);
 	MapSerialiser mapSerialiser = new MapSerialiser(this);
 	ObjectSerialiser objectSerialiser = new ObjectSerialiser(this);
+	DeltaSerialiser deltaSerialiser = new DeltaSerialiser(this);
+	BufferSerialiser bufferSerialiser = new BufferSerialiser(this);
+	
+	MarshallerMetrics metrics = MarshallerMetrics.NONE;
 	
 	/**
-	 * Converts an Object into a PVStructure
+	 * Converts an Object into a PVStructure. Each getter is called once, while building the Structure, and the
+	 * values it returned are used to populate the PVStructure, so the two are consistent even if the object changes
 	 * @param source The object to convert
 	 * @return PVStructure representing the source object
 	 * @throws Exception
 	 */
 	public PVStructure toPVStructure(Object source) throws Exception
+	{
+		Object event = MarshallerEvents.beginSerialisation();
+		PVStructure pvStructure = createPVStructureWithSnapshot(source);
+		MarshallerEvents.endSerialisation(event, source, pvStructure);
+		return pvStructure;
+	}
+	
+	/**
+	 * Converts an Object into a PVStructure, keeping the values returned by its getters while building the Structure
+	 * @param source The object to convert
+	 * @return PVStructure representing the source object
+	 * @throws Exception
+	 */
+	private PVStructure createPVStructureWithSnapshot(Object source) throws Exception
+	{
+		FieldValueSnapshot previousSnapshot = objectSerialiser.getSnapshot();
+		if (previousSnapshot != null && !previousSnapshot.isFrozen()) {
+			// Called while building the Structure of an outer object, so keep adding to its snapshot
+			return createPVStructure(source);
+		}
+		
+		FieldValueSnapshot snapshot = new FieldValueSnapshot();
+		objectSerialiser.setSnapshot(snapshot);
+		try {
+			Structure requestStructure = buildStructure(source);
+			snapshot.freeze();
+			
+			PVStructure pvStructure = pvDataCreate.createPVStructure(requestStructure);
+			setValues(source, pvStructure);
+			return pvStructure;
+		} finally {
+			objectSerialiser.setSnapshot(previousSnapshot);
+		}
+	}
+	
+	/**
+	 * Builds the Structure for an object and populates a PVStructure with it
+	 * @param source The object to convert
+	 * @return PVStructure representing the source object
+	 * @throws Exception
+	 */
+	private PVStructure createPVStructure(Object source) throws Exception
 	{
 		Structure requestStructure = buildStructure(source);
 		
@@ -52,6 +102,17 @@ public class Serialiser {
 		return objectSerialiser.buildObject(source);
 	}
 	
+	/**
+	 * Creates an empty PVStructure with a Structure that represents any object of the specified class.
+	 * The PVStructure can be populated with {@link #setValues(Object, PVStructure)} for each object to publish
+	 * @param clazz The class of the objects to populate it with
+	 * @return The PVStructure
+	 * @throws Exception
+	 */
+	public PVStructure createTemplate(Class<?> clazz) throws Exception {
+		return pvDataCreate.createPVStructure(objectSerialiser.buildStructureFromClass(clazz));
+	}
+	
 	/**
 	 * Populates the specified PVStructure with data from the specified source Object
 	 * @param source The source object to populate data from
@@ -62,6 +123,18 @@ public class Serialiser {
 		objectSerialiser.setValues(source, pvStructure);
 	}
 	
+	/**
+	 * Populates the specified PVStructure with data from the specified source Object, only writing the fields
+	 * whose value has changed, and sets the offsets of the changed fields in the BitSet
+	 * @param source The source object to populate data from
+	 * @param pvStructure The PVStructure to populate data into
+	 * @param changedFields The BitSet to set the offsets of the changed fields in
+	 * @throws Exception
+	 */
+	public void setChangedValues(Object source, PVStructure pvStructure, BitSet changedFields) throws Exception {
+		deltaSerialiser.setChangedValues(source, pvStructure, changedFields);
+	}
+	
 	/**
 	 * Populates the specified field within the specified PVStructure with the value of the object
 	 * @param pvStructure The PVStructure to populate
@@ -129,6 +202,38 @@ public class Serialiser {
 		return objectSerialiser;
 	}
 	
+	/**
+	 * Gets the DeltaSerialiser used for populating only the changed values of PVStructures
+	 * @return
+	 */
+	public DeltaSerialiser getDeltaSerialiser() {
+		return deltaSerialiser;
+	}
+	
+	/**
+	 * Gets the BufferSerialiser used for serialising objects straight into ByteBuffers
+	 * @return
+	 */
+	public BufferSerialiser getBufferSerialiser() {
+		return bufferSerialiser;
+	}
+	
+	/**
+	 * Sets the metrics that custom serialiser usage, Structure cache lookups and primitive arrays are reported to
+	 * @param metrics The metrics
+	 */
+	public void setMetrics(MarshallerMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Gets the metrics that serialisation events are reported to
+	 * @return
+	 */
+	public MarshallerMetrics getMetrics() {
+		return metrics;
+	}
+	
 	/**
 	 * Finds the getter method for the given variable in the given object
 	 * @param object The object to search
@@ -137,12 +242,27 @@ public class Serialiser {
 	 * @throws IllegalArgumentException
 	 */
 	public static Method findGetter(Object object, String variableName) throws IllegalArgumentException {
-		Class<?> clazz = object.getClass();
+		Method getter = findGetterForClass(object.getClass(), variableName);
+		if (getter == null) {
+			throw new IllegalArgumentException("Unable to find getter for " + variableName + " in class " + object.getClass());
+		}
+		return getter;
+	}
+	
+	/**
+	 * Finds the getter method for the given variable in the given class or its superclasses
+	 * @param clazz The class to search
+	 * @param variableName The name of the variable
+	 * @return The getter method, or null if there isn't one
+	 */
+	public static Method findGetterForClass(Class<?> clazz, String variableName) {
+		String getterName = "get" + variableName;
+		String isGetterName = "is" + variableName;
 		while (clazz != Object.class)  {
 			Method[] allMethods = clazz.getDeclaredMethods();
 			 
 		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("get" + variableName.toLowerCase()) && m.getParameters().length == 0) {
+		    	if (m.getName().equalsIgnoreCase(getterName) && m.getParameterCount() == 0) {
 		    		m.setAccessible(true);
 		    		return m;
 		    	}
@@ -150,7 +270,7 @@ public class Serialiser {
 		    
 		    // Didn't find a 'get' method, try 'is'
 		    for (Method m : allMethods) {
-		    	if (m.getName().toLowerCase().equals("is" + variableName.toLowerCase()) && m.getParameters().length == 0) {
+		    	if (m.getName().equalsIgnoreCase(isGetterName) && m.getParameterCount() == 0) {
 		    		m.setAccessible(true);
 		    		return m;
 		    	}
@@ -159,6 +279,6 @@ public class Serialiser {
 		    // Didn't find any method in this class, try the superclass
 		    clazz = clazz.getSuperclass();
 		}
-		throw new IllegalArgumentException("Unable to find getter for " + variableName + " in class " + object.getClass());
+		return null;
 	}
 }
@@ -0,0 +1,114 @@
+package org.epics.pvmarshaller.marshaller.serialisers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.epics.pvdata.pv.Structure;
+
+/**
+ * Bounded cache of Structures keyed by the shape of the value they were built for. When the cache is full,
+ * the least recently used Structure is removed
+ * @author Matt Taylor
+ *
+ */
+public class StructureCache {
+
+	/**
+	 * The number of Structures held by default
+	 */
+	public static final int DEFAULT_MAX_SIZE = 256;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	private final Map<Object, Structure> structures = new LinkedHashMap<Object, Structure>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Structure> eldest) {
+			return size() > maxSize;
+		}
+	};
+
+	/**
+	 * Gets the Structure built for a shape, counting a hit or a miss
+	 * @param shape The shape
+	 * @return The Structure, or null if there isn't one for the shape
+	 */
+	public synchronized Structure get(Object shape) {
+		Structure structure = structures.get(shape);
+		if (structure == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return structure;
+	}
+
+	/**
+	 * Adds the Structure built for a shape
+	 * @param shape The shape
+	 * @param structure The Structure
+	 */
+	public synchronized void put(Object shape, Structure structure) {
+		if (maxSize > 0) {
+			structures.put(shape, structure);
+		}
+	}
+
+	/**
+	 * Sets the number of Structures held, removing the least recently used ones if there are more
+	 * @param maxSize The number of Structures, or 0 to not cache Structures
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		if (maxSize == 0) {
+			structures.clear();
+		} else {
+			while (structures.size() > maxSize) {
+				structures.remove(structures.keySet().iterator().next());
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of Structures held at most
+	 * @return
+	 */
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Gets the number of Structures held
+	 * @return
+	 */
+	public synchronized int size() {
+		return structures.size();
+	}
+
+	/**
+	 * Removes all the Structures
+	 */
+	public synchronized void clear() {
+		structures.clear();
+	}
+
+	/**
+	 * Gets the number of times a Structure was found for a shape
+	 * @return
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of times no Structure was found for a shape
+	 * @return
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+}
@@ -0,0 +1,252 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.accessors.AccessorBackend;
+import org.epics.pvmarshaller.marshaller.accessors.ReflectionGetter;
+import org.epics.pvmarshaller.marshaller.accessors.ReflectionSetter;
+import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.FieldDescriptor;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+import org.junit.Test;
+
+public class AccessorBackendTest {
+
+	@Test
+	public void testGeneratedAccessorsUsedForPublicClass() {
+		Serialiser serialiser = new Serialiser();
+		serialiser.getObjectSerialiser().setAccessorBackend(AccessorBackend.GENERATED);
+		Deserialiser deserialiser = new Deserialiser();
+		deserialiser.setAccessorBackend(AccessorBackend.GENERATED);
+
+		for (FieldDescriptor fieldDescriptor : serialiser.getObjectSerialiser().getClassDescriptor(AccessorTestObject.class).getFields()) {
+			assertFalse(fieldDescriptor.getName(), fieldDescriptor.getAccessor(null) instanceof ReflectionGetter);
+		}
+		assertFalse(deserialiser.getSetterDescriptor(AccessorTestObject.class, "intField").getAccessor() instanceof ReflectionSetter);
+		assertFalse(deserialiser.getSetterDescriptor(AccessorTestObject.class, "stringField").getAccessor() instanceof ReflectionSetter);
+	}
+
+	@Test
+	public void testReflectionFallbackForNonPublicClass() {
+		Serialiser serialiser = new Serialiser();
+		serialiser.getObjectSerialiser().setAccessorBackend(AccessorBackend.GENERATED);
+		Deserialiser deserialiser = new Deserialiser();
+		deserialiser.setAccessorBackend(AccessorBackend.GENERATED);
+
+		FieldDescriptor fieldDescriptor = serialiser.getObjectSerialiser().getClassDescriptor(NonPublicObject.class).getFields()[0];
+		assertTrue(fieldDescriptor.getAccessor(null) instanceof ReflectionGetter);
+		assertTrue(deserialiser.getSetterDescriptor(NonPublicObject.class, "value").getAccessor() instanceof ReflectionSetter);
+	}
+
+	@Test
+	public void testReflectionFallbackForClassFromOtherLoader() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setAccessorBackend(AccessorBackend.GENERATED);
+		Serialiser serialiser = new Serialiser();
+		serialiser.getObjectSerialiser().setAccessorBackend(AccessorBackend.GENERATED);
+
+		URL testClasses = AccessorTestObject.class.getProtectionDomain().getCodeSource().getLocation();
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] {testClasses}, null)) {
+			// Same class, loaded by a loader the marshaller's classes can't see
+			Class<?> testClass = classLoader.loadClass(AccessorTestObject.class.getName());
+			Object testObject = testClass.getConstructor().newInstance();
+			testClass.getMethod("setIntField", int.class).invoke(testObject, 1);
+			testClass.getMethod("setDoubleField", double.class).invoke(testObject, 2.5);
+			testClass.getMethod("setStringField", String.class).invoke(testObject, "string");
+			testClass.getMethod("setBoxedField", Integer.class).invoke(testObject, 3);
+
+			for (FieldDescriptor fieldDescriptor : serialiser.getObjectSerialiser().getClassDescriptor(testClass).getFields()) {
+				assertTrue(fieldDescriptor.getName(), fieldDescriptor.getAccessor(null) instanceof ReflectionGetter);
+			}
+
+			PVStructure serialisedPVStructure = marshaller.toPVStructure(testObject);
+			Object deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, testClass);
+
+			assertEquals(1, serialisedPVStructure.getIntField("intField").get());
+			assertEquals("string", serialisedPVStructure.getStringField("stringField").get());
+			assertEquals(testObject, deserialisedObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testRoundTripWithGeneratedAccessors() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setAccessorBackend(AccessorBackend.GENERATED);
+
+		AccessorTestObject testObject = new AccessorTestObject();
+		testObject.intField = 1;
+		testObject.shortField = 2;
+		testObject.longField = 3;
+		testObject.byteField = 4;
+		testObject.booleanField = true;
+		testObject.floatField = 5.5f;
+		testObject.doubleField = 6.5;
+		testObject.charField = 'g';
+		testObject.stringField = "string";
+		testObject.boxedField = 7;
+
+		// Create expected PVStructure
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure structure = fieldCreate.createFieldBuilder().
+			add("intField", ScalarType.pvInt).
+			add("shortField", ScalarType.pvShort).
+			add("longField", ScalarType.pvLong).
+			add("byteField", ScalarType.pvByte).
+			add("booleanField", ScalarType.pvBoolean).
+			add("floatField", ScalarType.pvFloat).
+			add("doubleField", ScalarType.pvDouble).
+			add("charField", ScalarType.pvString).
+			add("stringField", ScalarType.pvString).
+			add("boxedField", ScalarType.pvInt).
+			createStructure();
+
+		PVStructure expectedPVStructure = pvDataCreate.createPVStructure(structure);
+		expectedPVStructure.getIntField("intField").put(1);
+		expectedPVStructure.getShortField("shortField").put((short)2);
+		expectedPVStructure.getLongField("longField").put(3);
+		expectedPVStructure.getByteField("byteField").put((byte)4);
+		expectedPVStructure.getBooleanField("booleanField").put(true);
+		expectedPVStructure.getFloatField("floatField").put(5.5f);
+		expectedPVStructure.getDoubleField("doubleField").put(6.5);
+		expectedPVStructure.getStringField("charField").put("g");
+		expectedPVStructure.getStringField("stringField").put("string");
+		expectedPVStructure.getIntField("boxedField").put(7);
+
+		PVStructure serialisedPVStructure = null;
+		AccessorTestObject deserialisedObject = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, AccessorTestObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+		assertEquals(testObject, deserialisedObject);
+	}
+
+	public static class AccessorTestObject {
+		int intField;
+		short shortField;
+		long longField;
+		byte byteField;
+		boolean booleanField;
+		float floatField;
+		double doubleField;
+		char charField;
+		String stringField;
+		Integer boxedField;
+
+		public int getIntField() {
+			return intField;
+		}
+		public void setIntField(int intField) {
+			this.intField = intField;
+		}
+		public short getShortField() {
+			return shortField;
+		}
+		public void setShortField(short shortField) {
+			this.shortField = shortField;
+		}
+		public long getLongField() {
+			return longField;
+		}
+		public void setLongField(long longField) {
+			this.longField = longField;
+		}
+		public byte getByteField() {
+			return byteField;
+		}
+		public void setByteField(byte byteField) {
+			this.byteField = byteField;
+		}
+		public boolean getBooleanField() {
+			return booleanField;
+		}
+		public void setBooleanField(boolean booleanField) {
+			this.booleanField = booleanField;
+		}
+		public float getFloatField() {
+			return floatField;
+		}
+		public void setFloatField(float floatField) {
+			this.floatField = floatField;
+		}
+		public double getDoubleField() {
+			return doubleField;
+		}
+		public void setDoubleField(double doubleField) {
+			this.doubleField = doubleField;
+		}
+		public char getCharField() {
+			return charField;
+		}
+		public void setCharField(char charField) {
+			this.charField = charField;
+		}
+		public String getStringField() {
+			return stringField;
+		}
+		public void setStringField(String stringField) {
+			this.stringField = stringField;
+		}
+		public Integer getBoxedField() {
+			return boxedField;
+		}
+		public void setBoxedField(Integer boxedField) {
+			this.boxedField = boxedField;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof AccessorTestObject)) {
+				return false;
+			}
+			AccessorTestObject other = (AccessorTestObject) obj;
+			return intField == other.intField &&
+				shortField == other.shortField &&
+				longField == other.longField &&
+				byteField == other.byteField &&
+				booleanField == other.booleanField &&
+				floatField == other.floatField &&
+				doubleField == other.doubleField &&
+				charField == other.charField &&
+				stringField.equals(other.stringField) &&
+				boxedField.equals(other.boxedField);
+		}
+
+		@Override
+		public int hashCode() {
+			return intField;
+		}
+	}
+
+	static class NonPublicObject {
+		int value;
+
+		public int getValue() {
+			return value;
+		}
+		public void setValue(int value) {
+			this.value = value;
+		}
+	}
+}
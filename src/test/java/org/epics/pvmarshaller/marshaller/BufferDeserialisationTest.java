@@ -0,0 +1,203 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.BufferSerialisationTest.ContainersObject;
+import org.epics.pvmarshaller.marshaller.BufferSerialisationTest.Detector;
+import org.epics.pvmarshaller.marshaller.BufferSerialisationTest.DetectorMarshaller;
+import org.epics.pvmarshaller.marshaller.DeserialisePrimitiveArraysTest.PrimitivesArraysTestClass;
+import org.epics.pvmarshaller.marshaller.EndToEndTest.ContainersTestClass;
+import org.epics.pvmarshaller.marshaller.EndToEndTest.NestedObjectsTestClass;
+import org.epics.pvmarshaller.marshaller.EndToEndTest.PrimitivesTestClass;
+import org.epics.pvmarshaller.marshaller.buffer.ByteBufferControl;
+import org.junit.Test;
+
+public class BufferDeserialisationTest {
+
+	@Test
+	public void testPrimitives() {
+		PVMarshaller marshaller = new PVMarshaller();
+		PrimitivesTestClass testObject = new PrimitivesTestClass();
+		testObject.setPrimitiveIntValue(1);
+		testObject.setWrapperIntValue(2);
+		testObject.setPrimitiveShortValue((short)3);
+		testObject.setWrapperShortValue((short)4);
+		testObject.setPrimitiveLongValue(5L);
+		testObject.setWrapperLongValue(6L);
+		testObject.setPrimitiveByteValue((byte)7);
+		testObject.setWrapperByteValue((byte)8);
+		testObject.setPrimitiveBooleanValue(true);
+		testObject.setWrapperBooleanValue(false);
+		testObject.setPrimitiveFloatValue(1.5f);
+		testObject.setWrapperFloatValue(2.5f);
+		testObject.setPrimitiveDoubleValue(3.5);
+		testObject.setWrapperDoubleValue(4.5);
+		testObject.setPrimitiveCharValue('a');
+		testObject.setWrapperCharValue('b');
+		testObject.setStringValue("Test String 1");
+
+		assertEquals(testObject, assertSameAsPVStructurePath(marshaller, testObject, ByteOrder.BIG_ENDIAN));
+		assertEquals(testObject, assertSameAsPVStructurePath(marshaller, testObject, ByteOrder.LITTLE_ENDIAN));
+	}
+
+	@Test
+	public void testArrays() {
+		PVMarshaller marshaller = new PVMarshaller();
+		PrimitivesArraysTestClass testObject = new PrimitivesArraysTestClass();
+		testObject.setPrimitiveIntArray(new int[] {1, -2, 3});
+		testObject.setWrapperIntArray(new Integer[] {4, 5});
+		testObject.setWrapperIntList(new ArrayList<Integer>(Arrays.asList(6, 7)));
+		testObject.setPrimitiveShortArray(new short[] {8, 9});
+		testObject.setPrimitiveLongArray(new long[] {10L, 1L << 50});
+		testObject.setPrimitiveByteArray(new byte[] {11, 12, 13});
+		testObject.setPrimitiveBooleanArray(new boolean[] {true, false, true});
+		testObject.setPrimitiveFloatArray(new float[] {1.5f, 2.5f});
+		testObject.setPrimitiveDoubleArray(new double[] {3.5, 4.5, 5.5});
+		testObject.setWrapperDoubleList(new ArrayList<Double>(Arrays.asList(6.5)));
+		testObject.setPrimitiveCharArray(new char[] {'a', 'b'});
+		testObject.setWrapperStringArray(new String[] {"one", "two"});
+
+		assertEquals(testObject, assertSameAsPVStructurePath(marshaller, testObject, ByteOrder.BIG_ENDIAN));
+		assertEquals(testObject, assertSameAsPVStructurePath(marshaller, testObject, ByteOrder.LITTLE_ENDIAN));
+	}
+
+	@Test
+	public void testNestedObjectsAndContainers() {
+		PVMarshaller marshaller = new PVMarshaller();
+		PrimitivesTestClass firstElement = new PrimitivesTestClass();
+		firstElement.setPrimitiveIntValue(2);
+		firstElement.setStringValue("first");
+		PrimitivesTestClass secondElement = new PrimitivesTestClass();
+		secondElement.setPrimitiveLongValue(3L);
+		secondElement.setWrapperDoubleValue(3.5);
+		PrimitivesTestClass listElement = new PrimitivesTestClass();
+		listElement.setPrimitiveShortValue((short)4);
+		listElement.setWrapperBooleanValue(true);
+		PrimitivesTestClass mapValue = new PrimitivesTestClass();
+		mapValue.setPrimitiveFloatValue(5.5f);
+		mapValue.setWrapperCharValue('c');
+
+		ContainersTestClass containers = new ContainersTestClass();
+		containers.setPrimitiveArray(new int[] {1, 2, 3});
+		containers.setWrapperarray(new Integer[] {4, 5});
+		containers.setObjectArray(new PrimitivesTestClass[] {firstElement, secondElement});
+		containers.setWrapperList(new ArrayList<Long>(Arrays.asList(6L, 7L)));
+		containers.setObjectList(new ArrayList<PrimitivesTestClass>(Arrays.asList(listElement)));
+		Map<String, Double> wrapperMap = new HashMap<String, Double>();
+		wrapperMap.put("a", 8.5);
+		containers.setWrapperMap(wrapperMap);
+		Map<String, PrimitivesTestClass> objectMap = new HashMap<String, PrimitivesTestClass>();
+		objectMap.put("b", mapValue);
+		containers.setObjectMap(objectMap);
+
+		PrimitivesTestClass objectValue = new PrimitivesTestClass();
+		objectValue.setPrimitiveDoubleValue(6.5);
+		objectValue.setWrapperIntValue(6);
+
+		NestedObjectsTestClass testObject = new NestedObjectsTestClass();
+		testObject.setPrimitiveValue(9.5f);
+		testObject.setObjectValue(objectValue);
+		testObject.setContainersValue(containers);
+
+		assertEquals(testObject, assertSameAsPVStructurePath(marshaller, testObject, ByteOrder.BIG_ENDIAN));
+	}
+
+	@Test
+	public void testCustomMarshaller() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerMarshaller(new DetectorMarshaller());
+
+		ContainersObject testObject = new ContainersObject();
+		testObject.setDetector(new Detector("det1", 3));
+		testObject.setDetectors(new ArrayList<Detector>(Arrays.asList(new Detector("det2", 4))));
+
+		ContainersObject deserialisedObject = assertSameAsPVStructurePath(marshaller, testObject, ByteOrder.BIG_ENDIAN);
+		assertEquals(3, deserialisedObject.getDetector().getGain());
+		assertEquals(4, deserialisedObject.getDetectors().get(0).getGain());
+	}
+
+	@Test
+	public void testWithIntrospection() {
+		PVMarshaller marshaller = new PVMarshaller();
+		PrimitivesTestClass testObject = new PrimitivesTestClass();
+		testObject.setPrimitiveIntValue(7);
+		testObject.setWrapperLongValue(8L);
+		testObject.setPrimitiveDoubleValue(9.5);
+		testObject.setStringValue("Test String 7");
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		ByteBufferControl control = new ByteBufferControl(buffer);
+
+		PrimitivesTestClass deserialisedObject = null;
+		try {
+			// Write the data after the introspection data, as a message would hold them
+			buffer.position(512);
+			Structure structure = marshaller.serialise(testObject, buffer, control);
+			int dataEnd = buffer.position();
+			buffer.position(0);
+			ByteBufferControl.serializeIntrospection(structure, buffer, control);
+			System.arraycopy(buffer.array(), 512, buffer.array(), buffer.position(), dataEnd - 512);
+			buffer.limit(buffer.position() + dataEnd - 512);
+			buffer.position(0);
+
+			Structure receivedStructure = (Structure)ByteBufferControl.deserializeIntrospection(buffer, control);
+			deserialisedObject = marshaller.deserialise(buffer, control, receivedStructure, PrimitivesTestClass.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(testObject, deserialisedObject);
+		assertFalse(buffer.hasRemaining());
+	}
+
+	@Test(expected = BufferUnderflowException.class)
+	public void testBufferTooShort() throws Exception {
+		PVMarshaller marshaller = new PVMarshaller();
+		PrimitivesArraysTestClass testObject = new PrimitivesArraysTestClass();
+		testObject.setPrimitiveDoubleArray(new double[] {1.0, 2.0, 3.0});
+
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		Structure structure = marshaller.serialise(testObject, buffer);
+		buffer.flip();
+		buffer.limit(buffer.limit() - 4);
+		marshaller.deserialise(buffer, structure, PrimitivesArraysTestClass.class);
+	}
+
+	/**
+	 * Deserialises the serialised PVStructure of an object from a buffer, and checks that it is the same as the
+	 * object deserialised from the PVStructure itself
+	 */
+	private static <T> T assertSameAsPVStructurePath(PVMarshaller marshaller, T testObject, ByteOrder order) {
+		ByteBuffer buffer = ByteBuffer.allocate(8192).order(order);
+		ByteBufferControl control = new ByteBufferControl(buffer);
+
+		T deserialisedObject = null;
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(testObject);
+			pvStructure.serialize(buffer, control);
+			buffer.flip();
+
+			Class<T> targetClass = (Class<T>)testObject.getClass();
+			deserialisedObject = marshaller.deserialise(buffer, pvStructure.getStructure(), targetClass);
+			T expectedObject = marshaller.fromPVStructure(pvStructure, targetClass);
+
+			assertEquals(marshaller.toPVStructure(expectedObject), marshaller.toPVStructure(deserialisedObject));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertFalse(buffer.hasRemaining());
+		return deserialisedObject;
+	}
+}
@@ -0,0 +1,341 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller;
+import org.epics.pvmarshaller.marshaller.buffer.ByteBufferControl;
+import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+import org.junit.Test;
+
+public class BufferSerialisationTest {
+
+	@Test
+	public void testPrimitives() {
+		PVMarshaller marshaller = new PVMarshaller();
+		assertSameBytes(marshaller, new PrimitivesObject(), ByteOrder.BIG_ENDIAN);
+		assertSameBytes(marshaller, new PrimitivesObject(), ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Test
+	public void testArrays() {
+		PVMarshaller marshaller = new PVMarshaller();
+		assertSameBytes(marshaller, new ArraysObject(), ByteOrder.BIG_ENDIAN);
+		assertSameBytes(marshaller, new ArraysObject(), ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Test
+	public void testContainersAndNestedObjects() {
+		PVMarshaller marshaller = new PVMarshaller();
+		ContainersObject testObject = new ContainersObject();
+		testObject.setDetector(new Detector("det1", 3));
+		testObject.setPayload(new Detector("det2", 4));
+		Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+		metadata.put("frames", 12);
+		metadata.put("sample", "xtal");
+		testObject.setMetadata(metadata);
+		testObject.setDetectors(new ArrayList<Detector>(Arrays.asList(new Detector("det3", 5), new Detector("det4", 6))));
+		testObject.setPositions(new ArrayList<Double>(Arrays.asList(1.5, 2.5)));
+		assertSameBytes(marshaller, testObject, ByteOrder.BIG_ENDIAN);
+
+		// Null fields are left out of the Structure
+		assertSameBytes(marshaller, new ContainersObject(), ByteOrder.BIG_ENDIAN);
+	}
+
+	@Test
+	public void testCustomMarshaller() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerMarshaller(new DetectorMarshaller());
+		ContainersObject testObject = new ContainersObject();
+		testObject.setDetector(new Detector("det1", 3));
+		testObject.setPayload(new Detector("det2", 4));
+		testObject.setDetectors(new ArrayList<Detector>(Arrays.asList(new Detector("det3", 5), new Detector("det4", 6))));
+		assertSameBytes(marshaller, testObject, ByteOrder.BIG_ENDIAN);
+	}
+
+	@Test
+	public void testStaticSchema() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setStaticSchema(true);
+		ContainersObject testObject = new ContainersObject();
+		testObject.setDetector(new Detector("det1", 3));
+		testObject.setPayload(new Detector("det2", 4));
+		Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+		metadata.put("frames", 12);
+		testObject.setMetadata(metadata);
+		testObject.setDetectors(new ArrayList<Detector>(Arrays.asList(new Detector("det3", 5))));
+		testObject.setPositions(new ArrayList<Double>(Arrays.asList(1.5, 2.5)));
+		assertSameBytes(marshaller, testObject, ByteOrder.BIG_ENDIAN);
+		assertSameBytes(marshaller, new ContainersObject(), ByteOrder.BIG_ENDIAN);
+	}
+
+	@Test
+	public void testIntrospection() {
+		PVMarshaller marshaller = new PVMarshaller();
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		ByteBuffer expectedBuffer = ByteBuffer.allocate(4096);
+		ByteBufferControl control = new ByteBufferControl(buffer);
+		ContainersObject testObject = new ContainersObject();
+		testObject.setDetector(new Detector("det1", 3));
+		Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+		metadata.put("sample", "xtal");
+		testObject.setMetadata(metadata);
+		testObject.setPositions(new ArrayList<Double>(Arrays.asList(1.5, 2.5)));
+
+		try {
+			Structure structure = marshaller.serialise(testObject, ByteBuffer.allocate(4096));
+			ByteBufferControl.serializeIntrospection(structure, buffer, control);
+			marshaller.toPVStructure(testObject).getStructure().serialize(expectedBuffer, control);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(expectedBuffer.position(), buffer.position());
+		assertArrayEquals(Arrays.copyOf(expectedBuffer.array(), expectedBuffer.position()), Arrays.copyOf(buffer.array(), buffer.position()));
+	}
+
+	@Test(expected = BufferOverflowException.class)
+	public void testBufferTooSmall() throws Exception {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.serialise(new ArraysObject(), ByteBuffer.allocate(16));
+	}
+
+	private static void assertSameBytes(PVMarshaller marshaller, Object testObject, ByteOrder order) {
+		ByteBuffer buffer = ByteBuffer.allocate(4096).order(order);
+		ByteBuffer expectedBuffer = ByteBuffer.allocate(4096).order(order);
+		ByteBufferControl control = new ByteBufferControl(buffer);
+
+		Structure structure = null;
+		PVStructure expected = null;
+		try {
+			structure = marshaller.serialise(testObject, buffer, control);
+			expected = marshaller.toPVStructure(testObject);
+			expected.serialize(expectedBuffer, control);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(expected.getStructure(), structure);
+		assertEquals(expectedBuffer.position(), buffer.position());
+		assertArrayEquals(Arrays.copyOf(expectedBuffer.array(), expectedBuffer.position()), Arrays.copyOf(buffer.array(), buffer.position()));
+	}
+
+	public static class PrimitivesObject {
+		int intValue = -12;
+		short shortValue = 300;
+		long longValue = 1L << 40;
+		byte byteValue = 7;
+		boolean booleanValue = true;
+		float floatValue = 1.25f;
+		double doubleValue = Math.PI;
+		char charValue = 'x';
+		Integer boxedInt = 42;
+		Double boxedDouble = 0.5;
+		Character boxedChar = 'y';
+		String stringValue = "hello";
+
+		public int getIntValue() {
+			return intValue;
+		}
+		public short getShortValue() {
+			return shortValue;
+		}
+		public long getLongValue() {
+			return longValue;
+		}
+		public byte getByteValue() {
+			return byteValue;
+		}
+		public boolean isBooleanValue() {
+			return booleanValue;
+		}
+		public float getFloatValue() {
+			return floatValue;
+		}
+		public double getDoubleValue() {
+			return doubleValue;
+		}
+		public char getCharValue() {
+			return charValue;
+		}
+		public Integer getBoxedInt() {
+			return boxedInt;
+		}
+		public Double getBoxedDouble() {
+			return boxedDouble;
+		}
+		public Character getBoxedChar() {
+			return boxedChar;
+		}
+		public String getStringValue() {
+			return stringValue;
+		}
+	}
+
+	public static class ArraysObject {
+		int[] ints = new int[] {1, -2, 3};
+		short[] shorts = new short[] {4, 5};
+		long[] longs = new long[] {6L, 1L << 50};
+		byte[] bytes = new byte[] {7, 8, 9};
+		boolean[] booleans = new boolean[] {true, false, true};
+		float[] floats = new float[] {1.5f};
+		double[] doubles = new double[] {2.5, 3.5, 4.5};
+		char[] chars = new char[] {'a', 'b'};
+		String[] strings = new String[] {"one", "two"};
+		Integer[] boxedInts = new Integer[] {10, 11};
+		int[] empty = new int[0];
+
+		public int[] getInts() {
+			return ints;
+		}
+		public short[] getShorts() {
+			return shorts;
+		}
+		public long[] getLongs() {
+			return longs;
+		}
+		public byte[] getBytes() {
+			return bytes;
+		}
+		public boolean[] getBooleans() {
+			return booleans;
+		}
+		public float[] getFloats() {
+			return floats;
+		}
+		public double[] getDoubles() {
+			return doubles;
+		}
+		public char[] getChars() {
+			return chars;
+		}
+		public String[] getStrings() {
+			return strings;
+		}
+		public Integer[] getBoxedInts() {
+			return boxedInts;
+		}
+		public int[] getEmpty() {
+			return empty;
+		}
+	}
+
+	public static class ContainersObject {
+		int count = 2;
+		Detector detector;
+		Object payload;
+		Map<String, Object> metadata;
+		List<Detector> detectors;
+		List<Double> positions;
+
+		public int getCount() {
+			return count;
+		}
+		public void setCount(int count) {
+			this.count = count;
+		}
+		public Detector getDetector() {
+			return detector;
+		}
+		public void setDetector(Detector detector) {
+			this.detector = detector;
+		}
+		public Object getPayload() {
+			return payload;
+		}
+		public void setPayload(Object payload) {
+			this.payload = payload;
+		}
+		public Map<String, Object> getMetadata() {
+			return metadata;
+		}
+		public void setMetadata(Map<String, Object> metadata) {
+			this.metadata = metadata;
+		}
+		public List<Detector> getDetectors() {
+			return detectors;
+		}
+		public void setDetectors(List<Detector> detectors) {
+			this.detectors = detectors;
+		}
+		public List<Double> getPositions() {
+			return positions;
+		}
+		public void setPositions(List<Double> positions) {
+			this.positions = positions;
+		}
+	}
+
+	public static class Detector {
+		String name;
+		int gain;
+
+		public Detector() {
+		}
+		public Detector(String name, int gain) {
+			this.name = name;
+			this.gain = gain;
+		}
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public int getGain() {
+			return gain;
+		}
+		public void setGain(int gain) {
+			this.gain = gain;
+		}
+	}
+
+	public static class DetectorMarshaller implements IPVStructureMarshaller<Detector> {
+		static final Structure STRUCTURE = FieldFactory.getFieldCreate().createFieldBuilder().
+			setId("test:detector").
+			add("gain", ScalarType.pvInt).
+			createStructure();
+
+		@Override
+		public Structure buildStructure(Serialiser serialiser, Detector source) {
+			return STRUCTURE;
+		}
+
+		@Override
+		public void populatePVStructure(Serialiser serialiser, Detector source, PVStructure pvStructure) {
+			pvStructure.getIntField("gain").put(source.gain);
+		}
+
+		@Override
+		public Object fromPVStructure(Deserialiser deserialiser, PVStructure pvStructure) {
+			Detector detector = new Detector();
+			detector.gain = pvStructure.getIntField("gain").get();
+			return detector;
+		}
+
+		@Override
+		public Class<Detector> getTargetClass() {
+			return Detector.class;
+		}
+
+		@Override
+		public String getStructureId() {
+			return "test:detector";
+		}
+	}
+}
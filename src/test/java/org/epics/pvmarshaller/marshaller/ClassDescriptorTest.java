@@ -0,0 +1,173 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.LinkedList;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.serialisers.ClassDescriptor;
+import org.epics.pvmarshaller.marshaller.serialisers.ObjectSerialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+import org.junit.Test;
+
+public class ClassDescriptorTest {
+
+	@Test
+	public void testDescriptorIsReused() {
+		Serialiser serialiser = new Serialiser();
+		ObjectSerialiser objectSerialiser = serialiser.getObjectSerialiser();
+
+		ClassDescriptor first = objectSerialiser.getClassDescriptor(ChildObject.class);
+		ClassDescriptor second = objectSerialiser.getClassDescriptor(ChildObject.class);
+
+		assertSame(first, second);
+		assertEquals(3, first.getFields().length);
+		assertEquals("childInt", first.getFields()[0].getName());
+		assertEquals("parentInt", first.getFields()[1].getName());
+		assertEquals("parentString", first.getFields()[2].getName());
+	}
+
+	@Test
+	public void testRegistrationAfterSerialisation() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ChildObject testObject = new ChildObject();
+		testObject.childInt = 1;
+		testObject.parentInt = 2;
+		testObject.parentString = "parent";
+
+		// Create expected PVStructure
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure structure = fieldCreate.createFieldBuilder().
+			add("childInt", ScalarType.pvInt).
+			add("parentString", ScalarType.pvString).
+			createStructure();
+
+		PVStructure expectedPVStructure = pvDataCreate.createPVStructure(structure);
+		expectedPVStructure.getIntField("childInt").put(1);
+		expectedPVStructure.getStringField("parentString").put("parent");
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			// Serialise once so the descriptor is cached, then change the registration
+			marshaller.toPVStructure(testObject);
+
+			LinkedList<String> excludeFields = new LinkedList<>();
+			excludeFields.add("parentInt");
+			marshaller.registerExcludeFieldListForClass(ParentObject.class, excludeFields);
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+	}
+
+	@Test
+	public void testRegistrationInvalidatesDescriptor() {
+		Serialiser serialiser = new Serialiser();
+		ObjectSerialiser objectSerialiser = serialiser.getObjectSerialiser();
+
+		ClassDescriptor first = objectSerialiser.getClassDescriptor(ChildObject.class);
+
+		LinkedList<String> fields = new LinkedList<>();
+		fields.add("childInt");
+		objectSerialiser.addFieldsToSerialise(ChildObject.class, fields);
+
+		ClassDescriptor second = objectSerialiser.getClassDescriptor(ChildObject.class);
+
+		assertNotSame(first, second);
+		assertEquals(1, second.getFields().length);
+		assertEquals("childInt", second.getFields()[0].getName());
+	}
+
+	@Test
+	public void testNestedObjectWithInheritedFields() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ContainingObject testObject = new ContainingObject();
+		testObject.nested = new ChildObject();
+		testObject.nested.childInt = 5;
+		testObject.nested.parentInt = 6;
+		testObject.nested.parentString = "nested parent";
+
+		// Create expected PVStructure
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure nestedStructure = fieldCreate.createFieldBuilder().
+			add("childInt", ScalarType.pvInt).
+			add("parentInt", ScalarType.pvInt).
+			add("parentString", ScalarType.pvString).
+			createStructure();
+		Structure structure = fieldCreate.createFieldBuilder().
+			add("nested", nestedStructure).
+			createStructure();
+
+		PVStructure expectedPVStructure = pvDataCreate.createPVStructure(structure);
+		PVStructure nestedPVStructure = expectedPVStructure.getStructureField("nested");
+		nestedPVStructure.getIntField("childInt").put(5);
+		nestedPVStructure.getIntField("parentInt").put(6);
+		nestedPVStructure.getStringField("parentString").put("nested parent");
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+	}
+
+	public static class ParentObject {
+		int parentInt;
+		String parentString;
+
+		public int getParentInt() {
+			return parentInt;
+		}
+		public void setParentInt(int parentInt) {
+			this.parentInt = parentInt;
+		}
+		public String getParentString() {
+			return parentString;
+		}
+		public void setParentString(String parentString) {
+			this.parentString = parentString;
+		}
+	}
+
+	public static class ChildObject extends ParentObject {
+		int childInt;
+
+		public int getChildInt() {
+			return childInt;
+		}
+		public void setChildInt(int childInt) {
+			this.childInt = childInt;
+		}
+	}
+
+	public static class ContainingObject {
+		ChildObject nested;
+
+		public ChildObject getNested() {
+			return nested;
+		}
+		public void setNested(ChildObject nested) {
+			this.nested = nested;
+		}
+	}
+}
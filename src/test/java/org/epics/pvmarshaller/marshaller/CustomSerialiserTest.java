@@ -406,6 +406,65 @@ public class CustomSerialiserTest {
 		TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
 	}
 	
+	@Test
+	public void testRegisterSerialiserAfterSerialising() {
+		
+		// Create test class to serialise
+		ImplementingClass testObject = new ImplementingClass();
+		testObject.implentingInteger = 25;
+		
+		PVStructure firstPVStructure = null;
+		PVStructure secondPVStructure = null;
+		
+		try {
+			PVMarshaller marshaller = new PVMarshaller();
+			
+			// Serialise once with no custom serialiser, so that the lack of one is remembered for the class
+			firstPVStructure = marshaller.toPVStructure(testObject);
+			
+			marshaller.registerSerialiser(IAnInterface.class, new CustomDoublerSerialiser());
+			secondPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+		
+		assertEquals(25, firstPVStructure.getSubField(PVInt.class, "implentingInteger").get());
+		assertEquals(50, secondPVStructure.getSubField(PVInt.class, "aNumber").get());
+	}
+	
+	@Test
+	public void testRegisterIdAfterSerialising() {
+		
+		// Create test class to serialise
+		ImplementingClass testObject = new ImplementingClass();
+		testObject.implentingInteger = 25;
+		
+		PVStructure firstPVStructure = null;
+		PVStructure secondPVStructure = null;
+		PVStructure thirdPVStructure = null;
+		
+		try {
+			PVMarshaller marshaller = new PVMarshaller();
+			
+			firstPVStructure = marshaller.toPVStructure(testObject);
+			
+			marshaller.registerIdForClass(IAnInterface.class, "TiD");
+			secondPVStructure = marshaller.toPVStructure(testObject);
+			
+			// A registration for the class itself takes precedence over its interface
+			marshaller.registerIdForClass(ImplementingClass.class, "ClassId");
+			thirdPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+		
+		assertEquals("structure", firstPVStructure.getStructure().getID());
+		assertEquals("TiD", secondPVStructure.getStructure().getID());
+		assertEquals("ClassId", thirdPVStructure.getStructure().getID());
+	}
+	
 	@Test
 	public void testCustomSerialiseWithExtends() {
 		
@@ -0,0 +1,214 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.PVArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.junit.Test;
+
+public class DeltaSerialisationTest {
+
+	@Test
+	public void testOnlyChangedFieldsAreMarked() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		DeltaObject testObject = new DeltaObject();
+		testObject.setIntField(10);
+		testObject.setBoxedLong(7L);
+		NamedObject nested = new NamedObject();
+		nested.setName("nested");
+		testObject.setNested(nested);
+
+		PVStructure template = null;
+		BitSet changedFields = new BitSet();
+
+		try {
+			template = marshaller.createTemplate(DeltaObject.class);
+			marshaller.populate(testObject, template);
+
+			testObject.setIntField(20);
+			testObject.getNested().setName("changed");
+			marshaller.populate(testObject, template, changedFields);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		BitSet expectedFields = new BitSet();
+		expectedFields.set(template.getSubField("intField").getFieldOffset());
+		expectedFields.set(template.getSubField("nested.name").getFieldOffset());
+
+		assertEquals(expectedFields, changedFields);
+		assertEquals(20, template.getIntField("intField").get());
+		assertEquals("changed", template.getStringField("nested.name").get());
+	}
+
+	@Test
+	public void testUnchangedObjectMarksNothing() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		DeltaObject testObject = new DeltaObject();
+		testObject.setIntField(10);
+		testObject.setBoxedLong(7L);
+		testObject.setDoubleArray(new double[] {1.5, 2.5, 3.5});
+		NamedObject listEntry = new NamedObject();
+		listEntry.setName("entry");
+		List<NamedObject> objectList = new ArrayList<NamedObject>();
+		objectList.add(listEntry);
+		testObject.setObjectList(objectList);
+		NamedObject nested = new NamedObject();
+		nested.setName("nested");
+		testObject.setNested(nested);
+
+		PVStructure template = null;
+		BitSet changedFields = new BitSet();
+
+		try {
+			template = marshaller.createTemplate(DeltaObject.class);
+			marshaller.populate(testObject, template);
+			marshaller.populate(testObject, template, changedFields);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertTrue(changedFields.isEmpty());
+	}
+
+	@Test
+	public void testChangedContainers() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		DeltaObject testObject = new DeltaObject();
+		testObject.setIntField(10);
+		testObject.setBoxedLong(7L);
+		testObject.setDoubleArray(new double[] {1.5, 2.5, 3.5});
+		NamedObject listEntry = new NamedObject();
+		listEntry.setName("entry");
+		List<NamedObject> objectList = new ArrayList<NamedObject>();
+		objectList.add(listEntry);
+		testObject.setObjectList(objectList);
+		NamedObject nested = new NamedObject();
+		nested.setName("nested");
+		testObject.setNested(nested);
+
+		PVStructure template = null;
+		BitSet changedFields = new BitSet();
+		PVStructure expectedPVStructure = null;
+
+		try {
+			template = marshaller.createTemplate(DeltaObject.class);
+			marshaller.populate(testObject, template);
+
+			testObject.getDoubleArray()[1] = 5.5;
+			testObject.getObjectList().get(0).setName("changed entry");
+			marshaller.populate(testObject, template, changedFields);
+
+			expectedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		BitSet expectedFields = new BitSet();
+		expectedFields.set(template.getSubField("doubleArray").getFieldOffset());
+		expectedFields.set(template.getSubField("objectList").getFieldOffset());
+
+		assertEquals(expectedFields, changedFields);
+		TestHelper.assertPVStructuresEqual(expectedPVStructure, template);
+	}
+
+	@Test
+	public void testNullMembersAreReset() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		DeltaObject testObject = new DeltaObject();
+		testObject.setIntField(10);
+		testObject.setBoxedLong(7L);
+		testObject.setDoubleArray(new double[] {1.5, 2.5});
+		NamedObject nested = new NamedObject();
+		nested.setName("nested");
+		testObject.setNested(nested);
+
+		PVStructure template = null;
+		BitSet changedFields = new BitSet();
+		BitSet unchangedFields = new BitSet();
+
+		try {
+			template = marshaller.createTemplate(DeltaObject.class);
+			marshaller.populate(testObject, template);
+
+			testObject.setBoxedLong(null);
+			testObject.setDoubleArray(null);
+			testObject.setNested(null);
+			marshaller.populate(testObject, template, changedFields);
+			marshaller.populate(testObject, template, unchangedFields);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		BitSet expectedFields = new BitSet();
+		expectedFields.set(template.getSubField("boxedLong").getFieldOffset());
+		expectedFields.set(template.getSubField("doubleArray").getFieldOffset());
+		expectedFields.set(template.getSubField("nested").getFieldOffset());
+
+		assertEquals(expectedFields, changedFields);
+		assertTrue(unchangedFields.isEmpty());
+		assertEquals(0L, template.getLongField("boxedLong").get());
+		assertEquals(0, template.getSubField(PVArray.class, "doubleArray").getLength());
+		assertEquals("", template.getStringField("nested.name").get());
+	}
+
+	public static class DeltaObject {
+		int intField;
+		Long boxedLong;
+		double[] doubleArray;
+		List<NamedObject> objectList;
+		NamedObject nested;
+
+		public int getIntField() {
+			return intField;
+		}
+		public void setIntField(int intField) {
+			this.intField = intField;
+		}
+		public Long getBoxedLong() {
+			return boxedLong;
+		}
+		public void setBoxedLong(Long boxedLong) {
+			this.boxedLong = boxedLong;
+		}
+		public double[] getDoubleArray() {
+			return doubleArray;
+		}
+		public void setDoubleArray(double[] doubleArray) {
+			this.doubleArray = doubleArray;
+		}
+		public List<NamedObject> getObjectList() {
+			return objectList;
+		}
+		public void setObjectList(List<NamedObject> objectList) {
+			this.objectList = objectList;
+		}
+		public NamedObject getNested() {
+			return nested;
+		}
+		public void setNested(NamedObject nested) {
+			this.nested = nested;
+		}
+	}
+
+	public static class NamedObject {
+		String name;
+
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+}
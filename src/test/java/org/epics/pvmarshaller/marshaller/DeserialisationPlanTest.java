@@ -0,0 +1,160 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.deserialisers.DeserialisationPlan;
+import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.epics.pvmarshaller.marshaller.deserialisers.StructureDeserialiser;
+import org.junit.Test;
+
+public class DeserialisationPlanTest {
+
+	@Test
+	public void testPlanIsReusedForEqualStructures() {
+		Deserialiser deserialiser = new Deserialiser();
+		StructureDeserialiser structureDeserialiser = deserialiser.getStructureDeserialiser();
+
+		DeserialisationPlan first = structureDeserialiser.getDeserialisationPlan(createStructure(), PlanTestObject.class);
+		DeserialisationPlan second = structureDeserialiser.getDeserialisationPlan(createStructure(), PlanTestObject.class);
+
+		assertSame(first, second);
+	}
+
+	@Test
+	public void testPlanIsPerTargetClass() {
+		Deserialiser deserialiser = new Deserialiser();
+		StructureDeserialiser structureDeserialiser = deserialiser.getStructureDeserialiser();
+		Structure structure = createStructure();
+
+		DeserialisationPlan first = structureDeserialiser.getDeserialisationPlan(structure, PlanTestObject.class);
+		DeserialisationPlan second = structureDeserialiser.getDeserialisationPlan(structure, PlanTestChildObject.class);
+
+		assertNotSame(first, second);
+		assertSame(first, structureDeserialiser.getDeserialisationPlan(structure, PlanTestObject.class));
+	}
+
+	@Test
+	public void testRepeatedDeserialisation() {
+		PVMarshaller marshaller = new PVMarshaller();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		PVStructure pvStructure = pvDataCreate.createPVStructure(createStructure());
+
+		try {
+			for (int i = 0; i < 3; i++) {
+				pvStructure.getIntField("intField").put(i);
+				pvStructure.getDoubleField("doubleField").put(i * 1.5);
+				pvStructure.getStringField("charField").put("c");
+				pvStructure.getStructureField("nested").getStringField("name").put("nested " + i);
+
+				PlanTestObject deserialised = marshaller.fromPVStructure(pvStructure, PlanTestObject.class);
+
+				assertEquals(i, deserialised.intField);
+				assertEquals(i * 1.5, deserialised.doubleField, 0);
+				assertEquals('c', deserialised.charField);
+				assertEquals("nested " + i, deserialised.nested.name);
+			}
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testIgnoreUnknownFieldsChangedAfterCompile() {
+		PVMarshaller marshaller = new PVMarshaller();
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure structure = fieldCreate.createFieldBuilder().
+			add("intField", ScalarType.pvInt).
+			add("unknownField", ScalarType.pvInt).
+			createStructure();
+		PVStructure pvStructure = pvDataCreate.createPVStructure(structure);
+		pvStructure.getIntField("intField").put(4);
+
+		try {
+			marshaller.setIgnoreUnknownFields(true);
+			PlanTestObject deserialised = marshaller.fromPVStructure(pvStructure, PlanTestObject.class);
+			assertEquals(4, deserialised.intField);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		try {
+			marshaller.setIgnoreUnknownFields(false);
+			marshaller.fromPVStructure(pvStructure, PlanTestObject.class);
+			fail("Expected exception for unknown field");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private Structure createStructure() {
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		Structure nestedStructure = fieldCreate.createFieldBuilder().
+			add("name", ScalarType.pvString).
+			createStructure();
+		return fieldCreate.createFieldBuilder().
+			add("intField", ScalarType.pvInt).
+			add("doubleField", ScalarType.pvDouble).
+			add("charField", ScalarType.pvString).
+			add("nested", nestedStructure).
+			createStructure();
+	}
+
+	public static class PlanTestObject {
+		int intField;
+		double doubleField;
+		char charField;
+		NestedObject nested;
+
+		public int getIntField() {
+			return intField;
+		}
+		public void setIntField(int intField) {
+			this.intField = intField;
+		}
+		public double getDoubleField() {
+			return doubleField;
+		}
+		public void setDoubleField(double doubleField) {
+			this.doubleField = doubleField;
+		}
+		public char getCharField() {
+			return charField;
+		}
+		public void setCharField(char charField) {
+			this.charField = charField;
+		}
+		public NestedObject getNested() {
+			return nested;
+		}
+		public void setNested(NestedObject nested) {
+			this.nested = nested;
+		}
+	}
+
+	public static class PlanTestChildObject extends PlanTestObject {
+	}
+
+	public static class NestedObject {
+		String name;
+
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+}
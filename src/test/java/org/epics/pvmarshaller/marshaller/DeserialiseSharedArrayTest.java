@@ -0,0 +1,116 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.deserialisers.ScalarArrayDeserialiser;
+import org.junit.Test;
+
+public class DeserialiseSharedArrayTest {
+
+	@Test
+	public void testArraysAreCopiedByDefault() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PVStructure pvStructure = createPVStructure();
+		WaveformObject deserialisedObject = null;
+
+		try {
+			deserialisedObject = marshaller.fromPVStructure(pvStructure, WaveformObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertNotSame(getBackingArray(pvStructure), deserialisedObject.getWaveform());
+		assertArrayEquals(new double[] {1.5, 2.5, 3.5}, deserialisedObject.getWaveform(), 0);
+		assertEquals(Arrays.asList(4, 5), deserialisedObject.getCounts());
+	}
+
+	@Test
+	public void testArraysAreShared() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setShareDeserialisedArrays(true);
+
+		PVStructure pvStructure = createPVStructure();
+		WaveformObject deserialisedObject = null;
+
+		try {
+			deserialisedObject = marshaller.fromPVStructure(pvStructure, WaveformObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertSame(getBackingArray(pvStructure), deserialisedObject.getWaveform());
+		assertEquals(Arrays.asList(4, 5), deserialisedObject.getCounts());
+	}
+
+	@Test
+	public void testPartialBackingArrayIsCopied() {
+		PVStructure pvStructure = createPVStructure();
+		PVDoubleArray waveform = pvStructure.getSubField(PVDoubleArray.class, "waveform");
+
+		// Shrinking the array leaves a backing array longer than its contents, which can't be shared
+		waveform.setLength(2);
+		double[] contents = ScalarArrayDeserialiser.getDoubleArray(waveform, true);
+
+		assertNotSame(getBackingArray(pvStructure), contents);
+		assertArrayEquals(new double[] {1.5, 2.5}, contents, 0);
+	}
+
+	private static double[] getBackingArray(PVStructure pvStructure) {
+		PVDoubleArray waveform = pvStructure.getSubField(PVDoubleArray.class, "waveform");
+		DoubleArrayData data = new DoubleArrayData();
+		waveform.get(0, waveform.getLength(), data);
+		return data.data;
+	}
+
+	private static PVStructure createPVStructure() {
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure structure = fieldCreate.createFieldBuilder().
+			addArray("waveform", ScalarType.pvDouble).
+			addArray("counts", ScalarType.pvInt).
+			createStructure();
+
+		PVStructure pvStructure = pvDataCreate.createPVStructure(structure);
+		double[] waveform = {1.5, 2.5, 3.5};
+		pvStructure.getSubField(PVDoubleArray.class, "waveform").put(0, waveform.length, waveform, 0);
+		int[] counts = {4, 5};
+		pvStructure.getSubField(PVIntArray.class, "counts").put(0, counts.length, counts, 0);
+		return pvStructure;
+	}
+
+	public static class WaveformObject {
+		double[] waveform;
+		List<Integer> counts;
+
+		public double[] getWaveform() {
+			return waveform;
+		}
+		public void setWaveform(double[] waveform) {
+			this.waveform = waveform;
+		}
+		public List<Integer> getCounts() {
+			return counts;
+		}
+		public void setCounts(List<Integer> counts) {
+			this.counts = counts;
+		}
+	}
+}
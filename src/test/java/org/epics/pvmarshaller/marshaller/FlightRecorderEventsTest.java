@@ -0,0 +1,120 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightRecorderEventsTest {
+
+	@Test
+	public void testEventsRecorded() {
+		PVMarshaller marshaller = new PVMarshaller();
+		SampleObject testObject = new SampleObject();
+		List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+
+		try (Recording recording = new Recording()) {
+			recording.enable("org.epics.pvmarshaller.Serialisation").withThreshold(Duration.ZERO);
+			recording.enable("org.epics.pvmarshaller.Deserialisation").withThreshold(Duration.ZERO);
+			recording.enable("org.epics.pvmarshaller.Array").withThreshold(Duration.ZERO);
+			recording.start();
+
+			PVStructure pvStructure = marshaller.toPVStructure(testObject);
+			marshaller.fromPVStructure(pvStructure, SampleObject.class);
+
+			recording.stop();
+			Path file = Files.createTempFile("pvmarshaller", ".jfr");
+			try {
+				recording.dump(file);
+				for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+					if (event.getEventType().getName().startsWith("org.epics.pvmarshaller.")) {
+						events.add(event);
+					}
+				}
+			} finally {
+				Files.delete(file);
+			}
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		RecordedEvent serialisation = findEvent(events, "org.epics.pvmarshaller.Serialisation", null);
+		assertEquals(SampleObject.class.getName(), serialisation.getString("className"));
+		assertEquals("structure", serialisation.getString("structureId"));
+		assertEquals(3, serialisation.getInt("fieldCount"));
+
+		RecordedEvent deserialisation = findEvent(events, "org.epics.pvmarshaller.Deserialisation", null);
+		assertEquals(SampleObject.class.getName(), deserialisation.getString("className"));
+		assertEquals(3, deserialisation.getInt("fieldCount"));
+
+		RecordedEvent serialisedArray = findEvent(events, "org.epics.pvmarshaller.Array", "serialise");
+		assertEquals("values", serialisedArray.getString("fieldName"));
+		assertEquals("scalarArray", serialisedArray.getString("type"));
+		assertEquals(4, serialisedArray.getInt("length"));
+
+		RecordedEvent deserialisedList = findEvent(events, "org.epics.pvmarshaller.Array", "deserialise");
+		assertTrue(Arrays.asList("values", "names").contains(deserialisedList.getString("fieldName")));
+	}
+
+	@Test
+	public void testNoEventsWhenNotRecording() {
+		PVMarshaller marshaller = new PVMarshaller();
+		SampleObject testObject = new SampleObject();
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(testObject);
+			SampleObject result = marshaller.fromPVStructure(pvStructure, SampleObject.class);
+			assertEquals(testObject.names, result.names);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private static RecordedEvent findEvent(List<RecordedEvent> events, String name, String operation) {
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name) && (operation == null || operation.equals(event.getString("operation")))) {
+				return event;
+			}
+		}
+		fail("No " + name + " event recorded");
+		return null;
+	}
+
+	public static class SampleObject {
+		String name = "sample";
+		int[] values = new int[] {1, 2, 3, 4};
+		List<String> names = new ArrayList<String>(Arrays.asList("a", "b"));
+
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public int[] getValues() {
+			return values;
+		}
+		public void setValues(int[] values) {
+			this.values = values;
+		}
+		public List<String> getNames() {
+			return names;
+		}
+		public void setNames(List<String> names) {
+			this.names = names;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.junit.Test;
+
+public class IncrementalDeserialisationTest {
+
+	@Test
+	public void testOnlyChangedFieldsAreApplied() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PVStructure pvStructure = createPVStructure();
+		pvStructure.getIntField("intField").put(30);
+		pvStructure.getStringField("stringField").put("not applied");
+
+		BitSet changedFields = new BitSet();
+		changedFields.set(pvStructure.getSubField("intField").getFieldOffset());
+
+		UpdateObject existing = createExistingObject();
+		UpdateObject updated = null;
+
+		try {
+			updated = marshaller.update(pvStructure, changedFields, existing);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertSame(existing, updated);
+		assertEquals(30, existing.getIntField());
+		assertEquals("original", existing.getStringField());
+		assertArrayEquals(new double[] {1.0}, existing.getDoubleArray(), 0);
+	}
+
+	@Test
+	public void testNestedFieldIsUpdatedInPlace() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PVStructure pvStructure = createPVStructure();
+		pvStructure.getIntField("nested.count").put(12);
+		pvStructure.getStringField("nested.label").put("not applied");
+		PVDoubleArray doubleArray = pvStructure.getSubField(PVDoubleArray.class, "doubleArray");
+		doubleArray.put(0, 2, new double[] {4.0, 5.0}, 0);
+
+		BitSet changedFields = new BitSet();
+		changedFields.set(pvStructure.getSubField("nested.count").getFieldOffset());
+		changedFields.set(doubleArray.getFieldOffset());
+
+		UpdateObject existing = createExistingObject();
+		NestedUpdateObject existingNested = existing.getNested();
+
+		try {
+			marshaller.update(pvStructure, changedFields, existing);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertSame(existingNested, existing.getNested());
+		assertEquals(12, existingNested.getCount());
+		assertEquals("nested original", existingNested.getLabel());
+		assertArrayEquals(new double[] {4.0, 5.0}, existing.getDoubleArray(), 0);
+		assertEquals(1, existing.getIntField());
+	}
+
+	@Test
+	public void testWholeStructureChanged() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PVStructure pvStructure = createPVStructure();
+		pvStructure.getIntField("intField").put(30);
+		pvStructure.getStringField("nested.label").put("replaced");
+
+		// The bit of a structure field means everything in it has changed
+		BitSet changedFields = new BitSet();
+		changedFields.set(pvStructure.getSubField("nested").getFieldOffset());
+
+		UpdateObject existing = createExistingObject();
+		NestedUpdateObject existingNested = existing.getNested();
+
+		try {
+			marshaller.update(pvStructure, changedFields, existing);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertNotSame(existingNested, existing.getNested());
+		assertEquals("replaced", existing.getNested().getLabel());
+		assertEquals(1, existing.getIntField());
+	}
+
+	@Test
+	public void testNullNestedObjectIsCreated() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PVStructure pvStructure = createPVStructure();
+		pvStructure.getIntField("nested.count").put(12);
+
+		BitSet changedFields = new BitSet();
+		changedFields.set(pvStructure.getSubField("nested.count").getFieldOffset());
+
+		UpdateObject existing = createExistingObject();
+		existing.setNested(null);
+
+		try {
+			marshaller.update(pvStructure, changedFields, existing);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(12, existing.getNested().getCount());
+	}
+
+	private static PVStructure createPVStructure() {
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure nestedStructure = fieldCreate.createFieldBuilder().
+			add("count", ScalarType.pvInt).
+			add("label", ScalarType.pvString).
+			createStructure();
+		Structure structure = fieldCreate.createFieldBuilder().
+			add("intField", ScalarType.pvInt).
+			add("nested", nestedStructure).
+			addArray("doubleArray", ScalarType.pvDouble).
+			add("stringField", ScalarType.pvString).
+			createStructure();
+		return pvDataCreate.createPVStructure(structure);
+	}
+
+	private static UpdateObject createExistingObject() {
+		UpdateObject existing = new UpdateObject();
+		existing.setIntField(1);
+		existing.setStringField("original");
+		existing.setDoubleArray(new double[] {1.0});
+		NestedUpdateObject nested = new NestedUpdateObject();
+		nested.setCount(2);
+		nested.setLabel("nested original");
+		existing.setNested(nested);
+		return existing;
+	}
+
+	public static class UpdateObject {
+		int intField;
+		NestedUpdateObject nested;
+		double[] doubleArray;
+		String stringField;
+
+		public int getIntField() {
+			return intField;
+		}
+		public void setIntField(int intField) {
+			this.intField = intField;
+		}
+		public NestedUpdateObject getNested() {
+			return nested;
+		}
+		public void setNested(NestedUpdateObject nested) {
+			this.nested = nested;
+		}
+		public double[] getDoubleArray() {
+			return doubleArray;
+		}
+		public void setDoubleArray(double[] doubleArray) {
+			this.doubleArray = doubleArray;
+		}
+		public String getStringField() {
+			return stringField;
+		}
+		public void setStringField(String stringField) {
+			this.stringField = stringField;
+		}
+	}
+
+	public static class NestedUpdateObject {
+		int count;
+		String label;
+
+		public int getCount() {
+			return count;
+		}
+		public void setCount(int count) {
+			this.count = count;
+		}
+		public String getLabel() {
+			return label;
+		}
+		public void setLabel(String label) {
+			this.label = label;
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.serialisers.StructureCache;
+import org.junit.Test;
+
+public class MapStructureCacheTest {
+
+	@Test
+	public void testSameShapeReusesStructure() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		PVStructure firstPVStructure = null;
+		PVStructure secondPVStructure = null;
+
+		try {
+			firstPVStructure = marshaller.toPVStructure(createTestObject(1));
+			secondPVStructure = marshaller.toPVStructure(createTestObject(2));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertSame(firstPVStructure.getStructureField("metadata").getStructure(), secondPVStructure.getStructureField("metadata").getStructure());
+		assertEquals(2, secondPVStructure.getStructureField("metadata").getIntField("frames").get());
+		// The nested map is only looked up when the outer map is not found
+		assertEquals(1, marshaller.getMapStructureCacheHits());
+		assertEquals(2, marshaller.getMapStructureCacheMisses());
+	}
+
+	@Test
+	public void testDifferentShapes() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		MetadataObject changedClass = createTestObject(1);
+		changedClass.getMetadata().put("frames", 1.5);
+		MetadataObject changedKeys = createTestObject(1);
+		changedKeys.getMetadata().put("extra", "value");
+		MetadataObject changedNested = createTestObject(1);
+		((Map<String, Object>)changedNested.getMetadata().get("detector")).put("gain", 2);
+
+		PVStructure pvStructure = null;
+
+		try {
+			pvStructure = marshaller.toPVStructure(createTestObject(1));
+			PVStructure changedClassPVStructure = marshaller.toPVStructure(changedClass);
+			PVStructure changedKeysPVStructure = marshaller.toPVStructure(changedKeys);
+			PVStructure changedNestedPVStructure = marshaller.toPVStructure(changedNested);
+
+			assertNotSame(pvStructure.getStructure(), changedClassPVStructure.getStructure());
+			assertEquals(3, changedKeysPVStructure.getStructureField("metadata").getStructure().getFieldNames().length);
+			assertEquals(3, changedNestedPVStructure.getStructureField("metadata").getStructureField("detector").getStructure().getFieldNames().length);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		// Only the unchanged nested maps are reused
+		assertEquals(2, marshaller.getMapStructureCacheHits());
+	}
+
+	@Test
+	public void testMapsOfObjectsAreNotCached() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		MetadataObject testObject = createTestObject(1);
+		testObject.getMetadata().put("object", new MetadataObject());
+
+		try {
+			marshaller.toPVStructure(testObject);
+			marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		// Only the nested map of primitives is cached
+		assertEquals(1, marshaller.getMapStructureCacheHits());
+		assertEquals(1, marshaller.getMapStructureCacheMisses());
+	}
+
+	@Test
+	public void testCacheDisabled() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setMapStructureCacheSize(0);
+
+		PVStructure firstPVStructure = null;
+		PVStructure secondPVStructure = null;
+
+		try {
+			firstPVStructure = marshaller.toPVStructure(createTestObject(1));
+			secondPVStructure = marshaller.toPVStructure(createTestObject(2));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(firstPVStructure.getStructure(), secondPVStructure.getStructure());
+		assertEquals(0, marshaller.getMapStructureCacheHits());
+		assertEquals(0, marshaller.getMapStructureCacheMisses());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsRemoved() {
+		StructureCache cache = new StructureCache();
+		cache.setMaxSize(2);
+
+		PVMarshaller marshaller = new PVMarshaller();
+		PVStructure pvStructure = null;
+		try {
+			pvStructure = marshaller.toPVStructure(createTestObject(1));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		cache.put("a", pvStructure.getStructure());
+		cache.put("b", pvStructure.getStructure());
+		cache.get("a");
+		cache.put("c", pvStructure.getStructure());
+
+		assertEquals(2, cache.size());
+		assertSame(pvStructure.getStructure(), cache.get("a"));
+		assertEquals(null, cache.get("b"));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	private static MetadataObject createTestObject(int frames) {
+		MetadataObject testObject = new MetadataObject();
+		Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+		metadata.put("frames", frames);
+		Map<String, Object> detector = new LinkedHashMap<String, Object>();
+		detector.put("name", "det1");
+		detector.put("offsets", new double[] {0.5, 1.5});
+		metadata.put("detector", detector);
+		testObject.setMetadata(metadata);
+		return testObject;
+	}
+
+	public static class MetadataObject {
+		Map<String, Object> metadata;
+
+		public Map<String, Object> getMetadata() {
+			return metadata;
+		}
+		public void setMetadata(Map<String, Object> metadata) {
+			this.metadata = metadata;
+		}
+	}
+}
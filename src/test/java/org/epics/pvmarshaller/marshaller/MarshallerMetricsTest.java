@@ -0,0 +1,211 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller;
+import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.epics.pvmarshaller.marshaller.metrics.HistogramMetrics;
+import org.epics.pvmarshaller.marshaller.metrics.HistogramMetrics.ArrayMetrics;
+import org.epics.pvmarshaller.marshaller.metrics.HistogramMetrics.ClassMetrics;
+import org.epics.pvmarshaller.marshaller.metrics.LatencyHistogram;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+import org.junit.Test;
+
+public class MarshallerMetricsTest {
+
+	@Test
+	public void testTimingPerClass() {
+		PVMarshaller marshaller = new PVMarshaller();
+		HistogramMetrics metrics = new HistogramMetrics();
+		marshaller.setMetrics(metrics);
+
+		SampleObject testObject = new SampleObject();
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(testObject);
+			marshaller.populate(testObject, pvStructure);
+			marshaller.fromPVStructure(pvStructure, SampleObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		ClassMetrics classMetrics = metrics.getClassMetrics(SampleObject.class);
+		assertEquals(2, classMetrics.getSerialisation().getCount());
+		assertEquals(1, classMetrics.getDeserialisation().getCount());
+		assertTrue(classMetrics.getSerialisation().getTotalNanos() > 0);
+		assertNull(metrics.getClassMetrics(Detector.class));
+	}
+
+	@Test
+	public void testPrimitiveArrays() {
+		PVMarshaller marshaller = new PVMarshaller();
+		HistogramMetrics metrics = new HistogramMetrics();
+		marshaller.setMetrics(metrics);
+
+		SampleObject testObject = new SampleObject();
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(testObject);
+			marshaller.fromPVStructure(pvStructure, SampleObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		ArrayMetrics doubleMetrics = metrics.getArrayMetrics(ScalarType.pvDouble);
+		assertEquals(1, doubleMetrics.getSerialisedArrays());
+		assertEquals(3, doubleMetrics.getSerialisedElements());
+		assertEquals(24, doubleMetrics.getSerialisedBytes());
+		assertEquals(1, doubleMetrics.getDeserialisedArrays());
+		assertEquals(24, doubleMetrics.getDeserialisedBytes());
+		assertEquals(0, metrics.getArrayMetrics(ScalarType.pvInt).getSerialisedArrays());
+	}
+
+	@Test
+	public void testCustomMarshallerAndCache() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerMarshaller(new DetectorMarshaller());
+		HistogramMetrics metrics = new HistogramMetrics();
+		marshaller.setMetrics(metrics);
+
+		SampleObject testObject = new SampleObject();
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(testObject);
+			marshaller.toPVStructure(testObject);
+			marshaller.fromPVStructure(pvStructure, SampleObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		ClassMetrics detectorMetrics = metrics.getClassMetrics(Detector.class);
+		assertEquals(2, detectorMetrics.getCustomSerialiserUses());
+		assertEquals(1, detectorMetrics.getCustomDeserialiserUses());
+
+		ClassMetrics mapMetrics = metrics.getClassMetrics(LinkedHashMap.class);
+		assertEquals(1, mapMetrics.getStructureCacheHits());
+		assertEquals(1, mapMetrics.getStructureCacheMisses());
+	}
+
+	@Test
+	public void testNothingRecordedByDefault() {
+		PVMarshaller marshaller = new PVMarshaller();
+		HistogramMetrics metrics = new HistogramMetrics();
+		marshaller.setMetrics(metrics);
+		marshaller.setMetrics(null);
+
+		try {
+			marshaller.toPVStructure(new SampleObject());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertTrue(metrics.getClassMetrics().isEmpty());
+	}
+
+	@Test
+	public void testHistogramPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i * 1000);
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(100000, histogram.getMaxNanos());
+		assertEquals(50500, histogram.getMeanNanos(), 0);
+		// Buckets double in size, so percentiles are the upper bound of their bucket
+		long median = histogram.getPercentileNanos(50);
+		assertTrue(median >= 50000 && median < 100000);
+		assertEquals(100000, histogram.getPercentileNanos(100));
+		assertEquals(0, new LatencyHistogram().getPercentileNanos(99));
+	}
+
+	public static class SampleObject {
+		String name = "sample";
+		double[] values = new double[] {1.0, 2.0, 3.0};
+		Detector detector = new Detector();
+		Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+
+		public SampleObject() {
+			metadata.put("frames", 10);
+		}
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public double[] getValues() {
+			return values;
+		}
+		public void setValues(double[] values) {
+			this.values = values;
+		}
+		public Detector getDetector() {
+			return detector;
+		}
+		public void setDetector(Detector detector) {
+			this.detector = detector;
+		}
+		public Map<String, Object> getMetadata() {
+			return metadata;
+		}
+		public void setMetadata(Map<String, Object> metadata) {
+			this.metadata = metadata;
+		}
+	}
+
+	public static class Detector {
+		int gain = 2;
+
+		public int getGain() {
+			return gain;
+		}
+		public void setGain(int gain) {
+			this.gain = gain;
+		}
+	}
+
+	public static class DetectorMarshaller implements IPVStructureMarshaller<Detector> {
+		static final Structure STRUCTURE = FieldFactory.getFieldCreate().createFieldBuilder().
+			setId("test:detector").
+			add("gain", ScalarType.pvInt).
+			createStructure();
+
+		@Override
+		public Structure buildStructure(Serialiser serialiser, Detector source) {
+			return STRUCTURE;
+		}
+
+		@Override
+		public void populatePVStructure(Serialiser serialiser, Detector source, PVStructure pvStructure) {
+			pvStructure.getIntField("gain").put(source.gain);
+		}
+
+		@Override
+		public Object fromPVStructure(Deserialiser deserialiser, PVStructure pvStructure) {
+			Detector detector = new Detector();
+			detector.gain = pvStructure.getIntField("gain").get();
+			return detector;
+		}
+
+		@Override
+		public Class<Detector> getTargetClass() {
+			return Detector.class;
+		}
+
+		@Override
+		public String getStructureId() {
+			return "test:detector";
+		}
+	}
+}
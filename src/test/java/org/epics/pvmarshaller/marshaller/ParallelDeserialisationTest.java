@@ -0,0 +1,196 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureDeserialiser;
+import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.junit.Test;
+
+public class ParallelDeserialisationTest {
+
+	private static final int NUM_EVENTS = 500;
+
+	@Test
+	public void testUnionArraysMatchSequential() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setParallelDeserialisation(16);
+
+		EventList testObject = new EventList();
+		List<Event> events = new ArrayList<Event>();
+		Event[] eventArray = new Event[NUM_EVENTS];
+		for (int i = 0; i < NUM_EVENTS; i++) {
+			Event event = new Event();
+			event.setId(i);
+			events.add(event);
+			eventArray[i] = event;
+		}
+		testObject.setEvents(events);
+		testObject.setEventArray(eventArray);
+
+		EventList deserialisedObject = null;
+
+		try {
+			PVStructure serialisedPVStructure = marshaller.toPVStructure(testObject);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, EventList.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEvents(deserialisedObject);
+	}
+
+	@Test
+	public void testStructureArraysMatchSequential() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+		marshaller.setParallelDeserialisation(16);
+
+		EventList testObject = new EventList();
+		List<Event> events = new ArrayList<Event>();
+		Event[] eventArray = new Event[NUM_EVENTS];
+		for (int i = 0; i < NUM_EVENTS; i++) {
+			Event event = new Event();
+			event.setId(i);
+			events.add(event);
+			eventArray[i] = event;
+		}
+		testObject.setEvents(events);
+		testObject.setEventArray(eventArray);
+
+		EventList deserialisedObject = null;
+
+		try {
+			PVStructure serialisedPVStructure = marshaller.toPVStructure(testObject);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, EventList.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEvents(deserialisedObject);
+	}
+
+	@Test
+	public void testThreadSafeDeserialiserRunsOnExecutor() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			EventList testObject = new EventList();
+			List<Event> events = new ArrayList<Event>();
+			Event[] eventArray = new Event[NUM_EVENTS];
+			for (int i = 0; i < NUM_EVENTS; i++) {
+				Event event = new Event();
+				event.setId(i);
+				events.add(event);
+				eventArray[i] = event;
+			}
+			testObject.setEvents(events);
+			testObject.setEventArray(eventArray);
+
+			RecordingDeserialiser threadSafeDeserialiser = new RecordingDeserialiser(true);
+			PVMarshaller marshaller = new PVMarshaller();
+			marshaller.setUseStructureArrays(true);
+			marshaller.setParallelDeserialisation(16, executor);
+			marshaller.registerIdForClass(Event.class, "event");
+			marshaller.registerDeserialiser("event", threadSafeDeserialiser);
+
+			RecordingDeserialiser sequentialDeserialiser = new RecordingDeserialiser(false);
+			PVMarshaller sequentialMarshaller = new PVMarshaller();
+			sequentialMarshaller.setUseStructureArrays(true);
+			sequentialMarshaller.setParallelDeserialisation(16, executor);
+			sequentialMarshaller.registerIdForClass(Event.class, "event");
+			sequentialMarshaller.registerDeserialiser("event", sequentialDeserialiser);
+
+			try {
+				marshaller.fromPVStructure(marshaller.toPVStructure(testObject), EventList.class);
+				EventList deserialisedObject = sequentialMarshaller.fromPVStructure(sequentialMarshaller.toPVStructure(testObject), EventList.class);
+				assertEvents(deserialisedObject);
+			} catch (Exception e) {
+				fail(e.getMessage());
+			}
+
+			assertTrue(threadSafeDeserialiser.threads.size() > 1);
+			assertEquals(1, sequentialDeserialiser.threads.size());
+			assertTrue(sequentialDeserialiser.threads.contains(Thread.currentThread().getName()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void assertEvents(EventList deserialisedObject) {
+		assertEquals(NUM_EVENTS, deserialisedObject.getEvents().size());
+		assertEquals(NUM_EVENTS, deserialisedObject.getEventArray().length);
+		for (int i = 0; i < NUM_EVENTS; i++) {
+			assertEquals(i, deserialisedObject.getEvents().get(i).getId());
+			assertEquals(i, deserialisedObject.getEventArray()[i].getId());
+		}
+	}
+
+	public static class RecordingDeserialiser implements IPVStructureDeserialiser {
+		final boolean threadSafe;
+		final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+		public RecordingDeserialiser(boolean threadSafe) {
+			this.threadSafe = threadSafe;
+		}
+
+		@Override
+		public Object fromPVStructure(Deserialiser deserialiser, PVStructure pvStructure) throws Exception {
+			threads.add(Thread.currentThread().getName());
+			// Slow enough that the pool threads claim chunks before the calling thread has converted them all
+			Thread.sleep(1);
+			Event event = new Event();
+			event.setId(pvStructure.getIntField("id").get());
+			return event;
+		}
+
+		@Override
+		public boolean isThreadSafe() {
+			return threadSafe;
+		}
+	}
+
+	public static class EventList {
+		List<Event> events;
+		Event[] eventArray;
+
+		public List<Event> getEvents() {
+			return events;
+		}
+		public void setEvents(List<Event> events) {
+			this.events = events;
+		}
+		public Event[] getEventArray() {
+			return eventArray;
+		}
+		public void setEventArray(Event[] eventArray) {
+			this.eventArray = eventArray;
+		}
+	}
+
+	public static class Event {
+		int id;
+		double energy;
+
+		public int getId() {
+			return id;
+		}
+		public void setId(int id) {
+			this.id = id;
+		}
+		public double getEnergy() {
+			return energy;
+		}
+		public void setEnergy(double energy) {
+			this.energy = energy;
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVUnionArray;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureSerialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+import org.junit.Test;
+
+public class ParallelSerialisationTest {
+
+	private static final int NUM_EVENTS = 500;
+
+	@Test
+	public void testParallelMatchesSequential() {
+		PVMarshaller sequentialMarshaller = new PVMarshaller();
+		PVMarshaller parallelMarshaller = new PVMarshaller();
+		parallelMarshaller.setParallelSerialisation(16);
+
+		EventList testObject = new EventList();
+		List<Event> events = new ArrayList<Event>();
+		Event[] eventArray = new Event[NUM_EVENTS];
+		for (int i = 0; i < NUM_EVENTS; i++) {
+			Event event = new Event();
+			event.setId(i);
+			event.setEnergy(i * 0.5);
+			events.add(event);
+			eventArray[i] = event;
+		}
+		testObject.setEvents(events);
+		testObject.setEventArray(eventArray);
+
+		PVStructure expectedPVStructure = null;
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			expectedPVStructure = sequentialMarshaller.toPVStructure(testObject);
+			serialisedPVStructure = parallelMarshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(expectedPVStructure.getStructure(), serialisedPVStructure.getStructure());
+		assertEquals(expectedPVStructure.toString(), serialisedPVStructure.toString());
+	}
+
+	@Test
+	public void testParallelStructureArray() {
+		PVMarshaller sequentialMarshaller = new PVMarshaller();
+		sequentialMarshaller.setUseStructureArrays(true);
+		PVMarshaller parallelMarshaller = new PVMarshaller();
+		parallelMarshaller.setUseStructureArrays(true);
+		parallelMarshaller.setParallelSerialisation(16);
+
+		EventList testObject = new EventList();
+		List<Event> events = new ArrayList<Event>();
+		Event[] eventArray = new Event[NUM_EVENTS];
+		for (int i = 0; i < NUM_EVENTS; i++) {
+			Event event = new Event();
+			event.setId(i);
+			event.setEnergy(i * 0.5);
+			events.add(event);
+			eventArray[i] = event;
+		}
+		testObject.setEvents(events);
+		testObject.setEventArray(eventArray);
+
+		PVStructure expectedPVStructure = null;
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			expectedPVStructure = sequentialMarshaller.toPVStructure(testObject);
+			serialisedPVStructure = parallelMarshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(expectedPVStructure.toString(), serialisedPVStructure.toString());
+	}
+
+	@Test
+	public void testThreadSafeSerialiserRunsOnExecutor() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			EventList testObject = new EventList();
+			List<Event> events = new ArrayList<Event>();
+			for (int i = 0; i < NUM_EVENTS; i++) {
+				Event event = new Event();
+				event.setId(i);
+				events.add(event);
+			}
+			testObject.setEvents(events);
+
+			RecordingSerialiser threadSafeSerialiser = new RecordingSerialiser(true);
+			PVMarshaller marshaller = new PVMarshaller();
+			marshaller.setParallelSerialisation(16, executor);
+			marshaller.registerSerialiser(Event.class, threadSafeSerialiser);
+
+			RecordingSerialiser sequentialSerialiser = new RecordingSerialiser(false);
+			PVMarshaller sequentialMarshaller = new PVMarshaller();
+			sequentialMarshaller.setParallelSerialisation(16, executor);
+			sequentialMarshaller.registerSerialiser(Event.class, sequentialSerialiser);
+
+			try {
+				marshaller.toPVStructure(testObject);
+				sequentialMarshaller.toPVStructure(testObject);
+			} catch (Exception e) {
+				fail(e.getMessage());
+			}
+
+			assertTrue(threadSafeSerialiser.threads.size() > 1);
+			assertEquals(1, sequentialSerialiser.threads.size());
+			assertTrue(sequentialSerialiser.threads.contains(Thread.currentThread().getName()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testSerialiseFromExecutorThread() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			PVMarshaller marshaller = new PVMarshaller();
+			marshaller.setParallelSerialisation(16, executor);
+
+			EventList testObject = new EventList();
+			List<Event> events = new ArrayList<Event>();
+			for (int i = 0; i < NUM_EVENTS; i++) {
+				Event event = new Event();
+				event.setId(i);
+				events.add(event);
+			}
+			testObject.setEvents(events);
+
+			PVStructure serialisedPVStructure = null;
+
+			try {
+				// The only thread of the pool is busy serialising, so it has to convert the queued chunks itself
+				Future<PVStructure> future = executor.submit(() -> marshaller.toPVStructure(testObject));
+				serialisedPVStructure = future.get(10, TimeUnit.SECONDS);
+			} catch (Exception e) {
+				fail(e.getMessage());
+			}
+
+			assertEquals(NUM_EVENTS, serialisedPVStructure.getSubField(PVUnionArray.class, "events").getLength());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testExceptionIsThrown() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setParallelSerialisation(16);
+
+		EventList testObject = new EventList();
+		List<Event> events = new ArrayList<Event>();
+		for (int i = 0; i < NUM_EVENTS; i++) {
+			Event event = new Event();
+			event.setId(i);
+			events.add(event);
+		}
+		events.get(NUM_EVENTS - 1).setFailing(true);
+		testObject.setEvents(events);
+
+		try {
+			marshaller.toPVStructure(testObject);
+			fail("No exception thrown");
+		} catch (Exception e) {
+			// Expected
+		}
+	}
+
+	public static class RecordingSerialiser implements IPVStructureSerialiser<Event> {
+		final boolean threadSafe;
+		final Set<String> threads = ConcurrentHashMap.newKeySet();
+
+		public RecordingSerialiser(boolean threadSafe) {
+			this.threadSafe = threadSafe;
+		}
+
+		@Override
+		public Structure buildStructure(Serialiser serialiser, Event source) throws Exception {
+			return FieldFactory.getFieldCreate().createFieldBuilder().
+				add("id", ScalarType.pvInt).
+				createStructure();
+		}
+
+		@Override
+		public void populatePVStructure(Serialiser serialiser, Event source, PVStructure pvStructure) throws Exception {
+			threads.add(Thread.currentThread().getName());
+			// Slow enough that the pool threads claim chunks before the calling thread has converted them all
+			Thread.sleep(1);
+			pvStructure.getIntField("id").put(source.getId());
+		}
+
+		@Override
+		public boolean isThreadSafe() {
+			return threadSafe;
+		}
+	}
+
+	public static class EventList {
+		List<Event> events;
+		Event[] eventArray;
+
+		public List<Event> getEvents() {
+			return events;
+		}
+		public void setEvents(List<Event> events) {
+			this.events = events;
+		}
+		public Event[] getEventArray() {
+			return eventArray;
+		}
+		public void setEventArray(Event[] eventArray) {
+			this.eventArray = eventArray;
+		}
+	}
+
+	public static class Event {
+		int id;
+		double energy;
+		boolean failing;
+
+		public int getId() {
+			return id;
+		}
+		public void setId(int id) {
+			this.id = id;
+		}
+		public double getEnergy() {
+			if (failing) {
+				throw new IllegalStateException("Unable to read energy");
+			}
+			return energy;
+		}
+		public void setEnergy(double energy) {
+			this.energy = energy;
+		}
+		public boolean isFailing() {
+			return failing;
+		}
+		public void setFailing(boolean failing) {
+			this.failing = failing;
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVArray;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.junit.Test;
+
+public class PopulateTest {
+
+	@Test
+	public void testCreateTemplate() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerIdForClass(NestedObject.class, "nested_t");
+
+		// Create expected PVStructure
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure nestedStructure = fieldCreate.createFieldBuilder().
+			setId("nested_t").
+			add("name", ScalarType.pvString).
+			createStructure();
+		Structure structure = fieldCreate.createFieldBuilder().
+			add("intField", ScalarType.pvInt).
+			add("boxedDouble", ScalarType.pvDouble).
+			add("stringField", ScalarType.pvString).
+			addArray("doubleArray", ScalarType.pvDouble).
+			addArray("intList", ScalarType.pvInt).
+			addArray("objectList", fieldCreate.createVariantUnion()).
+			add("nested", nestedStructure).
+			createStructure();
+
+		PVStructure expectedPVStructure = pvDataCreate.createPVStructure(structure);
+
+		PVStructure template = null;
+
+		try {
+			template = marshaller.createTemplate(TemplateObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		TestHelper.assertPVStructuresEqual(expectedPVStructure, template);
+	}
+
+	@Test
+	public void testPopulateTemplate() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		TemplateObject first = createTestObject(3, new double[] {1.1, 1.2, 1.3}, "first");
+		TemplateObject second = createTestObject(1, new double[] {2.1}, "second");
+
+		PVStructure template = null;
+		PVStructure expectedPVStructure = null;
+
+		try {
+			template = marshaller.createTemplate(TemplateObject.class);
+			Structure templateStructure = template.getStructure();
+
+			marshaller.populate(first, template);
+			marshaller.populate(second, template);
+
+			// Populating must not change the Structure, and must give the same result as serialising directly
+			assertSame(templateStructure, template.getStructure());
+			expectedPVStructure = marshaller.toPVStructure(second);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		// Shrinking an array keeps its capacity, which PVArray.equals compares, so compare the contents instead
+		assertEquals(expectedPVStructure.getStructure(), template.getStructure());
+		assertEquals(expectedPVStructure.toString(), template.toString());
+		assertEquals(1, template.getSubField(PVArray.class, "doubleArray").getLength());
+		assertEquals(1, template.getSubField(PVArray.class, "intList").getLength());
+	}
+
+	@Test
+	public void testPopulateResetsNullMembers() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		TemplateObject first = createTestObject(1, new double[] {1.1}, "first");
+		TemplateObject second = createTestObject(2, null, null);
+		second.setBoxedDouble(null);
+		second.setIntList(new ArrayList<Integer>());
+		second.setNested(null);
+
+		PVStructure template = null;
+
+		try {
+			template = marshaller.createTemplate(TemplateObject.class);
+			marshaller.populate(first, template);
+			marshaller.populate(second, template);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(2, template.getIntField("intField").get());
+		assertEquals(0, template.getDoubleField("boxedDouble").get(), 0);
+		assertEquals("", template.getStringField("stringField").get());
+		assertEquals(0, template.getSubField(PVArray.class, "doubleArray").getLength());
+		assertEquals(0, template.getSubField(PVArray.class, "intList").getLength());
+		assertEquals("", template.getStructureField("nested").getStringField("name").get());
+	}
+
+	@Test
+	public void testPopulatePrototypeWithMap() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		MapObject first = new MapObject();
+		first.getValues().put("a", 1);
+		first.getValues().put("b", 2);
+
+		MapObject second = new MapObject();
+		second.getValues().put("a", 3);
+		second.getValues().put("b", 4);
+
+		PVStructure template = null;
+		PVStructure expectedPVStructure = null;
+
+		try {
+			template = marshaller.createTemplate(first);
+			marshaller.populate(second, template);
+			expectedPVStructure = marshaller.toPVStructure(second);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		TestHelper.assertPVStructuresEqual(expectedPVStructure, template);
+	}
+
+	@Test
+	public void testTemplateForMapFails() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		try {
+			marshaller.createTemplate(MapObject.class);
+			fail("Expected an exception for a class containing a Map");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private static TemplateObject createTestObject(int intValue, double[] doubleArray, String name) {
+		TemplateObject testObject = new TemplateObject();
+		testObject.setIntField(intValue);
+		testObject.setBoxedDouble(intValue * 1.5);
+		testObject.setStringField(name);
+		testObject.setDoubleArray(doubleArray);
+		List<Integer> intList = new ArrayList<Integer>();
+		for (int i = 0; i < intValue; i++) {
+			intList.add(i);
+		}
+		testObject.setIntList(intList);
+		List<Object> objectList = new ArrayList<Object>();
+		NestedObject listEntry = new NestedObject();
+		listEntry.setName(name + " list entry");
+		objectList.add(listEntry);
+		testObject.setObjectList(objectList);
+		NestedObject nested = new NestedObject();
+		nested.setName(name + " nested");
+		testObject.setNested(nested);
+		return testObject;
+	}
+
+	public static class TemplateObject {
+		int intField;
+		Double boxedDouble;
+		String stringField;
+		double[] doubleArray;
+		List<Integer> intList;
+		List<Object> objectList;
+		NestedObject nested;
+
+		public int getIntField() {
+			return intField;
+		}
+		public void setIntField(int intField) {
+			this.intField = intField;
+		}
+		public Double getBoxedDouble() {
+			return boxedDouble;
+		}
+		public void setBoxedDouble(Double boxedDouble) {
+			this.boxedDouble = boxedDouble;
+		}
+		public String getStringField() {
+			return stringField;
+		}
+		public void setStringField(String stringField) {
+			this.stringField = stringField;
+		}
+		public double[] getDoubleArray() {
+			return doubleArray;
+		}
+		public void setDoubleArray(double[] doubleArray) {
+			this.doubleArray = doubleArray;
+		}
+		public List<Integer> getIntList() {
+			return intList;
+		}
+		public void setIntList(List<Integer> intList) {
+			this.intList = intList;
+		}
+		public List<Object> getObjectList() {
+			return objectList;
+		}
+		public void setObjectList(List<Object> objectList) {
+			this.objectList = objectList;
+		}
+		public NestedObject getNested() {
+			return nested;
+		}
+		public void setNested(NestedObject nested) {
+			this.nested = nested;
+		}
+	}
+
+	public static class NestedObject {
+		String name;
+
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	public static class MapObject {
+		Map<String, Integer> values = new HashMap<String, Integer>();
+
+		public Map<String, Integer> getValues() {
+			return values;
+		}
+		public void setValues(Map<String, Integer> values) {
+			this.values = values;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.api.IPVStructureMarshaller;
+import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.epics.pvmarshaller.marshaller.serialisers.Serialiser;
+import org.junit.Test;
+
+public class RegisteredMarshallerTest {
+
+	@Test
+	public void testMarshallerUsedForExactClass() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerMarshaller(new FixedStructureMarshaller());
+
+		MarshalledObject testObject = new MarshalledObject();
+		testObject.value = 12;
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(testObject);
+			assertSame(FixedStructureMarshaller.STRUCTURE, pvStructure.getStructure());
+			assertEquals(12, pvStructure.getIntField("marshalledValue").get());
+
+			MarshalledObject deserialised = marshaller.fromPVStructure(pvStructure, MarshalledObject.class);
+			assertEquals(12, deserialised.value);
+
+			// Found by id regardless of the requested class
+			Object deserialisedById = marshaller.fromPVStructure(pvStructure, Object.class);
+			assertEquals(12, ((MarshalledObject)deserialisedById).value);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testMarshallerNotUsedForSubclass() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerMarshaller(new FixedStructureMarshaller());
+
+		MarshalledSubclass testObject = new MarshalledSubclass();
+		testObject.value = 3;
+		testObject.extra = 4;
+
+		try {
+			PVStructure pvStructure = marshaller.toPVStructure(testObject);
+			assertEquals(4, pvStructure.getIntField("extra").get());
+			assertEquals(3, pvStructure.getIntField("value").get());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class FixedStructureMarshaller implements IPVStructureMarshaller<MarshalledObject> {
+		static final Structure STRUCTURE = FieldFactory.getFieldCreate().createFieldBuilder().
+			setId("test:marshalled").
+			add("marshalledValue", ScalarType.pvInt).
+			createStructure();
+
+		@Override
+		public Structure buildStructure(Serialiser serialiser, MarshalledObject source) {
+			return STRUCTURE;
+		}
+
+		@Override
+		public void populatePVStructure(Serialiser serialiser, MarshalledObject source, PVStructure pvStructure) {
+			pvStructure.getIntField("marshalledValue").put(source.value);
+		}
+
+		@Override
+		public Object fromPVStructure(Deserialiser deserialiser, PVStructure pvStructure) {
+			MarshalledObject object = new MarshalledObject();
+			object.value = pvStructure.getIntField("marshalledValue").get();
+			return object;
+		}
+
+		@Override
+		public Class<MarshalledObject> getTargetClass() {
+			return MarshalledObject.class;
+		}
+
+		@Override
+		public String getStructureId() {
+			return "test:marshalled";
+		}
+	}
+
+	public static class MarshalledObject {
+		int value;
+
+		public int getValue() {
+			return value;
+		}
+		public void setValue(int value) {
+			this.value = value;
+		}
+	}
+
+	public static class MarshalledSubclass extends MarshalledObject {
+		int extra;
+
+		public int getExtra() {
+			return extra;
+		}
+		public void setExtra(int extra) {
+			this.extra = extra;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Date;
+
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvmarshaller.marshaller.serialisers.ScalarKind;
+import org.junit.Test;
+
+public class ScalarKindTest {
+
+	@Test
+	public void testPrimitivesAndWrappers() {
+		assertEquals(ScalarKind.INT, ScalarKind.of(int.class));
+		assertEquals(ScalarKind.INT, ScalarKind.of(Integer.class));
+		assertEquals(ScalarKind.SHORT, ScalarKind.of(short.class));
+		assertEquals(ScalarKind.SHORT, ScalarKind.of(Short.class));
+		assertEquals(ScalarKind.LONG, ScalarKind.of(long.class));
+		assertEquals(ScalarKind.LONG, ScalarKind.of(Long.class));
+		assertEquals(ScalarKind.BYTE, ScalarKind.of(byte.class));
+		assertEquals(ScalarKind.BYTE, ScalarKind.of(Byte.class));
+		assertEquals(ScalarKind.BOOLEAN, ScalarKind.of(boolean.class));
+		assertEquals(ScalarKind.BOOLEAN, ScalarKind.of(Boolean.class));
+		assertEquals(ScalarKind.FLOAT, ScalarKind.of(float.class));
+		assertEquals(ScalarKind.FLOAT, ScalarKind.of(Float.class));
+		assertEquals(ScalarKind.DOUBLE, ScalarKind.of(double.class));
+		assertEquals(ScalarKind.DOUBLE, ScalarKind.of(Double.class));
+		assertEquals(ScalarKind.CHAR, ScalarKind.of(char.class));
+		assertEquals(ScalarKind.CHAR, ScalarKind.of(Character.class));
+		assertEquals(ScalarKind.STRING, ScalarKind.of(String.class));
+	}
+
+	@Test
+	public void testScalarTypes() {
+		assertEquals(ScalarType.pvInt, ScalarKind.INT.getScalarType());
+		assertEquals(ScalarType.pvDouble, ScalarKind.DOUBLE.getScalarType());
+		assertEquals(ScalarType.pvString, ScalarKind.CHAR.getScalarType());
+		assertEquals(ScalarType.pvString, ScalarKind.STRING.getScalarType());
+	}
+
+	@Test
+	public void testNonScalars() {
+		assertNull(ScalarKind.of(Object.class));
+		assertNull(ScalarKind.of(Number.class));
+		assertNull(ScalarKind.of(Date.class));
+		assertNull(ScalarKind.of(int[].class));
+		assertNull(ScalarKind.of(void.class));
+	}
+}
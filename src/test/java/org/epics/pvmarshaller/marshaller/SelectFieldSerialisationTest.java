@@ -247,6 +247,46 @@ public class SelectFieldSerialisationTest {
 		TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
 	}
 
+	@Test
+	public void testExcludeFieldInChildOfIncludeList() {
+		PVMarshaller marshaller = new PVMarshaller();
+		
+		// Create test class to serialise
+		ChildClass testClass = new ChildClass();
+
+		testClass.intField = 3;
+		testClass.stringField = "test string";
+		testClass.doubleField = 1.5;
+		testClass.newIntField = 18;
+		
+		// Create expected PVStructure
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure structure = fieldCreate.createFieldBuilder().
+				add("doubleField", ScalarType.pvDouble).
+			createStructure();
+		
+		PVStructure expectedPVStructure = pvDataCreate.createPVStructure(structure);
+		PVDouble doubleField = expectedPVStructure.getDoubleField("doubleField");
+		doubleField.put(1.5);
+		PVStructure serialisedPVStructure = null;
+		
+		try {
+			LinkedList<String> includeFields = new LinkedList<>();
+			includeFields.add("stringField");
+			includeFields.add("doubleField");
+			marshaller.registerFieldListForClass(SelectFieldsTestObject.class, includeFields);
+			LinkedList<String> excludeFields = new LinkedList<>();
+			excludeFields.add("stringField");
+			marshaller.registerExcludeFieldListForClass(ChildClass.class, excludeFields);
+			serialisedPVStructure = marshaller.toPVStructure(testClass);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+		
+		TestHelper.assertPVStructuresEqual(expectedPVStructure, serialisedPVStructure);
+	}
+
 	public static class SelectFieldsTestObject {
 		int intField;
 		String stringField;
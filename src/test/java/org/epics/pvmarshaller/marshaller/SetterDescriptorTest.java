@@ -0,0 +1,146 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.factory.PVDataFactory;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDataCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvmarshaller.marshaller.deserialisers.Deserialiser;
+import org.epics.pvmarshaller.marshaller.deserialisers.SetterDescriptor;
+import org.junit.Test;
+
+public class SetterDescriptorTest {
+
+	@Test
+	public void testDescriptorIsReused() {
+		Deserialiser deserialiser = new Deserialiser();
+
+		SetterDescriptor first = deserialiser.getSetterDescriptor(ChildObject.class, "parentInt");
+		SetterDescriptor second = deserialiser.getSetterDescriptor(ChildObject.class, "parentInt");
+
+		assertSame(first, second);
+		assertNotNull(first.getSetter());
+		assertEquals(int.class, first.getParameterType());
+		assertEquals(int.class, first.getFieldType());
+	}
+
+	@Test
+	public void testUnknownMemberIsCached() {
+		Deserialiser deserialiser = new Deserialiser();
+
+		SetterDescriptor first = deserialiser.getSetterDescriptor(ChildObject.class, "notAField");
+		SetterDescriptor second = deserialiser.getSetterDescriptor(ChildObject.class, "notAField");
+
+		assertSame(first, second);
+		assertNull(first.getSetter());
+		assertNull(first.getFieldType());
+	}
+
+	@Test
+	public void testInheritedMapField() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure mapStructure = fieldCreate.createFieldBuilder().
+			add("a", ScalarType.pvInt).
+			add("b", ScalarType.pvInt).
+			createStructure();
+		Structure structure = fieldCreate.createFieldBuilder().
+			add("childInt", ScalarType.pvInt).
+			add("parentInt", ScalarType.pvInt).
+			add("parentMap", mapStructure).
+			createStructure();
+
+		PVStructure pvStructure = pvDataCreate.createPVStructure(structure);
+		pvStructure.getIntField("childInt").put(1);
+		pvStructure.getIntField("parentInt").put(2);
+		pvStructure.getStructureField("parentMap").getIntField("a").put(3);
+		pvStructure.getStructureField("parentMap").getIntField("b").put(4);
+
+		Map<String, Integer> expectedMap = new HashMap<>();
+		expectedMap.put("a", 3);
+		expectedMap.put("b", 4);
+
+		ChildObject deserialised = null;
+
+		try {
+			deserialised = marshaller.fromPVStructure(pvStructure, ChildObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(1, deserialised.childInt);
+		assertEquals(2, deserialised.parentInt);
+		assertEquals(expectedMap, deserialised.parentMap);
+	}
+
+	@Test
+	public void testIgnoredUnknownFieldsAcrossCalls() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setIgnoreUnknownFields(true);
+
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
+		Structure elementStructure = fieldCreate.createFieldBuilder().
+			add("x", ScalarType.pvInt).
+			createStructure();
+		Structure structure = fieldCreate.createFieldBuilder().
+			add("childInt", ScalarType.pvInt).
+			add("unknownInt", ScalarType.pvInt).
+			addArray("unknownArray", elementStructure).
+			createStructure();
+
+		PVStructure pvStructure = pvDataCreate.createPVStructure(structure);
+		pvStructure.getIntField("childInt").put(7);
+
+		try {
+			for (int i = 0; i < 2; i++) {
+				ChildObject deserialised = marshaller.fromPVStructure(pvStructure, ChildObject.class);
+				assertEquals(7, deserialised.childInt);
+			}
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	public static class ParentObject {
+		int parentInt;
+		Map<String, Integer> parentMap;
+
+		public int getParentInt() {
+			return parentInt;
+		}
+		public void setParentInt(int parentInt) {
+			this.parentInt = parentInt;
+		}
+		public Map<String, Integer> getParentMap() {
+			return parentMap;
+		}
+		public void setParentMap(Map<String, Integer> parentMap) {
+			this.parentMap = parentMap;
+		}
+	}
+
+	public static class ChildObject extends ParentObject {
+		int childInt;
+
+		public int getChildInt() {
+			return childInt;
+		}
+		public void setChildInt(int childInt) {
+			this.childInt = childInt;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.DoubleArrayData;
+import org.epics.pvdata.pv.IntArrayData;
+import org.epics.pvdata.pv.PVDoubleArray;
+import org.epics.pvdata.pv.PVIntArray;
+import org.epics.pvdata.pv.PVStructure;
+import org.junit.Test;
+
+public class SharedArrayTest {
+
+	@Test
+	public void testRegisteredArrayIsShared() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerSharedArrayFieldListForClass(FrameObject.class, Arrays.asList("frame"));
+
+		FrameObject testObject = new FrameObject();
+		testObject.setFrame(new int[] {1, 2, 3, 4});
+		testObject.setAxis(new double[] {0.5, 1.5});
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		IntArrayData frameData = new IntArrayData();
+		serialisedPVStructure.getSubField(PVIntArray.class, "frame").get(0, 4, frameData);
+		assertSame(testObject.getFrame(), frameData.data);
+
+		// Arrays that aren't registered are still copied
+		DoubleArrayData axisData = new DoubleArrayData();
+		serialisedPVStructure.getSubField(PVDoubleArray.class, "axis").get(0, 2, axisData);
+		assertNotSame(testObject.getAxis(), axisData.data);
+		assertArrayEquals(testObject.getAxis(), Arrays.copyOf(axisData.data, 2), 0);
+	}
+
+	@Test
+	public void testSharedArrayInTemplate() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerSharedArrayFieldListForClass(FrameObject.class, Arrays.asList("frame"));
+
+		FrameObject testObject = new FrameObject();
+		testObject.setFrame(new int[] {1, 2, 3, 4});
+		testObject.setAxis(new double[] {0.5});
+
+		PVStructure template = null;
+		BitSet changedFields = new BitSet();
+
+		try {
+			template = marshaller.createTemplate(FrameObject.class);
+			marshaller.populate(testObject, template);
+
+			// A new frame with the same contents is not a change
+			testObject.setFrame(new int[] {1, 2, 3, 4});
+			marshaller.populate(testObject, template, changedFields);
+			assertTrue(changedFields.isEmpty());
+
+			testObject.setFrame(new int[] {5, 6});
+			marshaller.populate(testObject, template, changedFields);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		PVIntArray frameArray = template.getSubField(PVIntArray.class, "frame");
+		IntArrayData frameData = new IntArrayData();
+		frameArray.get(0, frameArray.getLength(), frameData);
+		assertSame(testObject.getFrame(), frameData.data);
+		assertTrue(changedFields.get(frameArray.getFieldOffset()));
+	}
+
+	public static class FrameObject {
+		int[] frame;
+		double[] axis;
+
+		public int[] getFrame() {
+			return frame;
+		}
+		public void setFrame(int[] frame) {
+			this.frame = frame;
+		}
+		public double[] getAxis() {
+			return axis;
+		}
+		public void setAxis(double[] axis) {
+			this.axis = axis;
+		}
+	}
+}
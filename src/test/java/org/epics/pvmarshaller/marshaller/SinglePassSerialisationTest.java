@@ -0,0 +1,158 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
+import org.epics.pvdata.pv.PVUnionArray;
+import org.junit.Test;
+
+public class SinglePassSerialisationTest {
+
+	@Test
+	public void testGettersCalledOnce() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		CountingObject testObject = new CountingObject();
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(1, testObject.primitiveCalls.get());
+		assertEquals(1, testObject.boxedCalls.get());
+		assertEquals(1, testObject.listCalls.get());
+		assertEquals(1, testObject.childCalls.get());
+		assertEquals(1, testObject.child.nameCalls.get());
+		assertEquals(1, testObject.items.get(0).nameCalls.get());
+		assertEquals(2, serialisedPVStructure.getSubField(PVUnionArray.class, "items").getLength());
+	}
+
+	@Test
+	public void testGettersCalledOnceInParallel() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setParallelSerialisation(1);
+
+		CountingObject testObject = new CountingObject();
+
+		try {
+			marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(1, testObject.listCalls.get());
+		assertEquals(1, testObject.items.get(0).nameCalls.get());
+		assertEquals(1, testObject.items.get(1).nameCalls.get());
+	}
+
+	@Test
+	public void testStructureArrayGettersCalledOnceInParallel() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+		marshaller.setParallelSerialisation(2);
+
+		CountingObject testObject = new CountingObject();
+		for (int i = 0; i < 998; i++) {
+			testObject.items.add(new CountingChild());
+		}
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		// The elements populated on the thread pool read the snapshot taken while checking their classes
+		int nameCalls = 0;
+		for (CountingChild item : testObject.items) {
+			nameCalls += item.nameCalls.get();
+		}
+		assertEquals(1000, nameCalls);
+		assertEquals(1000, serialisedPVStructure.getSubField(PVStructureArray.class, "items").getLength());
+	}
+
+	@Test
+	public void testValuesAreConsistent() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ChangingObject testObject = new ChangingObject();
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		// The value is only present on the first call, so would be missing if it were read again to populate the PVStructure
+		assertEquals(7, serialisedPVStructure.getIntField("value").get());
+	}
+
+	public static class CountingObject {
+		final transient AtomicInteger primitiveCalls = new AtomicInteger();
+		final transient AtomicInteger boxedCalls = new AtomicInteger();
+		final transient AtomicInteger listCalls = new AtomicInteger();
+		final transient AtomicInteger childCalls = new AtomicInteger();
+
+		int primitive = 1;
+		Integer boxed = 2;
+		List<CountingChild> items = new ArrayList<CountingChild>();
+		CountingChild child = new CountingChild();
+
+		public CountingObject() {
+			items.add(new CountingChild());
+			items.add(new CountingChild());
+		}
+
+		public int getPrimitive() {
+			primitiveCalls.incrementAndGet();
+			return primitive;
+		}
+		public Integer getBoxed() {
+			boxedCalls.incrementAndGet();
+			return boxed;
+		}
+		public List<CountingChild> getItems() {
+			listCalls.incrementAndGet();
+			return items;
+		}
+		public CountingChild getChild() {
+			childCalls.incrementAndGet();
+			return child;
+		}
+	}
+
+	public static class CountingChild {
+		final transient AtomicInteger nameCalls = new AtomicInteger();
+
+		String name = "child";
+
+		public String getName() {
+			nameCalls.incrementAndGet();
+			return name;
+		}
+	}
+
+	public static class ChangingObject {
+		Integer value;
+		transient int calls = 0;
+
+		public Integer getValue() {
+			calls++;
+			return calls == 1 ? Integer.valueOf(7) : null;
+		}
+	}
+}
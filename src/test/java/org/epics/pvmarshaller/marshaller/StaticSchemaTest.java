@@ -0,0 +1,427 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.misc.BitSet;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVUnion;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.junit.Test;
+
+public class StaticSchemaTest {
+
+	@Test
+	public void testStructureIndependentOfValues() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setStaticSchema(true);
+
+		SampleObject fullObject = new SampleObject();
+		fullObject.setCount(3);
+		fullObject.setLabel("sample");
+		fullObject.setDetector(new Detector("det1", 0.5));
+		fullObject.setPayload(new Detector("det2", 1.5));
+		Map<String, Object> metadata = new HashMap<String, Object>();
+		metadata.put("frames", 12);
+		fullObject.setMetadata(metadata);
+		List<Detector> detectors = new ArrayList<Detector>();
+		detectors.add(new Detector("det3", 2.5));
+		detectors.add(new Detector("det4", 3.5));
+		fullObject.setDetectors(detectors);
+		fullObject.setValues(new double[] {1.0, 2.0});
+		SampleObject emptyObject = new SampleObject();
+
+		PVStructure fullPVStructure = null;
+		PVStructure emptyPVStructure = null;
+
+		try {
+			fullPVStructure = marshaller.toPVStructure(fullObject);
+			emptyPVStructure = marshaller.toPVStructure(emptyObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		Structure detectorStructure = fieldCreate.createFieldBuilder().
+			add("name", ScalarType.pvString).
+			add("exposure", ScalarType.pvDouble).
+			createStructure();
+		Structure expectedStructure = fieldCreate.createFieldBuilder().
+			add("count", ScalarType.pvInt).
+			add("label", ScalarType.pvString).
+			add("detector", detectorStructure).
+			add("payload", fieldCreate.createVariantUnion()).
+			add("metadata", fieldCreate.createVariantUnion()).
+			addArray("detectors", fieldCreate.createVariantUnion()).
+			addArray("values", ScalarType.pvDouble).
+			createStructure();
+
+		assertEquals(expectedStructure, fullPVStructure.getStructure());
+		assertSame(fullPVStructure.getStructure(), emptyPVStructure.getStructure());
+	}
+
+	@Test
+	public void testDynamicStructureByDefault() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		SampleObject fullObject = new SampleObject();
+		fullObject.setCount(3);
+		fullObject.setLabel("sample");
+		fullObject.setDetector(new Detector("det1", 0.5));
+		fullObject.setPayload(new Detector("det2", 1.5));
+		Map<String, Object> metadata = new HashMap<String, Object>();
+		metadata.put("frames", 12);
+		fullObject.setMetadata(metadata);
+		List<Detector> detectors = new ArrayList<Detector>();
+		detectors.add(new Detector("det3", 2.5));
+		detectors.add(new Detector("det4", 3.5));
+		fullObject.setDetectors(detectors);
+		fullObject.setValues(new double[] {1.0, 2.0});
+
+		PVStructure fullPVStructure = null;
+		PVStructure emptyPVStructure = null;
+
+		try {
+			fullPVStructure = marshaller.toPVStructure(fullObject);
+			emptyPVStructure = marshaller.toPVStructure(new SampleObject());
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertNotEquals(fullPVStructure.getStructure(), emptyPVStructure.getStructure());
+	}
+
+	@Test
+	public void testRoundTrip() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setStaticSchema(true);
+
+		SampleObject testObject = new SampleObject();
+		testObject.setCount(3);
+		testObject.setLabel("sample");
+		testObject.setDetector(new Detector("det1", 0.5));
+		testObject.setPayload(new Detector("det2", 1.5));
+		Map<String, Object> metadata = new HashMap<String, Object>();
+		metadata.put("frames", 12);
+		testObject.setMetadata(metadata);
+		List<Detector> detectors = new ArrayList<Detector>();
+		detectors.add(new Detector("det3", 2.5));
+		detectors.add(new Detector("det4", 3.5));
+		testObject.setDetectors(detectors);
+		testObject.setValues(new double[] {1.0, 2.0});
+
+		PVStructure serialisedPVStructure = null;
+		SampleObject deserialisedObject = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, SampleObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(3, deserialisedObject.getCount());
+		assertEquals("sample", deserialisedObject.getLabel());
+		assertEquals("det1", deserialisedObject.getDetector().getName());
+		assertEquals(0.5, deserialisedObject.getDetector().getExposure(), 0);
+		assertTrue(deserialisedObject.getPayload() instanceof Map);
+		assertEquals("det2", ((Map<?, ?>)deserialisedObject.getPayload()).get("name"));
+		assertEquals(12, deserialisedObject.getMetadata().get("frames"));
+		assertEquals(2, deserialisedObject.getDetectors().size());
+		assertEquals("det4", deserialisedObject.getDetectors().get(1).getName());
+		assertEquals(2, deserialisedObject.getValues().length);
+	}
+
+	@Test
+	public void testNullsAreDefaults() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setStaticSchema(true);
+
+		PVStructure serialisedPVStructure = null;
+		SampleObject deserialisedObject = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(new SampleObject());
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, SampleObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertNull(serialisedPVStructure.getSubField(PVUnion.class, "payload").get());
+		assertEquals("", deserialisedObject.getLabel());
+		assertEquals("", deserialisedObject.getDetector().getName());
+		assertNull(deserialisedObject.getPayload());
+		assertEquals(0, deserialisedObject.getDetectors().size());
+	}
+
+	@Test
+	public void testPrimitiveInObjectField() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setStaticSchema(true);
+
+		SampleObject testObject = new SampleObject();
+		testObject.setPayload(42);
+
+		PVStructure serialisedPVStructure = null;
+		SampleObject deserialisedObject = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, SampleObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(42, deserialisedObject.getPayload());
+	}
+
+	@Test
+	public void testSelfReferencingClass() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setStaticSchema(true);
+
+		TreeNode root = new TreeNode();
+		root.setName("root");
+		TreeNode child = new TreeNode();
+		child.setName("child");
+		root.setChild(child);
+
+		PVStructure serialisedPVStructure = null;
+		TreeNode deserialisedObject = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(root);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, TreeNode.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertTrue(serialisedPVStructure.getSubField("child") instanceof PVUnion);
+		assertEquals("child", deserialisedObject.getChild().getName());
+		assertNull(deserialisedObject.getChild().getChild());
+	}
+
+	@Test
+	public void testChangedUnionValue() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setStaticSchema(true);
+
+		SampleObject testObject = new SampleObject();
+		Map<String, Object> metadata = new HashMap<String, Object>();
+		metadata.put("frames", 12);
+		testObject.setMetadata(metadata);
+
+		PVStructure pvStructure = null;
+		BitSet unchangedFields = new BitSet();
+		BitSet changedFields = new BitSet();
+
+		try {
+			pvStructure = marshaller.toPVStructure(testObject);
+			marshaller.populate(testObject, pvStructure, unchangedFields);
+
+			metadata.put("frames", 13);
+			marshaller.populate(testObject, pvStructure, changedFields);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		int metadataOffset = pvStructure.getSubField("metadata").getFieldOffset();
+		assertTrue(unchangedFields.isEmpty());
+		assertTrue(changedFields.get(metadataOffset));
+		assertEquals(1, changedFields.cardinality());
+	}
+
+	@Test
+	public void testSubclassMemberFails() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setStaticSchema(true);
+
+		SampleObject testObject = new SampleObject();
+		GatedDetector detector = new GatedDetector();
+		detector.setName("det1");
+		detector.setGate(2);
+		testObject.setDetector(detector);
+
+		try {
+			marshaller.toPVStructure(testObject);
+			fail("Expected an exception for a member holding a subclass of its declared type");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains(GatedDetector.class.getName()));
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+	}
+
+	@Test
+	public void testNullCharacter() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setStaticSchema(true);
+
+		CharObject testObject = new CharObject();
+		testObject.setText("text");
+
+		CharObject deserialisedObject = null;
+		CharObject bufferDeserialisedObject = null;
+
+		try {
+			deserialisedObject = marshaller.fromPVStructure(marshaller.toPVStructure(testObject), CharObject.class);
+
+			ByteBuffer buffer = ByteBuffer.allocate(1024);
+			Structure structure = marshaller.serialise(testObject, buffer);
+			buffer.flip();
+			bufferDeserialisedObject = marshaller.deserialise(buffer, structure, CharObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertNull(deserialisedObject.getBoxedChar());
+		assertEquals('\0', deserialisedObject.getPrimitiveChar());
+		assertEquals("text", deserialisedObject.getText());
+		assertNull(bufferDeserialisedObject.getBoxedChar());
+		assertEquals("text", bufferDeserialisedObject.getText());
+	}
+
+	public static class SampleObject {
+		int count;
+		String label;
+		Detector detector;
+		Object payload;
+		Map<String, Object> metadata;
+		List<Detector> detectors;
+		double[] values;
+
+		public int getCount() {
+			return count;
+		}
+		public void setCount(int count) {
+			this.count = count;
+		}
+		public String getLabel() {
+			return label;
+		}
+		public void setLabel(String label) {
+			this.label = label;
+		}
+		public Detector getDetector() {
+			return detector;
+		}
+		public void setDetector(Detector detector) {
+			this.detector = detector;
+		}
+		public Object getPayload() {
+			return payload;
+		}
+		public void setPayload(Object payload) {
+			this.payload = payload;
+		}
+		public Map<String, Object> getMetadata() {
+			return metadata;
+		}
+		public void setMetadata(Map<String, Object> metadata) {
+			this.metadata = metadata;
+		}
+		public List<Detector> getDetectors() {
+			return detectors;
+		}
+		public void setDetectors(List<Detector> detectors) {
+			this.detectors = detectors;
+		}
+		public double[] getValues() {
+			return values;
+		}
+		public void setValues(double[] values) {
+			this.values = values;
+		}
+	}
+
+	public static class Detector {
+		String name;
+		double exposure;
+
+		public Detector() {
+		}
+		public Detector(String name, double exposure) {
+			this.name = name;
+			this.exposure = exposure;
+		}
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public double getExposure() {
+			return exposure;
+		}
+		public void setExposure(double exposure) {
+			this.exposure = exposure;
+		}
+	}
+
+	public static class GatedDetector extends Detector {
+		int gate;
+
+		public int getGate() {
+			return gate;
+		}
+		public void setGate(int gate) {
+			this.gate = gate;
+		}
+	}
+
+	public static class CharObject {
+		Character boxedChar;
+		char primitiveChar;
+		String text;
+
+		public Character getBoxedChar() {
+			return boxedChar;
+		}
+		public void setBoxedChar(Character boxedChar) {
+			this.boxedChar = boxedChar;
+		}
+		public char getPrimitiveChar() {
+			return primitiveChar;
+		}
+		public void setPrimitiveChar(char primitiveChar) {
+			this.primitiveChar = primitiveChar;
+		}
+		public String getText() {
+			return text;
+		}
+		public void setText(String text) {
+			this.text = text;
+		}
+	}
+
+	public static class TreeNode {
+		String name;
+		TreeNode child;
+
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public TreeNode getChild() {
+			return child;
+		}
+		public void setChild(TreeNode child) {
+			this.child = child;
+		}
+	}
+}
@@ -0,0 +1,380 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.epics.pvdata.factory.FieldFactory;
+import org.epics.pvdata.pv.FieldCreate;
+import org.epics.pvdata.pv.PVDouble;
+import org.epics.pvdata.pv.PVString;
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVStructureArray;
+import org.epics.pvdata.pv.PVUnionArray;
+import org.epics.pvdata.pv.ScalarType;
+import org.epics.pvdata.pv.Structure;
+import org.epics.pvdata.pv.Type;
+import org.epics.pvdata.pv.UnionArrayData;
+import org.junit.Test;
+
+public class StructureArrayTest {
+
+	@Test
+	public void testHomogeneousListAndArray() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+
+		ScanObject testObject = new ScanObject();
+		List<Point> points = new ArrayList<Point>();
+		points.add(new Point(0.5, 1.0));
+		points.add(new Point(1.5, -1.0));
+		points.add(new Point(2.5, -2.0));
+		testObject.setPoints(points);
+		testObject.setPointArray(new Point[] {new Point(6.0, 7.0)});
+
+		PVStructure serialisedPVStructure = null;
+		ScanObject deserialisedObject = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, ScanObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		FieldCreate fieldCreate = FieldFactory.getFieldCreate();
+		Structure pointStructure = fieldCreate.createFieldBuilder().
+			add("x", ScalarType.pvDouble).
+			add("y", ScalarType.pvDouble).
+			createStructure();
+		Structure expectedStructure = fieldCreate.createFieldBuilder().
+			addArray("points", pointStructure).
+			addArray("pointArray", pointStructure).
+			createStructure();
+
+		assertEquals(expectedStructure, serialisedPVStructure.getStructure());
+		assertEquals(3, serialisedPVStructure.getSubField(PVStructureArray.class, "points").getLength());
+
+		assertEquals(3, deserialisedObject.getPoints().size());
+		assertEquals(2.5, deserialisedObject.getPoints().get(2).getX(), 0);
+		assertEquals(-2.0, deserialisedObject.getPoints().get(2).getY(), 0);
+		assertEquals(1, deserialisedObject.getPointArray().length);
+		assertEquals(7.0, deserialisedObject.getPointArray()[0].getY(), 0);
+	}
+
+	@Test
+	public void testMixedListIsUnionArray() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+
+		ScanObject testObject = new ScanObject();
+		List<Point> points = new ArrayList<Point>();
+		points.add(new Point(0.5, 1.0));
+		points.add(new LabelledPoint());
+		testObject.setPoints(points);
+		testObject.setPointArray(new Point[] {new Point(6.0, 7.0)});
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertTrue(serialisedPVStructure.getSubField("points") instanceof PVUnionArray);
+		assertTrue(serialisedPVStructure.getSubField("pointArray") instanceof PVStructureArray);
+	}
+
+	@Test
+	public void testUnionArrayByDefault() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		ScanObject testObject = new ScanObject();
+		List<Point> points = new ArrayList<Point>();
+		points.add(new Point(0.5, 1.0));
+		points.add(new Point(1.5, -1.0));
+		testObject.setPoints(points);
+		testObject.setPointArray(new Point[] {new Point(6.0, 7.0)});
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertTrue(serialisedPVStructure.getSubField("points") instanceof PVUnionArray);
+		assertTrue(serialisedPVStructure.getSubField("pointArray") instanceof PVUnionArray);
+	}
+
+	@Test
+	public void testPopulateTemplate() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+
+		ScanObject testObject = new ScanObject();
+		List<Point> points = new ArrayList<Point>();
+		points.add(new Point(0.5, 1.0));
+		points.add(new Point(1.5, -1.0));
+		points.add(new Point(2.5, -2.0));
+		testObject.setPoints(points);
+		testObject.setPointArray(new Point[] {new Point(6.0, 7.0)});
+
+		PVStructure template = null;
+		PVStructure expectedPVStructure = null;
+
+		try {
+			template = marshaller.createTemplate(ScanObject.class);
+			marshaller.populate(testObject, template);
+
+			testObject.getPoints().remove(0);
+			marshaller.populate(testObject, template);
+
+			expectedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertEquals(expectedPVStructure.getStructure(), template.getStructure());
+		assertEquals(expectedPVStructure.toString(), template.toString());
+	}
+
+	@Test
+	public void testNestedSubclassIsUnionArray() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+
+		PathObject testObject = new PathObject();
+		List<Segment> segments = new ArrayList<Segment>();
+		Segment first = new Segment();
+		first.setStart(new Point(0.5, 1.0));
+		segments.add(first);
+		Segment second = new Segment();
+		LabelledPoint labelledPoint = new LabelledPoint();
+		labelledPoint.setX(2.5);
+		second.setStart(labelledPoint);
+		segments.add(second);
+		testObject.setSegments(segments);
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		// The Structure of Segment has no room for the label of the second start point
+		PVUnionArray segmentArray = serialisedPVStructure.getSubField(PVUnionArray.class, "segments");
+		assertEquals(2, segmentArray.getLength());
+		UnionArrayData data = new UnionArrayData();
+		segmentArray.get(0, 2, data);
+		PVStructure secondStart = ((PVStructure)data.data[1].get()).getSubField(PVStructure.class, "start");
+		assertEquals(2.5, secondStart.getSubField(PVDouble.class, "x").get(), 0);
+		assertEquals("label", secondStart.getSubField(PVString.class, "label").get());
+	}
+
+	@Test
+	public void testSelfReferencingElements() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+
+		TreeNode root = new TreeNode();
+		root.setName("root");
+		List<TreeNode> children = new ArrayList<TreeNode>();
+		TreeNode child = new TreeNode();
+		child.setName("child");
+		children.add(child);
+		root.setChildren(children);
+
+		PVStructure serialisedPVStructure = null;
+		TreeNode deserialisedObject = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(root);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, TreeNode.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		// The children of the children can't share a Structure without it containing itself
+		PVStructureArray childArray = serialisedPVStructure.getSubField(PVStructureArray.class, "children");
+		Structure childStructure = childArray.getStructureArray().getStructure();
+		assertEquals(Type.unionArray, childStructure.getField("children").getType());
+		assertEquals("child", deserialisedObject.getChildren().get(0).getName());
+	}
+
+	@Test
+	public void testNullMembersDeserialiseAsDefaults() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.setUseStructureArrays(true);
+
+		MarkerObject testObject = new MarkerObject();
+		List<Marker> markers = new ArrayList<Marker>();
+		Marker marker = new Marker();
+		marker.setLabel("start");
+		marker.setCode('s');
+		marker.setValue(1.5);
+		markers.add(marker);
+		markers.add(new Marker());
+		testObject.setMarkers(markers);
+
+		PVStructure serialisedPVStructure = null;
+		MarkerObject deserialisedObject = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, MarkerObject.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertTrue(serialisedPVStructure.getSubField("markers") instanceof PVStructureArray);
+
+		Marker first = deserialisedObject.getMarkers().get(0);
+		assertEquals("start", first.getLabel());
+		assertEquals(Character.valueOf('s'), first.getCode());
+		assertEquals(1.5, first.getValue(), 0);
+
+		// Null members are written as defaults, so only the Character, stored as an empty string, comes back as null
+		Marker second = deserialisedObject.getMarkers().get(1);
+		assertEquals("", second.getLabel());
+		assertNull(second.getCode());
+		assertEquals(0, second.getValue(), 0);
+	}
+
+	public static class ScanObject {
+		List<Point> points;
+		Point[] pointArray;
+
+		public List<Point> getPoints() {
+			return points;
+		}
+		public void setPoints(List<Point> points) {
+			this.points = points;
+		}
+		public Point[] getPointArray() {
+			return pointArray;
+		}
+		public void setPointArray(Point[] pointArray) {
+			this.pointArray = pointArray;
+		}
+	}
+
+	public static class Point {
+		double x;
+		double y;
+
+		public Point() {
+		}
+		public Point(double x, double y) {
+			this.x = x;
+			this.y = y;
+		}
+		public double getX() {
+			return x;
+		}
+		public void setX(double x) {
+			this.x = x;
+		}
+		public double getY() {
+			return y;
+		}
+		public void setY(double y) {
+			this.y = y;
+		}
+	}
+
+	public static class LabelledPoint extends Point {
+		String label = "label";
+
+		public String getLabel() {
+			return label;
+		}
+		public void setLabel(String label) {
+			this.label = label;
+		}
+	}
+
+	public static class PathObject {
+		List<Segment> segments;
+
+		public List<Segment> getSegments() {
+			return segments;
+		}
+		public void setSegments(List<Segment> segments) {
+			this.segments = segments;
+		}
+	}
+
+	public static class Segment {
+		Point start;
+
+		public Point getStart() {
+			return start;
+		}
+		public void setStart(Point start) {
+			this.start = start;
+		}
+	}
+
+	public static class TreeNode {
+		String name;
+		List<TreeNode> children;
+
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+		public List<TreeNode> getChildren() {
+			return children;
+		}
+		public void setChildren(List<TreeNode> children) {
+			this.children = children;
+		}
+	}
+
+	public static class MarkerObject {
+		List<Marker> markers;
+
+		public List<Marker> getMarkers() {
+			return markers;
+		}
+		public void setMarkers(List<Marker> markers) {
+			this.markers = markers;
+		}
+	}
+
+	public static class Marker {
+		String label;
+		Character code;
+		Double value;
+
+		public String getLabel() {
+			return label;
+		}
+		public void setLabel(String label) {
+			this.label = label;
+		}
+		public Character getCode() {
+			return code;
+		}
+		public void setCode(Character code) {
+			this.code = code;
+		}
+		public Double getValue() {
+			return value;
+		}
+		public void setValue(Double value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,294 @@
+package org.epics.pvmarshaller.marshaller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.epics.pvdata.pv.PVStructure;
+import org.epics.pvdata.pv.PVUnionArray;
+import org.epics.pvdata.pv.Union;
+import org.epics.pvdata.pv.UnionArrayData;
+import org.junit.Test;
+
+public class SubtypeUnionTest {
+
+	@Test
+	public void testRegisteredSubtypes() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerSubtypesForClass(Event.class, Arrays.asList(StartEvent.class, StopEvent.class));
+
+		EventLog testObject = new EventLog();
+		List<Event> events = new ArrayList<Event>();
+		StartEvent start = new StartEvent();
+		start.setName("scan");
+		events.add(start);
+		StopEvent stop = new StopEvent();
+		stop.setPoints(12);
+		events.add(stop);
+		events.add(null);
+		testObject.setEvents(events);
+
+		PVStructure serialisedPVStructure = null;
+		EventLog deserialisedObject = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+			deserialisedObject = marshaller.fromPVStructure(serialisedPVStructure, EventLog.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		PVUnionArray pvEvents = serialisedPVStructure.getSubField(PVUnionArray.class, "events");
+		Union union = pvEvents.getUnionArray().getUnion();
+		assertFalse(union.isVariant());
+		assertArrayEquals(new String[] {"StartEvent", "StopEvent"}, union.getFieldNames());
+
+		UnionArrayData data = new UnionArrayData();
+		pvEvents.get(0, pvEvents.getLength(), data);
+		assertEquals(1, data.data[1].getSelectedIndex());
+
+		List<Event> deserialisedEvents = deserialisedObject.getEvents();
+		assertEquals(3, deserialisedEvents.size());
+		assertTrue(deserialisedEvents.get(0) instanceof StartEvent);
+		assertEquals("scan", ((StartEvent)deserialisedEvents.get(0)).getName());
+		assertTrue(deserialisedEvents.get(1) instanceof StopEvent);
+		assertEquals(12, ((StopEvent)deserialisedEvents.get(1)).getPoints());
+		assertNull(deserialisedEvents.get(2));
+	}
+
+	@Test
+	public void testUnregisteredSubtypeIsVariant() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerSubtypesForClass(Event.class, Arrays.asList(StartEvent.class));
+
+		EventLog testObject = new EventLog();
+		List<Event> events = new ArrayList<Event>();
+		StartEvent start = new StartEvent();
+		start.setName("scan");
+		events.add(start);
+		StopEvent stop = new StopEvent();
+		stop.setPoints(12);
+		events.add(stop);
+		testObject.setEvents(events);
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		PVUnionArray pvEvents = serialisedPVStructure.getSubField(PVUnionArray.class, "events");
+		assertTrue(pvEvents.getUnionArray().getUnion().isVariant());
+	}
+
+	@Test
+	public void testPopulateTemplate() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerSubtypesForClass(Event.class, Arrays.asList(StartEvent.class, StopEvent.class));
+
+		EventLog testObject = new EventLog();
+		List<Event> events = new ArrayList<Event>();
+		StartEvent start = new StartEvent();
+		start.setName("scan");
+		events.add(start);
+		StopEvent stop = new StopEvent();
+		stop.setPoints(12);
+		events.add(stop);
+		testObject.setEvents(events);
+
+		PVStructure template = null;
+		EventLog deserialisedObject = null;
+
+		try {
+			template = marshaller.createTemplate(EventLog.class);
+			marshaller.populate(testObject, template);
+			deserialisedObject = marshaller.fromPVStructure(template, EventLog.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertFalse(template.getSubField(PVUnionArray.class, "events").getUnionArray().getUnion().isVariant());
+		assertTrue(deserialisedObject.getEvents().get(1) instanceof StopEvent);
+	}
+
+	@Test
+	public void testUnionReusedUntilRegistrationChanges() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerSubtypesForClass(Event.class, Arrays.asList(StartEvent.class, StopEvent.class));
+
+		EventLog testObject = new EventLog();
+		List<Event> events = new ArrayList<Event>();
+		events.add(new StartEvent());
+		testObject.setEvents(events);
+
+		Union firstUnion = null;
+		Union secondUnion = null;
+		Union reregisteredUnion = null;
+
+		try {
+			firstUnion = marshaller.toPVStructure(testObject).getSubField(PVUnionArray.class, "events").getUnionArray().getUnion();
+			secondUnion = marshaller.toPVStructure(testObject).getSubField(PVUnionArray.class, "events").getUnionArray().getUnion();
+			marshaller.registerSubtypesForClass(Event.class, Arrays.asList(StartEvent.class));
+			reregisteredUnion = marshaller.toPVStructure(testObject).getSubField(PVUnionArray.class, "events").getUnionArray().getUnion();
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		assertSame(firstUnion, secondUnion);
+		assertArrayEquals(new String[] {"StartEvent"}, reregisteredUnion.getFieldNames());
+	}
+
+	@Test
+	public void testDuplicateSubtypeNamesFail() {
+		PVMarshaller marshaller = new PVMarshaller();
+
+		try {
+			marshaller.registerSubtypesForClass(Event.class, Arrays.asList(StartEvent.class, LegacyEvents.StartEvent.class));
+			fail("Expected an exception for two subtypes with the same name");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testNestedSubclassIsVariant() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerSubtypesForClass(Event.class, Arrays.asList(StartEvent.class, MoveEvent.class));
+
+		EventLog testObject = new EventLog();
+		List<Event> events = new ArrayList<Event>();
+		MoveEvent move = new MoveEvent();
+		GatedPosition position = new GatedPosition();
+		position.setX(1.5);
+		position.setGate(3);
+		move.setPosition(position);
+		events.add(move);
+		testObject.setEvents(events);
+
+		PVStructure serialisedPVStructure = null;
+
+		try {
+			serialisedPVStructure = marshaller.toPVStructure(testObject);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		// The MoveEvent member of the Union has no room for the gate of the position
+		PVUnionArray pvEvents = serialisedPVStructure.getSubField(PVUnionArray.class, "events");
+		assertTrue(pvEvents.getUnionArray().getUnion().isVariant());
+	}
+
+	@Test
+	public void testNullMembersOfSubtype() {
+		PVMarshaller marshaller = new PVMarshaller();
+		marshaller.registerSubtypesForClass(Event.class, Arrays.asList(StartEvent.class, MoveEvent.class));
+
+		EventLog testObject = new EventLog();
+		List<Event> events = new ArrayList<Event>();
+		events.add(new MoveEvent());
+		testObject.setEvents(events);
+
+		EventLog deserialisedObject = null;
+
+		try {
+			deserialisedObject = marshaller.fromPVStructure(marshaller.toPVStructure(testObject), EventLog.class);
+		} catch (Exception e) {
+			fail(e.getMessage());
+		}
+
+		MoveEvent deserialisedMove = (MoveEvent)deserialisedObject.getEvents().get(0);
+		assertNull(deserialisedMove.getAxis());
+		assertEquals(0, deserialisedMove.getPosition().getX(), 0);
+	}
+
+	public static class EventLog {
+		List<Event> events;
+
+		public List<Event> getEvents() {
+			return events;
+		}
+		public void setEvents(List<Event> events) {
+			this.events = events;
+		}
+	}
+
+	public interface Event {
+	}
+
+	public static class StartEvent implements Event {
+		String name;
+
+		public String getName() {
+			return name;
+		}
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	public static class StopEvent implements Event {
+		int points;
+
+		public int getPoints() {
+			return points;
+		}
+		public void setPoints(int points) {
+			this.points = points;
+		}
+	}
+
+	public static class MoveEvent implements Event {
+		Position position;
+		Character axis;
+
+		public Position getPosition() {
+			return position;
+		}
+		public void setPosition(Position position) {
+			this.position = position;
+		}
+		public Character getAxis() {
+			return axis;
+		}
+		public void setAxis(Character axis) {
+			this.axis = axis;
+		}
+	}
+
+	public static class Position {
+		double x;
+
+		public double getX() {
+			return x;
+		}
+		public void setX(double x) {
+			this.x = x;
+		}
+	}
+
+	public static class GatedPosition extends Position {
+		int gate;
+
+		public int getGate() {
+			return gate;
+		}
+		public void setGate(int gate) {
+			this.gate = gate;
+		}
+	}
+
+	public static class LegacyEvents {
+		public static class StartEvent implements Event {
+		}
+	}
+}
@@ -183,33 +183,38 @@ public class UnionTest {
 		PVDataCreate pvDataCreate = PVDataFactory.getPVDataCreate();
 		
 		Field intField = fieldCreate.createScalar(ScalarType.pvInt);
-		Field doubleField = fieldCreate.createScalar(ScalarType.pvDouble);
+		Field floatField = fieldCreate.createScalar(ScalarType.pvFloat);
 		
-		String[] fieldNames = {"intField", "doubleField"};
-		Field[] fields = {intField, doubleField};
+		String[] fieldNames = {"intField", "floatField"};
+		Field[] fields = {intField, floatField};
 		Union union = fieldCreate.createUnion(fieldNames, fields);
 		
 		Structure structure = fieldCreate.createFieldBuilder().
-			add("myValue", union).
+			add("myvalue", union).
 			add("descriptor", ScalarType.pvString).
 			createStructure();
 		
-		PVField pvField = pvDataCreate.createPVField(doubleField);
-		PVDouble pvd = (PVDouble)pvField;
-		pvd.put(123.45d);
-		
 		PVStructure testPVStructure = pvDataCreate.createPVStructure(structure);
 		
+		PVUnion pvUnionValue = testPVStructure.getSubField(PVUnion.class, "myvalue");
+		pvUnionValue.select(PVFloat.class, "floatField").put(123.45f);
+		
 		PVString wrapperValue = testPVStructure.getSubField(PVString.class, "descriptor");
 		wrapperValue.put("test string");
+		
+		UnionTestClass expectedObject = new UnionTestClass();
+		expectedObject.myvalue = 123.45f;
+		expectedObject.descriptor = "test string";
 				
+		UnionTestClass deserialisedObject = null;
 		try {
 			PVMarshaller marshaller = new PVMarshaller();
-			marshaller.fromPVStructure(testPVStructure, UnionTestClass.class);
-			fail("No excpetion thrown");
+			deserialisedObject = marshaller.fromPVStructure(testPVStructure, UnionTestClass.class);
 		} catch (Exception e) {
-			assertTrue(e instanceof IllegalArgumentException);
+			fail(e.getMessage());
 		}
+		
+		assertEquals(expectedObject, deserialisedObject);
 	}
 	
 	public static class TestObjectClass {